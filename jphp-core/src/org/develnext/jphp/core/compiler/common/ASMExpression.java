@@ -107,13 +107,21 @@ public class ASMExpression {
                     if (checkStack.size() < 2)
                         unexpectedToken(operator);
                     checkStack.pop();
-                    checkStack.pop();
+                    Token left = checkStack.pop();
+
+                    // $var[] = value, the push and the assign are compiled as one call
+                    if (left instanceof ArrayPushExprToken && operator.getClass() == AssignExprToken.class
+                            && !((AssignExprToken) operator).isAsReference()) {
+                        ((ArrayPushExprToken) left).setAssigned(true);
+                        ((AssignExprToken) operator).setArrayPush(true);
+                    }
+
                     checkStack.push(null);
                 } else {
                     if (checkStack.empty())
                         unexpectedToken(operator);
                     checkStack.pop();
-                    checkStack.push(null);
+                    checkStack.push(operator.getClass() == ArrayPushExprToken.class ? operator : null);
                 }
             } else if (el instanceof CallExprToken){
                 if (((CallExprToken) el).getName() instanceof OperatorExprToken){
@@ -138,7 +146,7 @@ public class ASMExpression {
 
         if (checkStack.size() > 1){
             for (Token el : checkStack)
-                if (el != null)
+                if (el != null && !(el instanceof ArrayPushExprToken))
                     unexpectedToken(el);
         }
 
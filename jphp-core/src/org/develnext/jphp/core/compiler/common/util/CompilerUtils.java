@@ -60,7 +60,8 @@ final public class CompilerUtils {
     }
 
     public static int getOperatorOpcode(OperatorExprToken operator, StackItem.Type type){
-        if (operator instanceof PlusExprToken){
+        if (operator instanceof PlusExprToken || operator instanceof AssignPlusExprToken
+                || operator instanceof IncExprToken){
             switch (type){
                 case DOUBLE: return Opcodes.DADD;
                 case FLOAT: return Opcodes.FADD;
@@ -71,7 +72,8 @@ final public class CompilerUtils {
             }
         }
 
-        if (operator instanceof MinusExprToken){
+        if (operator instanceof MinusExprToken || operator instanceof AssignMinusExprToken
+                || operator instanceof DecExprToken){
             switch (type){
                 case DOUBLE: return Opcodes.DSUB;
                 case FLOAT: return Opcodes.FSUB;
@@ -82,7 +84,7 @@ final public class CompilerUtils {
             }
         }
 
-        if (operator instanceof MulExprToken){
+        if (operator instanceof MulExprToken || operator instanceof AssignMulExprToken){
             switch (type){
                 case DOUBLE: return Opcodes.DMUL;
                 case FLOAT: return Opcodes.FMUL;
@@ -12,6 +12,7 @@ import php.runtime.common.Messages;
 import php.runtime.common.Modifier;
 import php.runtime.common.AbstractCompiler;
 import org.develnext.jphp.core.compiler.jvm.statement.*;
+import org.develnext.jphp.core.compiler.pass.PassPipeline;
 import php.runtime.exceptions.CompileException;
 import php.runtime.exceptions.support.ErrorType;
 import org.develnext.jphp.core.syntax.SyntaxAnalyzer;
@@ -37,6 +38,7 @@ public class JvmCompiler extends AbstractCompiler {
 
     protected final SyntaxAnalyzer analyzer;
     protected final List<Token> tokens;
+    protected final PassPipeline passes;
 
     protected YieldExprToken lastYield;
 
@@ -51,12 +53,62 @@ public class JvmCompiler extends AbstractCompiler {
 
         this.tokens = analyzer.getTree();
         this.analyzer = analyzer;
+        this.passes = PassPipeline.createDefault(this);
     }
 
     public SyntaxAnalyzer getAnalyzer() {
         return analyzer;
     }
 
+    public PassPipeline getPasses() {
+        return passes;
+    }
+
+    @Override
+    public Collection<String> getDeclaredClasses() {
+        List<String> result = new ArrayList<>();
+
+        for (Token token : tokens) {
+            if (token instanceof ClassStmtToken) {
+                result.add(((ClassStmtToken) token).getFulledName());
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public Collection<String> getClassDependencies() {
+        Set<String> declared = new HashSet<>();
+        Map<String, String> result = new LinkedHashMap<>();
+
+        for (ClassStmtToken clazz : analyzer.getClasses()) {
+            if (!clazz.isAnonymous()) {
+                declared.add(clazz.getFulledName().toLowerCase());
+            }
+
+            if (clazz.getExtend() != null) {
+                String name = clazz.getExtend().getName().getName();
+                result.put(name.toLowerCase(), name);
+            }
+
+            if (clazz.getImplement() != null) {
+                for (FulledNameToken name : clazz.getImplement()) {
+                    result.put(name.getName().toLowerCase(), name.getName());
+                }
+            }
+
+            if (clazz.getUses() != null) {
+                for (NameToken name : clazz.getUses()) {
+                    result.put(name.getName().toLowerCase(), name.getName());
+                }
+            }
+        }
+
+        result.keySet().removeAll(declared);
+        return result.values();
+    }
+
     public ConstantEntity findConstant(String fullName){
         return constants.get(fullName.toLowerCase());
     }
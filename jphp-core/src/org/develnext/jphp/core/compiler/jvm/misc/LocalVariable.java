@@ -52,6 +52,10 @@ public class LocalVariable {
         return clazz;
     }
 
+    public boolean isUnboxed() {
+        return clazz == Long.TYPE || clazz == Double.TYPE;
+    }
+
     public boolean isReference() {
         return isReference;
     }
@@ -55,6 +55,7 @@ public class ClassStmtCompiler extends StmtCompiler<ClassEntity> {
 
     public final List<Memory> memoryConstants = new ArrayList<>();
     public final Map<Memory, Integer> memoryConstantsMap = new HashMap<>();
+    public final List<String> staticSlotNames = new ArrayList<>();
 
     public final List<Collection<Memory>> memoryArrayConstants = new ArrayList<>();
 
@@ -62,6 +63,7 @@ public class ClassStmtCompiler extends StmtCompiler<ClassEntity> {
     private boolean isSystem = false;
     private boolean isInterfaceCheck = true;
     private String functionName = "";
+    private int fixedArity = -1;
 
     private boolean initDynamicExists = false;
     private int callFuncCount = 0;
@@ -71,6 +73,7 @@ public class ClassStmtCompiler extends StmtCompiler<ClassEntity> {
     private int callPropCount = 0;
 
     private GeneratorEntity generatorEntity;
+    private boolean resumableGenerator;
     private ClosureEntity closureEntity;
 
     protected List<ConstStmtToken.Item> dynamicConstants = new ArrayList<ConstStmtToken.Item>();
@@ -123,6 +126,17 @@ public class ClassStmtCompiler extends StmtCompiler<ClassEntity> {
         this.functionName = functionName;
     }
 
+    /**
+     * @return count of arguments of the fixed-arity entry point of a function body, -1 if the body has not it
+     */
+    public int getFixedArity() {
+        return fixedArity;
+    }
+
+    public void setFixedArity(int fixedArity) {
+        this.fixedArity = fixedArity;
+    }
+
     public GeneratorEntity getGeneratorEntity() {
         return generatorEntity;
     }
@@ -131,6 +145,14 @@ public class ClassStmtCompiler extends StmtCompiler<ClassEntity> {
         this.generatorEntity = generatorEntity;
     }
 
+    public boolean isResumableGenerator() {
+        return resumableGenerator;
+    }
+
+    public void setResumableGenerator(boolean resumableGenerator) {
+        this.resumableGenerator = resumableGenerator;
+    }
+
     public ClosureEntity getClosureEntity() {
         return closureEntity;
     }
@@ -199,6 +221,17 @@ public class ClassStmtCompiler extends StmtCompiler<ClassEntity> {
         }
     }
 
+    public int addStaticSlot(String name) {
+        int index = staticSlotNames.indexOf(name);
+
+        if (index == -1) {
+            staticSlotNames.add(name);
+            index = staticSlotNames.size() - 1;
+        }
+
+        return index;
+    }
+
     int addMemoryArray(Collection<Memory> memories) {
         memoryArrayConstants.add(memories);
         return memoryArrayConstants.size() - 1;
@@ -377,6 +410,12 @@ public class ClassStmtCompiler extends StmtCompiler<ClassEntity> {
                     constructor.desc,
                     false
             ));
+
+            if (resumableGenerator) {
+                expressionCompiler.writeVarLoad("~this");
+                expressionCompiler.writePushConstBoolean(true);
+                expressionCompiler.writePutDynamic("resumable", Boolean.TYPE);
+            }
         } else {
             constructor.desc = Type.getMethodDescriptor(
                     Type.getType(void.class), Type.getType(Environment.class), Type.getType(ClassEntity.class)
@@ -815,21 +854,48 @@ public class ClassStmtCompiler extends StmtCompiler<ClassEntity> {
         }
         expressionCompiler.writePutStatic("$AMEM", Memory[][].class);
 
-        // cached calls
-        expressionCompiler.writePushNewObject(FunctionCallCache.class);
-        expressionCompiler.writePutStatic("$CALL_FUNC_CACHE", FunctionCallCache.class);
+        // names of static variables, their slots are resolved by the scope on the first access
+        if (!staticSlotNames.isEmpty()) {
+            this.node.fields.add(new FieldNode(
+                    ACC_PUBLIC + ACC_STATIC, "$STATIC_NAMES",
+                    Type.getDescriptor(String[].class),
+                    null,
+                    null
+            ));
 
-        expressionCompiler.writePushNewObject(MethodCallCache.class);
-        expressionCompiler.writePutStatic("$CALL_METH_CACHE", MethodCallCache.class);
+            this.node.fields.add(new FieldNode(
+                    ACC_PUBLIC + ACC_STATIC + ACC_VOLATILE, "$STATIC_SLOTS",
+                    Type.getDescriptor(int[].class),
+                    null,
+                    null
+            ));
 
-        expressionCompiler.writePushNewObject(ConstantCallCache.class);
-        expressionCompiler.writePutStatic("$CALL_CONST_CACHE", ConstantCallCache.class);
+            expressionCompiler.writePushSmallInt(staticSlotNames.size());
+            node.instructions.add(new TypeInsnNode(ANEWARRAY, Type.getInternalName(String.class)));
+            expressionCompiler.stackPush(Memory.Type.REFERENCE);
 
-        expressionCompiler.writePushNewObject(PropertyCallCache.class);
-        expressionCompiler.writePutStatic("$CALL_PROP_CACHE", PropertyCallCache.class);
+            i = 0;
+            for (String name : staticSlotNames) {
+                expressionCompiler.writePushDup();
+                expressionCompiler.writePushSmallInt(i);
+                expressionCompiler.writePushConstString(name);
 
-        expressionCompiler.writePushNewObject(ClassCallCache.class);
-        expressionCompiler.writePutStatic("$CALL_CLASS_CACHE", ClassCallCache.class);
+                node.instructions.add(new InsnNode(AASTORE));
+                expressionCompiler.stackPop();
+                expressionCompiler.stackPop();
+
+                i++;
+            }
+
+            expressionCompiler.writePutStatic("$STATIC_NAMES", String[].class);
+        }
+
+        // cached calls, the sites of all methods are compiled here
+        writeCallCache(expressionCompiler, "$CALL_FUNC_CACHE", FunctionCallCache.class, callFuncCount);
+        writeCallCache(expressionCompiler, "$CALL_METH_CACHE", MethodCallCache.class, callMethCount);
+        writeCallCache(expressionCompiler, "$CALL_CONST_CACHE", ConstantCallCache.class, callConstCount);
+        writeCallCache(expressionCompiler, "$CALL_PROP_CACHE", PropertyCallCache.class, callPropCount);
+        writeCallCache(expressionCompiler, "$CALL_CLASS_CACHE", ClassCallCache.class, callClassCount);
 
         node.instructions.add(new InsnNode(RETURN));
         methodCompiler.writeFooter();
@@ -837,6 +903,18 @@ public class ClassStmtCompiler extends StmtCompiler<ClassEntity> {
         this.node.methods.add(node);
     }
 
+    protected void writeCallCache(ExpressionStmtCompiler expressionCompiler, String field, Class<?> clazz, int size) {
+        expressionCompiler.makeUnknown(new TypeInsnNode(NEW, Type.getInternalName(clazz)));
+        expressionCompiler.stackPush(Memory.Type.REFERENCE);
+        expressionCompiler.writePushDup();
+        expressionCompiler.writePushConstInt(size);
+        expressionCompiler.writeSysCall(
+                Type.getInternalName(clazz), INVOKESPECIAL, Constants.INIT_METHOD, void.class, Integer.TYPE
+        );
+        expressionCompiler.stackPop();
+        expressionCompiler.writePutStatic(field, clazz);
+    }
+
     protected void writeInterfaceMethod(MethodEntity method) {
         MethodNode node = new MethodNodeImpl();
         node.access = ACC_PUBLIC;
@@ -896,8 +974,17 @@ public class ClassStmtCompiler extends StmtCompiler<ClassEntity> {
 
     protected ClassEntity fetchClass(String name) {
         ClassEntity result = compiler.getModule().findClass(name);
-        if (result == null)
-            result = getCompiler().getEnvironment().fetchClass(name, true);
+        if (result == null) {
+            result = compiler.findImportedClass(name);
+
+            if (result == null) {
+                result = getCompiler().getEnvironment().fetchClass(name, true);
+            }
+
+            if (result != null && result.getModule() != null) {
+                compiler.getModule().addDependency(result.getModule());
+            }
+        }
 
         return result;
     }
@@ -1201,6 +1288,7 @@ public class ClassStmtCompiler extends StmtCompiler<ClassEntity> {
     public ClassEntity compile() {
         entity = new ClassEntity(compiler.getContext());
         entity.setId(compiler.getScope().nextClassIndex());
+        entity.setScope(compiler.getScope());
 
         entity.setFinal(statement.isFinal());
         entity.setAbstract(statement.isAbstract());
@@ -20,6 +20,7 @@ import org.develnext.jphp.core.tokenizer.token.expr.operator.*;
 import org.develnext.jphp.core.tokenizer.token.expr.value.*;
 import org.develnext.jphp.core.tokenizer.token.expr.value.macro.*;
 import org.develnext.jphp.core.tokenizer.token.stmt.*;
+import org.objectweb.asm.Handle;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.*;
@@ -49,6 +50,9 @@ import php.runtime.reflection.*;
 import php.runtime.reflection.support.Entity;
 
 import java.io.File;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.*;
@@ -238,11 +242,23 @@ public class ExpressionStmtCompiler extends StmtCompiler {
     }
 
     public void makeVarStore(LocalVariable variable) {
-        code.add(new VarInsnNode(ASTORE, variable.index));
+        int opcode = ASTORE;
+        if (variable.getClazz() == Long.TYPE)
+            opcode = LSTORE;
+        else if (variable.getClazz() == Double.TYPE)
+            opcode = DSTORE;
+
+        code.add(new VarInsnNode(opcode, variable.index));
     }
 
     public void makeVarLoad(LocalVariable variable) {
-        code.add(new VarInsnNode(ALOAD, variable.index));
+        int opcode = ALOAD;
+        if (variable.getClazz() == Long.TYPE)
+            opcode = LLOAD;
+        else if (variable.getClazz() == Double.TYPE)
+            opcode = DLOAD;
+
+        code.add(new VarInsnNode(opcode, variable.index));
     }
 
     public void makeUnknown(AbstractInsnNode node) {
@@ -322,10 +338,16 @@ public class ExpressionStmtCompiler extends StmtCompiler {
             }
             stackPush(token, StackItem.Type.REFERENCE);
         } else {
-            if (token instanceof VariableExprToken
-                    && !methodStatement.isUnstableVariable((VariableExprToken) token)) {
+            if (token instanceof VariableExprToken) {
                 LocalVariable local = method.getLocalVariable(((VariableExprToken) token).getName());
-                if (local != null && local.getValue() != null) {
+
+                if (local != null && local.isUnboxed()) {
+                    stackPush(token, StackItem.Type.valueOf(local.getClazz()));
+                    return;
+                }
+
+                if (local != null && local.getValue() != null
+                        && !methodStatement.isUnstableVariable((VariableExprToken) token)) {
                     stackPush(token, local.getValue());
                     stackPeek().setLevel(-1);
                     return;
@@ -383,7 +405,10 @@ public class ExpressionStmtCompiler extends StmtCompiler {
     public void writeLineNumber(Token token) {
         if (token.getMeta().getStartLine() > lastLineNumber) {
             lastLineNumber = token.getMeta().getStartLine();
-            code.add(new LineNumberNode(lastLineNumber, new LabelNode()));
+
+            LabelNode label = new LabelNode();
+            code.add(label);
+            code.add(new LineNumberNode(lastLineNumber, label));
         }
     }
 
@@ -490,7 +515,7 @@ public class ExpressionStmtCompiler extends StmtCompiler {
                     if (array.isList()) {
                         writePushMemory(foreachIterator.getValue());
                         writePopBoxing();
-                        writeSysDynamicCall(ArrayMemory.class, "add", ReferenceMemory.class, Memory.class);
+                        writeSysDynamicCall(ArrayMemory.class, "append", void.class, Memory.class);
                     } else {
                         Memory key = foreachIterator.getMemoryKey();
                         if (key instanceof LongMemory) {
@@ -511,9 +536,9 @@ public class ExpressionStmtCompiler extends StmtCompiler {
 
                             writeSysDynamicCall(ArrayMemory.class, "put", ReferenceMemory.class, Object.class, Memory.class);
                         }
-                    }
 
-                    writePopAll(1);
+                        writePopAll(1);
+                    }
                 }
             }
             /*stackPop();
@@ -1156,6 +1181,8 @@ public class ExpressionStmtCompiler extends StmtCompiler {
 
         int i = 0;
         for (ExprStmtToken param : parameters) {
+            markArrayGetAsReference(param);
+
             writePushDup();
             writePushSmallInt(i);
             writeExpression(param, true, false);
@@ -1684,7 +1711,9 @@ public class ExpressionStmtCompiler extends StmtCompiler {
 
         Function<VariableExprToken, LocalVariable> createVar = (value) -> {
             LabelNode label = writeLabel(node, value.getMeta().getStartLine());
-            return method.addLocalVariable(value.getName(), label, Memory.class);
+            Class<?> unboxedType = methodStatement.getUnboxedType(value);
+
+            return method.addLocalVariable(value.getName(), label, unboxedType == null ? Memory.class : unboxedType);
         };
 
         initAlreadyExists.accept(values.stream()
@@ -1703,6 +1732,13 @@ public class ExpressionStmtCompiler extends StmtCompiler {
                     .map(createVar.andThen(variable -> variable.setReference(true)))
             );
         } else {
+            values.stream()
+                    .filter(variableExprToken -> !methodStatement.isUnusedVariable(variableExprToken))
+                    .filter(value -> method.getLocalVariable(value.getName()) == null)
+                    .filter(value -> methodStatement.getUnboxedType(value) != null)
+                    .map(createVar)
+                    .forEach(this::writeDefineUnboxedVariable);
+
             initWithNull.accept(values.stream()
                     .filter(variableExprToken -> !methodStatement.isUnusedVariable(variableExprToken))
                     .filter(value -> method.getLocalVariable(value.getName()) == null)
@@ -1746,6 +1782,19 @@ public class ExpressionStmtCompiler extends StmtCompiler {
         }
     }
 
+    protected void writeDefineUnboxedVariable(LocalVariable variable) {
+        // the analysis guarantees an assignment before any read, the initial value is only for the verifier
+        if (variable.getClazz() == Long.TYPE)
+            writePushConstLong(0L);
+        else
+            writePushConstDouble(0.0);
+
+        makeVarStore(variable);
+        stackPop();
+
+        variable.pushLevel();
+    }
+
     protected void writeDefineVariable(VariableExprToken value) {
         writeDefineVariables(Collections.singletonList(value));
     }
@@ -1918,8 +1967,7 @@ public class ExpressionStmtCompiler extends StmtCompiler {
                         writePushTraceInfo(param);
                         writeSysDynamicCall(ArrayMemory.class, "addVariadic", void.class, Memory.class, Environment.class, TraceInfo.class);
                     } else {
-                        writeSysDynamicCall(ArrayMemory.class, "add", ReferenceMemory.class, Memory.class);
-                        writePopAll(1);
+                        writeSysDynamicCall(ArrayMemory.class, "append", void.class, Memory.class);
                     }
                 }
             //}
@@ -2205,6 +2253,25 @@ public class ExpressionStmtCompiler extends StmtCompiler {
         writePop(castType.toClass(), true, true);
     }
 
+    /**
+     * Pushes two values with the cast, the values which are already on the stack must be in the same order.
+     */
+    public void writePush(StackItem first, StackItem second, StackItem.Type castType) {
+        if (!first.isKnown() && !second.isKnown()) {
+            writePush(first);
+            writePush(second, castType);
+
+            if (first.type != castType) {
+                writeSwap();
+                writePop(castType.toClass(), true, true);
+                writeSwap();
+            }
+        } else {
+            writePush(first, castType);
+            writePush(second, castType);
+        }
+    }
+
     boolean tryIsImmutable(ValueExprToken value) {
         if (value instanceof IntegerExprToken)
             return true;
@@ -2257,6 +2324,11 @@ public class ExpressionStmtCompiler extends StmtCompiler {
         } else if (value instanceof NameToken) {
             Memory tmpMemory = writePushName((NameToken) value, true, false);
             return tmpMemory == null ? StackItem.Type.REFERENCE : StackItem.Type.valueOf(tmpMemory.type);
+        } else if (value instanceof VariableExprToken) {
+            LocalVariable local = method.getLocalVariable(((VariableExprToken) value).getName());
+            return local != null && local.isUnboxed()
+                    ? StackItem.Type.valueOf(local.getClazz())
+                    : StackItem.Type.REFERENCE;
         } else
             return StackItem.Type.REFERENCE;
     }
@@ -2399,6 +2471,43 @@ public class ExpressionStmtCompiler extends StmtCompiler {
         writeSysCall(clazz, INVOKESTATIC, method, returnClazz, paramClasses);
     }
 
+    /**
+     * Writes invokedynamic linked by the static `bootstrap` method of bootstrapClass,
+     * bootstrapArgs must be strings or integers.
+     */
+    public void writeSysInvokeDynamic(Class bootstrapClass, String method, Object[] bootstrapArgs,
+                                      Class returnClazz, Class... paramClasses) {
+        Type[] bootstrapTypes = new Type[3 + bootstrapArgs.length];
+        bootstrapTypes[0] = Type.getType(MethodHandles.Lookup.class);
+        bootstrapTypes[1] = Type.getType(String.class);
+        bootstrapTypes[2] = Type.getType(MethodType.class);
+
+        for (int i = 0; i < bootstrapArgs.length; i++) {
+            bootstrapTypes[3 + i] = bootstrapArgs[i] instanceof Integer
+                    ? Type.INT_TYPE
+                    : Type.getType(bootstrapArgs[i].getClass());
+        }
+
+        Handle bootstrap = new Handle(
+                H_INVOKESTATIC, Type.getInternalName(bootstrapClass), "bootstrap",
+                Type.getMethodDescriptor(Type.getType(CallSite.class), bootstrapTypes), false
+        );
+
+        Type[] args = new Type[paramClasses.length];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = Type.getType(paramClasses[i]);
+            stackPop();
+        }
+
+        code.add(new InvokeDynamicInsnNode(
+                method, Type.getMethodDescriptor(Type.getType(returnClazz), args), bootstrap, bootstrapArgs
+        ));
+
+        if (returnClazz != void.class) {
+            stackPush(null, StackItem.Type.valueOf(returnClazz));
+        }
+    }
+
     public void writePopImmutable() {
         if (!stackPeek().immutable) {
             writeSysStaticCall(Memory.class, "__static_fast_toImmutable", Memory.class, Memory.class);
@@ -2409,6 +2518,18 @@ public class ExpressionStmtCompiler extends StmtCompiler {
     }
 
     public void writeVarStore(LocalVariable variable, boolean returned, boolean asImmutable) {
+        if (variable.isUnboxed()) {
+            writePop(variable.getClazz(), false, false);
+
+            if (returned) {
+                writePushDup();
+            }
+
+            makeVarStore(variable);
+            stackPop();
+            return;
+        }
+
         writePopBoxing();
 
         if (stackPeek().immutable && variable.isHasImmutableValue() == null) {
@@ -2465,7 +2586,7 @@ public class ExpressionStmtCompiler extends StmtCompiler {
     public void writeVarLoad(LocalVariable variable) {
         stackPush(Memory.Type.valueOf(variable.getClazz()));
         makeVarLoad(variable);
-        setStackPeekAsImmutable(method.isHasImmutableValue(variable));
+        setStackPeekAsImmutable(variable.isUnboxed() || method.isHasImmutableValue(variable));
     }
 
     public void writeVarLoad(String name) {
@@ -2565,6 +2686,9 @@ public class ExpressionStmtCompiler extends StmtCompiler {
             }
             if (!returnValue)
                 writePopAll(1);
+        } else if (local.isUnboxed()) {
+            writePush(R, StackItem.Type.valueOf(local.getClazz()));
+            writeVarStore(local, returnValue, false);
         } else {
             Memory result = tryWritePush(R);
             if (result != null) {
@@ -2597,8 +2721,7 @@ public class ExpressionStmtCompiler extends StmtCompiler {
                 writePush(L, StackItem.Type.STRING);
                 writeSysStaticCall(OperatorUtils.class, "concatRight", String.class, String.class, String.class);
             } else {
-                writePush(L, StackItem.Type.STRING);
-                writePush(R, StackItem.Type.STRING);
+                writePush(L, R, StackItem.Type.STRING);
                 writeSysDynamicCall(String.class, "concat", String.class, String.class);
             }
             return;
@@ -2611,8 +2734,12 @@ public class ExpressionStmtCompiler extends StmtCompiler {
                 if (Lt.isLikeDouble() || Rt.isLikeDouble())
                     cast = StackItem.Type.DOUBLE;
 
-                writePush(L, cast);
-                writePush(R, cast);
+                if (isInvert) {
+                    // R is already on the stack, plus and mul are commutative
+                    writePush(R, L, cast);
+                } else {
+                    writePush(L, R, cast);
+                }
 
                 code.add(new InsnNode(CompilerUtils.getOperatorOpcode(operator, cast)));
 
@@ -2631,6 +2758,15 @@ public class ExpressionStmtCompiler extends StmtCompiler {
                 operatorName += "Right";
 
             writeSysDynamicCall(Memory.class, operatorName, operatorResult, stackPeek().type.toClass());
+        } else if (!L.isKnown() && !R.isKnown()) {
+            // both values are already on the stack, L is under R
+            writePush(L);
+            writePush(R);
+            writePopBoxing();
+            writeSwap();
+            writePopBoxing();
+            writeSwap();
+            writeSysDynamicCall(Memory.class, operatorName, operatorResult, Memory.class);
         } else {
             writePush(L);
             writePopBoxing();
@@ -2639,6 +2775,27 @@ public class ExpressionStmtCompiler extends StmtCompiler {
         }
     }
 
+    /**
+     * Swaps two top values of the stack.
+     */
+    void writeSwap() {
+        StackItem top = stackPop();
+        StackItem under = stackPop();
+
+        if (top.size == 2) {
+            code.add(new InsnNode(under.size == 2 ? DUP2_X2 : DUP2_X1));
+            code.add(new InsnNode(POP2));
+        } else if (under.size == 2) {
+            code.add(new InsnNode(DUP_X2));
+            code.add(new InsnNode(POP));
+        } else {
+            code.add(new InsnNode(SWAP));
+        }
+
+        stackPush(top);
+        stackPush(under);
+    }
+
     public void writePop(Class clazz, boolean boxing, boolean asImmutable) {
         if (clazz == String.class)
             writePopString();
@@ -2752,6 +2909,8 @@ public class ExpressionStmtCompiler extends StmtCompiler {
                 if (peek.isConstant()) {
                     if (peek == StackItem.Type.BOOL)
                         writeSysStaticCall(Memory.class, "boolToString", String.class, peek.toClass());
+                    else if (peek == StackItem.Type.DOUBLE)
+                        writeSysStaticCall(DoubleMemory.class, "toString", String.class, Double.TYPE);
                     else
                         writeSysStaticCall(String.class, "valueOf", String.class, peek.toClass());
                 } else
@@ -2831,7 +2990,7 @@ public class ExpressionStmtCompiler extends StmtCompiler {
         writePushTraceInfo(dynamic);
     }
 
-    public void writeDynamicAccessPrepare(DynamicAccessExprToken dynamic, boolean addLowerName) {
+    public void writeDynamicAccessObject(DynamicAccessExprToken dynamic) {
         if (stackEmpty(true)) {
             unexpectedToken(dynamic);
         }
@@ -2844,6 +3003,10 @@ public class ExpressionStmtCompiler extends StmtCompiler {
         }
 
         writePopBoxing();
+    }
+
+    public void writeDynamicAccessPrepare(DynamicAccessExprToken dynamic, boolean addLowerName) {
+        writeDynamicAccessObject(dynamic);
 
         if (dynamic instanceof DynamicAccessAssignExprToken) {
             if (((DynamicAccessAssignExprToken) dynamic).getValue() != null) {
@@ -2855,6 +3018,19 @@ public class ExpressionStmtCompiler extends StmtCompiler {
         writeDynamicAccessInfo(dynamic, addLowerName);
     }
 
+    /**
+     * Marks the last read of an array element in the expression which may be returned, yielded or passed
+     * by reference (an argument of a function unknown at compile time), an existing element is read as its reference.
+     */
+    public void markArrayGetAsReference(ExprStmtToken expr) {
+        ExprStmtToken asm = expr.getAsmExpr() == null ? expr : expr.getAsmExpr();
+        Token last = asm.getLast();
+
+        if (last != null && last.getClass() == ArrayGetExprToken.class) {
+            ((ArrayGetExprToken) last).setAsReference(true);
+        }
+    }
+
     void writeArrayGet(ArrayGetExprToken operator, boolean returnValue) {
         StackItem o = stackPeek();
         ValueExprToken L = null;
@@ -2901,7 +3077,12 @@ public class ExpressionStmtCompiler extends StmtCompiler {
                     }
                 }*/
 
-                writeSysDynamicCall(Memory.class, methodName, Memory.class, TraceInfo.class, stackPeek().type.toClass());
+                if (i == size - 1 && operator.getClass() == ArrayGetExprToken.class && operator.isAsReference()) {
+                    writePopBoxing();
+                    writeSysDynamicCall(Memory.class, "valueOfIndexAsReference", Memory.class, TraceInfo.class, Memory.class);
+                } else {
+                    writeSysDynamicCall(Memory.class, methodName, Memory.class, TraceInfo.class, stackPeek().type.toClass());
+                }
                 i++;
             }
         }
@@ -2966,7 +3147,26 @@ public class ExpressionStmtCompiler extends StmtCompiler {
         }
 
         if (operator instanceof IncExprToken || operator instanceof DecExprToken) {
-            if (variable == null || variable.isReference()) {
+            if (variable != null && variable.isUnboxed()) {
+                StackItem.Type varType = StackItem.Type.valueOf(variable.getClazz());
+
+                if (operator.getAssociation() == Association.LEFT && returnValue) {
+                    writeVarLoad(variable);
+                }
+
+                writeVarLoad(variable);
+                if (varType == StackItem.Type.LONG)
+                    writePushConstLong(1);
+                else
+                    writePushConstDouble(1.0);
+
+                code.add(new InsnNode(CompilerUtils.getOperatorOpcode(operator, varType)));
+                stackPop();
+                stackPop();
+                stackPush(null, varType);
+
+                writeVarStore(variable, returnValue && operator.getAssociation() == Association.RIGHT);
+            } else if (variable == null || variable.isReference()) {
                 if (operator.getAssociation() == Association.LEFT && returnValue) {
                     writePush(o);
                     if (stackPeek().type.isConstant())
@@ -3079,6 +3279,19 @@ public class ExpressionStmtCompiler extends StmtCompiler {
         } else if (operator instanceof ArrayGetExprToken) {
             stackPush(o);
             writeArrayGet((ArrayGetExprToken) operator, returnValue);
+        } else if (operator instanceof UnarMinusExprToken && type.isLikeNumber()) {
+            StackItem.Type cast = type.isLikeDouble() ? StackItem.Type.DOUBLE : StackItem.Type.LONG;
+
+            writePush(o, cast);
+            code.add(new InsnNode(cast == StackItem.Type.DOUBLE ? DNEG : LNEG));
+
+            if (!returnValue) {
+                writePopAll(1);
+            }
+        } else if (operator instanceof ArrayPushExprToken && ((ArrayPushExprToken) operator).isAssigned()) {
+            // only the container, see pushValue() of the assign
+            writePush(o);
+            writePopBoxing();
         } else if (operator instanceof CallOperatorToken) {
             writePush(o);
             writePopBoxing();
@@ -3220,6 +3433,29 @@ public class ExpressionStmtCompiler extends StmtCompiler {
         if (o2.isInvalidForOperations())
             unexpectedToken(operator);
 
+        if (operator instanceof AssignExprToken && ((AssignExprToken) operator).isArrayPush()) {
+            if (!writeOpcode) {
+                stackPush(o2);
+                stackPush(o1);
+                return null;
+            }
+
+            writeLineNumber(operator);
+
+            writePush(o2);
+            writePush(o1);
+            writePopBoxing();
+            writePopImmutable();
+            writePushTraceInfo(operator);
+            writeSysDynamicCall(Memory.class, "pushValue", Memory.class, Memory.class, TraceInfo.class);
+
+            if (!returnValue) {
+                writePopAll(1);
+            }
+
+            return null;
+        }
+
         if (!(operator instanceof AssignExprToken || operator instanceof AssignOperatorExprToken))
             if (o1.getMemory() != null && o2.getMemory() != null) {
                 Memory result;
@@ -3243,6 +3479,29 @@ public class ExpressionStmtCompiler extends StmtCompiler {
             }
         }
 
+        if (variable != null && variable.isUnboxed() && operator instanceof AssignOperatorExprToken) {
+            if (!writeOpcode) {
+                stackPush(o2);
+                stackPush(o1);
+                return null;
+            }
+
+            writeLineNumber(operator);
+
+            StackItem.Type varType = StackItem.Type.valueOf(variable.getClazz());
+
+            writeVarLoad(variable);
+            writePush(o1, varType);
+
+            code.add(new InsnNode(CompilerUtils.getOperatorOpcode(operator, varType)));
+            stackPop();
+            stackPop();
+            stackPush(null, varType);
+
+            writeVarStore(variable, returnValue);
+            return null;
+        }
+
         Memory value1 = operator instanceof AssignableOperatorToken
                 ? null
                 : tryWritePush(o2, false, false, true); // LEFT
@@ -3300,6 +3559,19 @@ public class ExpressionStmtCompiler extends StmtCompiler {
             if (!o1.isKnown() && !o2.isKnown() && o1.getLevel() > o2.getLevel())
                 isInvert = false;
 
+            if (Lt.isConstant() && !isInvert && !o1.isKnown() && !o2.isKnown()) {
+                // both values are already on the stack, L is under R
+                writePush(o2);
+                writePush(o1);
+                writeSwap();
+                writePopBoxing();
+                writeSwap();
+
+                o1 = stackPop();
+                o2 = stackPop();
+                Lt = o2.type;
+            }
+
             if (Lt.isConstant() && !isInvert) {
                 writePush(o2);
                 if (methodExists(OperatorUtils.class, name, Lt.toClass(), Rt.toClass())) {
@@ -3319,6 +3591,11 @@ public class ExpressionStmtCompiler extends StmtCompiler {
 
                     writePush(o2);
 
+                    if (Lt == StackItem.Type.DOUBLE && operator instanceof ConcatExprToken) {
+                        writePopString(); // concatRight(double) does not format floats
+                        Lt = StackItem.Type.STRING;
+                    }
+
                     if (!o2.isKnown() && !o2.type.isReference()) {
                         writeSysStaticCall(OperatorUtils.class, name, operatorResult, Lt.toClass(), Rt.toClass());
                         name = null;
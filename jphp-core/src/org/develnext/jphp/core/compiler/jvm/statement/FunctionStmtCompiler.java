@@ -3,11 +3,13 @@ package org.develnext.jphp.core.compiler.jvm.statement;
 import org.develnext.jphp.core.compiler.jvm.JvmCompiler;
 import org.develnext.jphp.core.tokenizer.TokenMeta;
 import org.develnext.jphp.core.tokenizer.token.expr.value.NameToken;
+import org.develnext.jphp.core.tokenizer.token.stmt.ArgumentStmtToken;
 import org.develnext.jphp.core.tokenizer.token.stmt.ClassStmtToken;
 import org.develnext.jphp.core.tokenizer.token.stmt.FunctionStmtToken;
 import org.develnext.jphp.core.tokenizer.token.stmt.MethodStmtToken;
 import org.develnext.jphp.core.tokenizer.token.stmt.NamespaceStmtToken;
 import php.runtime.Memory;
+import php.runtime.common.HintType;
 import php.runtime.common.Modifier;
 import php.runtime.reflection.*;
 import php.runtime.reflection.support.TypeChecker;
@@ -45,6 +47,76 @@ public class FunctionStmtCompiler extends StmtCompiler<FunctionEntity> {
         if (statement.getDocComment() != null)
             entity.setDocComment(new DocumentComment(statement.getDocComment().getComment()));
 
+        if (compiler.getScope().isLazyFunctions() && !statement.isGenerator()) {
+            entity.setParameters(MethodStmtCompiler.compileParameters(compiler, statement));
+            // the body is not compiled yet, so the frame is kept (func_get_args, traces) unless it can be elided
+            entity.setUsesStackTrace(!compiler.getScope().isElideCallStack() || isCallStackUsed());
+            entity.setEmpty(false);
+            entity.setImmutable(false);
+
+            final NamespaceStmtToken namespace = compiler.getNamespace();
+
+            entity.setBodyCompiler(function -> {
+                synchronized (compiler) {
+                    NamespaceStmtToken current = compiler.getNamespace();
+                    compiler.setNamespace(namespace);
+
+                    try {
+                        compileBody(function);
+                    } finally {
+                        compiler.setNamespace(current);
+                    }
+                }
+            });
+
+            return entity;
+        }
+
+        MethodEntity methodEntity = compileBody(entity);
+        entity.setParameters(methodEntity.getParameters());
+        entity.setEmpty(methodEntity.isEmpty());
+        entity.setUsesStackTrace(methodEntity.isUsesStackTrace()
+                && (!compiler.getScope().isElideCallStack() || statement.isGenerator() || isCallStackUsed()));
+        entity.setImmutable(methodEntity.isImmutable());
+        entity.setResult(methodEntity.getResult());
+
+        entity.setGeneratorEntity(methodEntity.getGeneratorEntity());
+
+        return entity;
+    }
+
+    /**
+     * A frame of a function is needed only if the body reads it, otherwise it is restored from the JVM stack
+     * for traces (see {@link php.runtime.env.CompileScope#isElideCallStack()}).
+     */
+    protected boolean isCallStackUsed() {
+        return statement.isCallStackUsed() || statement.isDynamicLocal()
+                || statement.getReturnHintType() == HintType.SELF;
+    }
+
+    /**
+     * A body of a function with 1..{@link FunctionEntity#MAX_FIXED_ARITY} non-variadic parameters takes the arguments
+     * without an array, see {@link FunctionEntity#getFixedHandle(int)}.
+     *
+     * @return count of arguments of the fixed-arity entry point, -1 if the body must not have it
+     */
+    protected int getFixedArity() {
+        int count = statement.getArguments().size();
+
+        if (statement.isGenerator() || count < 1 || count > FunctionEntity.MAX_FIXED_ARITY) {
+            return -1;
+        }
+
+        for (ArgumentStmtToken argument : statement.getArguments()) {
+            if (argument.isVariadic()) {
+                return -1;
+            }
+        }
+
+        return count;
+    }
+
+    protected MethodEntity compileBody(FunctionEntity entity) {
         NamespaceStmtToken namespace = NamespaceStmtToken.getDefault();
         ClassStmtToken token = new ClassStmtToken(statement.getMeta());
         token.setFinal(true);
@@ -63,19 +135,11 @@ public class FunctionStmtCompiler extends StmtCompiler<FunctionEntity> {
         ClassStmtCompiler classStmtCompiler = new ClassStmtCompiler(compiler, token);
         classStmtCompiler.setSystem(true);
         classStmtCompiler.setFunctionName(entity.getName());
+        classStmtCompiler.setFixedArity(getFixedArity());
         ClassEntity clazzEntity = classStmtCompiler.compile();
         clazzEntity.setType(ClassEntity.Type.FUNCTION);
         entity.setData(clazzEntity.getData());
 
-        MethodEntity methodEntity = clazzEntity.findMethod("__invoke");
-        entity.setParameters(methodEntity.getParameters());
-        entity.setEmpty(methodEntity.isEmpty());
-        entity.setUsesStackTrace(methodEntity.isUsesStackTrace());
-        entity.setImmutable(methodEntity.isImmutable());
-        entity.setResult(methodEntity.getResult());
-
-        entity.setGeneratorEntity(methodEntity.getGeneratorEntity());
-
-        return entity;
+        return clazzEntity.findMethod("__invoke");
     }
 }
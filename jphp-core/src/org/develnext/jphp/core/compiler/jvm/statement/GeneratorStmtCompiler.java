@@ -1,7 +1,11 @@
 package org.develnext.jphp.core.compiler.jvm.statement;
 
 import org.develnext.jphp.core.compiler.jvm.JvmCompiler;
+import org.develnext.jphp.core.tokenizer.token.Token;
+import org.develnext.jphp.core.tokenizer.token.expr.operator.AssignExprToken;
 import org.develnext.jphp.core.tokenizer.token.expr.value.NameToken;
+import org.develnext.jphp.core.tokenizer.token.expr.value.VariableExprToken;
+import org.develnext.jphp.core.tokenizer.token.expr.value.YieldExprToken;
 import org.develnext.jphp.core.tokenizer.token.stmt.*;
 import php.runtime.common.Modifier;
 import php.runtime.lang.Generator;
@@ -10,6 +14,7 @@ import php.runtime.reflection.helper.GeneratorEntity;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 public class GeneratorStmtCompiler extends StmtCompiler<GeneratorEntity> {
     protected final FunctionStmtToken statement;
@@ -51,6 +56,7 @@ public class GeneratorStmtCompiler extends StmtCompiler<GeneratorEntity> {
         classStmtCompiler.setSystem(true);
         classStmtCompiler.setInterfaceCheck(false);
         classStmtCompiler.setGeneratorEntity(entity);
+        classStmtCompiler.setResumableGenerator(isResumable(statement));
 
         classStmtCompiler.setFunctionName(statement.getFulledName());
         ClassEntity clazzEntity = classStmtCompiler.compile();
@@ -65,4 +71,78 @@ public class GeneratorStmtCompiler extends StmtCompiler<GeneratorEntity> {
 
         return entity;
     }
+
+    /**
+     * A generator is compiled to a state machine if each its yield is a statement (`yield $x;`)
+     * or is assigned to a variable (`$y = yield $x;`), so the JVM stack is empty at the yield,
+     * other generators run in a separate thread.
+     */
+    public static boolean isResumable(FunctionStmtToken function) {
+        return function.getYieldCount() > 0 && countResumeYields(function.getBody()) == function.getYieldCount();
+    }
+
+    /**
+     * @return yield of `$var = yield ...;` instruction or null
+     */
+    public static YieldExprToken getAssignedYield(ExprStmtToken instruction) {
+        ExprStmtToken expr = instruction.getAsmExpr() == null ? instruction : instruction.getAsmExpr();
+        List<Token> tokens = expr.getTokens();
+
+        if (tokens.size() == 3 && tokens.get(0) instanceof VariableExprToken
+                && tokens.get(1) instanceof YieldExprToken && tokens.get(2).getClass() == AssignExprToken.class) {
+            return (YieldExprToken) tokens.get(1);
+        }
+
+        return null;
+    }
+
+    protected static int countResumeYields(BodyStmtToken body) {
+        int count = 0;
+
+        if (body == null || body.getInstructions() == null) {
+            return count;
+        }
+
+        for (ExprStmtToken instruction : body.getInstructions()) {
+            ExprStmtToken expr = instruction.getAsmExpr() == null ? instruction : instruction.getAsmExpr();
+            List<Token> tokens = expr.getTokens();
+
+            if (tokens.size() == 1) {
+                Token token = tokens.get(0);
+
+                if (token instanceof YieldExprToken) {
+                    count += 1;
+                } else if (token instanceof BodyStmtToken) {
+                    count += countResumeYields((BodyStmtToken) token);
+                } else if (token instanceof IfStmtToken) {
+                    count += countResumeYields(((IfStmtToken) token).getBody());
+                    count += countResumeYields(((IfStmtToken) token).getElseBody());
+                } else if (token instanceof WhileStmtToken) {
+                    count += countResumeYields(((WhileStmtToken) token).getBody());
+                } else if (token instanceof DoStmtToken) {
+                    count += countResumeYields(((DoStmtToken) token).getBody());
+                } else if (token instanceof ForStmtToken) {
+                    count += countResumeYields(((ForStmtToken) token).getBody());
+                } else if (token instanceof ForeachStmtToken) {
+                    count += countResumeYields(((ForeachStmtToken) token).getBody());
+                } else if (token instanceof SwitchStmtToken) {
+                    for (CaseStmtToken one : ((SwitchStmtToken) token).getCases()) {
+                        count += countResumeYields(one.getBody());
+                    }
+                } else if (token instanceof TryStmtToken) {
+                    count += countResumeYields(((TryStmtToken) token).getBody());
+
+                    for (CatchStmtToken one : ((TryStmtToken) token).getCatches()) {
+                        count += countResumeYields(one.getBody());
+                    }
+
+                    count += countResumeYields(((TryStmtToken) token).getFinally());
+                }
+            } else if (getAssignedYield(instruction) != null) {
+                count += 1;
+            }
+        }
+
+        return count;
+    }
 }
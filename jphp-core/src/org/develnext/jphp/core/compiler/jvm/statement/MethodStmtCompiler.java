@@ -2,6 +2,7 @@ package org.develnext.jphp.core.compiler.jvm.statement;
 
 import org.develnext.jphp.core.compiler.common.misc.StackItem;
 import org.develnext.jphp.core.compiler.jvm.Constants;
+import org.develnext.jphp.core.compiler.jvm.JvmCompiler;
 import org.develnext.jphp.core.compiler.jvm.misc.JumpItem;
 import org.develnext.jphp.core.compiler.jvm.misc.LocalVariable;
 import org.develnext.jphp.core.compiler.jvm.node.MethodNodeImpl;
@@ -21,6 +22,8 @@ import php.runtime.env.TraceInfo;
 import php.runtime.exceptions.support.ErrorType;
 import php.runtime.lang.IObject;
 import php.runtime.memory.ArrayMemory;
+import php.runtime.memory.DoubleMemory;
+import php.runtime.memory.LongMemory;
 import php.runtime.memory.ObjectMemory;
 import php.runtime.memory.helper.ClassConstantMemory;
 import php.runtime.memory.helper.ConstantMemory;
@@ -35,8 +38,7 @@ import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
-import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
-import static org.objectweb.asm.Opcodes.NEW;
+import static org.objectweb.asm.Opcodes.*;
 
 public class MethodStmtCompiler extends StmtCompiler<MethodEntity> {
     public final ClassStmtCompiler clazz;
@@ -56,6 +58,7 @@ public class MethodStmtCompiler extends StmtCompiler<MethodEntity> {
 
     private Map<String, LabelNode> gotoLabels;
     private Map<String, LocalVariable> localVariables;
+    private int localVariablesSize = 0;
     protected String realName;
 
     private boolean external = false;
@@ -67,6 +70,7 @@ public class MethodStmtCompiler extends StmtCompiler<MethodEntity> {
     private Set<Integer> lineTickHandled = new HashSet<>();
 
     private GeneratorEntity generatorEntity;
+    private final List<LabelNode[]> resumePoints = new ArrayList<>();
 
     public MethodStmtCompiler(ClassStmtCompiler clazz, MethodNode node){
         super(clazz.getCompiler());
@@ -133,6 +137,21 @@ public class MethodStmtCompiler extends StmtCompiler<MethodEntity> {
         this.generatorEntity = generatorEntity;
     }
 
+    public boolean isResumable() {
+        return generatorEntity != null && clazz.isResumableGenerator();
+    }
+
+    /**
+     * Registers a yield of a resumable generator, locals are saved after the suspend label and
+     * restored before a jump to the resume label, see {@link #writeResumePoints()}.
+     *
+     * @return index of resume point (a value of the state field)
+     */
+    public int addResumePoint(LabelNode suspendLabel, LabelNode resumeLabel) {
+        resumePoints.add(new LabelNode[]{suspendLabel, resumeLabel});
+        return resumePoints.size();
+    }
+
     public Stack<TryCatchItem> getTryStack() {
         return tryStack;
     }
@@ -244,8 +263,11 @@ public class MethodStmtCompiler extends StmtCompiler<MethodEntity> {
         LocalVariable result;
         localVariables.put(
                 variable,
-                result = new LocalVariable(variable, localVariables.size(), label, clazz)
+                result = new LocalVariable(variable, localVariablesSize, label, clazz)
         );
+
+        // long and double take two slots
+        localVariablesSize += clazz == Long.TYPE || clazz == Double.TYPE ? 2 : 1;
         return result;
     }
 
@@ -304,6 +326,14 @@ public class MethodStmtCompiler extends StmtCompiler<MethodEntity> {
                     Type.getType(Memory[].class)
             );
 
+            if (clazz.getFixedArity() > 0) {
+                Type[] types = new Type[clazz.getFixedArity() + 1];
+                types[0] = Type.getType(Environment.class);
+                Arrays.fill(types, 1, types.length, Type.getType(Memory.class));
+
+                node.desc = Type.getMethodDescriptor(Type.getType(Memory.class), types);
+            }
+
             if (external){
                 node.desc = Type.getMethodDescriptor(
                         Type.getType(Memory.class),
@@ -317,6 +347,8 @@ public class MethodStmtCompiler extends StmtCompiler<MethodEntity> {
         if (statement != null){
             LabelNode label = labelStart = writeLabel(node, statement.getMeta().getStartLine());
 
+            compiler.getPasses().process(statement);
+
             ExpressionStmtCompiler expressionCompiler = new ExpressionStmtCompiler(this, null);
 
             if (!statement.isStatic())
@@ -324,7 +356,15 @@ public class MethodStmtCompiler extends StmtCompiler<MethodEntity> {
 
 
             addLocalVariable("~env", label, Environment.class); // Environment env
-            LocalVariable args = addLocalVariable("~args", label, Memory[].class);  // Memory[] arguments
+            LocalVariable args = null;
+
+            if (clazz.getFixedArity() > 0) {
+                for (int i = 0; i < clazz.getFixedArity(); i++) {
+                    addLocalVariable("~arg" + i, label, Memory.class); // Memory arguments
+                }
+            } else {
+                args = addLocalVariable("~args", label, Memory[].class);  // Memory[] arguments
+            }
 
             if (statement.isDynamicLocal()){
                 if (external)
@@ -405,8 +445,12 @@ public class MethodStmtCompiler extends StmtCompiler<MethodEntity> {
                 LocalVariable local = getLocalVariable(argument.getName().getName());
 
                 if (local != null) {
-                    expressionCompiler.writeVarLoad(args);
-                    expressionCompiler.writePushGetFromArray(i, Memory.class);
+                    if (args == null) {
+                        expressionCompiler.writeVarLoad("~arg" + i);
+                    } else {
+                        expressionCompiler.writeVarLoad(args);
+                        expressionCompiler.writePushGetFromArray(i, Memory.class);
+                    }
                     expressionCompiler.writeVarAssign(local, argument.getName(), true, false);
 
                     // if length <= i then undefined
@@ -467,6 +511,85 @@ public class MethodStmtCompiler extends StmtCompiler<MethodEntity> {
         //node.maxLocals = this.localVariables.size();
     }
 
+    /**
+     * Compiles parameters of a function, default values must be constant expressions.
+     */
+    public static ParameterEntity[] compileParameters(JvmCompiler compiler, FunctionStmtToken statement) {
+        ParameterEntity[] parameters = new ParameterEntity[statement.getArguments().size()];
+        int i = 0;
+        for(ArgumentStmtToken argument : statement.getArguments()){
+            parameters[i] = new ParameterEntity(compiler.getContext());
+            ParameterEntity parameter = parameters[i];
+
+            parameter.setReference(argument.isReference());
+            parameter.setName(argument.getName().getName());
+            parameter.setTrace(argument.toTraceInfo(compiler.getContext()));
+            parameter.setNullable(argument.isOptional());
+
+            parameter.setMutable(
+                    statement.isDynamicLocal() || statement.variable(argument.getName()).isMutable()
+            );
+
+            parameter.setUsed(
+                    !statement.isUnusedVariable(argument.getName())
+            );
+
+            parameter.setVariadic(argument.isVariadic());
+
+            parameter.setType(argument.getHintType());
+
+            if (argument.getHintTypeClass() != null) {
+                parameter.setTypeClass(argument.getHintTypeClass().getName());
+            }
+
+            ExpressionStmtCompiler expressionStmtCompiler = new ExpressionStmtCompiler(compiler);
+            ExprStmtToken value = argument.getValue();
+
+            if (value != null) {
+                Memory defaultValue = expressionStmtCompiler.writeExpression(value, true, true, false);
+
+                // try detect constant
+                if (value.isSingle()) {
+                    if (value.getSingle() instanceof NameToken){
+                        parameter.setDefaultValueConstName(((NameToken) value.getSingle()).getName());
+                        if (defaultValue == null) {
+                            defaultValue = (new ConstantMemory(((NameToken) value.getSingle()).getName()));
+                            parameter.setMutable(true);
+                        }
+                    } else if (value.getSingle() instanceof StaticAccessExprToken){
+                        StaticAccessExprToken access = (StaticAccessExprToken)value.getSingle();
+
+                        if (access.getClazz() instanceof NameToken && access.getField() instanceof NameToken){
+                            if (defaultValue == null)
+                                defaultValue = (new ClassConstantMemory(
+                                        ((NameToken) access.getClazz()).getName(),
+                                        ((NameToken) access.getField()).getName()
+                                ));
+
+                            parameter.setDefaultValueConstName(
+                                    ((NameToken) access.getClazz()).getName() + "::" +
+                                            ((NameToken) access.getField()).getName()
+                            );
+                            parameter.setMutable(true);
+                        }
+                    }
+                }
+
+                if (defaultValue == null)
+                    compiler.getEnvironment().error(
+                            argument.toTraceInfo(compiler.getContext()), ErrorType.E_COMPILE_ERROR,
+                            Messages.ERR_EXPECTED_CONST_VALUE, "$" + argument.getName().getName()
+                    );
+
+                parameter.setDefaultValue(defaultValue);
+            }
+            i++;
+        }
+
+
+        return parameters;
+    }
+
     @Override
     public MethodEntity compile() {
         if (statement != null){
@@ -503,78 +626,7 @@ public class MethodStmtCompiler extends StmtCompiler<MethodEntity> {
             else
                 entity.setInternalName(entity.getName() + "$" + clazz.entity.nextMethodIndex());
 
-            ParameterEntity[] parameters = new ParameterEntity[statement.getArguments().size()];
-            int i = 0;
-            for(ArgumentStmtToken argument : statement.getArguments()){
-                parameters[i] = new ParameterEntity(compiler.getContext());
-                ParameterEntity parameter = parameters[i];
-
-                parameter.setReference(argument.isReference());
-                parameter.setName(argument.getName().getName());
-                parameter.setTrace(argument.toTraceInfo(compiler.getContext()));
-                parameter.setNullable(argument.isOptional());
-
-                parameter.setMutable(
-                        statement.isDynamicLocal() || statement.variable(argument.getName()).isMutable()
-                );
-
-                parameter.setUsed(
-                        !statement.isUnusedVariable(argument.getName())
-                );
-
-                parameter.setVariadic(argument.isVariadic());
-
-                parameter.setType(argument.getHintType());
-
-                if (argument.getHintTypeClass() != null) {
-                    parameter.setTypeClass(argument.getHintTypeClass().getName());
-                }
-
-                ExpressionStmtCompiler expressionStmtCompiler = new ExpressionStmtCompiler(compiler);
-                ExprStmtToken value = argument.getValue();
-
-                if (value != null) {
-                    Memory defaultValue = expressionStmtCompiler.writeExpression(value, true, true, false);
-
-                    // try detect constant
-                    if (value.isSingle()) {
-                        if (value.getSingle() instanceof NameToken){
-                            parameter.setDefaultValueConstName(((NameToken) value.getSingle()).getName());
-                            if (defaultValue == null) {
-                                defaultValue = (new ConstantMemory(((NameToken) value.getSingle()).getName()));
-                                parameter.setMutable(true);
-                            }
-                        } else if (value.getSingle() instanceof StaticAccessExprToken){
-                            StaticAccessExprToken access = (StaticAccessExprToken)value.getSingle();
-
-                            if (access.getClazz() instanceof NameToken && access.getField() instanceof NameToken){
-                                if (defaultValue == null)
-                                    defaultValue = (new ClassConstantMemory(
-                                            ((NameToken) access.getClazz()).getName(),
-                                            ((NameToken) access.getField()).getName()
-                                    ));
-
-                                parameter.setDefaultValueConstName(
-                                        ((NameToken) access.getClazz()).getName() + "::" +
-                                                ((NameToken) access.getField()).getName()
-                                );
-                                parameter.setMutable(true);
-                            }
-                        }
-                    }
-
-                    if (defaultValue == null)
-                        compiler.getEnvironment().error(
-                                argument.toTraceInfo(compiler.getContext()), ErrorType.E_COMPILE_ERROR,
-                                Messages.ERR_EXPECTED_CONST_VALUE, "$" + argument.getName().getName()
-                        );
-
-                    parameter.setDefaultValue(defaultValue);
-                }
-                i++;
-            }
-
-            entity.setParameters(parameters);
+            entity.setParameters(compileParameters(compiler, statement));
         }
 
         if (statement != null && clazz.statement.isInterface()){
@@ -659,13 +711,182 @@ public class MethodStmtCompiler extends StmtCompiler<MethodEntity> {
                 token.setValue(null);
                 token.setEmpty(true);
                 expr.getCompiler(ReturnStmtToken.class).write(token);
+
+                if (!resumePoints.isEmpty()) {
+                    writeResumePoints();
+                }
             }
 
             writeFooter();
+
+            if (clazz.getFixedArity() > 0) {
+                writeFixedArityBridge();
+            }
         }
         return entity;
     }
 
+    /**
+     * Writes the method with an array of arguments which calls the fixed-arity body,
+     * the array has at least the count of parameters of the function (see {@link ClassStmtCompiler#getFixedArity()}).
+     */
+    protected void writeFixedArityBridge() {
+        MethodNode bridge = new MethodNodeImpl();
+        bridge.access = node.access;
+        bridge.name = node.name;
+        bridge.desc = Type.getMethodDescriptor(
+                Type.getType(Memory.class),
+                Type.getType(Environment.class),
+                Type.getType(Memory[].class)
+        );
+
+        bridge.instructions.add(new VarInsnNode(ALOAD, 0));
+
+        for (int i = 0; i < clazz.getFixedArity(); i++) {
+            bridge.instructions.add(new VarInsnNode(ALOAD, 1));
+            bridge.instructions.add(new InsnNode(ICONST_0 + i));
+            bridge.instructions.add(new InsnNode(AALOAD));
+        }
+
+        bridge.instructions.add(new MethodInsnNode(INVOKESTATIC, clazz.node.name, node.name, node.desc, false));
+        bridge.instructions.add(new InsnNode(ARETURN));
+
+        clazz.node.methods.add(bridge);
+    }
+
+
+    /**
+     * Writes the state machine of a resumable generator: a tableswitch on the state field at the start of method,
+     * spilling of all locals to the frame array at each suspend label and restoring of them at the end of method.
+     */
+    protected void writeResumePoints() {
+        List<LocalVariable> locals = new ArrayList<>();
+        for (LocalVariable variable : localVariables.values()) {
+            if (!variable.name.equals(LocalVariable.THIS) && !variable.name.equals("~env") && !variable.name.equals("~args")) {
+                locals.add(variable);
+            }
+        }
+
+        String owner = clazz.node.name;
+        InsnList head = new InsnList();
+        LabelNode start = new LabelNode();
+        LabelNode[] restoreLabels = new LabelNode[resumePoints.size()];
+
+        for (int i = 0; i < restoreLabels.length; i++) {
+            restoreLabels[i] = new LabelNode();
+        }
+
+        head.add(new VarInsnNode(ALOAD, 0));
+        head.add(new FieldInsnNode(GETFIELD, owner, "state", "I"));
+        head.add(new TableSwitchInsnNode(1, restoreLabels.length, start, restoreLabels));
+        head.add(start);
+
+        // all locals must be defined to be saved at any suspend point
+        for (LocalVariable variable : locals) {
+            if (variable.getClazz() == Long.TYPE) {
+                head.add(new InsnNode(LCONST_0));
+                head.add(new VarInsnNode(LSTORE, variable.index));
+            } else if (variable.getClazz() == Double.TYPE) {
+                head.add(new InsnNode(DCONST_0));
+                head.add(new VarInsnNode(DSTORE, variable.index));
+            } else if (variable.getClazz() == Integer.TYPE) {
+                head.add(new InsnNode(ICONST_0));
+                head.add(new VarInsnNode(ISTORE, variable.index));
+            } else {
+                head.add(new InsnNode(ACONST_NULL));
+                head.add(new VarInsnNode(ASTORE, variable.index));
+            }
+        }
+
+        node.instructions.insert(head);
+
+        int state = 1;
+        for (LabelNode[] point : resumePoints) {
+            InsnList save = new InsnList();
+            save.add(new VarInsnNode(ALOAD, 0));
+            save.add(pushInt(state));
+            save.add(new FieldInsnNode(PUTFIELD, owner, "state", "I"));
+
+            save.add(new VarInsnNode(ALOAD, 0));
+            save.add(pushInt(locals.size()));
+            save.add(new MethodInsnNode(INVOKEVIRTUAL, owner, "_frame", "(I)[Ljava/lang/Object;", false));
+
+            int i = 0;
+            for (LocalVariable variable : locals) {
+                save.add(new InsnNode(DUP));
+                save.add(pushInt(i++));
+
+                if (variable.getClazz() == Long.TYPE) {
+                    save.add(new VarInsnNode(LLOAD, variable.index));
+                    save.add(new MethodInsnNode(INVOKESTATIC, Type.getInternalName(LongMemory.class), "valueOf",
+                            Type.getMethodDescriptor(Type.getType(Memory.class), Type.LONG_TYPE), false));
+                } else if (variable.getClazz() == Double.TYPE) {
+                    save.add(new VarInsnNode(DLOAD, variable.index));
+                    save.add(new MethodInsnNode(INVOKESTATIC, Type.getInternalName(DoubleMemory.class), "valueOf",
+                            Type.getMethodDescriptor(Type.getType(Memory.class), Type.DOUBLE_TYPE), false));
+                } else if (variable.getClazz() == Integer.TYPE) {
+                    save.add(new VarInsnNode(ILOAD, variable.index));
+                    save.add(new InsnNode(I2L));
+                    save.add(new MethodInsnNode(INVOKESTATIC, Type.getInternalName(LongMemory.class), "valueOf",
+                            Type.getMethodDescriptor(Type.getType(Memory.class), Type.LONG_TYPE), false));
+                } else {
+                    save.add(new VarInsnNode(ALOAD, variable.index));
+                }
+
+                save.add(new InsnNode(AASTORE));
+            }
+
+            save.add(new InsnNode(POP));
+            node.instructions.insert(point[0], save);
+
+            node.instructions.add(restoreLabels[state - 1]);
+            node.instructions.add(new VarInsnNode(ALOAD, 0));
+            node.instructions.add(new FieldInsnNode(GETFIELD, owner, "frame", "[Ljava/lang/Object;"));
+
+            i = 0;
+            for (LocalVariable variable : locals) {
+                node.instructions.add(new InsnNode(DUP));
+                node.instructions.add(pushInt(i++));
+                node.instructions.add(new InsnNode(AALOAD));
+
+                if (variable.getClazz() == Long.TYPE) {
+                    node.instructions.add(new TypeInsnNode(CHECKCAST, Type.getInternalName(Memory.class)));
+                    node.instructions.add(new MethodInsnNode(INVOKEVIRTUAL, Type.getInternalName(Memory.class), "toLong", "()J", false));
+                    node.instructions.add(new VarInsnNode(LSTORE, variable.index));
+                } else if (variable.getClazz() == Double.TYPE) {
+                    node.instructions.add(new TypeInsnNode(CHECKCAST, Type.getInternalName(Memory.class)));
+                    node.instructions.add(new MethodInsnNode(INVOKEVIRTUAL, Type.getInternalName(Memory.class), "toDouble", "()D", false));
+                    node.instructions.add(new VarInsnNode(DSTORE, variable.index));
+                } else if (variable.getClazz() == Integer.TYPE) {
+                    node.instructions.add(new TypeInsnNode(CHECKCAST, Type.getInternalName(Memory.class)));
+                    node.instructions.add(new MethodInsnNode(INVOKEVIRTUAL, Type.getInternalName(Memory.class), "toInteger", "()I", false));
+                    node.instructions.add(new VarInsnNode(ISTORE, variable.index));
+                } else {
+                    Class<?> type = variable.getClazz() == null ? Object.class : variable.getClazz();
+                    if (type != Object.class) {
+                        node.instructions.add(new TypeInsnNode(CHECKCAST, Type.getInternalName(type)));
+                    }
+                    node.instructions.add(new VarInsnNode(ASTORE, variable.index));
+                }
+            }
+
+            node.instructions.add(new InsnNode(POP));
+            node.instructions.add(new JumpInsnNode(GOTO, point[1]));
+            state++;
+        }
+    }
+
+    private static AbstractInsnNode pushInt(int value) {
+        if (value >= -1 && value <= 5) {
+            return new InsnNode(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            return new IntInsnNode(BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            return new IntInsnNode(SIPUSH, value);
+        } else {
+            return new LdcInsnNode(value);
+        }
+    }
 
     public static class TryCatchItem {
         private final TryStmtToken token;
@@ -1,6 +1,8 @@
 package org.develnext.jphp.core.compiler.jvm.statement.expr;
 
 import org.develnext.jphp.core.compiler.jvm.statement.ExpressionStmtCompiler;
+import org.develnext.jphp.core.compiler.jvm.statement.GeneratorStmtCompiler;
+import org.develnext.jphp.core.tokenizer.token.expr.value.YieldExprToken;
 import org.develnext.jphp.core.tokenizer.token.stmt.BodyStmtToken;
 import org.develnext.jphp.core.tokenizer.token.stmt.ExprStmtToken;
 import php.runtime.env.Environment;
@@ -17,7 +19,21 @@ public class BodyCompiler extends BaseStatementCompiler<BodyStmtToken> {
         if (token!= null){
             for(ExprStmtToken line : token.getInstructions()){
                 expr.writeTickTrigger(line);
-                expr.writeExpression(line, false, false);
+
+                YieldExprToken yield = method.isResumable() ? GeneratorStmtCompiler.getAssignedYield(line) : null;
+
+                if (yield != null) {
+                    // $var = yield ...; a variable can be pushed before the yield, so the generator is suspended first
+                    yield.setOnlyNext(true);
+                    expr.writeValue(yield, false);
+                    yield.setOnlyNext(false);
+
+                    yield.setOnlyGet(true);
+                    expr.writeExpression(line, false, false);
+                    yield.setOnlyGet(false);
+                } else {
+                    expr.writeExpression(line, false, false);
+                }
             }
         }
     }
@@ -10,8 +10,8 @@ import org.develnext.jphp.core.tokenizer.token.expr.value.VariableExprToken;
 import org.develnext.jphp.core.tokenizer.token.stmt.BodyStmtToken;
 import org.develnext.jphp.core.tokenizer.token.stmt.ExprStmtToken;
 import org.develnext.jphp.core.tokenizer.token.stmt.ForeachStmtToken;
-import org.objectweb.asm.tree.JumpInsnNode;
-import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.*;
 import php.runtime.Memory;
 import php.runtime.env.Environment;
 import php.runtime.env.TraceInfo;
@@ -19,9 +19,10 @@ import php.runtime.exceptions.FatalException;
 import php.runtime.invoke.ObjectInvokeHelper;
 import php.runtime.invoke.cache.PropertyCallCache;
 import php.runtime.lang.ForeachIterator;
+import php.runtime.memory.ArrayMemory;
+import php.runtime.memory.LongMemory;
 
-import static org.objectweb.asm.Opcodes.GOTO;
-import static org.objectweb.asm.Opcodes.IFEQ;
+import static org.objectweb.asm.Opcodes.*;
 
 public class ForeachCompiler extends BaseStatementCompiler<ForeachStmtToken> {
     public ForeachCompiler(ExpressionStmtCompiler exprCompiler) {
@@ -38,42 +39,73 @@ public class ForeachCompiler extends BaseStatementCompiler<ForeachStmtToken> {
         LabelNode l = new LabelNode();
         add(l);
 
-        expr.writePushEnv();
-        expr.writePushTraceInfo(token);
+        // a by-value foreach over a list array goes by the indexes without an iterator
+        boolean indexed = !token.isValueReference() && !token.isKeyReference();
+
+        if (!indexed) {
+            expr.writePushEnv();
+            expr.writePushTraceInfo(token);
+        }
+
         expr.writeExpression(token.getIterator(), true, false, true);
         expr.writePopBoxing();
-        expr.writePushConstBoolean(token.isValueReference());
-        expr.writePushConstBoolean(token.isKeyReference());
-        expr.writeSysDynamicCall(Environment.class, "__getIterator", ForeachIterator.class, TraceInfo.class, Memory.class, Boolean.TYPE, Boolean.TYPE);
+
+        if (!indexed) {
+            expr.writePushConstBoolean(token.isValueReference());
+            expr.writePushConstBoolean(token.isKeyReference());
+            expr.writeSysDynamicCall(Environment.class, "__getIterator", ForeachIterator.class, TraceInfo.class, Memory.class, Boolean.TYPE, Boolean.TYPE);
+        }
 
         String name = "~foreach~" + method.nextStatementIndex(ForeachIterator.class);
-        LocalVariable foreachVariable = method.getLocalVariable(name);
-        if (foreachVariable == null)
-            foreachVariable = method.addLocalVariable(name, l, ForeachIterator.class);
+        LocalVariable foreachVariable = getLocalVariable(name, l, ForeachIterator.class, end);
 
         /*LocalVariable foreachVariable = method.addLocalVariable(
                 "~foreach~" + method.nextStatementIndex(ForeachIterator.class), l, ForeachIterator.class
         );*/
-        foreachVariable.setEndLabel(end);
 
-        expr.writeVarStore(foreachVariable, false, false);
+        LocalVariable valueVariable = null;
+        LocalVariable keyVariable = null;
 
-        method.pushJump(end, start);
+        if (indexed) {
+            LocalVariable listVariable = getLocalVariable(name + "~list", l, ArrayMemory.class, end);
+            LocalVariable indexVariable = getLocalVariable(name + "~index", l, Integer.TYPE, end);
+            LocalVariable maxVariable = getLocalVariable(name + "~max", l, Integer.TYPE, end);
 
-        add(start);
-        expr.writeVarLoad(foreachVariable);
+            valueVariable = getLocalVariable(name + "~value", l, Memory.class, end);
+            if (token.getKey() != null) {
+                keyVariable = getLocalVariable(name + "~key", l, Memory.class, end);
+            }
 
-        expr.writeSysDynamicCall(ForeachIterator.class, "next", Boolean.TYPE);
-        add(new JumpInsnNode(IFEQ, end));
-        expr.stackPop();
+            writeIndexedStart(token, start, end, foreachVariable, listVariable, indexVariable, maxVariable, valueVariable);
+
+            method.pushJump(end, start);
+
+            writeIndexedNext(start, end, foreachVariable, listVariable, indexVariable, maxVariable, valueVariable, keyVariable);
+        } else {
+            expr.writeVarStore(foreachVariable, false, false);
+
+            method.pushJump(end, start);
+
+            add(start);
+            expr.writeVarLoad(foreachVariable);
+
+            expr.writeSysDynamicCall(ForeachIterator.class, "next", Boolean.TYPE);
+            add(new JumpInsnNode(IFEQ, end));
+            expr.stackPop();
+        }
 
         // $key
         if (token.getKey() != null) {
             LocalVariable key = method.getLocalVariable(token.getKey().getName());
             expr.checkAssignableVar(token.getKey());
 
-            expr.writeVarLoad(foreachVariable);
-            expr.writeSysDynamicCall(ForeachIterator.class, "getMemoryKey", Memory.class);
+            if (keyVariable != null) {
+                expr.writeVarLoad(keyVariable);
+            } else {
+                expr.writeVarLoad(foreachVariable);
+                expr.writeSysDynamicCall(ForeachIterator.class, "getMemoryKey", Memory.class);
+            }
+
             if (token.isKeyReference()) {
                 throw new FatalException(
                         "Key element cannot be a reference",
@@ -97,8 +129,7 @@ public class ForeachCompiler extends BaseStatementCompiler<ForeachStmtToken> {
 
             expr.writeExpression(value, true, false);
 
-            expr.writeVarLoad(foreachVariable);
-            expr.writeSysDynamicCall(ForeachIterator.class, "getValue", Memory.class);
+            writePushValue(foreachVariable, valueVariable);
             if (!token.isValueReference())
                 expr.writePopImmutable();
 
@@ -118,8 +149,7 @@ public class ForeachCompiler extends BaseStatementCompiler<ForeachStmtToken> {
 
             ExprStmtToken value = token.getValue();
 
-            expr.writeVarLoad(foreachVariable);
-            expr.writeSysDynamicCall(ForeachIterator.class, "getValue", Memory.class);
+            writePushValue(foreachVariable, valueVariable);
 
             if (value.isSingle() && value.getSingle() instanceof ListExprToken) {
                 ListExprToken listExprToken = (ListExprToken) value.getSingle();
@@ -168,4 +198,133 @@ public class ForeachCompiler extends BaseStatementCompiler<ForeachStmtToken> {
         expr.writeUndefineVariables(token.getLocal());
         method.prevStatementIndex(ForeachIterator.class);
     }
+
+    protected LocalVariable getLocalVariable(String name, LabelNode label, Class<?> clazz, LabelNode end) {
+        LocalVariable variable = method.getLocalVariable(name);
+        if (variable == null)
+            variable = method.addLocalVariable(name, label, clazz);
+
+        variable.setEndLabel(end);
+        return variable;
+    }
+
+    protected void writePushValue(LocalVariable foreachVariable, LocalVariable valueVariable) {
+        if (valueVariable != null) {
+            expr.writeVarLoad(valueVariable);
+        } else {
+            expr.writeVarLoad(foreachVariable);
+            expr.writeSysDynamicCall(ForeachIterator.class, "getValue", Memory.class);
+        }
+    }
+
+    /**
+     * Stores the list array of the iterated value (see {@link ArrayMemory#toForeachList(Memory)}) and its size,
+     * an iterator is created only if the value is not a list.
+     */
+    protected void writeIndexedStart(ForeachStmtToken token, LabelNode start, LabelNode end,
+                                     LocalVariable foreachVariable, LocalVariable listVariable,
+                                     LocalVariable indexVariable, LocalVariable maxVariable,
+                                     LocalVariable valueVariable) {
+        expr.makeVarStore(valueVariable);
+        expr.stackPop();
+
+        add(new InsnNode(ICONST_0));
+        add(new VarInsnNode(ISTORE, indexVariable.index));
+        add(new InsnNode(ICONST_0));
+        add(new VarInsnNode(ISTORE, maxVariable.index));
+        add(new InsnNode(ACONST_NULL));
+        add(new VarInsnNode(ASTORE, foreachVariable.index));
+
+        LabelNode list = new LabelNode();
+
+        add(new VarInsnNode(ALOAD, valueVariable.index));
+        add(new MethodInsnNode(INVOKESTATIC, Type.getInternalName(ArrayMemory.class), "toForeachList",
+                Type.getMethodDescriptor(Type.getType(ArrayMemory.class), Type.getType(Memory.class)), false));
+        add(new InsnNode(DUP));
+        add(new VarInsnNode(ASTORE, listVariable.index));
+        add(new JumpInsnNode(IFNONNULL, list));
+
+        expr.writePushEnv();
+        expr.writePushTraceInfo(token);
+        expr.writeVarLoad(valueVariable);
+        expr.writePushConstBoolean(false);
+        expr.writePushConstBoolean(false);
+        expr.writeSysDynamicCall(Environment.class, "__getIterator", ForeachIterator.class, TraceInfo.class, Memory.class, Boolean.TYPE, Boolean.TYPE);
+        expr.makeVarStore(foreachVariable);
+        expr.stackPop();
+        add(new JumpInsnNode(GOTO, start));
+
+        add(list);
+        add(new VarInsnNode(ALOAD, listVariable.index));
+        add(new MethodInsnNode(INVOKEVIRTUAL, Type.getInternalName(ArrayMemory.class), "size", "()I", false));
+        add(new VarInsnNode(ISTORE, maxVariable.index));
+    }
+
+    /**
+     * Takes the next element by the index while the array is a list, after that by an iterator
+     * which continues from the index (see {@link ArrayMemory#getForeachListState(int, int)}).
+     */
+    protected void writeIndexedNext(LabelNode start, LabelNode end,
+                                    LocalVariable foreachVariable, LocalVariable listVariable,
+                                    LocalVariable indexVariable, LocalVariable maxVariable,
+                                    LocalVariable valueVariable, LocalVariable keyVariable) {
+        String arrayMemory = Type.getInternalName(ArrayMemory.class);
+        String foreachIterator = Type.getInternalName(ForeachIterator.class);
+        String memory = Type.getDescriptor(Memory.class);
+
+        LabelNode convert = new LabelNode();
+        LabelNode iteratorNext = new LabelNode();
+        LabelNode listNext = new LabelNode();
+        LabelNode body = new LabelNode();
+
+        add(start);
+        add(new VarInsnNode(ALOAD, foreachVariable.index));
+        add(new JumpInsnNode(IFNONNULL, iteratorNext));
+
+        add(new VarInsnNode(ALOAD, listVariable.index));
+        add(new VarInsnNode(ILOAD, indexVariable.index));
+        add(new VarInsnNode(ILOAD, maxVariable.index));
+        add(new MethodInsnNode(INVOKEVIRTUAL, arrayMemory, "getForeachListState", "(II)I", false));
+        add(new TableSwitchInsnNode(-1, 1, end, convert, end, listNext));
+
+        add(convert);
+        add(new VarInsnNode(ALOAD, listVariable.index));
+        add(new VarInsnNode(ILOAD, indexVariable.index));
+        add(new MethodInsnNode(INVOKEVIRTUAL, arrayMemory, "foreachIteratorFrom",
+                "(I)" + Type.getDescriptor(ForeachIterator.class), false));
+        add(new VarInsnNode(ASTORE, foreachVariable.index));
+
+        add(iteratorNext);
+        add(new VarInsnNode(ALOAD, foreachVariable.index));
+        add(new MethodInsnNode(INVOKEVIRTUAL, foreachIterator, "next", "()Z", false));
+        add(new JumpInsnNode(IFEQ, end));
+
+        add(new VarInsnNode(ALOAD, foreachVariable.index));
+        add(new MethodInsnNode(INVOKEVIRTUAL, foreachIterator, "getValue", "()" + memory, false));
+        add(new VarInsnNode(ASTORE, valueVariable.index));
+
+        if (keyVariable != null) {
+            add(new VarInsnNode(ALOAD, foreachVariable.index));
+            add(new MethodInsnNode(INVOKEVIRTUAL, foreachIterator, "getMemoryKey", "()" + memory, false));
+            add(new VarInsnNode(ASTORE, keyVariable.index));
+        }
+
+        add(new JumpInsnNode(GOTO, body));
+
+        add(listNext);
+        add(new VarInsnNode(ALOAD, listVariable.index));
+        add(new VarInsnNode(ILOAD, indexVariable.index));
+        add(new MethodInsnNode(INVOKEVIRTUAL, arrayMemory, "getForeachListValue", "(I)" + memory, false));
+        add(new VarInsnNode(ASTORE, valueVariable.index));
+
+        if (keyVariable != null) {
+            add(new VarInsnNode(ILOAD, indexVariable.index));
+            add(new InsnNode(I2L));
+            add(new MethodInsnNode(INVOKESTATIC, Type.getInternalName(LongMemory.class), "valueOf", "(J)" + memory, false));
+            add(new VarInsnNode(ASTORE, keyVariable.index));
+        }
+
+        add(new IincInsnNode(indexVariable.index, 1));
+        add(body);
+    }
 }
@@ -47,6 +47,10 @@ public class ReturnCompiler extends BaseStatementCompiler<ReturnStmtToken> {
         boolean isImmutable = method.getEntity().isImmutable();
 
         if (token.getValue() != null) {
+            if (method.getEntity().isReturnReference()) {
+                expr.markArrayGetAsReference(token.getValue());
+            }
+
             result = expr.writeExpression(token.getValue(), true, true);
 
             if (methodStatement.getReturnHintType() == HintType.VOID) {
@@ -3,11 +3,13 @@ package org.develnext.jphp.core.compiler.jvm.statement.expr;
 import org.develnext.jphp.core.compiler.jvm.misc.LocalVariable;
 import org.develnext.jphp.core.compiler.jvm.statement.ExpressionStmtCompiler;
 import org.develnext.jphp.core.tokenizer.token.stmt.StaticStmtToken;
+import org.objectweb.asm.tree.InsnNode;
 import org.objectweb.asm.tree.JumpInsnNode;
 import org.objectweb.asm.tree.LabelNode;
 import php.runtime.Memory;
 import php.runtime.env.Environment;
 
+import static org.objectweb.asm.Opcodes.IALOAD;
 import static org.objectweb.asm.Opcodes.IFNONNULL;
 
 public class StaticDefinitionCompiler extends BaseStatementCompiler<StaticStmtToken> {
@@ -30,6 +32,36 @@ public class StaticDefinitionCompiler extends BaseStatementCompiler<StaticStmtTo
     }
 
 
+    /**
+     * Pushes the slot of a static variable, slots of the class are resolved once by the scope of the environment
+     * (see {@link php.runtime.env.CompileScope#getStaticSlot(String)}).
+     */
+    void writePushStaticSlot(LocalVariable local) {
+        String name = method.getEntity().getClazz().getInternalName() + "\0" + local.name + "\0" + method.getMethodId();
+        int index = method.clazz.addStaticSlot(name);
+
+        LabelNode resolved = new LabelNode();
+
+        expr.writeGetStatic("$STATIC_SLOTS", int[].class);
+        expr.writePushDup();
+        add(new JumpInsnNode(IFNONNULL, resolved));
+        expr.stackPop();
+
+        expr.writePopAll(1);
+        expr.writePushEnv();
+        expr.writeGetStatic("$STATIC_NAMES", String[].class);
+        expr.writeSysDynamicCall(Environment.class, "getStaticSlots", int[].class, String[].class);
+        expr.writePushDup();
+        expr.writePutStatic("$STATIC_SLOTS", int[].class);
+
+        add(resolved);
+        expr.writePushSmallInt(index);
+        add(new InsnNode(IALOAD));
+        expr.stackPop();
+        expr.stackPop();
+        expr.stackPush(Memory.Type.INT);
+    }
+
     @Override
     public void write(StaticStmtToken token) {
         LocalVariable local = method.getLocalVariable(token.getVariable().getName());
@@ -38,16 +70,21 @@ public class StaticDefinitionCompiler extends BaseStatementCompiler<StaticStmtTo
         LabelNode end = new LabelNode();
         boolean isClosure = method.clazz.isClosure();
 
+        // a static variable of a trait depends on the using class, so it is looked up by name
+        boolean bySlot = !isClosure && !method.getEntity().getClazz().isTrait();
+        Class keyClass = bySlot ? Integer.TYPE : String.class;
 
         if (isClosure)
             expr.writeVarLoad(LocalVariable.THIS);
         else
             expr.writePushEnv();
 
-        //writePushConstString(name);
-        writePushNameForStaticVariable(local);
+        if (bySlot)
+            writePushStaticSlot(local);
+        else
+            writePushNameForStaticVariable(local);
 
-        expr.writeSysDynamicCall(isClosure ? null : Environment.class, "getStatic", Memory.class, String.class);
+        expr.writeSysDynamicCall(isClosure ? null : Environment.class, "getStatic", Memory.class, keyClass);
         expr.writePushDup();
 
         add(new JumpInsnNode(IFNONNULL, end));
@@ -59,8 +96,10 @@ public class StaticDefinitionCompiler extends BaseStatementCompiler<StaticStmtTo
         else
             expr.writePushEnv();
 
-        writePushNameForStaticVariable(local);
-        //writePushConstString(name);
+        if (bySlot)
+            writePushStaticSlot(local);
+        else
+            writePushNameForStaticVariable(local);
 
         if (token.getInitValue() != null){
             expr.writeExpression(token.getInitValue(), true, false, true);
@@ -70,7 +109,7 @@ public class StaticDefinitionCompiler extends BaseStatementCompiler<StaticStmtTo
         expr.writePopBoxing(true);
         expr.writeSysDynamicCall(isClosure ? null : Environment.class, "getOrCreateStatic",
                 Memory.class,
-                String.class, Memory.class);
+                keyClass, Memory.class);
 
         add(end);
         expr.writeVarStore(local, false, false);
@@ -2,18 +2,27 @@ package org.develnext.jphp.core.compiler.jvm.statement.expr;
 
 import org.develnext.jphp.core.compiler.jvm.misc.LocalVariable;
 import org.develnext.jphp.core.compiler.jvm.statement.ExpressionStmtCompiler;
+import org.develnext.jphp.core.tokenizer.token.Token;
+import org.develnext.jphp.core.tokenizer.token.expr.value.IntegerExprToken;
+import org.develnext.jphp.core.tokenizer.token.expr.value.StringExprToken;
 import org.develnext.jphp.core.tokenizer.token.stmt.BodyStmtToken;
 import org.develnext.jphp.core.tokenizer.token.stmt.CaseStmtToken;
 import org.develnext.jphp.core.tokenizer.token.stmt.SwitchStmtToken;
-import org.objectweb.asm.tree.JumpInsnNode;
-import org.objectweb.asm.tree.LabelNode;
-import org.objectweb.asm.tree.LineNumberNode;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.*;
 import php.runtime.Memory;
+import php.runtime.OperatorUtils;
 
-import static org.objectweb.asm.Opcodes.GOTO;
-import static org.objectweb.asm.Opcodes.IFEQ;
+import java.util.*;
+
+import static org.objectweb.asm.Opcodes.*;
 
 public class SwitchCompiler extends BaseStatementCompiler<SwitchStmtToken> {
+    /**
+     * Min count of literal cases to dispatch a switch by a tableswitch/lookupswitch instead of the chain of comparisons.
+     */
+    public static final int MIN_DISPATCH_CASES = 4;
+
     public SwitchCompiler(ExpressionStmtCompiler exprCompiler) {
         super(exprCompiler);
     }
@@ -50,6 +59,8 @@ public class SwitchCompiler extends BaseStatementCompiler<SwitchStmtToken> {
 
         expr.writeVarStore(switchValue, false, false);
 
+        writeDispatch(token, switchValue, jumps, end);
+
         i = 0;
         for(CaseStmtToken one : token.getCases()){
             add(jumps[i][0]); // conditional
@@ -84,4 +95,167 @@ public class SwitchCompiler extends BaseStatementCompiler<SwitchStmtToken> {
         method.prevStatementIndex(Memory.class);
         expr.writeUndefineVariables(token.getLocal());
     }
+
+    /**
+     * If all cases are integer or all are string literals, a value of the same type is dispatched by a switch
+     * instruction (strings by the hash code), the values of other types go to the chain of loose comparisons.
+     * Only the cases before the default case are the keys, because the chain never reaches the cases after it.
+     */
+    protected void writeDispatch(SwitchStmtToken token, LocalVariable switchValue, LabelNode[][] jumps, LabelNode end) {
+        Map<Object, LabelNode> keys = new LinkedHashMap<Object, LabelNode>();
+        LabelNode miss = end;
+        Class<?> keyType = null;
+
+        int i = 0;
+        for (CaseStmtToken one : token.getCases()) {
+            if (one.getConditional() == null) {
+                if (miss == end) {
+                    miss = jumps[i][1];
+                }
+            } else {
+                Object key = getLiteral(one.getConditional().isSingle() ? one.getConditional().getSingle() : null);
+
+                if (key == null || (keyType != null && keyType != key.getClass())) {
+                    return;
+                }
+
+                keyType = key.getClass();
+
+                if (miss == end && !keys.containsKey(key)) {
+                    keys.put(key, jumps[i][1]);
+                }
+            }
+            i++;
+        }
+
+        if (keys.size() < MIN_DISPATCH_CASES) {
+            return;
+        }
+
+        expr.writeVarLoad(switchValue);
+        expr.writeSysStaticCall(
+                OperatorUtils.class, keyType == Integer.class ? "isSwitchInt" : "isSwitchString", Boolean.TYPE, Memory.class
+        );
+        add(new JumpInsnNode(IFEQ, jumps[0][0]));
+        expr.stackPop();
+
+        if (keyType == Integer.class) {
+            writeIntDispatch(switchValue, keys, miss);
+        } else {
+            writeStringDispatch(switchValue, keys, miss, end);
+        }
+    }
+
+    protected void writeIntDispatch(LocalVariable switchValue, Map<Object, LabelNode> keys, LabelNode miss) {
+        TreeMap<Integer, LabelNode> sorted = new TreeMap<Integer, LabelNode>();
+        for (Map.Entry<Object, LabelNode> e : keys.entrySet()) {
+            sorted.put((Integer) e.getKey(), e.getValue());
+        }
+
+        expr.writeVarLoad(switchValue);
+        expr.writeSysDynamicCall(Memory.class, "toInteger", Integer.TYPE);
+
+        int min = sorted.firstKey();
+        int max = sorted.lastKey();
+
+        if ((long) max - min < 2L * sorted.size()) {
+            LabelNode[] labels = new LabelNode[max - min + 1];
+            for (int i = 0; i < labels.length; i++) {
+                LabelNode label = sorted.get(min + i);
+                labels[i] = label == null ? miss : label;
+            }
+
+            add(new TableSwitchInsnNode(min, max, miss, labels));
+        } else {
+            int[] values = new int[sorted.size()];
+            LabelNode[] labels = new LabelNode[sorted.size()];
+
+            int i = 0;
+            for (Map.Entry<Integer, LabelNode> e : sorted.entrySet()) {
+                values[i] = e.getKey();
+                labels[i] = e.getValue();
+                i++;
+            }
+
+            add(new LookupSwitchInsnNode(miss, values, labels));
+        }
+
+        expr.stackPop();
+    }
+
+    protected void writeStringDispatch(LocalVariable switchValue, Map<Object, LabelNode> keys, LabelNode miss, LabelNode end) {
+        TreeMap<Integer, List<String>> buckets = new TreeMap<Integer, List<String>>();
+        for (Object key : keys.keySet()) {
+            int hash = key.hashCode();
+            List<String> bucket = buckets.get(hash);
+
+            if (bucket == null) {
+                buckets.put(hash, bucket = new ArrayList<String>());
+            }
+
+            bucket.add((String) key);
+        }
+
+        LabelNode l = new LabelNode();
+        add(l);
+
+        LocalVariable switchKey = method.addLocalVariable(
+                "~switch~key~" + method.nextStatementIndex(String.class), l, String.class
+        );
+        switchKey.setEndLabel(end);
+
+        expr.writeVarLoad(switchValue);
+        expr.writeSysDynamicCall(Memory.class, "toString", String.class);
+        add(new VarInsnNode(ASTORE, switchKey.index));
+        expr.stackPop();
+
+        int[] hashes = new int[buckets.size()];
+        LabelNode[] labels = new LabelNode[buckets.size()];
+
+        int i = 0;
+        for (Integer hash : buckets.keySet()) {
+            hashes[i] = hash;
+            labels[i] = new LabelNode();
+            i++;
+        }
+
+        add(new VarInsnNode(ALOAD, switchKey.index));
+        add(new MethodInsnNode(INVOKEVIRTUAL, Type.getInternalName(String.class), "hashCode", "()I", false));
+        add(new LookupSwitchInsnNode(miss, hashes, labels));
+
+        i = 0;
+        for (List<String> bucket : buckets.values()) {
+            add(labels[i++]);
+
+            for (String key : bucket) {
+                add(new VarInsnNode(ALOAD, switchKey.index));
+                add(new LdcInsnNode(key));
+                add(new MethodInsnNode(
+                        INVOKEVIRTUAL, Type.getInternalName(String.class), "equals", "(Ljava/lang/Object;)Z", false
+                ));
+                add(new JumpInsnNode(IFNE, keys.get(key)));
+            }
+
+            add(new JumpInsnNode(GOTO, miss));
+        }
+    }
+
+    /**
+     * @return Integer or String value of a literal case or null
+     */
+    private static Object getLiteral(Token token) {
+        if (token instanceof IntegerExprToken) {
+            long value = ((IntegerExprToken) token).getValue();
+
+            if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                return (int) value;
+            }
+        } else if (token != null && token.getClass() == StringExprToken.class
+                && ((StringExprToken) token).getQuote() != StringExprToken.Quote.SHELL
+                && !((StringExprToken) token).isBinary()) {
+            return ((StringExprToken) token).getValue();
+        }
+
+        return null;
+    }
 }
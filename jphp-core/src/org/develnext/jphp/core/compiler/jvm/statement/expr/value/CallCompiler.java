@@ -7,16 +7,20 @@ import org.develnext.jphp.core.compiler.jvm.statement.expr.BaseExprCompiler;
 import org.develnext.jphp.core.tokenizer.token.Token;
 import org.develnext.jphp.core.tokenizer.token.expr.ClassExprToken;
 import org.develnext.jphp.core.tokenizer.token.expr.ValueExprToken;
+import org.develnext.jphp.core.tokenizer.token.expr.operator.ArgumentUnpackExprToken;
 import org.develnext.jphp.core.tokenizer.token.expr.operator.DynamicAccessAssignExprToken;
 import org.develnext.jphp.core.tokenizer.token.expr.operator.DynamicAccessExprToken;
 import org.develnext.jphp.core.tokenizer.token.expr.value.*;
+import org.develnext.jphp.core.tokenizer.token.stmt.ExprStmtToken;
 import org.objectweb.asm.Opcodes;
 import php.runtime.Memory;
 import php.runtime.env.Environment;
 import php.runtime.env.TraceInfo;
 import php.runtime.ext.support.compile.CompileFunction;
+import php.runtime.invoke.FunctionCallSite;
 import php.runtime.invoke.InvokeArgumentHelper;
 import php.runtime.invoke.InvokeHelper;
+import php.runtime.invoke.MethodCallSite;
 import php.runtime.invoke.ObjectInvokeHelper;
 import php.runtime.invoke.cache.FunctionCallCache;
 import php.runtime.invoke.cache.MethodCallCache;
@@ -25,6 +29,9 @@ import php.runtime.reflection.FunctionEntity;
 import php.runtime.reflection.MethodEntity;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 public class CallCompiler extends BaseExprCompiler<CallExprToken> {
     public static class PushCallStatistic {
@@ -109,22 +116,44 @@ public class CallCompiler extends BaseExprCompiler<CallExprToken> {
             }
 
             expr.getMethod().getEntity().setImmutable(false);
-            int index = expr.getMethod().clazz.getAndIncCallFuncCount();
+            expr.writeLineNumber(function);
 
-            expr.writePushEnv();
-            expr.writePushTraceInfo(function);
-            expr.writePushString(realName.toLowerCase());
-            expr.writePushString(realName);
-            expr.writePushParameters(function.getParameters());
+            int arity = getFixedArity(function);
 
-            expr.writeGetStatic("$CALL_FUNC_CACHE", FunctionCallCache.class);
-            expr.writePushConstInt(index);
+            Class[] arguments = new Class[arity == -1 ? 1 : arity];
+            Arrays.fill(arguments, arity == -1 ? Memory[].class : Memory.class);
 
-            expr.writeSysStaticCall(
-                    InvokeHelper.class, "call", Memory.class,
-                    Environment.class, TraceInfo.class, String.class, String.class, Memory[].class,
-                    FunctionCallCache.class, Integer.TYPE
-            );
+            if (compiler.getScope().isInvokeDynamic()) {
+                expr.writePushEnv();
+                expr.writePushTraceInfo(function);
+                writePushArguments(function, arity);
+
+                expr.writeSysInvokeDynamic(
+                        FunctionCallSite.class, "call", new Object[]{realName.toLowerCase(), realName},
+                        Memory.class,
+                        concat(new Class[]{Environment.class, TraceInfo.class}, arguments)
+                );
+            } else {
+                int index = expr.getMethod().clazz.getAndIncCallFuncCount();
+
+                expr.writePushEnv();
+                expr.writePushTraceInfo(function);
+                expr.writePushString(realName.toLowerCase());
+                expr.writePushString(realName);
+                writePushArguments(function, arity);
+
+                expr.writeGetStatic("$CALL_FUNC_CACHE", FunctionCallCache.class);
+                expr.writePushConstInt(index);
+
+                expr.writeSysStaticCall(
+                        InvokeHelper.class, "call", Memory.class,
+                        concat(
+                                new Class[]{Environment.class, TraceInfo.class, String.class, String.class},
+                                arguments,
+                                new Class[]{FunctionCallCache.class, Integer.TYPE}
+                        )
+                );
+            }
 
             if (!returnValue) {
                 expr.writePopAll(1);
@@ -135,6 +164,56 @@ public class CallCompiler extends BaseExprCompiler<CallExprToken> {
     }
 
 
+    /**
+     * A call with 1..{@link FunctionEntity#MAX_FIXED_ARITY} arguments without unpacking passes them without an array,
+     * see {@link FunctionEntity#getFixedHandle(int)}.
+     *
+     * @return count of arguments, -1 if the arguments are passed as an array
+     */
+    protected static int getFixedArity(CallExprToken function) {
+        List<ExprStmtToken> parameters = function.getParameters();
+
+        if (parameters.isEmpty() || parameters.size() > FunctionEntity.MAX_FIXED_ARITY) {
+            return -1;
+        }
+
+        for (ExprStmtToken parameter : parameters) {
+            if (parameter.isVariadic()) {
+                return -1;
+            }
+
+            for (Token token : parameter.getTokens()) {
+                if (token instanceof ArgumentUnpackExprToken) {
+                    return -1;
+                }
+            }
+        }
+
+        return parameters.size();
+    }
+
+    protected void writePushArguments(CallExprToken function, int arity) {
+        if (arity == -1) {
+            expr.writePushParameters(function.getParameters());
+        } else {
+            for (ExprStmtToken parameter : function.getParameters()) {
+                expr.markArrayGetAsReference(parameter);
+                expr.writeExpression(parameter, true, false);
+                expr.writePopBoxing();
+            }
+        }
+    }
+
+    private static Class[] concat(Class[]... types) {
+        List<Class> result = new ArrayList<>();
+
+        for (Class[] el : types) {
+            result.addAll(Arrays.asList(el));
+        }
+
+        return result.toArray(new Class[result.size()]);
+    }
+
     /**
      * Class::method()
      */
@@ -295,14 +374,28 @@ public class CallCompiler extends BaseExprCompiler<CallExprToken> {
         }
 
         expr.writeLineNumber(function);
-        expr.writeDynamicAccessPrepare(access, true);
-        expr.writePushParameters(function.getParameters());
 
-        expr.writeSysStaticCall(
-                ObjectInvokeHelper.class, "invokeMethod",
-                Memory.class,
-                Memory.class, String.class, String.class, Environment.class, TraceInfo.class, Memory[].class
-        );
+        if (compiler.getScope().isInvokeDynamic() && access.getField() instanceof NameToken) {
+            expr.writeDynamicAccessObject(access);
+            expr.writePushEnv();
+            expr.writePushTraceInfo(access);
+            expr.writePushParameters(function.getParameters());
+
+            expr.writeSysInvokeDynamic(
+                    MethodCallSite.class, "invokeMethod", new Object[]{((NameToken) access.getField()).getName()},
+                    Memory.class,
+                    Memory.class, Environment.class, TraceInfo.class, Memory[].class
+            );
+        } else {
+            expr.writeDynamicAccessPrepare(access, true);
+            expr.writePushParameters(function.getParameters());
+
+            expr.writeSysStaticCall(
+                    ObjectInvokeHelper.class, "invokeMethod",
+                    Memory.class,
+                    Memory.class, String.class, String.class, Environment.class, TraceInfo.class, Memory[].class
+            );
+        }
 
         if (!returnValue) {
             expr.writePopAll(1);
@@ -36,6 +36,11 @@ public class StringBuilderValueCompiler extends BaseExprCompiler<StringBuilderEx
                 expr.unexpectedToken(el);
 
             StackItem.Type peek = expr.stackPeek().type;
+            if (peek == StackItem.Type.DOUBLE) {
+                expr.writePopString();
+                peek = StackItem.Type.STRING;
+            }
+
             if (!peek.isConstant()) {
                 expr.writeSysDynamicCall(StringBuilder.class, "append", StringBuilder.class, Object.class);
             } else
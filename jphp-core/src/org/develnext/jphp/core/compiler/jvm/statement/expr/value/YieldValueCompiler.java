@@ -4,12 +4,18 @@ import org.develnext.jphp.core.compiler.jvm.misc.LocalVariable;
 import org.develnext.jphp.core.compiler.jvm.statement.ExpressionStmtCompiler;
 import org.develnext.jphp.core.compiler.jvm.statement.expr.BaseExprCompiler;
 import org.develnext.jphp.core.tokenizer.token.expr.value.YieldExprToken;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.LabelNode;
 import php.runtime.Memory;
 import php.runtime.env.Environment;
 import php.runtime.env.TraceInfo;
+import php.runtime.exceptions.CriticalException;
 import php.runtime.invoke.InvokeHelper;
 import php.runtime.lang.Generator;
 
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
+import static org.objectweb.asm.Opcodes.ARETURN;
+
 public class YieldValueCompiler extends BaseExprCompiler<YieldExprToken> {
     public YieldValueCompiler(ExpressionStmtCompiler exprCompiler) {
         super(exprCompiler);
@@ -17,19 +23,43 @@ public class YieldValueCompiler extends BaseExprCompiler<YieldExprToken> {
 
     @Override
     public void write(YieldExprToken token, boolean returnValue) {
-        if (token.isOnlyNext() && token.getValue() != null) {
+        boolean resumable = method.isResumable();
+
+        // the result of a yield that was suspended before by an only-next yield
+        if (resumable && token.isOnlyGet()) {
+            expr.writeVarLoad(LocalVariable.THIS);
+            expr.writePushEnv();
+            expr.writeSysDynamicCall(Generator.class, "_resume", Memory.class, Environment.class);
+
+            if (!returnValue) {
+                expr.writePopAll(1);
+            }
             return;
         }
 
+        if (resumable && !expr.stackEmpty(false)) {
+            throw new CriticalException("Unsupported yield position in a resumable generator");
+        }
+
         expr.writeVarLoad(LocalVariable.THIS);
         expr.writePushEnv();
         expr.writePushTraceInfo(token);
 
         String methodName = token.isDelegating() ? "yieldFrom" : "yield";
+        Class<?> resultType = Memory.class;
+
+        if (resumable) {
+            methodName = token.isDelegating() ? "_suspendFrom" : "_suspend";
+            resultType = void.class;
+        }
 
         if (token.getValue() == null) {
-            expr.writeSysDynamicCall(Generator.class, methodName, Memory.class, Environment.class, TraceInfo.class);
+            expr.writeSysDynamicCall(Generator.class, methodName, resultType, Environment.class, TraceInfo.class);
         } else {
+            if (expr.getMethod().getGeneratorEntity().isReturnReference()) {
+                expr.markArrayGetAsReference(token.getValue());
+            }
+
             expr.writeExpression(token.getValue(), true, false);
             expr.writePopBoxing();
 
@@ -46,12 +76,32 @@ public class YieldValueCompiler extends BaseExprCompiler<YieldExprToken> {
                             Memory.class, Environment.class, TraceInfo.class
                     );
 
-                expr.writeSysDynamicCall(Generator.class, methodName, Memory.class, Environment.class, TraceInfo.class, Memory.class);
+                expr.writeSysDynamicCall(Generator.class, methodName, resultType, Environment.class, TraceInfo.class, Memory.class);
             } else {
-                expr.writeSysDynamicCall(Generator.class, methodName, Memory.class, Environment.class, TraceInfo.class, Memory.class);
+                expr.writeSysDynamicCall(Generator.class, methodName, resultType, Environment.class, TraceInfo.class, Memory.class);
             }
         }
 
+        if (resumable) {
+            LabelNode suspend = new LabelNode();
+            LabelNode resume = new LabelNode();
+
+            add(suspend);
+            add(new InsnNode(ACONST_NULL));
+            add(new InsnNode(ARETURN));
+
+            method.addResumePoint(suspend, resume);
+            add(resume);
+
+            if (token.isOnlyNext()) {
+                return;
+            }
+
+            expr.writeVarLoad(LocalVariable.THIS);
+            expr.writePushEnv();
+            expr.writeSysDynamicCall(Generator.class, "_resume", Memory.class, Environment.class);
+        }
+
         if (!returnValue) {
             expr.writePopAll(1);
         }
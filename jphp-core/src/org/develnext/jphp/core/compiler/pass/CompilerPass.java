@@ -0,0 +1,28 @@
+package org.develnext.jphp.core.compiler.pass;
+
+import org.develnext.jphp.core.compiler.jvm.JvmCompiler;
+import org.develnext.jphp.core.tokenizer.token.stmt.FunctionStmtToken;
+
+/**
+ * Pass over the tree of a function (the RPN expressions of {@link org.develnext.jphp.core.syntax.SyntaxAnalyzer}),
+ * is run by {@link PassPipeline} before the bytecode of the function is written.
+ *
+ * A pass can rewrite the tree or annotate its tokens and variables. The same function may be processed
+ * more than once, so a pass must be idempotent. Passes are disabled by name via
+ * {@link php.runtime.env.CompileScopeOptions.Builder#pass(String, boolean)}.
+ */
+abstract public class CompilerPass {
+    protected final JvmCompiler compiler;
+
+    public CompilerPass(JvmCompiler compiler) {
+        this.compiler = compiler;
+    }
+
+    public JvmCompiler getCompiler() {
+        return compiler;
+    }
+
+    abstract public String getName();
+
+    abstract public void process(FunctionStmtToken function);
+}
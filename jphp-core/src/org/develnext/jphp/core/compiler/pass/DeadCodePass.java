@@ -0,0 +1,93 @@
+package org.develnext.jphp.core.compiler.pass;
+
+import org.develnext.jphp.core.compiler.jvm.JvmCompiler;
+import org.develnext.jphp.core.tokenizer.token.Token;
+import org.develnext.jphp.core.tokenizer.token.stmt.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Removes unreachable instructions after return, throw, break, continue and goto.
+ *
+ * Only simple instructions (expressions, echo, return, etc.) are removed: a nested block can contain
+ * a goto label or a declaration, so the rest of the body is kept if there is such block after the jump.
+ */
+public class DeadCodePass extends CompilerPass {
+    public DeadCodePass(JvmCompiler compiler) {
+        super(compiler);
+    }
+
+    @Override
+    public String getName() {
+        return "dead-code";
+    }
+
+    @Override
+    public void process(FunctionStmtToken function) {
+        process(function.getBody());
+    }
+
+    protected void process(BodyStmtToken body) {
+        if (body == null || body.getInstructions() == null) {
+            return;
+        }
+
+        List<ExprStmtToken> instructions = body.getInstructions();
+
+        for (int i = 0; i < instructions.size(); i++) {
+            ExprStmtToken instruction = instructions.get(i);
+
+            for (Token token : instruction.getTokens()) {
+                process(token);
+            }
+
+            if (i < instructions.size() - 1 && isJump(instruction) && isRemovable(instructions, i + 1)) {
+                body.setInstructions(new ArrayList<ExprStmtToken>(instructions.subList(0, i + 1)));
+                return;
+            }
+        }
+    }
+
+    protected void process(Token token) {
+        if (token instanceof BodyStmtToken) {
+            process((BodyStmtToken) token);
+        } else if (token instanceof IfStmtToken) {
+            process(((IfStmtToken) token).getBody());
+            process(((IfStmtToken) token).getElseBody());
+        } else if (token instanceof WhileStmtToken) {
+            process(((WhileStmtToken) token).getBody());
+        } else if (token instanceof DoStmtToken) {
+            process(((DoStmtToken) token).getBody());
+        } else if (token instanceof ForStmtToken) {
+            process(((ForStmtToken) token).getBody());
+        } else if (token instanceof ForeachStmtToken) {
+            process(((ForeachStmtToken) token).getBody());
+        }
+    }
+
+    private static boolean isJump(ExprStmtToken instruction) {
+        if (!instruction.isSingle()) {
+            return false;
+        }
+
+        Token token = instruction.getSingle();
+
+        return token instanceof ReturnStmtToken || token instanceof ThrowStmtToken
+                || token instanceof JumpStmtToken || token instanceof GotoStmtToken;
+    }
+
+    private static boolean isRemovable(List<ExprStmtToken> instructions, int from) {
+        for (ExprStmtToken instruction : instructions.subList(from, instructions.size())) {
+            for (Token token : instruction.getTokens()) {
+                if (token instanceof StmtToken && !(token instanceof EchoStmtToken || token instanceof EchoRawToken
+                        || token instanceof ReturnStmtToken || token instanceof ThrowStmtToken
+                        || token instanceof JumpStmtToken || token instanceof GotoStmtToken)) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,457 @@
+package org.develnext.jphp.core.compiler.pass;
+
+import org.develnext.jphp.core.compiler.jvm.JvmCompiler;
+import org.develnext.jphp.core.tokenizer.token.Token;
+import org.develnext.jphp.core.tokenizer.token.expr.operator.*;
+import org.develnext.jphp.core.tokenizer.token.expr.value.*;
+import org.develnext.jphp.core.tokenizer.token.stmt.*;
+import php.runtime.common.Modifier;
+
+import java.util.*;
+
+/**
+ * Inlines calls of small functions and methods declared in the same module.
+ *
+ * A callee is inlined if its body is `return <expr>;` or `$this->prop = $param;` (a setter, only as a statement),
+ * the expression reads only the arguments, literals and declared properties of `$this`, and uses only operators
+ * which cannot throw and cannot call user code, so stack traces of exceptions never miss the inlined frame.
+ *
+ * Functions are inlined only if they are declared unconditionally in the module, methods only if they are called
+ * via `$this` from the same class and cannot be overridden (private or final). A method which reads or writes
+ * properties is inlined only in a final class whose parents are declared in the module and have no property
+ * magic methods, because an access to an unset property calls __get or __set of the object's class.
+ * The pass reads only the module, so a changed callee means the changed source of the caller.
+ */
+public class InlinePass extends CompilerPass {
+    public static final int MAX_SIZE = 12;
+
+    protected FunctionStmtToken function;
+    protected Map<String, FunctionStmtToken> functions;
+
+    public InlinePass(JvmCompiler compiler) {
+        super(compiler);
+    }
+
+    @Override
+    public String getName() {
+        return "inline";
+    }
+
+    @Override
+    public void process(FunctionStmtToken function) {
+        this.function = function;
+        walk(function.getBody());
+    }
+
+    protected void walk(BodyStmtToken body) {
+        if (body == null || body.getInstructions() == null) {
+            return;
+        }
+
+        for (ExprStmtToken instruction : body.getInstructions()) {
+            if (!inlineSetter(instruction)) {
+                walk(instruction);
+            }
+        }
+    }
+
+    protected void walk(List<ExprStmtToken> expressions) {
+        if (expressions != null) {
+            for (ExprStmtToken expression : expressions) {
+                walk(expression);
+            }
+        }
+    }
+
+    protected void walk(Token token) {
+        if (token instanceof ExprStmtToken) {
+            ExprStmtToken expression = (ExprStmtToken) token;
+
+            if (expression.isStmtList()) {
+                for (Token el : expression.getTokens()) {
+                    walk(el);
+                }
+            } else if (expression.getAsmExpr() != null) {
+                List<Token> tokens = inline(expression.getAsmExpr().getTokens());
+
+                if (tokens != null) {
+                    expression.getAsmExpr().setTokens(tokens);
+                }
+            }
+        } else if (token instanceof BodyStmtToken) {
+            walk((BodyStmtToken) token);
+        } else if (token instanceof IfStmtToken) {
+            walk(((IfStmtToken) token).getCondition());
+            walk(((IfStmtToken) token).getBody());
+            walk(((IfStmtToken) token).getElseBody());
+        } else if (token instanceof WhileStmtToken) {
+            walk(((WhileStmtToken) token).getCondition());
+            walk(((WhileStmtToken) token).getBody());
+        } else if (token instanceof DoStmtToken) {
+            walk(((DoStmtToken) token).getBody());
+            walk(((DoStmtToken) token).getCondition());
+        } else if (token instanceof ForStmtToken) {
+            walk(((ForStmtToken) token).getInitExpr());
+            walk(((ForStmtToken) token).getConditionExpr());
+            walk(((ForStmtToken) token).getIterationExpr());
+            walk(((ForStmtToken) token).getBody());
+        } else if (token instanceof ForeachStmtToken) {
+            walk(((ForeachStmtToken) token).getIterator());
+            walk(((ForeachStmtToken) token).getBody());
+        } else if (token instanceof EchoStmtToken) {
+            walk(((EchoStmtToken) token).getArguments());
+        } else if (token instanceof ReturnStmtToken) {
+            walk(((ReturnStmtToken) token).getValue());
+        } else if (token instanceof CallExprToken) {
+            walk(((CallExprToken) token).getParameters());
+        } else if (token instanceof ArrayExprToken) {
+            walk(((ArrayExprToken) token).getParameters());
+        } else if (token instanceof ArrayGetExprToken) {
+            walk(((ArrayGetExprToken) token).getParameters());
+        } else if (token instanceof DynamicAccessAssignExprToken) {
+            walk(((DynamicAccessAssignExprToken) token).getValue());
+        } else if (token instanceof LogicOperatorExprToken) {
+            walk(((LogicOperatorExprToken) token).getRightValue());
+        } else if (token instanceof ValueIfElseToken) {
+            walk(((ValueIfElseToken) token).getValue());
+            walk(((ValueIfElseToken) token).getAlternative());
+        }
+    }
+
+    /**
+     * @return new RPN tokens or null if nothing is inlined.
+     */
+    protected List<Token> inline(List<Token> tokens) {
+        List<Token> result = new ArrayList<Token>();
+        boolean changed = false;
+
+        for (Token token : tokens) {
+            walk(token);
+
+            List<Token> inlined = token instanceof CallExprToken ? inlineCall((CallExprToken) token, result) : null;
+
+            if (inlined == null) {
+                result.add(token);
+            } else {
+                result.addAll(inlined);
+                changed = true;
+            }
+        }
+
+        return changed ? result : null;
+    }
+
+    /**
+     * @param result RPN tokens before the call, `$this` of a method call is removed from it.
+     */
+    protected List<Token> inlineCall(CallExprToken call, List<Token> result) {
+        FunctionStmtToken callee;
+        boolean method = call.getName() instanceof DynamicAccessExprToken;
+
+        if (method) {
+            if (result.isEmpty() || !isThis(result.get(result.size() - 1))) {
+                return null;
+            }
+
+            callee = findMethod((DynamicAccessExprToken) call.getName());
+        } else if (call.getName() instanceof NameToken) {
+            callee = findFunction((NameToken) call.getName());
+        } else {
+            return null;
+        }
+
+        if (callee == null || callee.getArguments().size() != call.getParameters().size()) {
+            return null;
+        }
+
+        ExprStmtToken value = getInlineExpression(callee);
+        if (value == null) {
+            return null;
+        }
+
+        Map<String, Token> arguments = new HashMap<String, Token>();
+
+        for (int i = 0; i < call.getParameters().size(); i++) {
+            Token argument = getSimpleValue(call.getParameters().get(i));
+
+            if (argument == null) {
+                return null;
+            }
+
+            arguments.put(callee.getArguments().get(i).getName().getName(), argument);
+        }
+
+        List<Token> inlined = new ArrayList<Token>();
+
+        for (Token token : value.getTokens()) {
+            Token argument = token instanceof VariableExprToken
+                    ? arguments.get(((VariableExprToken) token).getName())
+                    : null;
+
+            inlined.add(argument == null ? token : argument);
+        }
+
+        if (method) {
+            result.remove(result.size() - 1);
+        }
+
+        return inlined;
+    }
+
+    /**
+     * `$this->setter($value);` -> `$this->prop = $value;`
+     */
+    protected boolean inlineSetter(ExprStmtToken instruction) {
+        ExprStmtToken expression = instruction.isStmtList() ? null : instruction.getAsmExpr();
+
+        if (expression == null || expression.getTokens().size() != 2 || !isThis(expression.getTokens().get(0))
+                || !(expression.getTokens().get(1) instanceof CallExprToken)) {
+            return false;
+        }
+
+        CallExprToken call = (CallExprToken) expression.getTokens().get(1);
+
+        if (!(call.getName() instanceof DynamicAccessExprToken) || call.getParameters().size() != 1
+                || call.getParameters().get(0).isVariadic()) {
+            return false;
+        }
+
+        FunctionStmtToken callee = findMethod((DynamicAccessExprToken) call.getName());
+
+        if (callee == null || callee.getArguments().size() != 1 || !isInlinable(callee)) {
+            return false;
+        }
+
+        ExprStmtToken body = callee.getBody().getInstructions().get(0);
+        body = body.isStmtList() ? null : body.getAsmExpr();
+
+        if (body == null || body.getTokens().size() != 2 || !isThis(body.getTokens().get(0))
+                || body.getTokens().get(1).getClass() != DynamicAccessAssignExprToken.class) {
+            return false;
+        }
+
+        DynamicAccessAssignExprToken assign = (DynamicAccessAssignExprToken) body.getTokens().get(1);
+        ExprStmtToken value = assign.getValue() == null ? null : assign.getValue().getAsmExpr();
+
+        if (!(assign.getAssignOperator() instanceof AssignExprToken)
+                || ((AssignExprToken) assign.getAssignOperator()).isAsReference()
+                || !isDeclaredProperty(callee, assign)
+                || value == null || !value.isSingle() || !(value.getSingle() instanceof VariableExprToken)
+                || !((VariableExprToken) value.getSingle()).getName().equals(callee.getArguments().get(0).getName().getName())) {
+            return false;
+        }
+
+        DynamicAccessAssignExprToken inlined = new DynamicAccessAssignExprToken(assign);
+        inlined.setAssignOperator(assign.getAssignOperator());
+        inlined.setValue(call.getParameters().get(0));
+
+        walk(call.getParameters().get(0));
+
+        expression.setTokens(new ArrayList<Token>(Arrays.asList(expression.getTokens().get(0), inlined)));
+        return true;
+    }
+
+    /**
+     * @return RPN of `return <expr>;` of the callee or null if it cannot be inlined.
+     */
+    protected ExprStmtToken getInlineExpression(FunctionStmtToken callee) {
+        if (!isInlinable(callee)) {
+            return null;
+        }
+
+        ExprStmtToken instruction = callee.getBody().getInstructions().get(0);
+
+        if (!instruction.isSingle() || !(instruction.getSingle() instanceof ReturnStmtToken)) {
+            return null;
+        }
+
+        ExprStmtToken value = ((ReturnStmtToken) instruction.getSingle()).getValue();
+        value = value == null || value.isStmtList() ? null : value.getAsmExpr();
+
+        if (value == null || value.getTokens().isEmpty() || value.getTokens().size() > MAX_SIZE) {
+            return null;
+        }
+
+        Token previous = null;
+
+        for (Token token : value.getTokens()) {
+            if (token instanceof VariableExprToken) {
+                if (!(isThis(token) && callee instanceof MethodStmtToken) && !isArgument(callee, (VariableExprToken) token)) {
+                    return null;
+                }
+            } else if (token.getClass() == DynamicAccessExprToken.class) {
+                if (!isThis(previous) || !isDeclaredProperty(callee, (DynamicAccessExprToken) token)) {
+                    return null;
+                }
+            } else if (!isSafe(token)) {
+                return null;
+            }
+
+            previous = token;
+        }
+
+        return value;
+    }
+
+    protected boolean isInlinable(FunctionStmtToken callee) {
+        if (callee == function || callee.isGenerator() || callee.isReturnReference() || callee.isDynamicLocal()
+                || callee.getReturnHintType() != null || callee.getReturnHintTypeClass() != null
+                || callee.getBody() == null || callee.getBody().getInstructions() == null
+                || callee.getBody().getInstructions().size() != 1) {
+            return false;
+        }
+
+        for (ArgumentStmtToken argument : callee.getArguments()) {
+            if (argument.isReference() || argument.isVariadic() || argument.getValue() != null
+                    || argument.getHintType() != null || argument.getHintTypeClass() != null) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Operators which cannot throw an exception and cannot call user code.
+     */
+    protected boolean isSafe(Token token) {
+        Class<?> type = token.getClass();
+
+        return type == IntegerExprToken.class || type == DoubleExprToken.class || type == StringExprToken.class
+                || type == PlusExprToken.class || type == MinusExprToken.class || type == MulExprToken.class
+                || type == UnarMinusExprToken.class || type == BooleanNotExprToken.class
+                || type == IdenticalExprToken.class || type == NotIdenticalExprToken.class;
+    }
+
+    protected Token getSimpleValue(ExprStmtToken argument) {
+        if (argument.isVariadic() || argument.isStmtList() || argument.getAsmExpr() == null
+                || !argument.getAsmExpr().isSingle()) {
+            return null;
+        }
+
+        Token token = argument.getAsmExpr().getSingle();
+        Class<?> type = token.getClass();
+
+        if (type == VariableExprToken.class || type == IntegerExprToken.class
+                || type == DoubleExprToken.class || type == StringExprToken.class) {
+            return token;
+        }
+
+        return null;
+    }
+
+    protected FunctionStmtToken findFunction(NameToken name) {
+        if (functions == null) {
+            functions = new HashMap<String, FunctionStmtToken>();
+
+            for (Token token : compiler.getAnalyzer().getTree()) {
+                if (token instanceof FunctionStmtToken) {
+                    FunctionStmtToken one = (FunctionStmtToken) token;
+                    functions.put(one.getFulledName().toLowerCase(), one);
+                }
+            }
+        }
+
+        String realName = name.getName();
+
+        if (compiler.getScope().findCompileFunction(realName) != null) {
+            return null;
+        }
+
+        return functions.get(realName.toLowerCase());
+    }
+
+    protected MethodStmtToken findMethod(DynamicAccessExprToken access) {
+        if (!(function instanceof MethodStmtToken) || ((MethodStmtToken) function).isStatic()
+                || !(access.getField() instanceof NameToken) || access.getFieldExpr() != null) {
+            return null;
+        }
+
+        ClassStmtToken clazz = ((MethodStmtToken) function).getClazz();
+
+        if (clazz == null || clazz.isTrait() || !compiler.getAnalyzer().getClasses().contains(clazz)) {
+            return null;
+        }
+
+        String name = ((NameToken) access.getField()).getName();
+        MethodStmtToken result = null;
+
+        for (MethodStmtToken method : clazz.getMethods()) {
+            if (method.getName().getName().equalsIgnoreCase(name)) {
+                result = method;
+            }
+        }
+
+        if (result == null || result.isStatic() || result.isAbstract()
+                || !(result.getModifier() == Modifier.PRIVATE || result.isFinal() || clazz.isFinal())) {
+            return null;
+        }
+
+        return result;
+    }
+
+    /**
+     * @return true if the class or one of its parents has __get, __set, __isset or __unset, or uses traits,
+     * or if a parent is not declared in the module
+     */
+    protected boolean hasPropertyMagic(ClassStmtToken clazz) {
+        if (clazz.getUses() != null && !clazz.getUses().isEmpty()) {
+            return true;
+        }
+
+        for (MethodStmtToken method : clazz.getMethods()) {
+            String name = method.getName().getName();
+
+            if (name.equalsIgnoreCase("__get") || name.equalsIgnoreCase("__set")
+                    || name.equalsIgnoreCase("__isset") || name.equalsIgnoreCase("__unset")) {
+                return true;
+            }
+        }
+
+        if (clazz.getExtend() == null) {
+            return false;
+        }
+
+        ClassStmtToken parent = compiler.getAnalyzer().findClass(clazz.getExtend().getName().getName());
+
+        return parent == null || parent == clazz || hasPropertyMagic(parent);
+    }
+
+    protected boolean isDeclaredProperty(FunctionStmtToken callee, DynamicAccessExprToken access) {
+        if (!(callee instanceof MethodStmtToken) || !(access.getField() instanceof NameToken)
+                || access.getFieldExpr() != null) {
+            return false;
+        }
+
+        ClassStmtToken clazz = ((MethodStmtToken) callee).getClazz();
+
+        if (!clazz.isFinal() || hasPropertyMagic(clazz)) {
+            return false;
+        }
+
+        String name = ((NameToken) access.getField()).getName();
+
+        for (ClassVarStmtToken property : clazz.getProperties()) {
+            if (!property.isStatic() && property.getVariable().getName().equals(name)
+                    && property.getHintType() == null && property.getHintTypeClass() == null) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isThis(Token token) {
+        return token instanceof VariableExprToken && ((VariableExprToken) token).getName().equals("this");
+    }
+
+    private static boolean isArgument(FunctionStmtToken callee, VariableExprToken variable) {
+        for (ArgumentStmtToken argument : callee.getArguments()) {
+            if (argument.getName().getName().equals(variable.getName())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,504 @@
+package org.develnext.jphp.core.compiler.pass;
+
+import org.develnext.jphp.core.compiler.jvm.JvmCompiler;
+import org.develnext.jphp.core.syntax.VariableStats;
+import org.develnext.jphp.core.tokenizer.token.Token;
+import org.develnext.jphp.core.tokenizer.token.expr.OperatorExprToken;
+import org.develnext.jphp.core.tokenizer.token.expr.ValueExprToken;
+import org.develnext.jphp.core.tokenizer.token.expr.operator.*;
+import org.develnext.jphp.core.tokenizer.token.expr.operator.cast.DoubleCastExprToken;
+import org.develnext.jphp.core.tokenizer.token.expr.operator.cast.IntCastExprToken;
+import org.develnext.jphp.core.tokenizer.token.expr.value.*;
+import org.develnext.jphp.core.tokenizer.token.stmt.*;
+
+import java.util.*;
+
+/**
+ * Finds local variables of a function which always hold int or float values,
+ * such variables are stored in long/double JVM slots and boxed only when they escape.
+ *
+ * The analysis is conservative: a variable is typed only if it is always assigned before
+ * it is read (an assignment at the top level of the function body), is never passed by reference,
+ * used as an array/object or assigned by an unsupported operator. Any statement or expression
+ * the analysis does not know disables it for the whole function.
+ */
+public class LocalTypeInference extends CompilerPass {
+    private static final Set<String> DYNAMIC_FUNCTIONS = new HashSet<String>(Arrays.asList(
+            "compact", "extract", "get_defined_vars", "parse_str", "eval"
+    ));
+
+    protected enum Kind {
+        NONE, LONG, DOUBLE, MIXED;
+
+        Kind join(Kind kind) {
+            if (this == kind || kind == NONE) return this;
+            if (this == NONE) return kind;
+
+            return MIXED;
+        }
+
+        static Kind arith(Kind a, Kind b) {
+            if (a == MIXED || b == MIXED) return MIXED;
+            if (a == NONE || b == NONE) return NONE;
+            if (a == LONG && b == LONG) return LONG;
+
+            return DOUBLE;
+        }
+    }
+
+    protected static class Operand {
+        final VariableExprToken variable;
+        final Kind kind;
+
+        Operand(VariableExprToken variable, Kind kind) {
+            this.variable = variable;
+            this.kind = kind;
+        }
+    }
+
+    protected static class UnsupportedException extends Exception {
+        UnsupportedException() {
+            super(null, null, false, false);
+        }
+    }
+
+    protected final Map<String, Kind> kinds = new HashMap<String, Kind>();
+    protected final Set<String> defined = new HashSet<String>();
+    protected FunctionStmtToken function;
+    protected boolean changed;
+
+    public LocalTypeInference(JvmCompiler compiler) {
+        super(compiler);
+    }
+
+    @Override
+    public String getName() {
+        return "local-types";
+    }
+
+    /**
+     * Sets {@link VariableStats#getUnboxedType()} of the typed variables.
+     */
+    @Override
+    public void process(FunctionStmtToken function) {
+        this.function = function;
+        this.kinds.clear();
+        this.defined.clear();
+
+        for (VariableStats stats : function.getVariables().values()) {
+            stats.setUnboxedType(null);
+        }
+
+        if (function.isDynamicLocal() || function.isGenerator() || function.isReturnReference()
+                || function.getBody() == null || function.getLocal() == null) {
+            return;
+        }
+
+        for (VariableExprToken variable : function.getLocal()) {
+            if (isCandidate(variable)) {
+                kinds.put(variable.getName(), Kind.NONE);
+            }
+        }
+
+        if (kinds.isEmpty()) {
+            return;
+        }
+
+        try {
+            do {
+                changed = false;
+                defined.clear();
+                walk(function.getBody(), 0);
+            } while (changed);
+        } catch (UnsupportedException e) {
+            return;
+        }
+
+        for (Map.Entry<String, Kind> entry : kinds.entrySet()) {
+            switch (entry.getValue()) {
+                case LONG:
+                    function.variable(entry.getKey()).setUnboxedType(Long.TYPE);
+                    break;
+                case DOUBLE:
+                    function.variable(entry.getKey()).setUnboxedType(Double.TYPE);
+                    break;
+            }
+        }
+    }
+
+    protected boolean isCandidate(VariableExprToken variable) {
+        if (variable.isThisVariable() || compiler.isSuperGlobal(variable)) {
+            return false;
+        }
+
+        if (function.isReference(variable) || function.isUnusedVariable(variable)
+                || function.getStaticLocal().contains(variable)) {
+            return false;
+        }
+
+        if (contains(function.getArguments(), variable) || contains(function.getUses(), variable)) {
+            return false;
+        }
+
+        return true;
+    }
+
+    private static boolean contains(List<ArgumentStmtToken> arguments, VariableExprToken variable) {
+        if (arguments != null) {
+            for (ArgumentStmtToken argument : arguments) {
+                if (argument.getName().getName().equals(variable.getName())) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    protected void walk(BodyStmtToken body, int depth) throws UnsupportedException {
+        if (body != null) {
+            for (ExprStmtToken instruction : body.getInstructions()) {
+                walk(instruction, depth);
+            }
+        }
+    }
+
+    protected void walk(StmtToken token, int depth) throws UnsupportedException {
+        if (token instanceof ExprStmtToken) {
+            walk((ExprStmtToken) token, depth);
+        } else if (token instanceof BodyStmtToken) {
+            walk((BodyStmtToken) token, depth);
+        } else if (token instanceof IfStmtToken) {
+            IfStmtToken ifToken = (IfStmtToken) token;
+
+            walk(ifToken.getCondition(), depth);
+            walk(ifToken.getBody(), depth + 1);
+            walk(ifToken.getElseBody(), depth + 1);
+        } else if (token instanceof WhileStmtToken) {
+            WhileStmtToken whileToken = (WhileStmtToken) token;
+
+            walk(whileToken.getCondition(), depth + 1);
+            walk(whileToken.getBody(), depth + 1);
+        } else if (token instanceof DoStmtToken) {
+            DoStmtToken doToken = (DoStmtToken) token;
+
+            walk(doToken.getBody(), depth + 1);
+            walk(doToken.getCondition(), depth + 1);
+        } else if (token instanceof ForStmtToken) {
+            ForStmtToken forToken = (ForStmtToken) token;
+
+            for (ExprStmtToken expr : forToken.getInitExpr()) {
+                walk(expr, depth);
+            }
+
+            for (ExprStmtToken expr : forToken.getConditionExpr()) {
+                walk(expr, depth + 1);
+            }
+
+            walk(forToken.getBody(), depth + 1);
+
+            for (ExprStmtToken expr : forToken.getIterationExpr()) {
+                walk(expr, depth + 1);
+            }
+        } else if (token instanceof EchoStmtToken) {
+            for (ExprStmtToken argument : ((EchoStmtToken) token).getArguments()) {
+                walk(argument, depth);
+            }
+        } else if (token instanceof ReturnStmtToken) {
+            if (((ReturnStmtToken) token).getValue() != null) {
+                walk(((ReturnStmtToken) token).getValue(), depth);
+            }
+        } else if (!(token instanceof JumpStmtToken) && !(token instanceof EchoRawToken)) {
+            throw new UnsupportedException();
+        }
+    }
+
+    protected Kind walk(ExprStmtToken expression, int depth) throws UnsupportedException {
+        if (expression == null) {
+            return Kind.MIXED;
+        }
+
+        if (!expression.isStmtList()) {
+            if (expression.getAsmExpr() == null) {
+                throw new UnsupportedException();
+            }
+
+            expression = expression.getAsmExpr();
+        }
+
+        Deque<Operand> stack = new ArrayDeque<Operand>();
+
+        for (Token token : expression.getTokens()) {
+            if (token == null) {
+                continue;
+            }
+
+            if (token instanceof StmtToken) {
+                walk((StmtToken) token, depth);
+            } else if (token instanceof VariableExprToken) {
+                VariableExprToken variable = (VariableExprToken) token;
+                stack.push(new Operand(variable, kindOf(variable)));
+            } else if (token instanceof ValueExprToken) {
+                stack.push(new Operand(null, value((ValueExprToken) token, stack, depth)));
+            } else if (token instanceof OperatorExprToken) {
+                operator((OperatorExprToken) token, stack, depth);
+            } else {
+                throw new UnsupportedException();
+            }
+        }
+
+        Kind result = Kind.MIXED;
+
+        while (!stack.isEmpty()) {
+            result = read(stack.pop());
+        }
+
+        return result;
+    }
+
+    protected Kind value(ValueExprToken token, Deque<Operand> stack, int depth) throws UnsupportedException {
+        if (token instanceof IntegerExprToken) {
+            return Kind.LONG;
+        } else if (token instanceof DoubleExprToken) {
+            return Kind.DOUBLE;
+        } else if (token instanceof StringExprToken || token instanceof NameToken) {
+            return Kind.MIXED;
+        } else if (token instanceof StringBuilderExprToken) {
+            for (Token el : ((StringBuilderExprToken) token).getExpression()) {
+                if (el instanceof VariableExprToken) {
+                    read(new Operand((VariableExprToken) el, kindOf((VariableExprToken) el)));
+                } else if (el instanceof ExprStmtToken) {
+                    walk((ExprStmtToken) el, depth);
+                } else if (!(el instanceof StringExprToken)) {
+                    throw new UnsupportedException();
+                }
+            }
+
+            return Kind.MIXED;
+        } else if (token instanceof ArrayExprToken) {
+            for (ExprStmtToken parameter : ((ArrayExprToken) token).getParameters()) {
+                walk(parameter, depth + 1);
+            }
+
+            return Kind.MIXED;
+        } else if (token instanceof CallExprToken) {
+            CallExprToken call = (CallExprToken) token;
+            Token name = call.getName();
+
+            if (name instanceof NameToken) {
+                String lowerName = ((NameToken) name).getName().toLowerCase();
+                int pos = lowerName.lastIndexOf('\\');
+
+                if (DYNAMIC_FUNCTIONS.contains(pos == -1 ? lowerName : lowerName.substring(pos + 1))) {
+                    throw new UnsupportedException();
+                }
+            } else if (name instanceof DynamicAccessExprToken) {
+                if (((DynamicAccessExprToken) name).getFieldExpr() != null || stack.isEmpty()) {
+                    throw new UnsupportedException();
+                }
+
+                escape(stack.pop());
+            } else if (name instanceof StaticAccessExprToken) {
+                StaticAccessExprToken access = (StaticAccessExprToken) name;
+
+                if (!(access.getField() instanceof NameToken) || access.getFieldExpr() != null
+                        || access.getClazz() instanceof VariableExprToken) {
+                    throw new UnsupportedException();
+                }
+            } else {
+                throw new UnsupportedException();
+            }
+
+            parameters(call.getParameters(), depth);
+            return Kind.MIXED;
+        }
+
+        throw new UnsupportedException();
+    }
+
+    protected void parameters(List<ExprStmtToken> parameters, int depth) throws UnsupportedException {
+        if (parameters != null) {
+            for (ExprStmtToken parameter : parameters) {
+                if (parameter.isSingle() && parameter.getSingle() instanceof VariableExprToken) {
+                    escape(new Operand((VariableExprToken) parameter.getSingle(), Kind.MIXED));
+                }
+
+                walk(parameter, depth + 1);
+            }
+        }
+    }
+
+    protected void operator(OperatorExprToken operator, Deque<Operand> stack, int depth)
+            throws UnsupportedException {
+        Class<?> type = operator.getClass();
+
+        if (type == AssignExprToken.class) {
+            if (((AssignExprToken) operator).isAsReference()) {
+                throw new UnsupportedException();
+            }
+
+            Kind value = read(pop(stack));
+            Operand target = pop(stack);
+
+            if (target.variable != null) {
+                assign(target.variable, value, depth);
+            }
+
+            stack.push(new Operand(null, value));
+        } else if (type == AssignPlusExprToken.class || type == AssignMinusExprToken.class
+                || type == AssignMulExprToken.class) {
+            Kind value = read(pop(stack));
+            Operand target = pop(stack);
+            Kind result = Kind.arith(read(target), value);
+
+            if (target.variable != null) {
+                assign(target.variable, result, depth);
+            }
+
+            stack.push(new Operand(null, result));
+        } else if (operator instanceof AssignOperatorExprToken) {
+            read(pop(stack));
+            escape(pop(stack));
+
+            stack.push(new Operand(null, Kind.MIXED));
+        } else if (type == IncExprToken.class || type == DecExprToken.class) {
+            Operand target = pop(stack);
+            Kind result = Kind.arith(read(target), Kind.LONG);
+
+            if (target.variable != null) {
+                assign(target.variable, result, depth);
+            }
+
+            stack.push(new Operand(null, result));
+        } else if (type == PlusExprToken.class || type == MinusExprToken.class || type == MulExprToken.class) {
+            Kind right = read(pop(stack));
+            Kind left = read(pop(stack));
+
+            stack.push(new Operand(null, Kind.arith(left, right)));
+        } else if (type == UnarMinusExprToken.class) {
+            Kind value = read(pop(stack));
+
+            stack.push(new Operand(null, value == Kind.LONG || value == Kind.DOUBLE ? value : Kind.MIXED));
+        } else if (type == IntCastExprToken.class) {
+            read(pop(stack));
+            stack.push(new Operand(null, Kind.LONG));
+        } else if (type == DoubleCastExprToken.class) {
+            read(pop(stack));
+            stack.push(new Operand(null, Kind.DOUBLE));
+        } else if (operator instanceof LogicOperatorExprToken) {
+            read(pop(stack));
+            walk(((LogicOperatorExprToken) operator).getRightValue(), depth + 1);
+
+            stack.push(new Operand(null, Kind.MIXED));
+        } else if (type == ValueIfElseToken.class) {
+            ValueIfElseToken token = (ValueIfElseToken) operator;
+
+            read(pop(stack));
+            walk(token.getValue(), depth + 1);
+            walk(token.getAlternative(), depth + 1);
+
+            stack.push(new Operand(null, Kind.MIXED));
+        } else if (type == ArrayGetExprToken.class || type == ArrayGetRefExprToken.class) {
+            escape(pop(stack));
+
+            for (ExprStmtToken parameter : ((ArrayGetExprToken) operator).getParameters()) {
+                walk(parameter, depth + 1);
+            }
+
+            stack.push(new Operand(null, Kind.MIXED));
+        } else if (type == ArrayPushExprToken.class) {
+            escape(pop(stack));
+            stack.push(new Operand(null, Kind.MIXED));
+        } else if (type == DynamicAccessExprToken.class || type == DynamicAccessAssignExprToken.class) {
+            DynamicAccessExprToken access = (DynamicAccessExprToken) operator;
+
+            if (access.getFieldExpr() != null) {
+                throw new UnsupportedException();
+            }
+
+            escape(pop(stack));
+
+            if (access instanceof DynamicAccessAssignExprToken) {
+                walk(((DynamicAccessAssignExprToken) access).getValue(), depth);
+            }
+
+            stack.push(new Operand(null, Kind.MIXED));
+        } else if (isReadOnly(type)) {
+            read(pop(stack));
+
+            if (operator.isBinary()) {
+                read(pop(stack));
+            }
+
+            stack.push(new Operand(null, Kind.MIXED));
+        } else {
+            throw new UnsupportedException();
+        }
+    }
+
+    private static boolean isReadOnly(Class<?> type) {
+        return type == DivExprToken.class || type == ModExprToken.class || type == PowExprToken.class
+                || type == ConcatExprToken.class
+                || type == EqualExprToken.class || type == BooleanNotEqualExprToken.class
+                || type == IdenticalExprToken.class || type == NotIdenticalExprToken.class
+                || type == SmallerExprToken.class || type == SmallerOrEqualToken.class
+                || type == GreaterExprToken.class || type == GreaterOrEqualExprToken.class
+                || type == SpaceshipExprToken.class
+                || type == AndExprToken.class || type == OrExprToken.class || type == XorExprToken.class
+                || type == ShiftLeftExprToken.class || type == ShiftRightExprToken.class
+                || type == BooleanXorExprToken.class || type == BooleanNotExprToken.class
+                || type == NotExprToken.class;
+    }
+
+    private static Operand pop(Deque<Operand> stack) throws UnsupportedException {
+        if (stack.isEmpty()) {
+            throw new UnsupportedException();
+        }
+
+        return stack.pop();
+    }
+
+    protected Kind kindOf(VariableExprToken variable) {
+        Kind kind = kinds.get(variable.getName());
+        return kind == null ? Kind.MIXED : kind;
+    }
+
+    protected Kind read(Operand operand) {
+        if (operand.variable != null && kinds.containsKey(operand.variable.getName())
+                && !defined.contains(operand.variable.getName())) {
+            escape(operand);
+        }
+
+        return operand.kind;
+    }
+
+    protected void escape(Operand operand) {
+        if (operand.variable != null) {
+            update(operand.variable.getName(), Kind.MIXED);
+        }
+    }
+
+    protected void assign(VariableExprToken variable, Kind kind, int depth) {
+        String name = variable.getName();
+
+        if (!kinds.containsKey(name)) {
+            return;
+        }
+
+        if (depth > 0 && !defined.contains(name)) {
+            update(name, Kind.MIXED);
+        } else {
+            defined.add(name);
+            update(name, kinds.get(name).join(kind));
+        }
+    }
+
+    private void update(String name, Kind kind) {
+        Kind old = kinds.get(name);
+
+        if (old != null && old != kind) {
+            kinds.put(name, kind);
+            changed = true;
+        }
+    }
+}
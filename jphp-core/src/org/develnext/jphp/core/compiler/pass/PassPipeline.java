@@ -0,0 +1,44 @@
+package org.develnext.jphp.core.compiler.pass;
+
+import org.develnext.jphp.core.compiler.jvm.JvmCompiler;
+import org.develnext.jphp.core.tokenizer.token.stmt.FunctionStmtToken;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Ordered list of compiler passes, a pass is skipped if it is disabled in the compile scope options.
+ */
+public class PassPipeline {
+    protected final JvmCompiler compiler;
+    protected final List<CompilerPass> passes = new ArrayList<CompilerPass>();
+
+    public PassPipeline(JvmCompiler compiler) {
+        this.compiler = compiler;
+    }
+
+    public static PassPipeline createDefault(JvmCompiler compiler) {
+        return new PassPipeline(compiler)
+                .add(new DeadCodePass(compiler))
+                .add(new InlinePass(compiler))
+                .add(new LocalTypeInference(compiler));
+    }
+
+    public PassPipeline add(CompilerPass pass) {
+        passes.add(pass);
+        return this;
+    }
+
+    public List<CompilerPass> getPasses() {
+        return Collections.unmodifiableList(passes);
+    }
+
+    public void process(FunctionStmtToken function) {
+        for (CompilerPass pass : passes) {
+            if (compiler.getScope().isPassEnabled(pass.getName())) {
+                pass.process(function);
+            }
+        }
+    }
+}
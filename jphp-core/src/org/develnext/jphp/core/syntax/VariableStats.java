@@ -7,6 +7,7 @@ public class VariableStats {
     protected boolean reference; // variable is used with references, e.g: $var =& $var2;
     protected boolean unstable; // variable cannot store constant values, option for optimization
     protected boolean used;
+    protected Class<?> unboxedType; // long or double if the variable is kept in a primitive local slot
 
     public VariableStats() {
     }
@@ -35,6 +36,10 @@ public class VariableStats {
         return used;
     }
 
+    public Class<?> getUnboxedType() {
+        return unboxedType;
+    }
+
     public VariableStats setMutable(boolean mutable) {
         this.mutable = mutable;
         return this;
@@ -65,6 +70,11 @@ public class VariableStats {
         return this;
     }
 
+    public VariableStats setUnboxedType(Class<?> unboxedType) {
+        this.unboxedType = unboxedType;
+        return this;
+    }
+
     public boolean isUnused() {
         return !passed && !arrayAccess && !reference && !unstable && !mutable && !used;
     }
@@ -44,6 +44,19 @@ public class SimpleExprGenerator extends Generator<ExprStmtToken> {
         add("eval");
     }};
 
+    private static final Set<String> callStackFunctions = new HashSet<String>(){{
+        add("func_get_args");
+        add("func_get_arg");
+        add("func_num_args");
+        add("get_class");
+        add("get_parent_class");
+        add("get_called_class");
+        add("debug_backtrace");
+        add("debug_print_backtrace");
+        add("call_user_func");
+        add("call_user_func_array");
+    }};
+
     public SimpleExprGenerator(SyntaxAnalyzer analyzer) {
         super(analyzer);
     }
@@ -496,9 +509,15 @@ public class SimpleExprGenerator extends Generator<ExprStmtToken> {
                         analyzer.getFunction().setDynamicLocal(true);
                     }
 
+                    if (callStackFunctions.contains(name)) {
+                        analyzer.getFunction().setCallStackUsed(true);
+                    }
+
                     if ("get_called_class".equalsIgnoreCase(name)) {
                         analyzer.getScope().setStaticExists(true);
                     }
+                } else {
+                    analyzer.getFunction().setCallStackUsed(true);
                 }
             }
         } else {
@@ -525,6 +544,7 @@ public class SimpleExprGenerator extends Generator<ExprStmtToken> {
         }
 
         analyzer.getFunction().setGenerator(true);
+        analyzer.getFunction().setYieldCount(analyzer.getFunction().getYieldCount() + 1);
 
         YieldExprToken result = (YieldExprToken) current;
 
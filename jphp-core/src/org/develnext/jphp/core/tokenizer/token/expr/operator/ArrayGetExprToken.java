@@ -10,11 +10,23 @@ import java.util.List;
 
 public class ArrayGetExprToken extends OperatorExprToken {
     private List<ExprStmtToken> parameters;
+    protected boolean asReference;
 
     public ArrayGetExprToken(TokenMeta meta) {
         super(meta, TokenType.T_J_ARRAY_ACCESS);
     }
 
+    /**
+     * @return true if the element may be returned, yielded or passed by reference, it is read without creating
+     */
+    public boolean isAsReference() {
+        return asReference;
+    }
+
+    public void setAsReference(boolean asReference) {
+        this.asReference = asReference;
+    }
+
     public List<ExprStmtToken> getParameters() {
         return parameters;
     }
@@ -6,10 +6,20 @@ import org.develnext.jphp.core.tokenizer.TokenMeta;
 import org.develnext.jphp.core.tokenizer.token.expr.OperatorExprToken;
 
 public class ArrayPushExprToken extends OperatorExprToken {
+    protected boolean assigned;
+
     public ArrayPushExprToken(TokenMeta meta) {
         super(meta, TokenType.T_J_ARRAY_PUSH);
     }
 
+    public boolean isAssigned() {
+        return assigned;
+    }
+
+    public void setAssigned(boolean assigned) {
+        this.assigned = assigned;
+    }
+
     @Override
     public Association getOnlyAssociation() {
         return Association.LEFT;
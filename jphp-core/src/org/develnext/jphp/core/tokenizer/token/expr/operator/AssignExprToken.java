@@ -8,6 +8,7 @@ public class AssignExprToken extends OperatorExprToken
     implements AssignableOperatorToken {
 
     protected boolean asReference;
+    protected boolean arrayPush;
 
     public AssignExprToken(TokenMeta meta) {
         super(meta, TokenType.T_J_EQUAL);
@@ -26,6 +27,14 @@ public class AssignExprToken extends OperatorExprToken
         this.asReference = asReference;
     }
 
+    public boolean isArrayPush() {
+        return arrayPush;
+    }
+
+    public void setArrayPush(boolean arrayPush) {
+        this.arrayPush = arrayPush;
+    }
+
     @Override
     public boolean isRightSide() {
         return true;
@@ -37,6 +37,7 @@ public class FunctionStmtToken extends StmtToken {
 
     protected boolean dynamicLocal;
     protected boolean callsExist;
+    protected boolean callStackUsed;
     protected boolean varsExists;
     protected boolean thisExists;
     protected boolean staticExists;
@@ -49,6 +50,7 @@ public class FunctionStmtToken extends StmtToken {
     protected boolean isStatic = false;
 
     protected boolean isGenerator = false;
+    protected int yieldCount = 0;
 
     private Map<Token, ExpressionInfo> typeInfo;
 
@@ -192,6 +194,14 @@ public class FunctionStmtToken extends StmtToken {
         this.isGenerator = isGenerator;
     }
 
+    public int getYieldCount() {
+        return yieldCount;
+    }
+
+    public void setYieldCount(int yieldCount) {
+        this.yieldCount = yieldCount;
+    }
+
     public boolean isCallsExist() {
         return callsExist;
     }
@@ -200,6 +210,17 @@ public class FunctionStmtToken extends StmtToken {
         this.callsExist = callsExist;
     }
 
+    /**
+     * @return true if the body reads the frame of the function (func_get_args(), get_class(), dynamic calls, etc.)
+     */
+    public boolean isCallStackUsed() {
+        return callStackUsed;
+    }
+
+    public void setCallStackUsed(boolean callStackUsed) {
+        this.callStackUsed = callStackUsed;
+    }
+
     public boolean isReference(VariableExprToken variable) {
         if (dynamicLocal) return true;
 
@@ -212,6 +233,10 @@ public class FunctionStmtToken extends StmtToken {
         return variable(variable).isUnstable();
     }
 
+    public Class<?> getUnboxedType(VariableExprToken variable) {
+        return dynamicLocal ? null : variable(variable).getUnboxedType();
+    }
+
     public boolean isVarsExists() {
         return varsExists;
     }
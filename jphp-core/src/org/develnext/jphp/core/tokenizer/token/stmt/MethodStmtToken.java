@@ -31,6 +31,7 @@ public class MethodStmtToken extends FunctionStmtToken {
         setUses(token.uses);
         setDocComment(token.docComment);
         setGenerator(token.isGenerator);
+        setYieldCount(token.yieldCount);
         setId(token.id);
         setTypeInfo(token.getTypeInfo());
         setGeneratorId(token.generatorId);
@@ -16,6 +16,8 @@ import php.runtime.ext.core.classes.WrapSystem;
 import php.runtime.ext.core.classes.lib.FsUtils;
 import php.runtime.ext.core.classes.stream.Stream;
 import php.runtime.ext.support.Extension;
+import php.runtime.loader.dump.PreloadSnapshotDumper;
+import php.runtime.loader.dump.io.DumpException;
 import php.runtime.memory.ArrayMemory;
 import php.runtime.memory.LongMemory;
 import php.runtime.memory.StringMemory;
@@ -155,11 +157,26 @@ public class Launcher {
 
                 isDebug = Startup.isDebug();
 
-                CompileScopeOptions options = new CompileScopeOptions.Builder()
+                CompileScopeOptions.Builder options = new CompileScopeOptions.Builder()
                         .debugMode(isDebug)
                         .langMode(LangMode.valueOf(getConfigValue("env.langMode", LangMode.MODERN.name()).toString().toUpperCase()))
-                        .build();
-                compileScope.setOptions(options);
+                        .invokeDynamic(getConfigValue("env.invokeDynamic", Memory.TRUE).toBoolean())
+                        .lazyFunctions(getConfigValue("env.lazyFunctions", Memory.FALSE).toBoolean())
+                        .elideCallStack(getConfigValue("env.elideCallStack", Memory.FALSE).toBoolean());
+
+                String cacheDir = getConfigValue("env.cacheDir", "").toString();
+
+                if (!cacheDir.isEmpty()) {
+                    options.cacheDir(new File(cacheDir));
+                }
+
+                for (String pass : getConfigValue("env.disabledPasses", "").toString().split(",")) {
+                    if (!pass.trim().isEmpty()) {
+                        options.pass(pass.trim(), false);
+                    }
+                }
+
+                compileScope.setOptions(options.build());
 
             } catch (IOException e) {
                 throw new LaunchException(e.getMessage());
@@ -304,6 +321,15 @@ public class Launcher {
             environment.invokeMethod(loader, "register");
         }
 
+        String preloadDump = System.getProperty("bootstrap.preloadDump", "");
+
+        if (!preloadDump.isEmpty()) {
+            createPreloadSnapshot(preloadDump);
+            return;
+        }
+
+        loadPreloadSnapshot();
+
         if (file != null && !file.isEmpty()) {
             try {
                 ModuleEntity bootstrap = loadFrom(file);
@@ -333,22 +359,29 @@ public class Launcher {
                 environment.getGlobals().put("argv", argv);
                 environment.getGlobals().put("argc", LongMemory.valueOf(argv.size()));
 
-                String[] includes = StringUtils.split(config.getProperty("bootstrap.files", System.getProperty("bootstrap.files", "")),'|');
+                List<String> includes = new ArrayList<>();
 
-                if (includes.length > 0) {
-                    for (String include : includes) {
-                        if (include.trim().isEmpty()) continue;
+                for (String include : StringUtils.split(config.getProperty("bootstrap.files", System.getProperty("bootstrap.files", "")),'|')) {
+                    if (include.trim().isEmpty()) continue;
 
-                        if ("php".equals(FsUtils.ext(include))) {
-                            if (Stream.exists(environment, StringMemory.valueOf(include.substring(0, include.length() - 4) + ".phb")).toBoolean()) {
-                                include = include.substring(0, include.length() - 4) + ".phb";
-                            }
+                    if ("php".equals(FsUtils.ext(include))) {
+                        if (Stream.exists(environment, StringMemory.valueOf(include.substring(0, include.length() - 4) + ".phb")).toBoolean()) {
+                            include = include.substring(0, include.length() - 4) + ".phb";
                         }
+                    }
+
+                    includes.add(include);
+                }
 
-                        ModuleEntity fetchModule = environment.getModuleManager().fetchModule(include);
+                if (!includes.isEmpty()) {
+                    // compile all the files at once, in parallel
+                    List<ModuleEntity> includeModules = environment.getModuleManager().fetchModules(includes);
+
+                    for (int i = 0; i < includes.size(); i++) {
+                        ModuleEntity fetchModule = includeModules.get(i);
 
                         if (fetchModule == null) {
-                            throw new LaunchException("Cannot include file " + include + ", it's not found.");
+                            throw new LaunchException("Cannot include file " + includes.get(i) + ", it's not found.");
                         }
 
                         fetchModule.includeNoThrow(environment);
@@ -383,6 +416,47 @@ public class Launcher {
             throw new LaunchException("Please set value of the `bootstrap.file` option in the launcher.conf file");
     }
 
+    /**
+     * Runs the `bootstrap.preload` script and saves the classes, functions and constants it loaded
+     * into a snapshot file, see {@link PreloadSnapshotDumper}.
+     */
+    public void createPreloadSnapshot(String target) throws Throwable {
+        String preload = config.getProperty("bootstrap.preload", System.getProperty("bootstrap.preload", ""));
+
+        if (preload.isEmpty()) {
+            throw new LaunchException("Please set value of the `bootstrap.preload` option to create a preload snapshot");
+        }
+
+        ModuleEntity module = loadFrom(preload);
+
+        if (module == null) {
+            throw new LaunchException("Cannot find '" + preload + "' resource for `bootstrap.preload` option");
+        }
+
+        module.includeNoThrow(environment);
+
+        try (OutputStream output = new BufferedOutputStream(new FileOutputStream(target))) {
+            new PreloadSnapshotDumper(environment).save(output);
+        }
+    }
+
+    /**
+     * Registers the modules of the `bootstrap.preloadSnapshot` resource (JPHP-INF/preload.snapshot by default),
+     * a snapshot of another core version is ignored.
+     */
+    public void loadPreloadSnapshot() throws Throwable {
+        String snapshot = config.getProperty("bootstrap.preloadSnapshot", System.getProperty("bootstrap.preloadSnapshot", "JPHP-INF/preload.snapshot"));
+        InputStream input = snapshot.isEmpty() ? null : getResource(snapshot);
+
+        if (input != null) {
+            try (InputStream data = new BufferedInputStream(input)) {
+                new PreloadSnapshotDumper(environment).load(data);
+            } catch (DumpException e) {
+                Startup.trace("Preload snapshot '" + snapshot + "' is skipped: " + e.getMessage());
+            }
+        }
+    }
+
     public boolean isDebug() {
         return isDebug;
     }
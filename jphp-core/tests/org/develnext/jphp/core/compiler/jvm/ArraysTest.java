@@ -109,6 +109,21 @@ public class ArraysTest extends JvmCompilerCase {
         check("arrays/array_unpack_invalid3.phpt", true);
     }
 
+    @Test
+    public void testPacked() {
+        check("arrays/packed_arrays.phpt");
+    }
+
+    @Test
+    public void testOrderedMap() {
+        check("arrays/ordered_map.phpt");
+    }
+
+    @Test
+    public void testSharedCopies() {
+        check("arrays/shared_copies.phpt");
+    }
+
     @Test
     public void testBugs() {
         check("arrays/bug148.php");
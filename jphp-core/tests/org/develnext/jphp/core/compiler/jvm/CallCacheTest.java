@@ -0,0 +1,79 @@
+package org.develnext.jphp.core.compiler.jvm;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import php.runtime.env.CompileScope;
+import php.runtime.env.Environment;
+import php.runtime.exceptions.support.ErrorException;
+import php.runtime.invoke.FunctionCallSite;
+import php.runtime.reflection.ModuleEntity;
+
+import java.util.Arrays;
+
+@RunWith(JUnit4.class)
+public class CallCacheTest extends JvmCompilerCase {
+    protected Environment newEnvironment(CompileScope scope) throws Throwable {
+        Environment environment = new Environment(scope);
+        environment.getModuleManager().fetchModules(Arrays.asList(
+                getResourcePath("include/inc.compile_all_i.php"),
+                getResourcePath("include/inc.compile_all_b.php"),
+                getResourcePath("include/inc.compile_all_a.php")
+        ));
+
+        return environment;
+    }
+
+    @Test
+    public void testSharedEnvironments() throws Throwable {
+        CompileScope scope = newScope();
+
+        for (int i = 0; i < 3; i++) {
+            Environment environment = newEnvironment(scope);
+
+            Assert.assertEquals("AB", environment.eval("return compile_all_b()->name();").toString());
+            Assert.assertTrue(environment.isLoadedClass("compilealla"));
+        }
+    }
+
+    @Test
+    public void testFunctionSiteInManyEnvironments() throws Throwable {
+        CompileScope scope = newScope();
+
+        for (int i = 0; i < FunctionCallSite.MAX_RELINKS * 2; i++) {
+            Environment environment = new Environment(scope);
+            environment.getModuleManager().fetchModule(getResourcePath("include/inc.call_site.php"));
+
+            Assert.assertEquals(42, environment.eval("return call_site_caller(21);").toInteger());
+
+            environment.eval("function call_site_declared_" + i + "() { }");
+
+            Assert.assertEquals(2 * i, environment.eval("return call_site_caller(" + i + ");").toInteger());
+        }
+    }
+
+    @Test
+    public void testUndeclaredInEnvironment() throws Throwable {
+        CompileScope scope = newScope();
+
+        Environment first = new Environment(scope);
+        first.getModuleManager().fetchModule(getResourcePath("include/inc.call_cache_a.php"));
+        ModuleEntity module = first.getModuleManager().fetchModule(getResourcePath("include/inc.call_cache_b.php"));
+
+        Assert.assertEquals("ACS", first.eval("return call_cache_name();").toString());
+
+        Environment second = new Environment(scope);
+        second.registerModule(module);
+
+        try {
+            second.eval("return call_cache_name();");
+            Assert.fail("The class is not declared in the environment");
+        } catch (ErrorException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("CallCacheDeclared"));
+        }
+
+        second.getModuleManager().fetchModule(getResourcePath("include/inc.call_cache_a.php"));
+        Assert.assertEquals("ACS", second.eval("return call_cache_name();").toString());
+    }
+}
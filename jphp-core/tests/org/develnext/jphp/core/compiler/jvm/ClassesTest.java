@@ -6,6 +6,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 import org.junit.runners.MethodSorters;
+import php.runtime.env.CompileScope;
 import php.runtime.lang.IObject;
 import php.runtime.memory.ObjectMemory;
 import php.runtime.Memory;
@@ -172,4 +173,35 @@ public class ClassesTest extends JvmCompilerCase {
     public void testBug271() {
         check("classes/bug271.php");
     }
+
+    @Test
+    public void testMethodCallPolymorphic() {
+        check("classes/method_call_polymorphic.phpt");
+    }
+
+    @Test
+    public void testPropertySlots() {
+        check("classes/property_slots.phpt");
+    }
+
+    @Test
+    public void testPropertyCallCache() {
+        check("classes/property_call_cache.phpt");
+    }
+
+    @Test
+    public void testInstanceOfHierarchy() {
+        check("classes/instance_of_hierarchy.phpt");
+    }
+
+    @Test
+    public void testClassIdsOfScope() {
+        CompileScope scope = new CompileScope();
+        int id = scope.getClassNameId("a");
+
+        Assert.assertEquals(id, new CompileScope(scope).getClassNameId("a"));
+        Assert.assertTrue(scope.isSameClassIds(new CompileScope(scope)));
+        Assert.assertEquals(id, new CompileScope().getClassNameId("b"));
+        Assert.assertFalse(scope.isSameClassIds(new CompileScope()));
+    }
 }
@@ -60,6 +60,11 @@ public class ConditionsTest extends JvmCompilerCase {
         check("conditions/switch_bug129.php");
     }
 
+    @Test
+    public void testSwitchDispatch() {
+        check("conditions/switch_dispatch.php");
+    }
+
     @Test
     public void testElvisBugs() {
         check("conditions/elvis_bug106.php");
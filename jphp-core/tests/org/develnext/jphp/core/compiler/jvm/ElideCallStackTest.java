@@ -0,0 +1,35 @@
+package org.develnext.jphp.core.compiler.jvm;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.junit.runners.MethodSorters;
+import php.runtime.env.CompileScope;
+
+@RunWith(JUnit4.class)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ElideCallStackTest extends JvmCompilerCase {
+
+    @Override
+    protected CompileScope newScope() {
+        CompileScope scope = super.newScope();
+        scope.setElideCallStack(true);
+        return scope;
+    }
+
+    @Test
+    public void testElideCallStack() {
+        check("user_function/elide_call_stack.phpt");
+    }
+
+    @Test
+    public void testFixedArityTrace() {
+        check("user_function/fixed_arity_trace.phpt");
+    }
+
+    @Test
+    public void testInline() {
+        check("user_function/inline.phpt");
+    }
+}
@@ -52,4 +52,9 @@ public class ExpressionsTest extends JvmCompilerCase {
     public void testConstantExpressions() {
         check("expressions/constant_expressions.php");
     }
+
+    @Test
+    public void testTypedLocals() {
+        check("expressions/typed_locals.php");
+    }
 }
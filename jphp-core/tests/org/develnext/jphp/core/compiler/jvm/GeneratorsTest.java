@@ -156,6 +156,11 @@ public class GeneratorsTest extends JvmCompilerCase {
         check("generators/xrange.php");
     }
 
+    @Test
+    public void testStateMachine() {
+        check("generators/state_machine.php");
+    }
+
     @Test
     public void testYield() {
         check("generators/yield_array_key.php");
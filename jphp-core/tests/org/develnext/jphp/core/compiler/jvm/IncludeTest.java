@@ -37,6 +37,12 @@ public class IncludeTest extends JvmCompilerCase {
         Assert.assertEquals("success", memory.toString());
     }
 
+    @Test
+    public void testCompileAll(){
+        Memory memory = includeResource("include/compile_all.php");
+        Assert.assertEquals("success", memory.toString());
+    }
+
     @Test(expected = ErrorException.class)
     public void testRequireInvalid(){
         includeResource("include/require_invalid.php");
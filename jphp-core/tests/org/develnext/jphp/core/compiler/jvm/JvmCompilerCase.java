@@ -170,6 +170,10 @@ abstract public class JvmCompilerCase {
         return includeResource(name, null);
     }
 
+    protected String getResourcePath(String name) {
+        return new File(Thread.currentThread().getContextClassLoader().getResource("resources/" + name).getFile()).getPath();
+    }
+
 
     public static String rtrim(String s) {
         int i = s.length() - 1;
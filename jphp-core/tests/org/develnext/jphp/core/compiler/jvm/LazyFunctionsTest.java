@@ -0,0 +1,43 @@
+package org.develnext.jphp.core.compiler.jvm;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.junit.runners.MethodSorters;
+import php.runtime.env.CompileScope;
+
+@RunWith(JUnit4.class)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class LazyFunctionsTest extends JvmCompilerCase {
+    private boolean elideCallStack;
+
+    @Override
+    protected CompileScope newScope() {
+        CompileScope scope = super.newScope();
+        scope.setLazyFunctions(true);
+        scope.setElideCallStack(elideCallStack);
+        return scope;
+    }
+
+    @Test
+    public void testLazy() {
+        check("user_function/lazy.phpt");
+    }
+
+    @Test
+    public void testLazyFixedArity() {
+        check("user_function/fixed_arity.phpt");
+    }
+
+    @Test
+    public void testLazyElideCallStack() {
+        elideCallStack = true;
+
+        try {
+            check("user_function/lazy.phpt");
+        } finally {
+            elideCallStack = false;
+        }
+    }
+}
@@ -40,6 +40,11 @@ public class LoopsTest extends JvmCompilerCase {
         check("loops/foreach_bug124.php");
     }
 
+    @Test
+    public void testForeachIndexed() {
+        check("loops/foreach_indexed.php");
+    }
+
     @Test
     public void testForeachList() {
         check("loops/foreach_list_001.php");
@@ -16,4 +16,9 @@ public class MiscTest extends JvmCompilerCase {
         check("misc/bug134.php");
         check("misc/bug126.php");
     }
+
+    @Test
+    public void testDeadCode() {
+        check("misc/dead_code.php");
+    }
 }
@@ -0,0 +1,124 @@
+package org.develnext.jphp.core.compiler.jvm;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.junit.runners.MethodSorters;
+import php.runtime.Memory;
+import php.runtime.env.CompileScope;
+import php.runtime.env.Environment;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+@RunWith(JUnit4.class)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ModuleCacheTest extends IncludeTest {
+    protected File tempDir;
+
+    protected File getTempDir() {
+        if (tempDir == null) {
+            try {
+                tempDir = Files.createTempDirectory("jphp-cache").toFile();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        return tempDir;
+    }
+
+    protected File getCacheDir() {
+        return new File(getTempDir(), "cache");
+    }
+
+    @After
+    public void deleteTempDir() throws IOException {
+        if (tempDir != null) {
+            try (Stream<java.nio.file.Path> paths = Files.walk(tempDir.toPath())) {
+                paths.sorted(Comparator.reverseOrder()).map(java.nio.file.Path::toFile).forEach(File::delete);
+            }
+
+            tempDir = null;
+        }
+    }
+
+    @Override
+    protected CompileScope newScope() {
+        CompileScope scope = super.newScope();
+        scope.setCacheDir(getCacheDir());
+        return scope;
+    }
+
+    protected File writeFile(String name, String source) throws IOException {
+        File file = new File(getTempDir(), name);
+        Files.write(file.toPath(), source.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /**
+     * @return the result and the internal name of the module in a new scope, the name is kept by the cached dump
+     */
+    protected String[] includeCached(File file, File module) throws Throwable {
+        Environment environment = new Environment(newScope());
+        Memory result = environment.__include(file.getPath());
+
+        return new String[]{
+                result.toString(), environment.getModuleManager().findModule(module.getPath()).getInternalName()
+        };
+    }
+
+    @Test
+    public void testCache() {
+        Memory memory = includeResource("include/simple_include.php");
+        Assert.assertEquals("success", memory.toString());
+
+        File[] files = getCacheDir().listFiles();
+        Assert.assertNotNull(files);
+        Assert.assertTrue(files.length > 0);
+
+        memory = includeResource("include/simple_include.php");
+        Assert.assertEquals("success", memory.toString());
+        Assert.assertEquals(files.length, getCacheDir().listFiles().length);
+    }
+
+    @Test
+    public void testCacheHit() throws Throwable {
+        File file = writeFile("hit.php", "<?php return 'hit';");
+
+        String[] first = includeCached(file, file);
+        String[] second = includeCached(file, file);
+
+        Assert.assertEquals("hit", second[0]);
+        Assert.assertEquals(first[1], second[1]);
+    }
+
+    @Test
+    public void testChangedDependency() throws Throwable {
+        writeFile("parent.php", "<?php class CacheParent { function name() { return 'p1'; } }");
+        File child = writeFile("child.php", "<?php class CacheChild extends CacheParent { }");
+        File main = writeFile("main.php",
+                "<?php include __DIR__ . '/parent.php'; include __DIR__ . '/child.php'; return (new CacheChild)->name();"
+        );
+
+        String[] first = includeCached(main, child);
+        Assert.assertEquals("p1", first[0]);
+
+        String[] cached = includeCached(main, child);
+        Assert.assertEquals("p1", cached[0]);
+        Assert.assertEquals(first[1], cached[1]);
+
+        writeFile("parent.php", "<?php class CacheParent { function name() { return 'p2'; } }");
+
+        String[] changed = includeCached(main, child);
+        Assert.assertEquals("p2", changed[0]);
+        Assert.assertNotEquals(first[1], changed[1]);
+    }
+}
@@ -0,0 +1,38 @@
+package org.develnext.jphp.core.compiler.jvm;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import php.runtime.env.Environment;
+import php.runtime.loader.dump.PreloadSnapshotDumper;
+import php.runtime.reflection.ModuleEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(JUnit4.class)
+public class PreloadSnapshotTest extends JvmCompilerCase {
+    @Test
+    public void testSaveAndLoad() throws Throwable {
+        Environment environment = new Environment(newScope());
+        environment.getModuleManager().fetchModules(Arrays.asList(
+                getResourcePath("include/inc.compile_all_a.php"),
+                getResourcePath("include/inc.compile_all_b.php"),
+                getResourcePath("include/inc.compile_all_i.php")
+        ));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new PreloadSnapshotDumper(environment).save(output);
+
+        Environment preloaded = new Environment(newScope());
+        List<ModuleEntity> modules = new PreloadSnapshotDumper(preloaded)
+                .load(new ByteArrayInputStream(output.toByteArray()));
+
+        Assert.assertEquals(3, modules.size());
+        Assert.assertEquals("compileallb", preloaded.fetchClass("CompileAllA").getParent().getLowerName());
+        Assert.assertEquals("AB", preloaded.eval("return compile_all_b()->name();").toString());
+    }
+}
@@ -82,6 +82,11 @@ public class TypeHintingTest extends JvmCompilerCase {
         check("type_hinting/self.php");
     }
 
+    @Test
+    public void testFastChecks() {
+        check("type_hinting/fast_checks.php");
+    }
+
     /*@Test
     public void testNumber(){
         check("type_hinting/number.php", true);
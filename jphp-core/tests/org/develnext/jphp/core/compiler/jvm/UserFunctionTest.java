@@ -94,4 +94,34 @@ public class UserFunctionTest extends JvmCompilerCase {
         Memory memory = includeResource("user_function/nested.php");
         Assert.assertEquals("success", memory.toString());
     }
+
+    @Test
+    public void testRelinkOnDeclare(){
+        check("user_function/relink_on_declare.phpt");
+    }
+
+    @Test
+    public void testInline(){
+        check("user_function/inline.phpt");
+    }
+
+    @Test
+    public void testInlinePropertyMagic(){
+        check("user_function/inline_property_magic.phpt");
+    }
+
+    @Test
+    public void testFixedArity(){
+        check("user_function/fixed_arity.phpt");
+    }
+
+    @Test
+    public void testFixedArityTypeError(){
+        check("user_function/fixed_arity_type_error.phpt");
+    }
+
+    @Test
+    public void testFixedArityTrace(){
+        check("user_function/fixed_arity_trace.phpt");
+    }
 }
@@ -7,6 +7,7 @@ import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 import org.junit.runners.MethodSorters;
 import php.runtime.Memory;
+import php.runtime.env.CompileScope;
 
 @RunWith(JUnit4.class)
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
@@ -36,6 +37,20 @@ public class VariablesTest extends JvmCompilerCase {
         Assert.assertEquals("success", memory.toString());
     }
 
+    @Test
+    public void testStaticSlots(){
+        check("variables/static_slots.phpt");
+    }
+
+    @Test
+    public void testStaticSlotsOfScope(){
+        CompileScope scope = new CompileScope();
+        int slot = scope.getStaticSlot("a");
+
+        Assert.assertEquals(slot, new CompileScope(scope).getStaticSlot("a"));
+        Assert.assertEquals(slot, new CompileScope().getStaticSlot("b"));
+    }
+
     @Test
     public void testVarVar(){
         Memory memory = includeResource("variables/var_var.php");
@@ -7,6 +7,7 @@ import org.junit.runners.JUnit4;
 import org.junit.runners.MethodSorters;
 import php.runtime.Memory;
 import php.runtime.memory.support.MemoryUtils;
+import php.runtime.memory.support.SharedChunks;
 
 import java.util.Set;
 
@@ -207,4 +208,27 @@ public class ArrayMemoryTest {
         assertEquals(1L, setArr[1]);
         assertEquals("3", setArr[2].toString());
     }
+
+    @Test
+    public void testByScalarAt() {
+        ArrayMemory arr = new ArrayMemory();
+        arr.put("a", MemoryUtils.valueOf("x"));
+        arr.put("b", MemoryUtils.valueOf("y"));
+
+        for (int i = arr.size(); i < SharedChunks.MIN_SHARED_SIZE; i++) {
+            arr.put("k" + i, MemoryUtils.valueOf(i));
+        }
+
+        assertNull(arr.peekByScalarAt(0, "b"));
+        assertNull(arr.getByScalarAt(5, "b"));
+
+        ArrayMemory copy = arr.duplicate();
+
+        assertSame(arr.peekByScalarAt(1, "b"), copy.peekByScalarAt(1, "b"));
+
+        copy.getByScalarAt(1, "b").assign("z");
+
+        assertEquals("y", arr.valueOfIndex("b").toString());
+        assertEquals("z", copy.valueOfIndex("b").toString());
+    }
 }
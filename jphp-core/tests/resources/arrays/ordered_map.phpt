@@ -0,0 +1,68 @@
+--TEST--
+Order of hashed arrays after removing and adding keys
+--FILE--
+<?php
+function show($a) {
+    $s = '';
+    foreach ($a as $k => $v) {
+        $s .= ($s === '' ? '' : ', ') . $k . '=' . $v;
+    }
+    echo '[', $s, "]\n";
+}
+
+$a = ['x' => 1, 5 => 'a', '7' => 'b', -3 => 'c', 'y' => 2];
+var_dump(isset($a[7]), isset($a['5']), $a[-3], isset($a['z']));
+unset($a['x'], $a[7]);
+$a['x'] = 3;
+$a[] = 'd';
+show($a);
+
+$b = $a;
+unset($b[5]);
+$b['z'] = 4;
+show($a);
+show($b);
+
+$c = [];
+for ($i = 0; $i < 1000; $i++) $c["k$i"] = $i;
+for ($i = 0; $i < 1000; $i++) if ($i % 3) unset($c["k$i"]);
+for ($i = 0; $i < 1000; $i += 500) $c["k$i"] = -$i;
+$s = 0;
+foreach ($c as $k => $v) $s += $v;
+var_dump(count($c), $s, $c['k999'], isset($c['k998']));
+
+$d = [];
+for ($i = 0; $i < 100; $i++) {
+    $d["k$i"] = $i;
+    unset($d['k' . ($i - 1)]);
+}
+show($d);
+
+$e = ['a' => 1, 'b' => 2, 'c' => 3];
+foreach ($e as $k => &$v) {
+    if ($k === 'a') unset($e['b']);
+    $v *= 10;
+}
+unset($v);
+show($e);
+
+$r = &$e['c'];
+$r = 5;
+$e['d'] = 6;
+show($e);
+?>
+--EXPECT--
+bool(true)
+bool(true)
+string(1) "c"
+bool(false)
+[5=a, -3=c, y=2, x=3, 8=d]
+[5=a, -3=c, y=2, x=3, 8=d]
+[-3=c, y=2, x=3, 8=d, z=4]
+int(335)
+int(166333)
+int(999)
+bool(false)
+[k99=99]
+[a=10, c=30]
+[a=10, c=5, d=6]
@@ -0,0 +1,93 @@
+--TEST--
+Lists of integers and floats
+--FILE--
+<?php
+function show($a) {
+    $s = '';
+    foreach ($a as $k => $v) {
+        $s .= ($s === '' ? '' : ', ') . $k . '=' . gettype($v) . '(' . $v . ')';
+    }
+    echo '[', $s, "]\n";
+}
+
+function inc(&$x) { $x++; }
+function &first(array &$a) { return $a[0]; }
+
+$a = [];
+for ($i = 0; $i < 4; $i++) $a[] = $i * 2;
+show($a);
+var_dump($a[3], isset($a[3]), isset($a[4]), $a['1'], $a[9] ?? 'none');
+
+$b = $a;
+$b[] = 1.5;
+$b[0] = 'x';
+show($a);
+show($b);
+
+$f = [1.5, 2.5];
+$f[] = 3.25;
+$f[] = 4;
+show($f);
+
+$c = [1, 2, 3];
+$r = &$c[1];
+$r = 20;
+show($c);
+
+$d = [1, 2, 3];
+foreach ($d as &$v) $v *= 10;
+unset($v);
+show($d);
+
+$e = [5, 6, 7];
+inc($e[0]);
+$x = &first($e);
+$x = 100;
+show($e);
+
+$h = [1, 2, 3];
+$copy = $h;
+$h[] = 4;
+$copy[] = 4.5;
+show($h);
+show($copy);
+var_dump($h == [1.0, 2.0, 3.0, 4.0], $h === [1, 2, 3, 4], count($copy));
+
+$k = [];
+$k[] = count($k);
+$k[] = count($k);
+show($k);
+
+$n = [];
+$n[][] = 1;
+$n[] = 2;
+var_dump($n[0][0], $n[1], $y = ($n[] = 3), count($n));
+
+$m = [1, 2];
+$m['k'] = 3;
+$m[] = 4;
+show($m);
+--EXPECT--
+[0=integer(0), 1=integer(2), 2=integer(4), 3=integer(6)]
+int(6)
+bool(true)
+bool(false)
+int(2)
+string(4) "none"
+[0=integer(0), 1=integer(2), 2=integer(4), 3=integer(6)]
+[0=string(x), 1=integer(2), 2=integer(4), 3=integer(6), 4=double(1.5)]
+[0=double(1.5), 1=double(2.5), 2=double(3.25), 3=integer(4)]
+[0=integer(1), 1=integer(20), 2=integer(3)]
+[0=integer(10), 1=integer(20), 2=integer(30)]
+[0=integer(100), 1=integer(6), 2=integer(7)]
+[0=integer(1), 1=integer(2), 2=integer(3), 3=integer(4)]
+[0=integer(1), 1=integer(2), 2=integer(3), 3=double(4.5)]
+bool(true)
+bool(true)
+int(4)
+[0=integer(0), 1=integer(1)]
+int(1)
+int(2)
+int(3)
+int(3)
+[0=integer(1), 1=integer(2), k=integer(3), 2=integer(4)]
@@ -0,0 +1,102 @@
+--TEST--
+Copies of large arrays
+--FILE--
+<?php
+function fill($n, $hashed) {
+    $a = [];
+    for ($i = 0; $i < $n; $i++) {
+        if ($hashed) $a["k$i"] = $i; else $a[] = $i;
+    }
+    return $a;
+}
+
+function show($a, $step = 25) {
+    $s = count($a) . ':';
+    $i = 0;
+    foreach ($a as $k => $v) {
+        if ($i++ % $step == 0 || $i > count($a) - 2) {
+            $s .= ' ' . $k . '=' . (is_array($v) ? 'array(' . count($v) . ')' : $v);
+        }
+    }
+    echo $s, "\n";
+}
+
+function change($a, $key) {
+    $a[$key] = 'changed';
+    $a[] = 'added';
+    return $a;
+}
+
+foreach ([false, true] as $hashed) {
+    $a = fill(100, $hashed);
+    $key = $hashed ? 'k50' : 50;
+
+    $b = change($a, $key);
+    show($a);
+    show($b);
+
+    $c = $a;
+    $d = $a;
+    $c[$hashed ? 'k0' : 0] = 'c';
+    $d[$hashed ? 'k99' : 99] = 'd';
+    unset($c[$key]);
+    $a[$key] = 'a';
+    show($a);
+    show($c);
+    show($d);
+
+    $e = $a;
+    foreach ($e as $k => &$v) {
+        $v = "[$v]";
+    }
+    unset($v);
+    show($a);
+    show($e);
+
+    $n = [];
+    for ($i = 0; $i < 70; $i++) $n[] = [$i, [$i]];
+    $m = $n;
+    $m[1][1][] = 'deep';
+    $n[69][0] = 'top';
+    var_dump(count($n[1][1]), count($m[1][1]), $n[69][0], $m[69][0]);
+
+    // the reference and the change are in different chunks
+    $r = &$a[$key];
+    $f = $a;
+    $f[$hashed ? 'k1' : 1] = 'f';
+    $g = $a;
+    $a[$hashed ? 'k99' : 99] = 'a';
+    $r = 'r';
+    var_dump($a[$key], $f[$key], $g[$key]);
+    unset($r);
+}
+?>
+--EXPECT--
+100: 0=0 25=25 50=50 75=75 98=98 99=99
+101: 0=0 25=25 50=changed 75=75 99=99 100=added
+100: 0=0 25=25 50=a 75=75 98=98 99=99
+99: 0=c 25=25 51=51 76=76 98=98 99=99
+100: 0=0 25=25 50=50 75=75 98=98 99=d
+100: 0=0 25=25 50=a 75=75 98=98 99=99
+100: 0=[0] 25=[25] 50=[a] 75=[75] 98=[98] 99=[99]
+int(1)
+int(2)
+string(3) "top"
+int(69)
+string(1) "a"
+string(1) "a"
+string(1) "r"
+100: k0=0 k25=25 k50=50 k75=75 k98=98 k99=99
+101: k0=0 k25=25 k50=changed k75=75 k99=99 0=added
+100: k0=0 k25=25 k50=a k75=75 k98=98 k99=99
+99: k0=c k25=25 k51=51 k76=76 k98=98 k99=99
+100: k0=0 k25=25 k50=50 k75=75 k98=98 k99=d
+100: k0=0 k25=25 k50=a k75=75 k98=98 k99=99
+100: k0=[0] k25=[25] k50=[a] k75=[75] k98=[98] k99=[99]
+int(1)
+int(2)
+string(3) "top"
+int(69)
+string(1) "a"
+string(1) "a"
+string(1) "r"
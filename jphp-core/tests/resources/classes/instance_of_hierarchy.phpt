@@ -0,0 +1,56 @@
+--TEST--
+Test subclass checks by parent chains and interfaces
+--FILE--
+<?php
+interface Shape { }
+interface Polygon extends Shape { }
+interface Named { }
+
+class Base implements Named { }
+class Rect extends Base implements Polygon { }
+class Square extends Rect { }
+class Circle implements Shape { }
+
+class AppException extends Exception implements Named { }
+class NotFound extends AppException { }
+
+$checks = [
+    ['Square', 'Rect'], ['Square', 'Base'], ['Square', 'Polygon'], ['Square', 'Shape'], ['Square', 'Named'],
+    ['Square', 'Square'], ['Rect', 'Square'], ['Circle', 'Polygon'], ['Circle', 'Shape'], ['Base', 'Shape'],
+    ['Polygon', 'Shape'], ['Shape', 'Polygon'], ['NotFound', 'Exception'], ['NotFound', 'Throwable'],
+];
+
+foreach ($checks as $check) {
+    echo $check[0], ' ', $check[1], ' ', is_subclass_of($check[0], $check[1]) ? 'yes' : 'no', "\n";
+}
+
+foreach ([new NotFound('a'), new AppException('b'), new Exception('c')] as $e) {
+    try {
+        throw $e;
+    } catch (NotFound $e) {
+        echo "NotFound ", $e->getMessage(), "\n";
+    } catch (Named $e) {
+        echo "Named ", $e->getMessage(), "\n";
+    } catch (Exception $e) {
+        echo "Exception ", $e->getMessage(), "\n";
+    }
+}
+?>
+--EXPECT--
+Square Rect yes
+Square Base yes
+Square Polygon yes
+Square Shape yes
+Square Named yes
+Square Square no
+Rect Square no
+Circle Polygon no
+Circle Shape yes
+Base Shape no
+Polygon Shape yes
+Shape Polygon no
+NotFound Exception yes
+NotFound Throwable yes
+NotFound a
+Named b
+Exception c
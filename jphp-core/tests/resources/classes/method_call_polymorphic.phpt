@@ -0,0 +1,49 @@
+--TEST--
+Test method call site with many receiver classes and context dependent methods
+--FILE--
+<?php
+class A {
+    public function name() { return 'A'; }
+    private function secret() { return 'A::secret'; }
+    public function callSecret($obj) { return $obj->secret(); }
+}
+
+class B extends A { public function name() { return 'B'; } }
+class C extends A { public function name() { return 'C'; } }
+class D extends A { public function name() { return 'D'; } }
+class E extends A { public function name() { return 'E'; } }
+class F extends A { public function name() { return 'F'; } }
+
+class G extends A {
+    private function secret() { return 'G::secret'; }
+}
+
+$objects = [new A, new B, new C, new D, new E, new F, new A, new F];
+
+foreach ($objects as $obj) {
+    echo $obj->name();
+}
+echo "\n";
+
+$a = new A;
+$g = new G;
+
+for ($i = 0; $i < 2; $i++) {
+    echo $a->callSecret($a), "\n";
+    echo $a->callSecret($g), "\n";
+}
+
+$fn = function ($obj) { return $obj->secret(); };
+
+echo Closure::bind($fn, $g, G::class)($g), "\n";
+echo Closure::bind($fn, $a, A::class)($g), "\n";
+
+?>
+--EXPECT--
+ABCDEFAF
+A::secret
+A::secret
+A::secret
+A::secret
+G::secret
+A::secret
@@ -0,0 +1,46 @@
+--TEST--
+Test property access site with different receiver classes and calling contexts
+--FILE--
+<?php
+class A {
+    private $p = 'A';
+    public $q = 'qA';
+
+    public function get($obj) { return $obj->p; }
+}
+
+class B extends A {
+    private $p = 'B';
+    public $q = 'qB';
+}
+
+class C {
+    public $p = 'C';
+    public $q = 'qC';
+}
+
+$fn = function ($obj) { return $obj->p . ':' . $obj->q; };
+
+foreach ([new A, new B, new C, new B] as $obj) {
+    echo $obj->q, ' ';
+}
+echo "\n";
+
+$a = new A;
+for ($i = 0; $i < 2; $i++) {
+    echo $a->get(new A), $a->get(new B), "\n";
+}
+
+echo Closure::bind($fn, null, A::class)(new B), "\n";
+echo Closure::bind($fn, null, B::class)(new B), "\n";
+echo Closure::bind($fn, null, A::class)(new B), "\n";
+echo Closure::bind($fn, null, C::class)(new C), "\n";
+?>
+--EXPECT--
+qA qB qC qB 
+AA
+AA
+A:qB
+B:qB
+A:qB
+C:qC
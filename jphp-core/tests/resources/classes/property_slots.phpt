@@ -0,0 +1,57 @@
+--TEST--
+Test declared properties with slots after unset, clone, array cast and dynamic properties
+--FILE--
+<?php
+class A {
+    public $x = 1;
+    protected $y = 2;
+    private $z = 3;
+
+    public function getA() { return $this->x . $this->y . $this->z; }
+    public function setA($v) { $this->x = $v; $this->y = $v; $this->z = $v; }
+}
+
+class B extends A {
+    protected $y = 20;
+    private $z = 30;
+
+    public function getB() { return $this->x . $this->y . $this->z; }
+    public function setB($v) { $this->z = $v; }
+}
+
+$b = new B;
+echo $b->getA(), ' ', $b->getB(), "\n";
+
+$b->setA(5);
+$b->setB(7);
+echo $b->getA(), ' ', $b->getB(), "\n";
+
+$arr = (array) $b;
+$b->x = 9;
+echo $arr['x'], ' ', $b->x, "\n";
+
+$c = clone $b;
+$c->x = 10;
+echo $b->x, ' ', $c->x, "\n";
+
+$b->dyn = 'dyn';
+echo $b->dyn, ' ', $b->x, "\n";
+
+unset($b->x);
+var_dump(isset($b->x));
+$b->x = 11;
+echo $b->x, ' ', $b->getA(), "\n";
+
+$ref =& $b->x;
+$ref = 12;
+echo $b->x, "\n";
+?>
+--EXPECT--
+1203 12030
+555 557
+5 9
+9 10
+dyn 9
+bool(false)
+11 1155
+12
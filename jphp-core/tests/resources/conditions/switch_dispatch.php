@@ -0,0 +1,67 @@
+--TEST--
+Switch with integer and string literal cases
+--FILE--
+<?php
+function kind($v) {
+    switch ($v) {
+        case 1: return 'one';
+        case 2: return 'two';
+        case 3: case 4: return 'three-four';
+        case 100: return 'hundred';
+        case 2: return 'dup';
+        default: return 'other';
+        case 5: return 'after-default';
+    }
+}
+
+function sparse($v) {
+    switch ($v) {
+        case 10: $r = 'a'; break;
+        case 1000: $r = 'b'; break;
+        case -5: $r = 'c'; break;
+        case 70000: $r = 'd'; break;
+        default: $r = 'x';
+    }
+    return $r;
+}
+
+function cmd($s) {
+    $r = '';
+    switch ($s) {
+        case 'get': $r .= 'G';
+        case 'put': $r .= 'P'; break;
+        case 'Aa': $r .= 'Aa'; break;
+        case 'BB': $r .= 'BB'; break;
+        case 'delete': $r .= 'D'; break;
+    }
+    return $r;
+}
+
+foreach ([1, 2, 3, 4, 5, 100, 7, '1', 1.0, true, null, '2abc', 3000000000] as $v) echo var_export($v, true), '=', kind($v), ';';
+echo "\n";
+
+foreach ([10, 1000, -5, 70000, 11, '10'] as $v) echo sparse($v), ';';
+echo "\n";
+
+foreach (['get', 'put', 'Aa', 'BB', 'delete', 'x', 0, null, true] as $v) echo var_export($v, true), '=', cmd($v), ';';
+echo "\n";
+
+function gen() {
+    foreach (['put', 'x', 'Aa'] as $s) {
+        switch ($s) {
+            case 'get':
+            case 'put': yield 1;
+            case 'Aa':
+            case 'BB': yield 2; break;
+            case 'delete': yield 3;
+        }
+    }
+}
+
+foreach (gen() as $v) echo $v;
+?>
+--EXPECT--
+1=one;2=two;3=three-four;4=three-four;5=other;100=hundred;7=other;'1'=one;1.0=one;true=one;NULL=other;'2abc'=two;3000000000=other;
+a;b;c;d;x;a;
+'get'=GP;'put'=P;'Aa'=Aa;'BB'=BB;'delete'=D;'x'=;0=GP;NULL=;true=GP;
+122
\ No newline at end of file
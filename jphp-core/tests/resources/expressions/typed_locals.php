@@ -0,0 +1,101 @@
+--TEST--
+Test int and float locals of functions
+--FILE--
+<?php
+function sum($n) {
+    $sum = 0;
+    for ($i = 0; $i < $n; $i++) {
+        $sum += $i * 2;
+    }
+    return $sum;
+}
+
+function avg($n) {
+    $d = 0.0;
+    $k = 1;
+    while ($k <= $n) {
+        $d = $d + $k * 1.5;
+        $k++;
+    }
+
+    echo "d=$d k=$k\n";
+    echo $d . ' ' . $k . "\n";
+    echo $d, " ", -$k, " ", $k - 1, " ", $d / 2, "\n";
+
+    return [$d, $k, $d > 10, $k == 11, $d < $k, $k % 3, $k << 2, $k <=> 3];
+}
+
+function mix($arr) {
+    $a = 1; $b = 2.5; $c = $a + $b; $e = $a * 3;
+    $x = $b * ($a + 1);
+    $y = ($a + 1) * $b;
+    $z = ($a + 1) < ($e * 2);
+    $w = ($e * 2) . ($a - 1);
+    $pre = ++$a; $post = $a--;
+    $f = $e; $f -= 10; $f *= -3;
+
+    $s = 0.0;
+    for ($i = 0; $i < count($arr); $i++) {
+        $s += $arr[$i] * 0.5;
+    }
+
+    do { $s -= 1; } while (--$e > 0);
+
+    return [$a, $b, $c, $x, $y, $z, $w, $pre, $post, $f, $i, $s, $e];
+}
+
+var_dump(sum(10));
+var_dump(avg(10));
+var_dump(mix([1, 2, 3, 4]));
+?>
+--EXPECT--
+int(90)
+d=82.5 k=11
+82.5 11
+82.5 -11 10 41.25
+array(8) {
+  [0]=>
+  float(82.5)
+  [1]=>
+  int(11)
+  [2]=>
+  bool(true)
+  [3]=>
+  bool(true)
+  [4]=>
+  bool(false)
+  [5]=>
+  int(2)
+  [6]=>
+  int(44)
+  [7]=>
+  int(1)
+}
+array(13) {
+  [0]=>
+  int(1)
+  [1]=>
+  float(2.5)
+  [2]=>
+  float(3.5)
+  [3]=>
+  float(5)
+  [4]=>
+  float(5)
+  [5]=>
+  bool(true)
+  [6]=>
+  string(2) "60"
+  [7]=>
+  int(2)
+  [8]=>
+  int(2)
+  [9]=>
+  int(21)
+  [10]=>
+  int(4)
+  [11]=>
+  float(2)
+  [12]=>
+  int(0)
+}
@@ -0,0 +1,92 @@
+--TEST--
+Generator state is kept between yields without a thread per generator
+--FILE--
+<?php
+function gen($n) {
+    $total = 0;
+    $avg = 0.5;
+    for ($i = 0; $i < $n; $i++) {
+        $x = yield $i => $i * 2;
+        $total += $i;
+        $avg = $avg * 2;
+        if (is_string($x)) echo "sent $x\n";
+    }
+    foreach (['a' => 10, 'b' => 20] as $k => $v) {
+        try {
+            yield $k => $v;
+        } finally {
+            echo "finally $v\n";
+        }
+    }
+    $r = yield from sub();
+    echo "sub returned $r, avg $avg\n";
+    return $total;
+}
+
+function sub() {
+    yield 100;
+    yield 200;
+    return 'R';
+}
+
+$g = gen(3);
+foreach ($g as $v) {
+    echo $v, "\n";
+}
+var_dump($g->getReturn());
+
+$g = gen(2);
+var_dump($g->current());
+var_dump($g->send('foo'));
+
+function catcher() {
+    try {
+        yield 1;
+        yield 2;
+    } catch (Exception $e) {
+        echo "caught ", $e->getMessage(), "\n";
+        yield 3;
+    }
+}
+$g = catcher();
+var_dump($g->current());
+var_dump($g->throw(new Exception("err")));
+
+function counter() {
+    $i = 0;
+    while (true) {
+        yield $i++;
+    }
+}
+
+$gens = [];
+for ($i = 0; $i < 5000; $i++) {
+    $gens[] = $g = counter();
+    $g->current();
+}
+$sum = 0;
+foreach ($gens as $g) {
+    $g->next();
+    $sum += $g->current();
+}
+var_dump($sum);
+?>
+--EXPECT--
+0
+2
+4
+10
+finally 10
+20
+finally 20
+100
+200
+sub returned R, avg 4
+int(3)
+int(0)
+sent foo
+int(2)
+int(1)
+caught err
+int(3)
+int(5000)
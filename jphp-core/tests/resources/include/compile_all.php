@@ -0,0 +1,34 @@
+<?php
+
+use php\lang\Module;
+
+$modules = Module::compileAll([
+    __DIR__ . '/inc.compile_all_a.php',
+    __DIR__ . '/inc.compile_all_b.php',
+    __DIR__ . '/inc.compile_all_i.php',
+]);
+
+if (count($modules) !== 3)
+    return 'fail_1';
+
+$result = '';
+foreach ($modules as $module) {
+    $result .= $module->call();
+}
+
+if ($result !== 'abi')
+    return 'fail_2';
+
+if (compile_all_b()->name() !== 'AB' || !(compile_all_b() instanceof CompileAllI))
+    return 'fail_3';
+
+$declared = [];
+foreach (get_declared_classes() as $name) {
+    if ($name === 'CompileAllA' || $name === 'CompileAllB')
+        $declared[] = $name;
+}
+
+if ($declared !== ['CompileAllA', 'CompileAllB'])
+    return 'fail_4';
+
+return 'success';
@@ -0,0 +1,13 @@
+<?php
+
+class CallCacheDeclared {
+    const NAME = 'C';
+
+    function name() {
+        return 'A';
+    }
+
+    static function staticName() {
+        return 'S';
+    }
+}
@@ -0,0 +1,5 @@
+<?php
+
+function call_cache_name() {
+    return (new CallCacheDeclared())->name() . CallCacheDeclared::NAME . CallCacheDeclared::staticName();
+}
@@ -0,0 +1,10 @@
+<?php
+
+function call_site_target($x) {
+    $result = $x * 2;
+    return $result;
+}
+
+function call_site_caller($x) {
+    return call_site_target($x);
+}
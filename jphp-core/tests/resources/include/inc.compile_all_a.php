@@ -0,0 +1,9 @@
+<?php
+
+class CompileAllA extends CompileAllB implements CompileAllI {
+    function name() {
+        return 'A' . parent::name();
+    }
+}
+
+return 'a';
@@ -0,0 +1,13 @@
+<?php
+
+class CompileAllB {
+    function name() {
+        return 'B';
+    }
+}
+
+function compile_all_b() {
+    return new CompileAllA();
+}
+
+return 'b';
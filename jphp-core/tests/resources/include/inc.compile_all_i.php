@@ -0,0 +1,7 @@
+<?php
+
+interface CompileAllI {
+    function name();
+}
+
+return 'i';
@@ -0,0 +1,60 @@
+--TEST--
+foreach by value over a list which is modified in the loop
+--FILE--
+<?php
+
+$a = [1, 2, 3];
+foreach ($a as $k => $v) {
+    $a[] = $v * 10;
+    echo "$k=$v ";
+}
+echo count($a), "\n";
+
+$a = [1, 2, 3, 4];
+foreach ($a as $k => $v) {
+    if ($k == 1) {
+        $a['x'] = 'X';
+    }
+    echo "$k=$v ";
+}
+echo count($a), "\n";
+
+$a = [1, 2, 3];
+foreach ($a as $k => $v) {
+    unset($a[2]);
+    echo "$k=$v ";
+}
+echo count($a), "\n";
+
+$a = [1, 2, 3];
+foreach ($a as $i => $v) {
+    unset($a[$i]);
+}
+echo count($a), "\n";
+
+$a = [[1, 2], [3, 4]];
+foreach ($a as $v) {
+    $v[] = 5;
+}
+echo count($a[0]), "\n";
+
+function gen($list) {
+    foreach ($list as $k => $v) {
+        foreach ($list as $w) {
+            if ($w > $v) continue 2;
+            yield "$k:$v:$w";
+        }
+    }
+}
+
+foreach (gen([1, 2, 3]) as $v) {
+    echo $v, " ";
+}
+?>
+--EXPECT--
+0=1 1=2 2=3 6
+0=1 1=2 2=3 3=4 x=X 5
+0=1 2
+0
+2
+0:1:1 1:2:1 1:2:2 2:3:1 2:3:2 2:3:3
@@ -0,0 +1,27 @@
+--TEST--
+Test unreachable code after return, break, continue and goto
+--FILE--
+<?php
+function a($x) {
+    if ($x) {
+        return 'yes';
+        echo 'never';
+    }
+    for ($i = 0; $i < 3; $i++) {
+        if ($i == 1) { continue; echo 'no'; }
+        echo $i;
+        break;
+        echo 'dead';
+    }
+    goto end;
+    echo 'skipped';
+    end:
+    echo ' end';
+    return 'no';
+    $x++;
+}
+echo a(true), "\n", a(false), "\n";
+?>
+--EXPECT--
+yes
+0 endno
@@ -0,0 +1,49 @@
+--TEST--
+Test type hints of values of the same and of other types in a row
+--FILE--
+<?php
+
+class A { }
+class B extends A { }
+class C { }
+
+function obj(A $x): A {
+    return $x;
+}
+
+function num(int $x): float {
+    return $x;
+}
+
+function str(string $x): int {
+    return $x;
+}
+
+foreach ([new A, new B, new B, new C, new A] as $value) {
+    try {
+        echo get_class(obj($value)), "\n";
+    } catch (TypeError $e) {
+        echo "TypeError ", get_class($value), "\n";
+    }
+}
+
+var_dump(num(1), num(2), num('3'), str('4'), str(5));
+
+try {
+    str('abc');
+} catch (TypeError $e) {
+    echo "TypeError str\n";
+}
+?>
+--EXPECT--
+A
+B
+B
+TypeError C
+A
+float(1)
+float(2)
+float(3)
+int(4)
+int(5)
+TypeError str
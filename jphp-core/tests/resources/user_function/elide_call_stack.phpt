@@ -0,0 +1,69 @@
+--TEST--
+Frames of leaf functions without the call stack
+--FILE--
+<?php
+function leaf($a) {
+    return $a + 1;
+}
+
+function thrower($x) {
+    throw new Exception("boom");
+}
+
+function middle($x) {
+    return thrower($x);
+}
+
+function backtrace() {
+    return debug_backtrace();
+}
+
+function outer() {
+    return backtrace();
+}
+
+function shift($x, $y) {
+    return $x >> $y;
+}
+
+function args() {
+    return func_get_args();
+}
+
+var_dump(leaf(1));
+
+try {
+    middle(5);
+} catch (Exception $e) {
+    foreach ($e->getTrace() as $frame) {
+        echo $frame['function'], ':', $frame['line'], "\n";
+    }
+}
+
+foreach (outer() as $frame) {
+    echo $frame['function'], ':', $frame['line'], "\n";
+}
+
+try {
+    shift(1, -1);
+} catch (ArithmeticError $e) {
+    foreach ($e->getTrace() as $frame) {
+        echo $frame['function'], ':', $frame['line'], "\n";
+    }
+}
+
+var_dump(args(1, 2));
+?>
+--EXPECT--
+int(2)
+middle:33
+thrower:11
+backtrace:19
+outer:40
+shift:45
+array(2) {
+  [0]=>
+  int(1)
+  [1]=>
+  int(2)
+}
@@ -0,0 +1,62 @@
+--TEST--
+Test calls of functions with a fixed count of arguments
+--FILE--
+<?php
+function one($a) { return $a * 2; }
+function two($a, $b = 10) { return $a + $b; }
+function three($a, &$b, $c) { $b = $a . $c; return $b; }
+function four(int $a, $b, array $c, $d = null) { return (count($c) + $a) . ':' . $b . ':' . ($d === null ? 'null' : $d); }
+function thrower($a) { throw new Exception("boom $a"); }
+function args($a, $b) { return func_get_args(); }
+function typed(int $x): string { return $x; }
+
+echo one(21), "\n";
+echo two(1), ' ', two(1, 2), "\n";
+
+$r = null;
+echo three('a', $r, 'c'), ' ', $r, "\n";
+
+$list = [1, 2];
+echo four('5', 'x', $list), ' ', count($list), "\n";
+echo four(1, 2, [3], 4), "\n";
+
+try {
+    thrower(7);
+} catch (Exception $e) {
+    echo $e->getMessage(), ' ', $e->getLine(), ' ', count($e->getTrace()), "\n";
+}
+
+var_dump(args(1, 'x'));
+var_dump(typed('42'));
+
+try {
+    four('abc', 1, []);
+} catch (TypeError $e) {
+    echo get_class($e), "\n";
+}
+
+$params = [3, 4];
+echo two(...$params), "\n";
+
+for ($i = 0, $s = 0; $i < 100; $i++) {
+    $s = two($s, $i);
+}
+echo $s, "\n";
+?>
+--EXPECT--
+42
+11 3
+ac ac
+7:x:null 2
+2:2:4
+boom 7 6 1
+array(2) {
+  [0]=>
+  int(1)
+  [1]=>
+  string(1) "x"
+}
+string(2) "42"
+TypeError
+7
+4950
@@ -0,0 +1,20 @@
+--TEST--
+Test arguments of traces of fixed-arity calls
+--FILE--
+<?php
+function fail($a, $b) { throw new Exception(func_num_args()); }
+
+try { fail('first', 1); } catch (Exception $first) { }
+try { fail('second', 2); } catch (Exception $e) { }
+
+echo $first->getMessage(), "\n";
+var_dump($first->getTrace()[0]['args']);
+?>
+--EXPECT--
+2
+array(2) {
+  [0]=>
+  string(5) "first"
+  [1]=>
+  int(1)
+}
@@ -0,0 +1,18 @@
+--TEST--
+Test type errors of fixed-arity calls repeated from one call site
+--FILE--
+<?php
+function t3(int $a, $b, $c) { return $a; }
+
+for ($i = 0; $i < 3; $i++) {
+    try {
+        t3('x', 1, 2);
+    } catch (TypeError $e) {
+        echo $e->getMessage(), "\n";
+    }
+}
+?>
+--EXPECTF--
+Argument 1 passed to t3() must be of the type int, string given, called in %s on line 6, position %d and defined
+Argument 1 passed to t3() must be of the type int, string given, called in %s on line 6, position %d and defined
+Argument 1 passed to t3() must be of the type int, string given, called in %s on line 6, position %d and defined
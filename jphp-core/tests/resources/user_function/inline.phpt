@@ -0,0 +1,40 @@
+--TEST--
+Test inlined calls of small functions and methods
+--FILE--
+<?php
+namespace app;
+
+function add($a, $b) { return $a + $b; }
+function neg($a) { return -$a; }
+
+class A {
+    private $name = 'x';
+    protected $count = 0;
+
+    private function getName() { return $this->name; }
+    private function setName($v) { $this->name = $v; }
+    final public function getCount() { return $this->count; }
+    final public function inc($d) { return $this->count + $d; }
+    public function pub() { return $this->name; }
+
+    function test($x) {
+        $this->setName($x . '!');
+        $this->count = add($this->getCount(), 2);
+        echo $this->getName(), ' ', $this->inc(3), ' ', add($x, 1), ' ', neg(add(1, 2)), ' ', $this->pub(), "\n";
+        return $this->getCount() === 2;
+    }
+}
+
+class B extends A {
+    private function getName() { return 'B'; }
+    public function pub() { return 'pubB'; }
+}
+
+var_dump((new A)->test(5));
+var_dump((new B)->test(7));
+?>
+--EXPECT--
+5! 5 6 -3 5!
+bool(true)
+7! 5 8 -3 pubB
+bool(true)
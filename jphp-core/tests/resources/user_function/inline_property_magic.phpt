@@ -0,0 +1,56 @@
+--TEST--
+Test methods reading properties of a class with __get in a parent or a child are not inlined
+--FILE--
+<?php
+class P {
+    function __get($name) { throw new Exception($name); }
+}
+
+class C extends P {
+    private $v;
+
+    private function getV() { return $this->v; }
+
+    function run() {
+        unset($this->v);
+        return $this->getV();
+    }
+}
+
+class G {
+    private $x;
+
+    private function gx() { return $this->x; }
+
+    function run() {
+        unset($this->x);
+        return $this->gx();
+    }
+}
+
+class H extends G {
+    function __get($name) { throw new Exception($name); }
+}
+
+function trace($object) {
+    try {
+        $object->run();
+    } catch (Exception $e) {
+        foreach ($e->getTrace() as $frame) {
+            echo $frame['function'], "\n";
+        }
+    }
+}
+
+trace(new C);
+trace(new H);
+?>
+--EXPECT--
+trace
+run
+getV
+__get
+trace
+run
+gx
+__get
@@ -0,0 +1,74 @@
+--TEST--
+Lazy compilation of function bodies
+--FILE--
+<?php
+namespace app;
+
+function fact($n) {
+    return $n <= 1 ? 1 : $n * fact($n - 1);
+}
+
+function append(array &$list, $value = 'x') {
+    $list[] = $value;
+}
+
+function ns() {
+    return __NAMESPACE__ . ':' . __FUNCTION__;
+}
+
+function args() {
+    return func_get_args();
+}
+
+function argsOf($first) {
+    return [func_num_args(), func_get_args()];
+}
+
+function unused() {
+    return undefined_function_never_called();
+}
+
+var_dump(fact(10));
+
+$list = [];
+append($list);
+append($list, 'y');
+var_dump($list);
+
+var_dump(ns());
+var_dump(call_user_func('app\fact', 5));
+var_dump(args(1, 2));
+var_dump(argsOf('a', 'b'));
+
+$ref = new \ReflectionFunction('app\append');
+var_dump($ref->getNumberOfParameters(), $ref->getParameters()[0]->isPassedByReference());
+?>
+--EXPECT--
+int(3628800)
+array(2) {
+  [0]=>
+  string(1) "x"
+  [1]=>
+  string(1) "y"
+}
+string(10) "app:app\ns"
+int(120)
+array(2) {
+  [0]=>
+  int(1)
+  [1]=>
+  int(2)
+}
+array(2) {
+  [0]=>
+  int(2)
+  [1]=>
+  array(2) {
+    [0]=>
+    string(1) "a"
+    [1]=>
+    string(1) "b"
+  }
+}
+int(2)
+bool(true)
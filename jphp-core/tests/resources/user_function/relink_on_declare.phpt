@@ -0,0 +1,33 @@
+--TEST--
+Test call site resolves a function declared after the first call
+--FILE--
+<?php
+namespace app {
+    function call() {
+        return helper();
+    }
+
+    for ($i = 0; $i < 3; $i++) {
+        echo call(), "\n";
+    }
+
+    if (true) {
+        function helper() {
+            return 'app';
+        }
+    }
+
+    echo call(), "\n";
+}
+
+namespace {
+    function helper() {
+        return 'global';
+    }
+}
+?>
+--EXPECT--
+global
+global
+global
+app
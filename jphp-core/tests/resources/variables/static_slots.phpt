@@ -0,0 +1,79 @@
+--TEST--
+Static variables and properties by slots
+--FILE--
+<?php
+use php\lang\Environment;
+
+function counter() {
+    static $n = 0;
+    static $list = [];
+    $n++;
+    $list[] = $n;
+    return count($list) . ':' . $n;
+}
+echo counter(), ' ', counter(), ' ', counter(), "\n";
+
+function memo($x) {
+    static $cache = [];
+    if (isset($cache[$x])) return 'hit ' . $cache[$x];
+    $cache[$x] = $x * 2;
+    return 'miss ' . $cache[$x];
+}
+echo memo(2), ', ', memo(3), ', ', memo(2), "\n";
+
+trait T {
+    function tick() { static $t = 0; return ++$t; }
+}
+class A { use T; }
+class B { use T; }
+$a = new A; $b = new B;
+echo $a->tick(), $a->tick(), $b->tick(), "\n";
+
+class S {
+    static $count = 5;
+    private static $instance;
+    static function get() {
+        if (!self::$instance) self::$instance = new S;
+        self::$count++;
+        return self::$instance;
+    }
+    function m() { static $x = 10; return $x++; }
+}
+var_dump(S::get() === S::get(), S::$count);
+$s = new S; echo $s->m(), $s->m(), "\n";
+class S2 extends S { function m() { static $x = 100; return $x++; } }
+$s2 = new S2; echo $s2->m(), $s2->m(), $s->m(), "\n";
+$f = function () { static $c = 0; return ++$c; };
+echo $f(), $f(), "\n";
+function counter2() {
+    static $n = 0;
+    return ++$n;
+}
+
+class Registry {
+    static $items = [];
+    static function add($x) { static::$items[] = $x; return count(static::$items); }
+}
+
+echo counter2(), counter2(), Registry::add('a'), Registry::add('b'), "\n";
+
+$env = new Environment(Environment::current());
+$result = $env->execute(function () {
+    return counter2() . counter2() . Registry::add('c');
+});
+echo $result, "\n";
+
+echo counter2(), Registry::add('d'), "\n";
+?>
+--EXPECT--
+1:1 2:2 3:3
+miss 4, miss 6, hit 4
+121
+bool(true)
+int(7)
+1011
+10010112
+12
+1212
+121
+33
\ No newline at end of file
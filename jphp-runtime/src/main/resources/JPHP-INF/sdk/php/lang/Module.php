@@ -21,6 +21,14 @@ class Module
      */
     public function __construct($source, $compiled = false, $debugInformation = true) { }
 
+    /**
+     * Compile sources in parallel and register them in current environment, as the constructor does
+     *
+     * @param File[]|Stream[]|string[] $sources
+     * @return Module[]
+     */
+    public static function compileAll(array $sources): array { }
+
     /**
      * @return string
      */
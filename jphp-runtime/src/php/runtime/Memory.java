@@ -278,6 +278,8 @@ abstract public class Memory implements Comparable<Memory> {
 
     final public Memory valueOfIndex(Memory index) { return valueOfIndex(null, index); }
     public Memory valueOfIndex(TraceInfo trace, Memory index) { return NULL; }
+    // <value>[index] which is returned or yielded by reference, an existing element is not copied
+    public Memory valueOfIndexAsReference(TraceInfo trace, Memory index) { return valueOfIndex(trace, index); }
 
     public Memory valueOfIndex(TraceInfo trace, long index) { return NULL; }
     final public Memory valueOfIndex(long index) { return valueOfIndex(null, index); }
@@ -314,6 +316,7 @@ abstract public class Memory implements Comparable<Memory> {
 
     public Memory refOfPush(TraceInfo trace) { return new ReferenceMemory(); }
     final public Memory refOfPush() { return refOfPush(null); }
+    public Memory pushValue(Memory value, TraceInfo trace) { return refOfPush(trace).assign(value); }
     public void unsetOfIndex(TraceInfo trace, Memory index) { }
     public Memory issetOfIndex(TraceInfo trace, Memory index) { return NULL; }
     public Memory emptyOfIndex(TraceInfo trace, Memory index) { return issetOfIndex(trace, index); }
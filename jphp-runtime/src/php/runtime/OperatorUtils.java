@@ -198,4 +198,23 @@ public class OperatorUtils {
     public static boolean instanceOfRight(String name, String lowerName, Memory o) {
         return o.instanceOf(name, lowerName);
     }
+
+    /**
+     * @return true if the switch value is compared with integer cases exactly, so it can be dispatched by a tableswitch
+     */
+    public static boolean isSwitchInt(Memory value) {
+        if (value.getRealType() != Memory.Type.INT) {
+            return false;
+        }
+
+        long key = value.toLong();
+        return key >= Integer.MIN_VALUE && key <= Integer.MAX_VALUE;
+    }
+
+    /**
+     * @return true if the switch value is compared with string cases exactly, so it can be dispatched by a hash code
+     */
+    public static boolean isSwitchString(Memory value) {
+        return value.getRealType() == Memory.Type.STRING;
+    }
 }
@@ -3,14 +3,21 @@ package php.runtime.common;
 import php.runtime.env.CompileScope;
 import php.runtime.env.Context;
 import php.runtime.env.Environment;
+import php.runtime.reflection.ClassEntity;
 import php.runtime.reflection.ModuleEntity;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
 abstract public class AbstractCompiler {
 
     protected final Environment environment;
     protected final CompileScope scope;
     protected final Context context;
 
+    protected Map<String, ClassEntity> importedClasses = Collections.emptyMap();
+
     public AbstractCompiler(Environment environment, Context context){
         this.context = context;
         this.scope = environment.getScope();
@@ -27,10 +34,38 @@ abstract public class AbstractCompiler {
 
     abstract public ModuleEntity compile(boolean autoRegister);
 
+    /**
+     * Classes declared at the top level of the module, they are registered with the module.
+     */
+    public Collection<String> getDeclaredClasses() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Parent classes, interfaces and traits of the classes of the module, they are fetched while compiling.
+     */
+    public Collection<String> getClassDependencies() {
+        return Collections.emptyList();
+    }
+
     public ModuleEntity compile(){
         return compile(true);
     }
 
+    /**
+     * Classes of other modules of a batch which are compiled but not registered in the environment yet,
+     * see {@link Environment#importModules(java.util.List)}.
+     *
+     * @param importedClasses classes by lower names
+     */
+    public void setImportedClasses(Map<String, ClassEntity> importedClasses) {
+        this.importedClasses = importedClasses;
+    }
+
+    public ClassEntity findImportedClass(String name) {
+        return importedClasses.get(name.toLowerCase());
+    }
+
     public Environment getEnvironment() {
         return environment;
     }
@@ -3,7 +3,13 @@ package php.runtime.env;
 import php.runtime.Memory;
 import php.runtime.lang.IObject;
 import php.runtime.reflection.ClassEntity;
+import php.runtime.reflection.FunctionEntity;
 import php.runtime.reflection.ModuleEntity;
+import php.runtime.util.JVMStackTracer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public class CallStack {
     // call stack
@@ -56,6 +62,14 @@ public class CallStack {
         return result;
     }
 
+    /**
+     * Pushes a frame of a function call with a fixed count of arguments, the array of arguments
+     * of the frame is reused by the next calls (see {@link CallStackItem#setFixedArgs(int)}), the caller fills it.
+     */
+    public Memory[] pushFixed(TraceInfo trace, String function, int count) {
+        return push(trace, null, null, function, (String) null, (String) null).setFixedArgs(count);
+    }
+
     public CallStackItem push(IObject self, String method, Memory... args) {
         return push(null, self, args, method, self.getReflection().getName(), null);
     }
@@ -96,6 +110,13 @@ public class CallStack {
     }
 
     public CallStackItem[] getSnapshot(){
+        return getSnapshot(null);
+    }
+
+    /**
+     * @param trace the current position, null if it is not known
+     */
+    public CallStackItem[] getSnapshot(TraceInfo trace){
         if (callStackTop < 0) {
             return new CallStackItem[] { };
         }
@@ -110,9 +131,130 @@ public class CallStack {
             i++;
         }
 
+        if (env.scope.isElideCallStack() && hasElidedFrames(result, trace)) {
+            result = withElidedFrames(result);
+        }
+
         return result;
     }
 
+    /**
+     * A frame can be elided only by a function which contains the position of a next frame (the trace of a call)
+     * or the current position, so the JVM stack is walked only if a trace is in a body of such a function.
+     */
+    protected boolean hasElidedFrames(CallStackItem[] items, TraceInfo trace) {
+        if (trace == null) {
+            return !env.getElidedFunctions().isEmpty() || !env.scope.getElidedFunctions().isEmpty();
+        }
+
+        if (isInElidedFunction(trace)) {
+            return true;
+        }
+
+        for (CallStackItem item : items) {
+            if (isInElidedFunction(item.trace)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean isInElidedFunction(TraceInfo trace) {
+        if (trace == null || trace.getFileName() == null) {
+            return false;
+        }
+
+        return isInFunction(env.getElidedFunctions(), trace) || isInFunction(env.scope.getElidedFunctions(), trace);
+    }
+
+    private static boolean isInFunction(List<FunctionEntity> functions, TraceInfo trace) {
+        for (FunctionEntity function : functions) {
+            TraceInfo body = function.getTrace();
+
+            if (body != null && trace.getStartLine() >= body.getStartLine() && trace.getStartLine() <= body.getEndLine()
+                    && trace.getFileName().equals(body.getFileName())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Restores frames of functions which were called without the call stack (see {@link CompileScope#isElideCallStack()}).
+     * The frames are found in the JVM stack, they are placed between the other frames by the traces of calls
+     * (a trace of a frame points to the line of JVM frame of its caller).
+     */
+    protected CallStackItem[] withElidedFrames(CallStackItem[] items) {
+        List<JVMStackTracer.Item> frames = new ArrayList<JVMStackTracer.Item>();
+
+        for (JVMStackTracer.Item frame : env.scope.getStackTracer(new Throwable().getStackTrace())) {
+            // a bridge method of a compiled body has no line numbers
+            if (!frame.isInternal() && frame.fileName != null && frame.lineNumber >= 0) {
+                frames.add(frame);
+            }
+        }
+
+        List<CallStackItem> result = new ArrayList<CallStackItem>(items.length);
+        int position = 0;
+        int i = items.length - 1;
+
+        for (; i >= 0; i--) {
+            int caller = findCaller(frames, position, items[i].trace);
+
+            if (caller == -1) {
+                break;
+            }
+
+            addElidedFrames(result, frames, position, caller);
+            result.add(items[i]);
+            position = caller;
+        }
+
+        if (i >= 0) {
+            for (; i >= 0; i--) {
+                result.add(items[i]);
+            }
+        } else {
+            addElidedFrames(result, frames, position, frames.size());
+        }
+
+        Collections.reverse(result);
+        return result.toArray(new CallStackItem[result.size()]);
+    }
+
+    private static int findCaller(List<JVMStackTracer.Item> frames, int from, TraceInfo trace) {
+        if (trace == null || trace.getFileName() == null) {
+            return -1;
+        }
+
+        for (int i = from; i < frames.size(); i++) {
+            JVMStackTracer.Item frame = frames.get(i);
+
+            if (frame.lineNumber == trace.getStartLine() && trace.getFileName().equals(frame.fileName)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static void addElidedFrames(List<CallStackItem> result, List<JVMStackTracer.Item> frames, int from, int to) {
+        for (int i = from; i < to; i++) {
+            FunctionEntity function = frames.get(i).function;
+
+            if (function != null && !function.isUsesStackTrace()) {
+                JVMStackTracer.Item caller = i + 1 < frames.size() ? frames.get(i + 1) : null;
+                TraceInfo trace = caller == null
+                        ? TraceInfo.UNKNOWN
+                        : TraceInfo.valueOf(caller.fileName, caller.lineNumber, 0);
+
+                result.add(new CallStackItem(trace, null, new Memory[0], function.getName(), null, null));
+            }
+        }
+    }
+
     public TraceInfo trace(){
         if (callStackTop <= 0)
             return TraceInfo.UNKNOWN;
@@ -11,6 +11,7 @@ import php.runtime.reflection.ClassEntity;
 import php.runtime.reflection.ModuleEntity;
 
 import java.io.StringWriter;
+import java.util.Arrays;
 
 public class CallStackItem {
     public TraceInfo trace;
@@ -26,6 +27,9 @@ public class CallStackItem {
 
     public int flags;
 
+    // reused arrays of arguments of fixed-arity calls by count of arguments, see CallStack.pushFixed()
+    private Memory[][] fixedArgs;
+
     public CallStackItem(TraceInfo trace) {
         this.trace = trace;
     }
@@ -33,7 +37,7 @@ public class CallStackItem {
     public CallStackItem(CallStackItem copy){
         this.trace = copy.trace;
         this.object = copy.object;
-        this.args = copy.args;
+        this.args = copy.isFixedArgs() ? copy.args.clone() : copy.args;
         this.function = copy.function;
         this.clazz = copy.clazz;
         this.staticClazz = copy.staticClazz;
@@ -69,7 +73,36 @@ public class CallStackItem {
         this.staticClassEntity = null;
     }
 
+    /**
+     * Sets the arguments to the array which is reused by the next frames with the same count of arguments.
+     *
+     * @return the array to fill, it is cleared on {@link #clear()}
+     */
+    public Memory[] setFixedArgs(int count) {
+        if (fixedArgs == null) {
+            fixedArgs = new Memory[count + 1][];
+        } else if (fixedArgs.length <= count) {
+            fixedArgs = Arrays.copyOf(fixedArgs, count + 1);
+        }
+
+        Memory[] result = fixedArgs[count];
+
+        if (result == null) {
+            result = fixedArgs[count] = new Memory[count];
+        }
+
+        return this.args = result;
+    }
+
+    private boolean isFixedArgs() {
+        return args != null && fixedArgs != null && args.length < fixedArgs.length && fixedArgs[args.length] == args;
+    }
+
     public void clear(){
+        if (isFixedArgs()) {
+            Arrays.fill(args, null);
+        }
+
         this.object = null;
         this.args = null;
         this.flags = 0;
@@ -29,14 +29,17 @@ import php.runtime.lang.spl.Traversable;
 import php.runtime.lang.spl.iterator.IteratorAggregate;
 import php.runtime.loader.RuntimeClassLoader;
 import php.runtime.reflection.*;
+import php.runtime.reflection.support.Entity;
 import php.runtime.reflection.support.ReflectionUtils;
 import php.runtime.util.JVMStackTracer;
 import php.runtime.wrap.ClassWrapper;
 
+import java.io.File;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -54,6 +57,19 @@ public class CompileScope {
     public final ConcurrentHashMap<String, ModuleEntity> moduleMap;
     public final ConcurrentHashMap<String, ModuleEntity> moduleIndexMap;
 
+    // slots of static variables and properties, shared with child scopes as their compiled classes
+    protected final Map<String, Integer> staticSlots;
+
+    // ids of lower names of classes and of interfaces for ClassEntity.isInstanceOf(), shared with child scopes
+    protected final Map<String, Integer> classNameIds;
+    protected final Map<String, Integer> interfaceIds;
+
+    // ids of classes and functions declared by environments of the scope, see getDeclarationId()
+    protected final Map<Entity, Integer> declarationIds = new IdentityHashMap<>();
+
+    // user functions of the scope which are called without a frame, see CallStack#getSnapshot(TraceInfo)
+    protected final List<FunctionEntity> elidedFunctions = new CopyOnWriteArrayList<>();
+
     protected final Map<String, ClassEntity> classMap;
     protected final Map<String, FunctionEntity> functionMap;
     protected final Map<String, ConstantEntity> constantMap;
@@ -79,16 +95,22 @@ public class CompileScope {
     public Map<String, Memory> configuration = new HashMap<>();
 
     private CompileScopeOptions options = new CompileScopeOptions.Builder().build();
+    private ModuleCache moduleCache;
 
     public CompileScope(CompileScope parent) {
         id = scopeCount.getAndIncrement();
         classLoader = parent.classLoader;
 
         options = parent.options;
+        moduleCache = parent.moduleCache;
 
         moduleMap = new ConcurrentHashMap<>();
         moduleIndexMap = new ConcurrentHashMap<>();
 
+        staticSlots = parent.staticSlots;
+        classNameIds = parent.classNameIds;
+        interfaceIds = parent.interfaceIds;
+
         classMap = new HashMap<>();
         functionMap = new HashMap<>();
         constantMap = new HashMap<>();
@@ -159,6 +181,10 @@ public class CompileScope {
         moduleMap = new ConcurrentHashMap<>();
         moduleIndexMap = new ConcurrentHashMap<>();
 
+        staticSlots = new ConcurrentHashMap<>();
+        classNameIds = new ConcurrentHashMap<>();
+        interfaceIds = new ConcurrentHashMap<>();
+
         classMap = new HashMap<>();
         functionMap = new HashMap<>();
         constantMap = new HashMap<>();
@@ -241,6 +267,14 @@ public class CompileScope {
 
     public void setOptions(CompileScopeOptions options) {
         this.options = options;
+        this.moduleCache = options.cacheDir == null ? null : new ModuleCache(options.cacheDir);
+    }
+
+    /**
+     * @return the bytecode cache of source modules or null if {@link CompileScopeOptions#cacheDir} is not set
+     */
+    public ModuleCache getModuleCache() {
+        return moduleCache;
     }
 
     public LangMode getLangMode() {
@@ -251,6 +285,28 @@ public class CompileScope {
         return options.debugMode;
     }
 
+    public boolean isInvokeDynamic() {
+        return options.invokeDynamic;
+    }
+
+    public boolean isLazyFunctions() {
+        return options.lazyFunctions;
+    }
+
+    /**
+     * Functions which do not read the call stack (no func_get_args(), debug_backtrace(), etc.) are called
+     * without a frame. A trace restores their frames from the JVM stack ({@link CallStack#getSnapshot(TraceInfo)}),
+     * such frames have no arguments and no objects, so exception traces and debug_backtrace() show them
+     * with empty "args".
+     */
+    public boolean isElideCallStack() {
+        return options.elideCallStack;
+    }
+
+    public boolean isPassEnabled(String name) {
+        return options.isPassEnabled(name);
+    }
+
     public void setLangMode(LangMode langMode) {
         setOptions(options.duplicate().langMode(langMode).build());
     }
@@ -259,10 +315,119 @@ public class CompileScope {
         setOptions(options.duplicate().debugMode(debugMode).build());
     }
 
+    public void setInvokeDynamic(boolean invokeDynamic) {
+        setOptions(options.duplicate().invokeDynamic(invokeDynamic).build());
+    }
+
+    public void setLazyFunctions(boolean lazyFunctions) {
+        setOptions(options.duplicate().lazyFunctions(lazyFunctions).build());
+    }
+
+    public void setElideCallStack(boolean elideCallStack) {
+        setOptions(options.duplicate().elideCallStack(elideCallStack).build());
+    }
+
+    public void setCacheDir(File cacheDir) {
+        setOptions(options.duplicate().cacheDir(cacheDir).build());
+    }
+
+    public void setPassEnabled(String name, boolean enabled) {
+        setOptions(options.duplicate().pass(name, enabled).build());
+    }
+
     public RuntimeClassLoader getClassLoader() {
         return classLoader;
     }
 
+    /**
+     * Returns the slot of a static variable or property, the slot is the same in all environments of the scope,
+     * they access {@link Environment#getStatic(int)} by it. Keys which depend on the caller (static variables
+     * of traits, closures, internal names) go by name and take no slot.
+     */
+    public int getStaticSlot(String name) {
+        Integer slot = staticSlots.get(name);
+
+        if (slot == null) {
+            synchronized (staticSlots) {
+                slot = staticSlots.get(name);
+
+                if (slot == null) {
+                    slot = staticSlots.size();
+                    staticSlots.put(name, slot);
+                }
+            }
+        }
+
+        return slot;
+    }
+
+    /**
+     * Returns the id of a class or a function declared by environments of the scope, an environment marks the ids
+     * of its declarations ({@link Environment#isDeclared(int)}), so call caches of the scope check them
+     * instead of a lookup by name.
+     */
+    public int getDeclarationId(Entity entity) {
+        synchronized (declarationIds) {
+            Integer id = declarationIds.get(entity);
+
+            if (id == null) {
+                id = declarationIds.size();
+                declarationIds.put(entity, id);
+            }
+
+            return id;
+        }
+    }
+
+    /**
+     * Returns the id of a lower name of a class, classes of the scope and of its child scopes keep the ids of
+     * their parent chain to check {@link ClassEntity#isInstanceOf(ClassEntity)} without names.
+     */
+    public int getClassNameId(String lowerName) {
+        return getId(classNameIds, lowerName);
+    }
+
+    /**
+     * Returns the id of a lower name of an interface, see {@link #getClassNameId(String)}.
+     */
+    public int getInterfaceId(String lowerName) {
+        return getId(interfaceIds, lowerName);
+    }
+
+    /**
+     * @return true if ids of classes of both scopes are the same, see {@link #getClassNameId(String)}
+     */
+    public boolean isSameClassIds(CompileScope scope) {
+        return classNameIds == scope.classNameIds;
+    }
+
+    private static int getId(Map<String, Integer> ids, String name) {
+        Integer id = ids.get(name);
+
+        if (id == null) {
+            synchronized (ids) {
+                id = ids.get(name);
+
+                if (id == null) {
+                    id = ids.size();
+                    ids.put(name, id);
+                }
+            }
+        }
+
+        return id;
+    }
+
+    public int[] getStaticSlots(String[] names) {
+        int[] result = new int[names.length];
+
+        for (int i = 0; i < names.length; i++) {
+            result[i] = getStaticSlot(names[i]);
+        }
+
+        return result;
+    }
+
     public void setNativeClassLoader(ClassLoader classLoader) {
         this.classLoader = new RuntimeClassLoader(classLoader);
     }
@@ -432,6 +597,8 @@ public class CompileScope {
                 if (functionMap.put(entity.getLowerName(), entity) != null) {
                     throw new CriticalException(Messages.ERR_CANNOT_REDECLARE_FUNCTION.fetch(entity.getName()));
                 }
+
+                addElidedFunction(entity);
             }
         }
 
@@ -453,6 +620,20 @@ public class CompileScope {
 
     public void registerFunction(FunctionEntity function){
         functionMap.put(function.getLowerName(), function);
+        addElidedFunction(function);
+    }
+
+    protected void addElidedFunction(FunctionEntity function) {
+        if (!function.isUsesStackTrace()) {
+            elidedFunctions.add(function);
+        }
+    }
+
+    /**
+     * @return user functions of the scope without a frame in the call stack, see {@link #isElideCallStack()}
+     */
+    public List<FunctionEntity> getElidedFunctions() {
+        return elidedFunctions;
     }
 
     public void registerConstant(ConstantEntity constant){
@@ -2,28 +2,58 @@ package php.runtime.env;
 
 import php.runtime.common.LangMode;
 
+import java.io.File;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
 public class CompileScopeOptions {
     public final boolean bytecodeCalls;
     public final LangMode langMode;
     public final boolean debugMode;
+    public final boolean invokeDynamic;
+    public final boolean lazyFunctions;
+    public final boolean elideCallStack;
+    public final File cacheDir;
+    public final Set<String> disabledPasses;
 
-    protected CompileScopeOptions(boolean bytecodeCalls, LangMode langMode, boolean debugMode) {
+    protected CompileScopeOptions(boolean bytecodeCalls, LangMode langMode, boolean debugMode, boolean invokeDynamic,
+                                  boolean lazyFunctions, boolean elideCallStack, File cacheDir, Set<String> disabledPasses) {
         this.bytecodeCalls = bytecodeCalls;
         this.langMode = langMode;
         this.debugMode = debugMode;
+        this.invokeDynamic = invokeDynamic;
+        this.lazyFunctions = lazyFunctions;
+        this.elideCallStack = elideCallStack;
+        this.cacheDir = cacheDir;
+        this.disabledPasses = Collections.unmodifiableSet(new HashSet<>(disabledPasses));
+    }
+
+    public boolean isPassEnabled(String name) {
+        return !disabledPasses.contains(name);
     }
 
     public CompileScopeOptions.Builder duplicate() {
         return new Builder()
                 .bytecodeCalls(bytecodeCalls)
                 .langMode(langMode)
-                .debugMode(debugMode);
+                .debugMode(debugMode)
+                .invokeDynamic(invokeDynamic)
+                .lazyFunctions(lazyFunctions)
+                .elideCallStack(elideCallStack)
+                .cacheDir(cacheDir)
+                .disabledPasses(disabledPasses);
     }
 
     public static final class Builder {
         private boolean bytecodeCalls;
         private LangMode langMode = LangMode.MODERN;
         private boolean debugMode = false;
+        private boolean invokeDynamic = true;
+        private boolean lazyFunctions = false;
+        private boolean elideCallStack = false;
+        private File cacheDir = null;
+        private final Set<String> disabledPasses = new HashSet<>();
 
         public Builder() {
         }
@@ -43,8 +73,60 @@ public class CompileScopeOptions {
             return this;
         }
 
+        /**
+         * Link calls of user functions and methods via invokedynamic call sites with inline caches.
+         */
+        public Builder invokeDynamic(boolean invokeDynamic) {
+            this.invokeDynamic = invokeDynamic;
+            return this;
+        }
+
+        /**
+         * Compile a body of a user function on its first call, only the signature of function is compiled on include.
+         */
+        public Builder lazyFunctions(boolean lazyFunctions) {
+            this.lazyFunctions = lazyFunctions;
+            return this;
+        }
+
+        /**
+         * Call user functions without a frame in the call stack if their body does not read it,
+         * the frames are restored from the JVM stack for traces of exceptions and debug_backtrace().
+         */
+        public Builder elideCallStack(boolean elideCallStack) {
+            this.elideCallStack = elideCallStack;
+            return this;
+        }
+
+        /**
+         * Directory of the bytecode cache of source modules (.phb dumps), null to disable the cache.
+         */
+        public Builder cacheDir(File cacheDir) {
+            this.cacheDir = cacheDir;
+            return this;
+        }
+
+        /**
+         * Enables or disables an optimization pass of the compiler by its name, all passes are enabled by default.
+         */
+        public Builder pass(String name, boolean enabled) {
+            if (enabled) {
+                disabledPasses.remove(name);
+            } else {
+                disabledPasses.add(name);
+            }
+
+            return this;
+        }
+
+        public Builder disabledPasses(Set<String> names) {
+            disabledPasses.clear();
+            disabledPasses.addAll(names);
+            return this;
+        }
+
         public CompileScopeOptions build() {
-            return new CompileScopeOptions(bytecodeCalls, langMode, debugMode);
+            return new CompileScopeOptions(bytecodeCalls, langMode, debugMode, invokeDynamic, lazyFunctions, elideCallStack, cacheDir, disabledPasses);
         }
     }
 }
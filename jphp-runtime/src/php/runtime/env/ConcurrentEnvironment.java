@@ -204,6 +204,13 @@ public class ConcurrentEnvironment extends Environment {
         }
     }
 
+    @Override
+    public Memory getOrCreateStatic(int slot, Memory initValue) {
+        synchronized (this) {
+            return super.getOrCreateStatic(slot, initValue);
+        }
+    }
+
     @Override
     public void echo(byte[] bytes, int length) {
         synchronized (this) {
@@ -11,12 +11,14 @@ import static php.runtime.exceptions.support.ErrorType.E_WARNING;
 import java.io.File;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.lang.invoke.SwitchPoint;
 import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -30,6 +32,9 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import php.runtime.Information;
@@ -86,6 +91,7 @@ import php.runtime.reflection.ConstantEntity;
 import php.runtime.reflection.FunctionEntity;
 import php.runtime.reflection.MethodEntity;
 import php.runtime.reflection.ModuleEntity;
+import php.runtime.reflection.support.Entity;
 import php.runtime.reflection.support.ReflectionUtils;
 import php.runtime.util.JVMStackTracer;
 
@@ -132,6 +138,7 @@ public class Environment {
     // vars
     protected final ArrayMemory globals;
     protected final Map<String, ReferenceMemory> statics;
+    protected ReferenceMemory[] staticSlots;
     protected final Map<String, Object> userValues = new HashMap<String, Object>();
 
     // classes, funcs, consts
@@ -139,6 +146,16 @@ public class Environment {
     protected final Map<String, FunctionEntity> functionMap = new LinkedHashMap<String, FunctionEntity>();
     protected final Map<String, ConstantEntity> constantMap = new LinkedHashMap<String, ConstantEntity>();
 
+    // guards call sites linked to functions of this environment
+    private volatile SwitchPoint functionSwitchPoint;
+
+    // bits of declared classes and functions by CompileScope.getDeclarationId(), copied on write
+    private volatile long[] declarations = new long[0];
+    private final Object declarationLock = new Object();
+
+    // declared functions which are called without a frame, see CallStack#getSnapshot(TraceInfo)
+    protected final List<FunctionEntity> elidedFunctions = new CopyOnWriteArrayList<FunctionEntity>();
+
     protected final ModuleManager moduleManager;
     protected final PackageManager packageManager;
 
@@ -223,6 +240,8 @@ public class Environment {
 
         functionMap.putAll(parent.functionMap);
         constantMap.putAll(parent.constantMap);
+        declarations = parent.declarations;
+        elidedFunctions.addAll(parent.elidedFunctions);
 
         moduleManager.apply(parent.moduleManager);
         packageManager.apply(parent.packageManager);
@@ -259,6 +278,7 @@ public class Environment {
 
         this.globals = new ArrayMemory();
         this.statics = new HashMap<String, ReferenceMemory>();
+        this.staticSlots = new ReferenceMemory[32];
 
         this.setErrorReportHandler(new ErrorReportHandler() {
             @Override
@@ -471,6 +491,10 @@ public class Environment {
         return getCallStack().getSnapshot();
     }
 
+    public CallStackItem[] getCallStackSnapshot(TraceInfo trace) {
+        return getCallStack().getSnapshot(trace);
+    }
+
     public Environment(OutputStream output) {
         this(new CompileScope(), output);
     }
@@ -554,6 +578,74 @@ public class Environment {
         return functionMap;
     }
 
+    /**
+     * Returns switch point which will be invalidated on the next function declaration in this environment.
+     */
+    public SwitchPoint getFunctionSwitchPoint() {
+        SwitchPoint result = functionSwitchPoint;
+
+        if (result == null) {
+            synchronized (functionMap) {
+                result = functionSwitchPoint;
+
+                if (result == null) {
+                    functionSwitchPoint = result = new SwitchPoint();
+                }
+            }
+        }
+
+        return result;
+    }
+
+    protected void invalidateFunctions() {
+        SwitchPoint switchPoint = functionSwitchPoint;
+
+        if (switchPoint != null) {
+            functionSwitchPoint = null;
+            SwitchPoint.invalidateAll(new SwitchPoint[]{switchPoint});
+        }
+    }
+
+    /**
+     * Marks a class or a function as declared in the environment, see {@link #isDeclared(int)}.
+     */
+    protected void declare(Entity entity) {
+        int id = scope.getDeclarationId(entity);
+
+        synchronized (declarationLock) {
+            long[] declarations = this.declarations;
+            int index = id >>> 6;
+
+            if (index >= declarations.length || (declarations[index] & (1L << id)) == 0) {
+                declarations = Arrays.copyOf(declarations, Math.max(declarations.length, index + 1));
+                declarations[index] |= 1L << id;
+                this.declarations = declarations;
+
+                if (entity instanceof FunctionEntity && !((FunctionEntity) entity).isUsesStackTrace()) {
+                    elidedFunctions.add((FunctionEntity) entity);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param id of a class or a function in the scope, see {@link CompileScope#getDeclarationId(Entity)}
+     * @return true if the environment has declared it (the entity is found by its name)
+     */
+    public boolean isDeclared(int id) {
+        long[] declarations = this.declarations;
+        int index = id >>> 6;
+
+        return index < declarations.length && (declarations[index] & (1L << id)) != 0;
+    }
+
+    /**
+     * @return declared user functions without a frame in the call stack, see {@link CompileScope#isElideCallStack()}
+     */
+    public List<FunctionEntity> getElidedFunctions() {
+        return elidedFunctions;
+    }
+
     public boolean isLoadedClass(String lowerName) {
         return classMap.containsKey(lowerName);
     }
@@ -665,6 +757,7 @@ public class Environment {
                         }
                     }
                     classMap.put(entity.getLowerName(), entity);
+                    declare(entity);
                     return entity;
                 }
 
@@ -701,7 +794,10 @@ public class Environment {
                 exception("Function '%s' already registered", entity.getName());
 
             functionMap.put(entity.getLowerName(), entity);
+            declare(entity);
         }
+
+        invalidateFunctions();
     }
 
     public void registerClass(ClassEntity entity) {
@@ -710,6 +806,7 @@ public class Environment {
                 exception("Class '%s' already registered", entity.getName());
 
             classMap.put(entity.getLowerName(), entity);
+            declare(entity);
             entity.initEnvironment(this);
         }
     }
@@ -811,6 +908,32 @@ public class Environment {
         return globals.refOfIndex(name);
     }
 
+    /**
+     * Returns slots of static variables in the table of the scope, see {@link CompileScope#getStaticSlot(String)}.
+     */
+    public int[] getStaticSlots(String[] names) {
+        return scope.getStaticSlots(names);
+    }
+
+    public Memory getOrCreateStatic(int slot, Memory initValue) {
+        ReferenceMemory[] staticSlots = this.staticSlots;
+
+        if (slot >= staticSlots.length) {
+            staticSlots = this.staticSlots = Arrays.copyOf(staticSlots, Math.max(slot + 1, staticSlots.length * 2));
+        }
+
+        ReferenceMemory result = staticSlots[slot];
+        if (result == null) {
+            result = staticSlots[slot] = new ReferenceMemory(initValue);
+        }
+        return result;
+    }
+
+    public Memory getStatic(int slot) {
+        ReferenceMemory[] staticSlots = this.staticSlots;
+        return slot < staticSlots.length ? staticSlots[slot] : null;
+    }
+
     public Memory getOrCreateStatic(String name, Memory initValue) {
         ReferenceMemory result = statics.get(name);
         if (result == null) {
@@ -1258,6 +1381,156 @@ public class Environment {
         return module;
     }
 
+    /**
+     * Imports several modules as {@link #importModule(Context)} does, the modules are parsed and compiled
+     * in parallel on the common fork-join pool. They are registered in the environment when the whole batch
+     * is compiled, in the order of contexts.
+     *
+     * A module is compiled after the modules of the batch which declare its parent classes, interfaces and traits,
+     * the compiler takes these classes from the batch ({@link AbstractCompiler#setImportedClasses(Map)}), other
+     * classes are fetched (autoload) in the current thread before. Modules which dependencies are not found
+     * are compiled one by one in the current thread at the end.
+     *
+     * @param contexts source files
+     * @return modules in the order of contexts
+     */
+    public List<ModuleEntity> importModules(List<Context> contexts) throws Throwable {
+        final int size = contexts.size();
+        final ModuleEntity[] modules = new ModuleEntity[size];
+        final AbstractCompiler[] compilers = new AbstractCompiler[size];
+        final Throwable[] errors = new Throwable[size];
+
+        // changed only between rounds, compilers of a round read it
+        final Map<String, ClassEntity> importedClasses = new HashMap<>();
+
+        List<Integer> pending = new ArrayList<>();
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+
+        for (int i = 0; i < size; i++) {
+            final int index = i;
+            final Context context = contexts.get(i);
+            String moduleName = context.getModuleName();
+
+            modules[i] = moduleName == null ? null : scope.findUserModule(moduleName);
+
+            if (modules[i] != null) {
+                putClasses(importedClasses, modules[i]);
+            } else {
+                pending.add(i);
+                tasks.add(ForkJoinPool.commonPool().submit(() -> {
+                    try {
+                        compilers[index] = scope.createCompiler(this, context);
+                    } catch (Throwable e) {
+                        errors[index] = e;
+                    }
+                }));
+            }
+        }
+
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+
+        Map<String, Integer> declaredClasses = new HashMap<>();
+
+        for (int i : pending) {
+            if (errors[i] != null) {
+                throw errors[i];
+            }
+
+            for (String name : compilers[i].getDeclaredClasses()) {
+                declaredClasses.put(name.toLowerCase(), i);
+            }
+
+            compilers[i].setImportedClasses(importedClasses);
+        }
+
+        Set<String> notFoundClasses = new HashSet<>();
+
+        while (!pending.isEmpty()) {
+            List<Integer> ready = new ArrayList<>();
+
+            for (int i : pending) {
+                if (isResolvedModule(compilers[i], i, modules, declaredClasses, importedClasses, notFoundClasses)) {
+                    ready.add(i);
+                }
+            }
+
+            if (ready.isEmpty()) {
+                ready.add(pending.get(0));
+            }
+
+            if (ready.size() == 1) {
+                int i = ready.get(0);
+                modules[i] = compilers[i].compile(true);
+            } else {
+                tasks.clear();
+
+                for (final int i : ready) {
+                    tasks.add(ForkJoinPool.commonPool().submit(() -> {
+                        try {
+                            modules[i] = compilers[i].compile(true);
+                        } catch (Throwable e) {
+                            errors[i] = e;
+                        }
+                    }));
+                }
+
+                for (ForkJoinTask<?> task : tasks) {
+                    task.join();
+                }
+            }
+
+            for (int i : ready) {
+                if (errors[i] != null) {
+                    throw errors[i];
+                }
+
+                synchronized (scope) {
+                    scope.loadModule(modules[i]);
+                }
+
+                putClasses(importedClasses, modules[i]);
+                compilers[i] = null;
+            }
+
+            pending.removeAll(ready);
+        }
+
+        for (ModuleEntity module : modules) {
+            registerModule(module);
+        }
+
+        return Arrays.asList(modules);
+    }
+
+    private static void putClasses(Map<String, ClassEntity> classes, ModuleEntity module) {
+        for (ClassEntity clazz : module.getClasses()) {
+            classes.put(clazz.getLowerName(), clazz);
+        }
+    }
+
+    private boolean isResolvedModule(AbstractCompiler compiler, int index, ModuleEntity[] modules,
+                                     Map<String, Integer> declaredClasses, Map<String, ClassEntity> importedClasses,
+                                     Set<String> notFoundClasses) {
+        for (String name : compiler.getClassDependencies()) {
+            String lowerName = name.toLowerCase();
+            Integer declaredIndex = declaredClasses.get(lowerName);
+
+            if (declaredIndex != null && declaredIndex != index) {
+                if (modules[declaredIndex] == null) {
+                    return false;
+                }
+            } else if (!importedClasses.containsKey(lowerName)
+                    && (notFoundClasses.contains(lowerName) || fetchClass(name, lowerName, true) == null)) {
+                notFoundClasses.add(lowerName);
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     public Memory eval(String code) throws Throwable {
         return eval(code, getGlobals());
     }
@@ -1294,6 +1567,8 @@ public class Environment {
                     error(entity.getTrace(), Messages.ERR_CANNOT_REDECLARE_CLASS.fetch(entity.getName()));
                 }
 
+                declare(entity);
+
                 entity.register(this);
             }
         }
@@ -1306,10 +1581,16 @@ public class Environment {
                     error(entity.getTrace(), Messages.ERR_CANNOT_REDECLARE_FUNCTION.fetch(entity.getName()));
                 }
 
+                declare(entity);
+
                 entity.register(this);
             }
         }
 
+        if (!module.getFunctions().isEmpty()) {
+            invalidateFunctions();
+        }
+
         for (ConstantEntity entity : module.getConstants()) {
             entity.setModule(module);
 
@@ -1704,6 +1985,9 @@ public class Environment {
                     trace
             ));
         }
+
+        declare(function);
+        invalidateFunctions();
     }
 
     public String __shellExecute(String s) {
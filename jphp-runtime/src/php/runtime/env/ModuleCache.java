@@ -0,0 +1,135 @@
+package php.runtime.env;
+
+import php.runtime.Information;
+import php.runtime.common.DigestUtils;
+import php.runtime.ext.support.Extension;
+import php.runtime.loader.dump.ModuleDumper;
+import php.runtime.reflection.ModuleEntity;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * On-disk bytecode cache of source modules, a module is saved as a .phb dump (see {@link ModuleDumper})
+ * and is loaded from it instead of compiling while its source, path, core version, compile options and extensions
+ * are the same. The dump is preceded by the source hashes of the modules it depends on (see
+ * {@link ModuleEntity#getDependencies()}), a changed dependency invalidates the entry.
+ */
+public class ModuleCache {
+    protected final File directory;
+
+    public ModuleCache(File directory) {
+        this.directory = directory;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @param moduleName module name (path of the file), it is compiled into the bytecode (__FILE__, __DIR__)
+     * @param source source of the module
+     * @return sha-1 hex key of the module
+     */
+    public String getKey(String moduleName, byte[] source, CompileScope scope) {
+        CompileScopeOptions options = scope.getOptions();
+        MessageDigest digest = newDigest();
+
+        StringBuilder header = new StringBuilder();
+        header.append(Information.CORE_VERSION).append("\n").append(ModuleDumper.DUMP_VERSION).append("\n")
+                .append(options.langMode).append("\n").append(options.debugMode).append("\n")
+                .append(options.bytecodeCalls).append("\n").append(options.invokeDynamic).append("\n")
+                .append(options.lazyFunctions).append("\n").append(options.elideCallStack).append("\n")
+                .append(new TreeSet<>(options.disabledPasses)).append("\n");
+
+        for (String name : new TreeSet<>(scope.getExtensions())) {
+            Extension extension = scope.getExtension(name);
+            header.append(name).append(":").append(extension == null ? "" : extension.getVersion()).append("\n");
+        }
+
+        header.append(moduleName).append("\n");
+
+        digest.update(header.toString().getBytes(StandardCharsets.UTF_8));
+        digest.update(source);
+
+        return DigestUtils.bytesToHex(digest.digest());
+    }
+
+    /**
+     * @return sha-1 hex hash of a source, it is stored for dependencies of a cached module
+     */
+    public static String getSourceHash(byte[] source) {
+        return DigestUtils.bytesToHex(newDigest().digest(source));
+    }
+
+    protected static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public File getFile(String key) {
+        return new File(directory, key + ".phb");
+    }
+
+    /**
+     * Reads the source hashes of dependencies which precede the dump of the module.
+     *
+     * @return module name to source hash
+     */
+    public static Map<String, String> readDependencies(DataInputStream input) throws IOException {
+        Map<String, String> result = new LinkedHashMap<>();
+
+        for (int i = input.readInt(); i > 0; i--) {
+            result.put(input.readUTF(), input.readUTF());
+        }
+
+        return result;
+    }
+
+    /**
+     * Saves the module via a temporary file, so the other processes never read a partial dump.
+     * The cache is optional, an error of writing is ignored.
+     *
+     * @param dependencies module name to source hash of the dependencies of the module
+     */
+    public void save(Environment env, ModuleEntity module, String key, Map<String, String> dependencies) {
+        File file = getFile(key);
+
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+                return;
+            }
+
+            File tmp = File.createTempFile(key, ".tmp", directory);
+
+            try {
+                try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                    output.writeInt(dependencies.size());
+
+                    for (Map.Entry<String, String> dependency : dependencies.entrySet()) {
+                        output.writeUTF(dependency.getKey());
+                        output.writeUTF(dependency.getValue());
+                    }
+
+                    new ModuleDumper(module.getContext(), env, true).save(module, output);
+                }
+
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                tmp.delete();
+            }
+        } catch (IOException e) {
+            // nop.
+        }
+    }
+}
@@ -5,16 +5,22 @@ import php.runtime.ext.core.classes.stream.Stream;
 import php.runtime.ext.core.classes.stream.WrapIOException;
 import php.runtime.reflection.ModuleEntity;
 
-import java.io.BufferedInputStream;
-import java.io.File;
+import java.io.*;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 
 public class ModuleManager {
     protected final Environment env;
     protected final Map<String, ModuleEntity> modules = new LinkedHashMap<String, ModuleEntity>();
 
+    // source hashes of modules read via the bytecode cache, see getSourceHash()
+    protected final Map<String, String> sourceHashes = new HashMap<String, String>();
+
     public ModuleManager(Environment env) {
         this.env = env;
     }
@@ -30,10 +36,7 @@ public class ModuleManager {
     public ModuleEntity fetchModule(String path, boolean compiled) throws Throwable {
         ModuleEntity moduleEntity = modules.get(path);
 
-        if (moduleEntity != null &&
-                (moduleEntity.getContext().getLastModified() == 0
-                        || moduleEntity.getContext().getLastModified() == new File(path).lastModified())) {
-
+        if (isActual(moduleEntity, path)) {
             return moduleEntity;
         } else {
             env.scope.removeUserModule(path);
@@ -50,6 +53,92 @@ public class ModuleManager {
         }
     }
 
+    /**
+     * Fetches several modules, source files which are not cached are compiled in parallel
+     * via {@link Environment#importModules(List)}.
+     *
+     * @return modules in the order of paths, null for a not found path
+     */
+    public List<ModuleEntity> fetchModules(Collection<String> paths) throws Throwable {
+        List<String> sources = new ArrayList<String>();
+        List<Context> contexts = new ArrayList<Context>();
+        List<Stream> streams = new ArrayList<Stream>();
+
+        ModuleCache cache = env.scope.getModuleCache();
+        List<String> keys = new ArrayList<String>();
+
+        try {
+            for (String path : new LinkedHashSet<String>(paths)) {
+                if (path.endsWith(".phb") || isActual(modules.get(path), path)) {
+                    continue;
+                }
+
+                Stream stream = fetchStream(path);
+
+                if (stream != null) {
+                    streams.add(stream);
+
+                    if (!stream._isExternalResourceStream()) {
+                        env.scope.removeUserModule(path);
+
+                        Context context = fetchContext(stream);
+
+                        if (cache != null) {
+                            byte[] source = readSource(context);
+                            String key = cache.getKey(context.getModuleName(), source, env.scope);
+                            sourceHashes.put(context.getModuleName(), ModuleCache.getSourceHash(source));
+
+                            ModuleEntity module = importCachedModule(cache, context.getModuleName(), key);
+
+                            if (module != null) {
+                                module.setTrace(new TraceInfo(context));
+                                modules.put(path, module);
+                                continue;
+                            }
+
+                            context = new Context(new ByteArrayInputStream(source), context.getModuleName(), env.getDefaultCharset());
+                            keys.add(key);
+                        }
+
+                        sources.add(path);
+                        contexts.add(context);
+                    }
+                }
+            }
+
+            List<ModuleEntity> imported = env.importModules(contexts);
+
+            for (int i = 0; i < imported.size(); i++) {
+                ModuleEntity module = imported.get(i);
+                module.setTrace(new TraceInfo(contexts.get(i)));
+
+                modules.put(sources.get(i), module);
+
+                if (cache != null) {
+                    saveCachedModule(cache, module, keys.get(i));
+                }
+            }
+        } finally {
+            for (Stream stream : streams) {
+                env.invokeMethod(stream, "close");
+            }
+        }
+
+        List<ModuleEntity> result = new ArrayList<ModuleEntity>();
+
+        for (String path : paths) {
+            result.add(fetchModule(path));
+        }
+
+        return result;
+    }
+
+    protected boolean isActual(ModuleEntity moduleEntity, String path) {
+        return moduleEntity != null &&
+                (moduleEntity.getContext().getLastModified() == 0
+                        || moduleEntity.getContext().getLastModified() == new File(path).lastModified());
+    }
+
     public ModuleEntity fetchTemporaryModule(String path, boolean compiled) throws Throwable {
         Stream stream = fetchStream(path);
 
@@ -68,7 +157,7 @@ public class ModuleManager {
                 if (compiled) {
                     module = env.importCompiledModule(context, true);
                 } else {
-                    module = env.importModule(context);
+                    module = importSourceModule(context);
                 }
 
                 module.setTrace(new TraceInfo(context));
@@ -79,6 +168,118 @@ public class ModuleManager {
         }
     }
 
+    /**
+     * Imports a source module, via the bytecode cache of the scope if it's enabled.
+     */
+    protected ModuleEntity importSourceModule(Context context) throws Throwable {
+        ModuleCache cache = env.scope.getModuleCache();
+        String moduleName = context.getModuleName();
+
+        if (cache == null || moduleName == null) {
+            return env.importModule(context);
+        }
+
+        byte[] source = readSource(context);
+        String key = cache.getKey(moduleName, source, env.scope);
+        sourceHashes.put(moduleName, ModuleCache.getSourceHash(source));
+
+        ModuleEntity module = importCachedModule(cache, moduleName, key);
+
+        if (module == null) {
+            module = env.importModule(new Context(new ByteArrayInputStream(source), moduleName, env.getDefaultCharset()));
+            saveCachedModule(cache, module, key);
+        }
+
+        return module;
+    }
+
+    /**
+     * Saves the module with the source hashes of its dependencies, it is not cached if a dependency has no source.
+     */
+    protected void saveCachedModule(ModuleCache cache, ModuleEntity module, String key) throws Throwable {
+        Map<String, String> dependencies = new LinkedHashMap<String, String>();
+
+        for (String name : module.getDependencies()) {
+            String hash = getSourceHash(name);
+
+            if (hash == null) {
+                return;
+            }
+
+            dependencies.put(name, hash);
+        }
+
+        cache.save(env, module, key, dependencies);
+    }
+
+    /**
+     * @return source hash of the module, null if there is no such source
+     */
+    protected String getSourceHash(String moduleName) throws Throwable {
+        String hash = sourceHashes.get(moduleName);
+
+        if (hash == null) {
+            Stream stream = fetchStream(moduleName);
+
+            if (stream == null) {
+                return null;
+            }
+
+            try {
+                hash = ModuleCache.getSourceHash(readSource(fetchContext(stream)));
+            } finally {
+                env.invokeMethod(stream, "close");
+            }
+
+            sourceHashes.put(moduleName, hash);
+        }
+
+        return hash;
+    }
+
+    protected ModuleEntity importCachedModule(ModuleCache cache, String moduleName, String key) throws Throwable {
+        File file = cache.getFile(key);
+
+        if (!file.isFile()) {
+            return null;
+        }
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            Map<String, String> dependencies = ModuleCache.readDependencies(input);
+
+            for (Map.Entry<String, String> dependency : dependencies.entrySet()) {
+                if (!dependency.getValue().equals(getSourceHash(dependency.getKey()))) {
+                    return null;
+                }
+            }
+
+            ModuleEntity module = env.importCompiledModule(new Context(input, moduleName, env.getDefaultCharset()), true);
+
+            for (String name : dependencies.keySet()) {
+                module.addDependency(name);
+            }
+
+            return module;
+        } catch (IOException | LinkageError e) {
+            // invalid dump or it is linked against other bytecode of a dependency, the module will be compiled again.
+            return null;
+        }
+    }
+
+    protected byte[] readSource(Context context) throws IOException {
+        InputStream input = context.getInputStream(env.getDefaultCharset());
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+
+        byte[] buffer = new byte[8192];
+        int len;
+
+        while ((len = input.read(buffer)) != -1) {
+            result.write(buffer, 0, len);
+        }
+
+        return result.toByteArray();
+    }
+
     public Context fetchContext(Stream stream) throws Throwable {
         if (stream instanceof FileStream) {
             return new Context(
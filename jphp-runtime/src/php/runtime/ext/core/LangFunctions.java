@@ -611,12 +611,14 @@ public class LangFunctions extends FunctionsContainer {
         boolean ignoreArgs = (options & LangConstants.DEBUG_BACKTRACE_IGNORE_ARGS.toInteger())
                 == LangConstants.DEBUG_BACKTRACE_IGNORE_ARGS.toInteger();
 
+        CallStackItem[] items = env.getCallStackSnapshot(trace);
+
         ArrayMemory result = new ArrayMemory();
-        for (int i = 0; i < env.getCallStackTop(); i++) {
+        for (int i = 0; i < items.length; i++) {
             if (limit != 0 && i >= limit)
                 break;
 
-            CallStackItem item = env.peekCall(i);
+            CallStackItem item = items[items.length - i - 1];
             ArrayMemory el = item.toArray(provideObject, ignoreArgs);
             result.add(el);
         }
@@ -2,6 +2,7 @@ package php.runtime.ext.core.classes;
 
 import java.io.*;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.function.Consumer;
@@ -15,9 +16,11 @@ import php.runtime.ext.core.classes.stream.Stream;
 import php.runtime.ext.core.reflection.ReflectionClass;
 import php.runtime.ext.core.reflection.ReflectionFunction;
 import php.runtime.lang.BaseObject;
+import php.runtime.lang.ForeachIterator;
 import php.runtime.loader.dump.ModuleDumper;
 import php.runtime.memory.ArrayMemory;
 import php.runtime.memory.BinaryMemory;
+import php.runtime.memory.ObjectMemory;
 import php.runtime.memory.ReferenceMemory;
 import php.runtime.reflection.ClassEntity;
 import php.runtime.reflection.ConstantEntity;
@@ -70,6 +73,45 @@ public class WrapModule extends BaseObject {
         return Memory.NULL;
     }
 
+    @Signature(@Arg(value = "sources", type = HintType.ARRAY))
+    public static Memory compileAll(Environment env, Memory... args) throws Throwable {
+        List<InputStream> streams = new ArrayList<>();
+        List<Context> contexts = new ArrayList<>();
+
+        try {
+            ForeachIterator iterator = args[0].getNewIterator(env);
+
+            while (iterator.next()) {
+                Memory source = iterator.getValue();
+                InputStream is = Stream.getInputStream(env, source);
+
+                if (is != null) {
+                    is = new BufferedInputStream(is);
+                    streams.add(is);
+                }
+
+                contexts.add(new Context(is, Stream.getPath(source), env.getDefaultCharset()));
+            }
+
+            ArrayMemory result = new ArrayMemory();
+
+            for (ModuleEntity module : env.importModules(contexts)) {
+                env.scope.addUserModule(module);
+
+                WrapModule wrapModule = new WrapModule(env, module);
+                wrapModule.registered = true;
+
+                result.add(ObjectMemory.valueOf(wrapModule));
+            }
+
+            return result.toConstant();
+        } finally {
+            for (InputStream is : streams) {
+                Stream.closeStream(env, is);
+            }
+        }
+    }
+
     protected void loadModule(Environment env) {
         if (!module.isLoaded()) {
             synchronized (env.scope) {
@@ -15,7 +15,8 @@ import php.runtime.reflection.support.ReflectionUtils;
 
 import java.lang.annotation.Annotation;
 import java.lang.invoke.MethodHandle;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.Arrays;
 
 public class CompileFunction {
@@ -257,6 +258,8 @@ public class CompileFunction {
 
         public final int argsCount;
 
+        private MethodHandle invoker;
+
         public Method(java.lang.reflect.Method method, int argsCount, boolean _asImmutable) {
             this.argsCount = argsCount;
             this.method = method;
@@ -320,6 +323,38 @@ public class CompileFunction {
             return method.isVarArgs();
         }
 
+        /**
+         * Direct handle of the method typed as (Object self, Object[] args)Object,
+         * self is ignored for static methods and void methods return null.
+         */
+        public MethodHandle getInvoker() {
+            if (invoker == null) {
+                try {
+                    method.setAccessible(true);
+                    MethodHandle handle = MethodHandles.lookup().unreflect(method).asFixedArity();
+
+                    if (java.lang.reflect.Modifier.isStatic(method.getModifiers())) {
+                        handle = MethodHandles.dropArguments(handle, 0, Object.class);
+                    }
+
+                    invoker = handle
+                            .asSpreader(Object[].class, parameterTypes.length)
+                            .asType(MethodType.methodType(Object.class, Object.class, Object[].class));
+                } catch (IllegalAccessException e) {
+                    throw new CriticalException(e);
+                }
+            }
+
+            return invoker;
+        }
+
+        /**
+         * Invokes the method without reflection, exceptions of the method are thrown as is.
+         */
+        public Object invoke(Object self, Object[] passed) throws Throwable {
+            return (Object) getInvoker().invokeExact(self, passed);
+        }
+
         public Memory call(Environment env, Memory... arguments) {
             Class<?>[] types = parameterTypes;
             Object[] passed = new Object[ types.length ];
@@ -360,15 +395,11 @@ public class CompileFunction {
 
             try {
                 if (resultType == void.class){
-                    method.invoke(null, passed);
+                    invoke(null, passed);
                     return Memory.NULL;
                 } else {
-                    return MemoryUtils.valueOf(method.invoke(null, passed));
+                    return MemoryUtils.valueOf(invoke(null, passed));
                 }
-            } catch (InvocationTargetException e){
-                return env.__throwException(e);
-            } catch (IllegalAccessException e) {
-                throw new CriticalException(e);
             } catch (Throwable throwable) {
                 return env.__throwThrowable(throwable);
             }
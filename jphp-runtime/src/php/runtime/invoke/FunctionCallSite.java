@@ -0,0 +1,237 @@
+package php.runtime.invoke;
+
+import php.runtime.Memory;
+import php.runtime.common.Messages;
+import php.runtime.env.CallStack;
+import php.runtime.env.Environment;
+import php.runtime.env.TraceInfo;
+import php.runtime.exceptions.CriticalException;
+import php.runtime.invoke.cache.FunctionCallCache;
+import php.runtime.reflection.FunctionEntity;
+
+import java.lang.invoke.*;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Call site of `functionName(...)` linked via invokedynamic.
+ *
+ * The site is linked to the resolved function. In the environment of the link the target is guarded by
+ * the environment identity and by {@link Environment#getFunctionSwitchPoint()}, other environments check
+ * that the name resolves to the same function (a lookup without relink). A declaration in the environment
+ * of the link relinks the site to the same function again, only a link to another function is counted:
+ * after {@link #MAX_RELINKS} of them the site falls back to the cached lookup of {@link InvokeHelper}.
+ *
+ * A site of a call with 1..{@link FunctionEntity#MAX_FIXED_ARITY} arguments can be typed with the arguments
+ * instead of an array (see {@link #fixedType(int)}), such a site is linked to the fixed-arity entry point
+ * of the function, see {@link FunctionEntity#getFixedHandle(int)}.
+ */
+public class FunctionCallSite extends MutableCallSite {
+    public static final int MAX_RELINKS = 8;
+
+    public static final MethodType TYPE = MethodType.methodType(
+            Memory.class, Environment.class, TraceInfo.class, Memory[].class
+    );
+
+    private static final MethodHandle FALLBACK;
+    private static final MethodHandle MEGAMORPHIC;
+    private static final MethodHandle CHECK_ENVIRONMENT;
+    private static final MethodHandle CHECK_FUNCTION;
+    private static final MethodHandle INVOKE_NATIVE;
+    private static final MethodHandle INVOKE_ENTITY;
+    private static final MethodHandle[] INVOKE_FIXED = new MethodHandle[FunctionEntity.MAX_FIXED_ARITY + 1];
+
+    static {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+        try {
+            FALLBACK = lookup.findVirtual(FunctionCallSite.class, "fallback", TYPE);
+            MEGAMORPHIC = lookup.findVirtual(FunctionCallSite.class, "megamorphic", TYPE);
+            CHECK_ENVIRONMENT = lookup.findStatic(FunctionCallSite.class, "checkEnvironment", MethodType.methodType(
+                    boolean.class, WeakReference.class, Environment.class
+            ));
+            CHECK_FUNCTION = lookup.findVirtual(FunctionCallSite.class, "checkFunction", MethodType.methodType(
+                    boolean.class, FunctionEntity.class, Environment.class
+            ));
+            INVOKE_NATIVE = lookup.findStatic(FunctionCallSite.class, "invokeNative", TYPE.insertParameterTypes(
+                    0, FunctionEntity.class, MethodHandle.class
+            ));
+            INVOKE_ENTITY = lookup.findStatic(FunctionCallSite.class, "invokeEntity", TYPE.insertParameterTypes(
+                    0, FunctionEntity.class
+            ));
+
+            for (int i = 1; i < INVOKE_FIXED.length; i++) {
+                INVOKE_FIXED[i] = lookup.findVirtual(
+                        FunctionEntity.class, "invokeFixed", fixedType(i).insertParameterTypes(0, MethodHandle.class)
+                );
+            }
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new CriticalException(e);
+        }
+    }
+
+    protected final String sign;
+    protected final String originName;
+
+    private final int arity;
+    private final MethodHandle fallback;
+    private final FunctionCallCache callCache = new FunctionCallCache(1);
+    private int relinkCount = 0;
+    private FunctionEntity linkedFunction;
+
+    public FunctionCallSite(MethodType type, String sign, String originName) {
+        super(type);
+        this.sign = sign;
+        this.originName = originName;
+        this.arity = type.parameterType(2) == Memory[].class ? -1 : type.parameterCount() - 2;
+        this.fallback = withArity(FALLBACK.bindTo(this));
+
+        setTarget(fallback.asType(type));
+    }
+
+    /**
+     * Bootstrap method, is invoked via bytecode.
+     */
+    public static CallSite bootstrap(MethodHandles.Lookup lookup, String name, MethodType type,
+                                     String sign, String originName) {
+        return new FunctionCallSite(type, sign, originName);
+    }
+
+    /**
+     * @return type of a site of call with the arguments without an array
+     */
+    public static MethodType fixedType(int arity) {
+        Class<?>[] types = new Class<?>[arity + 2];
+        types[0] = Environment.class;
+        types[1] = TraceInfo.class;
+        Arrays.fill(types, 2, types.length, Memory.class);
+
+        return MethodType.methodType(Memory.class, types);
+    }
+
+    private MethodHandle withArity(MethodHandle handle) {
+        return arity == -1 ? handle : handle.asCollector(Memory[].class, arity);
+    }
+
+    public String getSign() {
+        return sign;
+    }
+
+    public String getOriginName() {
+        return originName;
+    }
+
+    protected Memory fallback(Environment env, TraceInfo trace, Memory[] args) throws Throwable {
+        FunctionEntity function = InvokeHelper.fetchFunction(env, sign, originName);
+
+        if (function == null) {
+            env.error(trace, Messages.ERR_CALL_TO_UNDEFINED_FUNCTION.fetch(originName));
+            return Memory.NULL;
+        }
+
+        link(env, function);
+
+        return InvokeHelper.call(env, trace, function, args);
+    }
+
+    protected Memory megamorphic(Environment env, TraceInfo trace, Memory[] args) throws Throwable {
+        return InvokeHelper.call(env, trace, sign, originName, args, callCache, 0);
+    }
+
+    synchronized protected void link(Environment env, FunctionEntity function) {
+        if (linkedFunction != function && linkedFunction != null && ++relinkCount > MAX_RELINKS) {
+            setTarget(withArity(MEGAMORPHIC.bindTo(this)).asType(type()));
+            return;
+        }
+
+        linkedFunction = function;
+
+        // must be taken before the guard is installed, the next declaration invalidates it.
+        SwitchPoint switchPoint = env.getFunctionSwitchPoint();
+
+        MethodHandle fixedHandle = arity == -1 ? null : function.getFixedHandle(arity);
+        MethodHandle target;
+
+        if (fixedHandle != null) {
+            target = MethodHandles.insertArguments(INVOKE_FIXED[arity], 0, function, fixedHandle);
+        } else {
+            MethodHandle nativeHandle = function.getNativeHandle();
+            target = withArity(nativeHandle == null
+                    ? MethodHandles.insertArguments(INVOKE_ENTITY, 0, function)
+                    : MethodHandles.insertArguments(INVOKE_NATIVE, 0, function, nativeHandle));
+        }
+
+        List<Class<?>> arguments = type().parameterList().subList(1, type().parameterCount());
+
+        MethodHandle test = MethodHandles.dropArguments(
+                MethodHandles.insertArguments(CHECK_ENVIRONMENT, 0, new WeakReference<Environment>(env)), 1, arguments
+        );
+        MethodHandle testFunction = MethodHandles.dropArguments(
+                MethodHandles.insertArguments(CHECK_FUNCTION, 0, this, function), 1, arguments
+        );
+
+        MethodHandle guarded = switchPoint.guardWithTest(
+                MethodHandles.guardWithTest(test, target, MethodHandles.guardWithTest(testFunction, target, fallback)),
+                fallback
+        );
+
+        setTarget(guarded.asType(type()));
+    }
+
+    private static boolean checkEnvironment(WeakReference<Environment> expected, Environment env) {
+        return expected.get() == env;
+    }
+
+    private boolean checkFunction(FunctionEntity expected, Environment env) {
+        return InvokeHelper.fetchFunction(env, sign, originName) == expected;
+    }
+
+    private static Memory invokeEntity(FunctionEntity function, Environment env, TraceInfo trace, Memory[] args)
+            throws Throwable {
+        return InvokeHelper.call(env, trace, function, args);
+    }
+
+    /**
+     * The same as {@link InvokeHelper#call(Environment, TraceInfo, FunctionEntity, Memory[])}
+     * without reflection for the compiled body.
+     */
+    private static Memory invokeNative(FunctionEntity function, MethodHandle nativeHandle,
+                                       Environment env, TraceInfo trace, Memory[] args) throws Throwable {
+        Memory result = function.getImmutableResultTyped(env, trace);
+
+        if (result != null && !function.hasParameters() && args == null) {
+            return result;
+        }
+
+        Memory[] passed = InvokeArgumentHelper.makeArguments(
+                env, args, function.getParameters(), function.getName(), null, null, trace
+        );
+
+        if (result != null) {
+            return result;
+        }
+
+        CallStack callStack = trace != null && function.isUsesStackTrace() ? env.getCallStack() : null;
+
+        if (callStack != null) {
+            callStack.push(trace, null, args, function.getName(), (String) null, (String) null);
+        }
+
+        try {
+            try {
+                result = (Memory) nativeHandle.invokeExact(env, passed);
+            } catch (Throwable e) {
+                return env.__throwThrowable(e);
+            }
+
+            return InvokeHelper.checkReturnType(env, trace, result, function);
+        } finally {
+            function.unsetArguments(passed);
+
+            if (callStack != null) {
+                callStack.pop();
+            }
+        }
+    }
+}
@@ -43,7 +43,10 @@ public class InvokeArgumentHelper {
         return passed;
     }
 
-    private static Memory makeArg(Environment env, TraceInfo trace, ParameterEntity param,
+    /**
+     * Makes the value of a passed argument of a non-variadic parameter (the default value for null).
+     */
+    public static Memory makeArg(Environment env, TraceInfo trace, ParameterEntity param,
                                   Memory arg, int i, String originClassName, String originMethodName, String staticClassName) {
         if (arg == null) {
             arg = makeDefaultArg(env, trace, param, i, originClassName, originMethodName);
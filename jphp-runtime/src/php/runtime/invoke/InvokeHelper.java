@@ -153,6 +153,12 @@ final public class InvokeHelper {
     }
 
     public static Memory checkReturnType(Environment env, TraceInfo trace, Memory result, final MethodEntity method) {
+        TypeChecker typeChecker = method.getReturnTypeChecker();
+
+        if (typeChecker == null || typeChecker.isInstance(result)) {
+            return result;
+        }
+
         return checkReturnType(
                 env, trace, result,
                 new Function<String>() {
@@ -168,11 +174,17 @@ final public class InvokeHelper {
                         }
                     }
                 },
-                method.getReturnTypeChecker(), method.isReturnTypeNullable()
+                typeChecker, method.isReturnTypeNullable()
         );
     }
 
     public static Memory checkReturnType(Environment env, TraceInfo trace, Memory result, final FunctionEntity function) {
+        TypeChecker typeChecker = function.getReturnTypeChecker();
+
+        if (typeChecker == null || typeChecker.isInstance(result)) {
+            return result;
+        }
+
         return checkReturnType(
                 env, trace, result,
                 new Function<String>() {
@@ -181,7 +193,7 @@ final public class InvokeHelper {
                         return function.getName();
                     }
                 },
-                function.getReturnTypeChecker(), function.isReturnTypeNullable()
+                typeChecker, function.isReturnTypeNullable()
         );
     }
 
@@ -254,19 +266,14 @@ final public class InvokeHelper {
         return result;
     }
 
-    public static Memory call(Environment env, TraceInfo trace, String sign, String originName,
-                              Memory[] args, FunctionCallCache callCache, int cacheIndex) throws Throwable {
-        FunctionEntity function = null;
-
-        if (callCache != null)
-            function = callCache.get(env, cacheIndex);
-
-        if (function == null) {
-            function = env.fetchFunction(originName, sign);
-            if (function != null && callCache != null) {
-                callCache.put(env, cacheIndex, function);
-            }
-        }
+    /**
+     * Resolves a function by name as the compiled code sees it, falling back to the global
+     * namespace for unqualified names.
+     *
+     * @return null if the function is not declared
+     */
+    public static FunctionEntity fetchFunction(Environment env, String sign, String originName) {
+        FunctionEntity function = env.fetchFunction(originName, sign);
 
         if (function == null) {
             if (!sign.isEmpty() && sign.charAt(0) != Information.NAMESPACE_SEP_CHAR) { // for global style invoke
@@ -274,10 +281,24 @@ final public class InvokeHelper {
                 if (p > -1)
                     function = env.fetchFunction(originName.substring(p + 1), sign.substring(p + 1));
             }
+        }
+
+        return function;
+    }
+
+    private static FunctionEntity fetchFunction(Environment env, TraceInfo trace, String sign, String originName,
+                                                FunctionCallCache callCache, int cacheIndex) {
+        FunctionEntity function = null;
+
+        if (callCache != null)
+            function = callCache.get(env, cacheIndex);
+
+        if (function == null) {
+            function = fetchFunction(env, sign, originName);
 
             if (function == null) {
                 env.error(trace, Messages.ERR_CALL_TO_UNDEFINED_FUNCTION.fetch(originName));
-                return Memory.NULL;
+                return null;
             }
 
             if (callCache != null) {
@@ -285,7 +306,47 @@ final public class InvokeHelper {
             }
         }
 
-        return call(env, trace, function, args);
+        return function;
+    }
+
+    public static Memory call(Environment env, TraceInfo trace, String sign, String originName,
+                              Memory[] args, FunctionCallCache callCache, int cacheIndex) throws Throwable {
+        FunctionEntity function = fetchFunction(env, trace, sign, originName, callCache, cacheIndex);
+
+        return function == null ? Memory.NULL : call(env, trace, function, args);
+    }
+
+    /**
+     * Fixed-arity calls without an array of arguments, see {@link FunctionEntity#getFixedHandle(int)}.
+     */
+    public static Memory call(Environment env, TraceInfo trace, String sign, String originName,
+                              Memory a0, FunctionCallCache callCache, int cacheIndex) throws Throwable {
+        FunctionEntity function = fetchFunction(env, trace, sign, originName, callCache, cacheIndex);
+
+        return function == null ? Memory.NULL : function.call(env, trace, a0);
+    }
+
+    public static Memory call(Environment env, TraceInfo trace, String sign, String originName,
+                              Memory a0, Memory a1, FunctionCallCache callCache, int cacheIndex) throws Throwable {
+        FunctionEntity function = fetchFunction(env, trace, sign, originName, callCache, cacheIndex);
+
+        return function == null ? Memory.NULL : function.call(env, trace, a0, a1);
+    }
+
+    public static Memory call(Environment env, TraceInfo trace, String sign, String originName,
+                              Memory a0, Memory a1, Memory a2,
+                              FunctionCallCache callCache, int cacheIndex) throws Throwable {
+        FunctionEntity function = fetchFunction(env, trace, sign, originName, callCache, cacheIndex);
+
+        return function == null ? Memory.NULL : function.call(env, trace, a0, a1, a2);
+    }
+
+    public static Memory call(Environment env, TraceInfo trace, String sign, String originName,
+                              Memory a0, Memory a1, Memory a2, Memory a3,
+                              FunctionCallCache callCache, int cacheIndex) throws Throwable {
+        FunctionEntity function = fetchFunction(env, trace, sign, originName, callCache, cacheIndex);
+
+        return function == null ? Memory.NULL : function.call(env, trace, a0, a1, a2, a3);
     }
 
     public static Memory callStaticDynamic(Environment env, TraceInfo trace,
@@ -359,7 +420,7 @@ final public class InvokeHelper {
         }
 
         if (callCache != null && !isMagic) {
-            callCache.put(env, cacheIndex, method);
+            callCache.put(env, cacheIndex, method, classEntity);
         }
 
         checkAccess(env, trace, method);
@@ -0,0 +1,142 @@
+package php.runtime.invoke;
+
+import php.runtime.Memory;
+import php.runtime.env.Environment;
+import php.runtime.env.TraceInfo;
+import php.runtime.exceptions.CriticalException;
+import php.runtime.lang.IObject;
+import php.runtime.memory.ObjectMemory;
+import php.runtime.reflection.ClassEntity;
+import php.runtime.reflection.MethodEntity;
+
+import java.lang.invoke.*;
+
+/**
+ * Call site of `$object->methodName(...)` linked via invokedynamic.
+ *
+ * Holds a polymorphic inline cache: the receiver class is mapped to the found and access-checked method.
+ * Methods which visibility depends on the calling context are cached together with the context classes.
+ * Entries are immutable and the cache array is replaced on each change, so readers need no locks
+ * (the site is shared by all environments and threads). After {@link #MAX_SHAPES} receiver classes
+ * the site becomes megamorphic and always uses the full lookup of {@link ObjectInvokeHelper}.
+ */
+public class MethodCallSite extends MutableCallSite {
+    public static final int MAX_SHAPES = 4;
+
+    public static final MethodType TYPE = MethodType.methodType(
+            Memory.class, Memory.class, Environment.class, TraceInfo.class, Memory[].class
+    );
+
+    private static final Entry[] EMPTY = new Entry[0];
+
+    private static final MethodHandle INVOKE;
+
+    static {
+        try {
+            INVOKE = MethodHandles.lookup().findVirtual(MethodCallSite.class, "invoke", TYPE);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new CriticalException(e);
+        }
+    }
+
+    protected final String methodName;
+    protected final String methodLowerName;
+
+    private volatile Entry[] entries = EMPTY;
+    private volatile boolean megamorphic = false;
+
+    public MethodCallSite(MethodType type, String methodName) {
+        super(type);
+        this.methodName = methodName;
+        this.methodLowerName = methodName.toLowerCase();
+
+        setTarget(INVOKE.bindTo(this).asType(type));
+    }
+
+    /**
+     * Bootstrap method, is invoked via bytecode.
+     */
+    public static CallSite bootstrap(MethodHandles.Lookup lookup, String name, MethodType type, String methodName) {
+        return new MethodCallSite(type, methodName);
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public boolean isMegamorphic() {
+        return megamorphic;
+    }
+
+    protected Memory invoke(Memory object, Environment env, TraceInfo trace, Memory[] args) throws Throwable {
+        object = object.toValue();
+
+        if (object.type == Memory.Type.OBJECT && !megamorphic) {
+            IObject iObject = ((ObjectMemory) object).value;
+            ClassEntity clazz = iObject.getReflection();
+
+            for (Entry entry : entries) {
+                if (entry.clazz == clazz && entry.matches(env)) {
+                    return ObjectInvokeHelper.invokeResolvedMethod(
+                            iObject, clazz, entry.method, methodName, null, false, env, trace, args
+                    );
+                }
+            }
+
+            MethodEntity method = ObjectInvokeHelper.findMethod(env, clazz, methodLowerName);
+
+            if (method != null && method.canAccess(env) == 0) {
+                put(new Entry(env, clazz, method));
+
+                return ObjectInvokeHelper.invokeResolvedMethod(
+                        iObject, clazz, method, methodName, null, false, env, trace, args
+                );
+            }
+        }
+
+        return ObjectInvokeHelper.invokeMethod(object, methodName, methodLowerName, env, trace, args);
+    }
+
+    synchronized protected void put(Entry entry) {
+        Entry[] entries = this.entries;
+
+        if (entries.length >= MAX_SHAPES) {
+            megamorphic = true;
+            this.entries = EMPTY;
+            return;
+        }
+
+        Entry[] newEntries = new Entry[entries.length + 1];
+        System.arraycopy(entries, 0, newEntries, 0, entries.length);
+        newEntries[entries.length] = entry;
+
+        this.entries = newEntries;
+    }
+
+    protected static class Entry {
+        final ClassEntity clazz;
+        final MethodEntity method;
+
+        final boolean checkContext;
+        final ClassEntity context;
+
+        final boolean checkLateStatic;
+        final ClassEntity lateStatic;
+
+        Entry(Environment env, ClassEntity clazz, MethodEntity method) {
+            this.clazz = clazz;
+            this.method = method;
+
+            checkContext = method.isContextDepends() || method.isPrivate();
+            context = checkContext ? env.getLastClassOnStack() : null;
+
+            checkLateStatic = method.isProtected();
+            lateStatic = checkLateStatic ? env.getLateStaticClass() : null;
+        }
+
+        boolean matches(Environment env) {
+            return (!checkContext || context == env.getLastClassOnStack())
+                    && (!checkLateStatic || lateStatic == env.getLateStaticClass());
+        }
+    }
+}
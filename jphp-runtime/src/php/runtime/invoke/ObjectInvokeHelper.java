@@ -7,7 +7,6 @@ import php.runtime.env.CallStack;
 import php.runtime.env.CallStackItem;
 import php.runtime.env.Environment;
 import php.runtime.env.TraceInfo;
-import php.runtime.env.TraceInfoCallCache;
 import php.runtime.exceptions.CriticalException;
 import php.runtime.exceptions.support.ErrorType;
 import php.runtime.invoke.cache.ConstantCallCache;
@@ -145,35 +144,7 @@ final public class ObjectInvokeHelper {
         if (methodName == null) {
             method = clazz.methodMagicInvoke;
         } else {
-            method = clazz.findMethod(methodLowerName);
-            /*TraceInfoCallCache callCache = trace == null ? null : trace.getCallCache();
-
-            if (callCache != null && callCache.self == clazz && callCache.callEntity != null) {
-                method = (MethodEntity) callCache.callEntity;
-            } else {
-                method = clazz.findMethod(methodLowerName);
-                if (trace != null && !trace.isUnknown()) {
-                    if (callCache == null) {
-                        callCache = new TraceInfoCallCache();
-                    }
-
-                    callCache.self = clazz;
-                    callCache.callEntity = method;
-                    trace.setCallCache(callCache);
-                }
-            }*/
-
-            if (method != null && method.isContextDepends()) {
-                ClassEntity context = env.getLastClassOnStack();
-
-                if (context != null) {
-                    MethodEntity contextMethod = context.findMethod(methodLowerName);
-
-                    if (contextMethod != null) {
-                        method = contextMethod;
-                    }
-                }
-            }
+            method = findMethod(env, clazz, methodLowerName);
 
             if (method == null && ((method = clazz.methodMagicCall) != null)) {
                 clazz.methodMagicCall.setModifier(Modifier.PUBLIC);
@@ -182,20 +153,52 @@ final public class ObjectInvokeHelper {
             }
         }
 
-        String className = clazz.getName();
-
         if (method == null) {
             if (methodName == null)
                 methodName = "__invoke";
 
             env.error(trace, ErrorType.E_ERROR,
-                    Messages.ERR_CALL_TO_UNDEFINED_METHOD.fetch(className + "::" + methodName)
+                    Messages.ERR_CALL_TO_UNDEFINED_METHOD.fetch(clazz.getName() + "::" + methodName)
             );
             return Memory.NULL;
         }
 
         InvokeHelper.checkAccess(env, trace, method);
 
+        return invokeResolvedMethod(iObject, clazz, method, methodName, passed, doublePop, env, trace, args);
+    }
+
+    /**
+     * Finds method of the class as it is visible from the current context, without magic methods.
+     */
+    static MethodEntity findMethod(Environment env, ClassEntity clazz, String methodLowerName) {
+        MethodEntity method = clazz.findMethod(methodLowerName);
+
+        if (method != null && method.isContextDepends()) {
+            ClassEntity context = env.getLastClassOnStack();
+
+            if (context != null) {
+                MethodEntity contextMethod = context.findMethod(methodLowerName);
+
+                if (contextMethod != null) {
+                    method = contextMethod;
+                }
+            }
+        }
+
+        return method;
+    }
+
+    /**
+     * Invokes the method which is already found and access-checked for the object.
+     *
+     * @param passed prepared arguments for magic calls or null
+     */
+    static Memory invokeResolvedMethod(IObject iObject, ClassEntity clazz, MethodEntity method, String methodName,
+                                       Memory[] passed, boolean doublePop,
+                                       Environment env, TraceInfo trace, Memory[] args) throws Throwable {
+        String className = clazz.getName();
+
         Memory result = method.getImmutableResultTyped(env, trace);
 
         if (passed == null) {
@@ -380,7 +383,7 @@ final public class ObjectInvokeHelper {
             }
 
             if (callCache != null) {
-                callCache.put(env, cacheIndex, constantEntity);
+                callCache.put(env, cacheIndex, constantEntity, entity);
             }
         }
 
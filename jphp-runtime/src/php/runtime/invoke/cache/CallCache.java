@@ -1,77 +1,69 @@
 package php.runtime.invoke.cache;
 
+import php.runtime.env.CompileScope;
 import php.runtime.env.Environment;
 import php.runtime.reflection.support.Entity;
 
-import java.lang.ref.WeakReference;
-
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Cache of call sites of a compiled class (functions, static methods, classes, constants).
+ *
+ * The count of sites is known by the compiler, so the cache does not grow. Each site has one immutable entry
+ * for a {@link CompileScope}, the entry is published once by CAS and is shared by all environments of the scope.
+ * It is valid in an environment which has declared the class or the function of the lookup, the check is
+ * by the id of the declaration ({@link CompileScope#getDeclarationId(Entity)}, {@link Environment#isDeclared(int)}),
+ * lookups take no locks and no lookups by name.
+ *
+ * If environments of a scope resolve different entities at a site (e.g. the same function is declared
+ * by different files), the site keeps the first one and other environments take the lookup.
+ */
 abstract public class CallCache<T extends Entity> {
-    protected Item[][] cache;
-
-    public T get(Environment env, int index) {
-        if (cache == null) {
-            return null;
-        }
+    private final AtomicReferenceArray<Item> items;
 
-        Item[] data = env.id < cache.length ? cache[env.id] : null;
-        if (data == null)
-            return null;
-
-        if (index >= data.length)
-            return null;
+    public CallCache(int size) {
+        this.items = new AtomicReferenceArray<>(size);
+    }
 
-        Item item = data[index];
-        if (item == null) {
-            return null;
-        }
+    @SuppressWarnings("unchecked")
+    public T get(Environment env, int index) {
+        Item item = index < items.length() ? items.get(index) : null;
 
-        if (item.env.get() != env) {
-            data[index] = null;
-            return null;
+        if (item != null && item.scope == env.scope
+                && (item.declarationId == -1 || env.isDeclared(item.declarationId))) {
+            return (T) item.data;
         }
 
-        return (T) item.data;
+        return null;
     }
 
-    abstract public Item[] newArrayData(int length);
-    abstract public Item[][] newArrayArrayData(int length);
-
-    @SuppressWarnings("unchecked")
-    synchronized public void put(Environment env, int index, T entity) {
-        int id = env.id;
-
-        if (cache == null) {
-            cache = newArrayArrayData(id + 1);
+    /**
+     * @param declaration class or function which an environment must have declared to take the entry,
+     *                    null if the entity is of the scope (all environments of the scope see it)
+     */
+    public void put(Environment env, int index, T entity, Entity declaration) {
+        if (index >= items.length()) {
+            return;
         }
 
-        if (id >= cache.length) {
-            Item[][] newCache = newArrayArrayData(id + 1);
-            System.arraycopy(cache, 0, newCache, 0, cache.length);
-            cache = newCache;
-        }
+        Item item = items.get(index);
 
-        Item[] data = cache[id];
+        if (item == null || item.scope != env.scope) {
+            int declarationId = declaration == null ? -1 : env.scope.getDeclarationId(declaration);
 
-        if (data == null) {
-            cache[id] = data = newArrayData(index + 1 + 10);
-        } else {
-            if (index >= data.length) {
-                Item[] newData = newArrayData(index + 1 + 10);
-                System.arraycopy(data, 0, newData, 0, data.length);
-                cache[id] = data = newData;
-            }
+            items.compareAndSet(index, item, new Item(entity, env.scope, declarationId));
         }
-
-        data[index] = new Item(entity, env);
     }
 
     protected static class Item {
-        Entity data;
-        WeakReference<Environment> env;
+        final Entity data;
+        final CompileScope scope;
+        final int declarationId;
 
-        public Item(Entity data, Environment env) {
+        Item(Entity data, CompileScope scope, int declarationId) {
             this.data = data;
-            this.env = new WeakReference<Environment>(env);
+            this.scope = scope;
+            this.declarationId = declarationId;
         }
     }
 }
@@ -1,15 +1,14 @@
 package php.runtime.invoke.cache;
 
+import php.runtime.env.Environment;
 import php.runtime.reflection.ClassEntity;
 
 public class ClassCallCache extends CallCache<ClassEntity> {
-    @Override
-    public Item[] newArrayData(int length) {
-        return new Item[length];
+    public ClassCallCache(int size) {
+        super(size);
     }
 
-    @Override
-    public Item[][] newArrayArrayData(int length) {
-        return new Item[length][];
+    public void put(Environment env, int index, ClassEntity entity) {
+        put(env, index, entity, entity);
     }
 }
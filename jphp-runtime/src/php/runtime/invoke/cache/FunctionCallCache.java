@@ -1,15 +1,16 @@
 package php.runtime.invoke.cache;
 
+import php.runtime.env.Environment;
 import php.runtime.reflection.FunctionEntity;
 
 public class FunctionCallCache extends CallCache<FunctionEntity> {
-    @Override
-    public Item[] newArrayData(int length) {
-        return new Item[length];
+    public FunctionCallCache(int size) {
+        super(size);
     }
 
-    @Override
-    public Item[][] newArrayArrayData(int length) {
-        return new Item[length][];
+    public void put(Environment env, int index, FunctionEntity function) {
+        boolean ofScope = env.scope.getFunctionMap().get(function.getLowerName()) == function;
+
+        put(env, index, function, ofScope ? null : function);
     }
 }
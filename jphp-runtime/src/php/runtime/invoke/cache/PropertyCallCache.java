@@ -1,15 +1,55 @@
 package php.runtime.invoke.cache;
 
+import php.runtime.reflection.ClassEntity;
 import php.runtime.reflection.PropertyEntity;
 
-public class PropertyCallCache extends CallCache<PropertyEntity> {
-    @Override
-    public Item[] newArrayData(int length) {
-        return new Item[length];
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Cache of property access sites of a compiled class, each site keeps the last found property together with
+ * the receiver class and the calling context (the result of a lookup depends on both).
+ *
+ * Entries are immutable and are published with release semantics, so the cache is shared by all environments
+ * and threads (including {@link php.runtime.env.ConcurrentEnvironment}) without locks. The count of sites is known
+ * by the compiler, the cache does not grow.
+ */
+public class PropertyCallCache {
+    private final AtomicReferenceArray<Entry> entries;
+
+    public PropertyCallCache(int size) {
+        this.entries = new AtomicReferenceArray<>(size);
     }
 
-    @Override
-    public Item[][] newArrayArrayData(int length) {
-        return new Item[length][];
+    /**
+     * @return cached property of the site or null if the receiver class or the context is different
+     */
+    public PropertyEntity get(int index, ClassEntity clazz, ClassEntity context) {
+        if (index < entries.length()) {
+            Entry entry = entries.get(index);
+
+            if (entry != null && entry.clazz == clazz && entry.context == context) {
+                return entry.entity;
+            }
+        }
+
+        return null;
+    }
+
+    public void put(int index, ClassEntity clazz, ClassEntity context, PropertyEntity entity) {
+        if (index < entries.length()) {
+            entries.lazySet(index, new Entry(clazz, context, entity));
+        }
+    }
+
+    protected static class Entry {
+        final ClassEntity clazz;
+        final ClassEntity context;
+        final PropertyEntity entity;
+
+        Entry(ClassEntity clazz, ClassEntity context, PropertyEntity entity) {
+            this.clazz = clazz;
+            this.context = context;
+            this.entity = entity;
+        }
     }
 }
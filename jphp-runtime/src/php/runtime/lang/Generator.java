@@ -33,8 +33,25 @@ abstract public class Generator extends BaseObject implements Iterator, IManualD
     protected int counter = 0;
 
     protected boolean valid = true;
-    protected final YieldAdapterIterator<Bucket> iterator;
-    protected final php.runtime.util.generator.Generator<Bucket> gen;
+    protected YieldAdapterIterator<Bucket> iterator;
+    protected php.runtime.util.generator.Generator<Bucket> gen;
+
+    /**
+     * The compiled _run() is a state machine: it is called on each resume in the caller thread,
+     * a yield saves locals to {@link #frame} and returns, {@link #state} is the resume point of the next call.
+     * Otherwise the body runs in a separate thread via {@link php.runtime.util.generator.ThreadedYieldAdapter}.
+     */
+    protected boolean resumable = false;
+    protected int state = 0;
+    protected Object[] frame;
+    protected Bucket current;
+    protected boolean suspended;
+
+    protected boolean delegating;
+    protected Memory delegateResult;
+    protected Bucket delegateLast;
+    protected ForeachIterator delegateIterator;
+    protected Generator delegateGenerator;
 
     protected final static ThreadLocal<Generator> currentGenerator = new ThreadLocal<>();
 
@@ -61,6 +78,12 @@ abstract public class Generator extends BaseObject implements Iterator, IManualD
         CallStackItem stackItem = env.peekCall(0);
         this.callStack     = env.getCallStack();
         this.callStackItem = stackItem == null ? null : new CallStackItem(stackItem);
+    }
+
+    private YieldAdapterIterator<Bucket> iterator(final Environment env) {
+        if (iterator != null) {
+            return iterator;
+        }
 
         gen = new php.runtime.util.generator.Generator<Bucket>() {
             @Override
@@ -76,7 +99,23 @@ abstract public class Generator extends BaseObject implements Iterator, IManualD
                 }
             }
         };
-        iterator = gen.iterator();
+        return iterator = gen.iterator();
+    }
+
+    protected Bucket getCurrentBucket() {
+        if (resumable) {
+            return current;
+        }
+
+        return iterator == null ? null : iterator.getCurrentValue();
+    }
+
+    protected void setCurrentBucket(Bucket bucket) {
+        if (resumable) {
+            current = bucket;
+        } else {
+            iterator.setCurrentValue(bucket);
+        }
     }
 
     abstract protected Memory _run(Environment env, Memory... args);
@@ -95,7 +134,20 @@ abstract public class Generator extends BaseObject implements Iterator, IManualD
         try {
             counter += 1;
             busy = true;
-            return iterator.next().getValue();
+
+            if (resumable) {
+                Bucket bucket = _resumeNext(env);
+
+                if (bucket == null) {
+                    valid = false;
+                    callStackItem = null;
+                    return null;
+                }
+
+                return bucket.getValue();
+            }
+
+            return iterator(env).next().getValue();
         } catch (NoSuchElementException e) {
             valid = false;
             callStackItem = null;
@@ -108,6 +160,75 @@ abstract public class Generator extends BaseObject implements Iterator, IManualD
         return null;
     }
 
+    private Bucket _resumeNext(Environment env) {
+        if (state < 0) {
+            return null;
+        }
+
+        Generator previous = currentGenerator.get();
+        currentGenerator.set(this);
+
+        try {
+            while (true) {
+                if (delegating && _delegateNext(env)) {
+                    return current;
+                }
+
+                suspended = false;
+                _run(env);
+
+                if (!suspended) {
+                    state = -1;
+                    frame = null;
+                    return null;
+                }
+
+                if (!delegating) {
+                    return current;
+                }
+            }
+        } catch (Throwable e) {
+            state = -1;
+            frame = null;
+            lastThrowable = e;
+            setCurrent(Memory.NULL);
+            return null;
+        } finally {
+            currentGenerator.set(previous);
+        }
+    }
+
+    private boolean _delegateNext(Environment env) {
+        if (newThrow == null) {
+            try {
+                if (delegateGenerator != null) {
+                    if (delegateGenerator.valid) {
+                        delegateLast = current = setCurrent(delegateGenerator.__current());
+                        delegateGenerator._next(env);
+                        return true;
+                    }
+                } else if (delegateIterator != null && delegateIterator.next()) {
+                    delegateLast = current = setCurrent(delegateIterator.getValue());
+                    return true;
+                }
+            } catch (RuntimeException e) {
+                newThrow = e;
+            }
+        }
+
+        if (delegateGenerator != null && delegateGenerator.genReturn != null) {
+            delegateResult = delegateGenerator.genReturn;
+        } else {
+            delegateResult = delegateLast != null ? delegateLast.getValue() : Memory.NULL;
+        }
+
+        delegating = false;
+        delegateIterator = null;
+        delegateGenerator = null;
+        delegateLast = null;
+        return false;
+    }
+
     protected void checkNewThrow() {
         if (newThrow != null) {
             try {
@@ -165,9 +286,9 @@ abstract public class Generator extends BaseObject implements Iterator, IManualD
            rewind(env);
         }
 
-        Bucket current = iterator.getCurrentValue();
+        Bucket current = getCurrentBucket();
         if (current == null) {
-            iterator.setCurrentValue(new Bucket(args[0]));
+            setCurrentBucket(new Bucket(args[0]));
         } else {
             current.pushValue(args[0]);
         }
@@ -221,15 +342,12 @@ abstract public class Generator extends BaseObject implements Iterator, IManualD
             rewind(env);
         }
 
-        if (iterator.getCurrentValue() == null) {
-            return Memory.NULL;
-        }
-
-        return iterator.getCurrentValue().getValue();
+        Bucket current = getCurrentBucket();
+        return current == null ? Memory.NULL : current.getValue();
     }
 
     protected Memory __current() {
-        Bucket current = iterator.getCurrentValue();
+        Bucket current = getCurrentBucket();
         return current == null ? Memory.NULL : current.getValue();
     }
 
@@ -240,11 +358,8 @@ abstract public class Generator extends BaseObject implements Iterator, IManualD
             rewind(env);
         }
 
-        if (iterator.getCurrentValue() == null) {
-            return Memory.NULL;
-        }
-
-        return iterator.getCurrentValue().getKey();
+        Bucket current = getCurrentBucket();
+        return current == null ? Memory.NULL : current.getKey();
     }
 
     @Signature
@@ -290,7 +405,7 @@ abstract public class Generator extends BaseObject implements Iterator, IManualD
     protected Bucket setCurrent(Memory value) {
         boolean returnRef = (((GeneratorEntity)getReflection()).isReturnReference());
 
-        Bucket current = iterator.getCurrentValue();
+        Bucket current = getCurrentBucket();
         if (value instanceof KeyValueMemory) {
             if (current != null) {
                 current.setKey(((KeyValueMemory) value).key);
@@ -391,6 +506,76 @@ abstract public class Generator extends BaseObject implements Iterator, IManualD
         return current.getValue();
     }
 
+    protected void _suspend(Environment env, TraceInfo trace) {
+        _suspend(env, trace, Memory.NULL);
+    }
+
+    protected void _suspend(Environment env, TraceInfo trace, Memory value) {
+        if (closed == ClosedType.MANUAL) {
+            env.error(trace, "Cannot yield from finally in a force-closed generator");
+        }
+
+        checkNewThrow();
+
+        current = setCurrent(value);
+        suspended = true;
+    }
+
+    protected void _suspendFrom(Environment env, TraceInfo trace) {
+        _suspendFrom(env, trace, Memory.NULL);
+    }
+
+    protected void _suspendFrom(Environment env, TraceInfo trace, Memory iterable) {
+        if (closed == ClosedType.MANUAL) {
+            env.error(trace, "Cannot yield from finally in a force-closed generator");
+        }
+
+        delegating = true;
+        suspended = true;
+
+        ForeachIterator iterator = iterable.getNewIterator(env);
+        if (iterator == null) {
+            env.error(trace, "Can use \"yield from\" only with arrays and Traversables");
+            return;
+        }
+
+        if (iterable.instanceOf("Generator", "generator")) {
+            delegateGenerator = iterable.toObject(Generator.class);
+
+            if (!delegateGenerator.isInit) {
+                if (delegateGenerator.counter < 1) {
+                    delegateGenerator.rewind(env);
+                } else {
+                    delegateGenerator._next(env);
+                }
+            }
+        } else {
+            delegateIterator = iterator;
+        }
+    }
+
+    protected Memory _resume(Environment env) {
+        checkNewThrow();
+
+        if (delegateResult != null) {
+            try {
+                return delegateResult;
+            } finally {
+                delegateResult = null;
+            }
+        }
+
+        return current == null ? Memory.NULL : current.getValue();
+    }
+
+    protected Object[] _frame(int size) {
+        if (frame == null || frame.length != size) {
+            frame = new Object[size];
+        }
+
+        return frame;
+    }
+
     protected Memory yield(Memory key, Memory value) {
         return gen.yield(new Bucket(key, value)).getValue();
     }
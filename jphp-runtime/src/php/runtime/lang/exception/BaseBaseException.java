@@ -52,7 +52,7 @@ abstract public class BaseBaseException extends RuntimeException implements IObj
     }
 
     public void setTraceInfo(Environment env, TraceInfo trace) {
-        this.callStack = env.getCallStackSnapshot();
+        this.callStack = env.getCallStackSnapshot(trace);
         this.trace = trace;
         this.init = false;
     }
@@ -74,6 +74,13 @@ public class RuntimeClassLoader extends URLClassLoader {
 
     protected Class<?> loadFunction(FunctionEntity function, boolean withBytecode) throws NoSuchMethodException {
         String className = function.getInternalName();
+
+        if (withBytecode && function.isLazy()) {
+            function.setLazyClassLoader(this);
+            internalFunctions.put(className, function);
+            return null;
+        }
+
         if (withBytecode) {
             byte[] data = translateData(function.getData());
 
@@ -91,6 +98,25 @@ public class RuntimeClassLoader extends URLClassLoader {
         return function.getNativeClazz();
     }
 
+    /**
+     * Compiles and defines the class of a lazy function, see {@link FunctionEntity#isLazy()}.
+     */
+    synchronized public Class<?> loadLazyFunction(FunctionEntity function) {
+        if (function.getNativeMethod() == null) {
+            try {
+                byte[] data = translateData(function.getData());
+                function.setNativeClazz(defineClass(null, data, 0, data.length));
+                function.setNativeMethod(function.getNativeClazz().getDeclaredMethod(
+                        "__invoke", Environment.class, Memory[].class
+                ));
+            } catch (NoSuchMethodException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        return function.getNativeClazz();
+    }
+
     protected Class<?> loadGenerator(GeneratorEntity generator, boolean withBytecode) throws NoSuchMethodException, NoSuchFieldException {
         return loadClass(generator, withBytecode);
     }
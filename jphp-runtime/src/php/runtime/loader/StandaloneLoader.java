@@ -1,5 +1,6 @@
 package php.runtime.loader;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -20,8 +21,10 @@ import php.runtime.ext.core.classes.WrapClassLoader;
 import php.runtime.ext.support.Extension;
 import php.runtime.launcher.LaunchException;
 import php.runtime.loader.dump.ModuleDumper;
+import php.runtime.loader.dump.PreloadSnapshotDumper;
 import php.runtime.loader.dump.StandaloneLibrary;
 import php.runtime.loader.dump.StandaloneLibraryDumper;
+import php.runtime.loader.dump.io.DumpException;
 import php.runtime.memory.ArrayMemory;
 import php.runtime.memory.LongMemory;
 import php.runtime.memory.StringMemory;
@@ -195,6 +198,7 @@ public class StandaloneLoader {
 
     protected void _run() {
         loadExtensions();
+        loadPreloadSnapshot();
 
         String file = config.getProperty("bootstrap.file", "res://JPHP-INF/.bootstrap.php");
 
@@ -223,6 +227,25 @@ public class StandaloneLoader {
         }
     }
 
+    /**
+     * Registers the modules of the preload snapshot resource (see {@link PreloadSnapshotDumper}) if it exists.
+     */
+    public void loadPreloadSnapshot() {
+        String snapshot = config.getProperty("bootstrap.preloadSnapshot", "JPHP-INF/preload.snapshot");
+        InputStream input = snapshot.isEmpty() ? null : classLoader.getResourceAsStream(snapshot);
+
+        if (input != null) {
+            try (InputStream data = new BufferedInputStream(input)) {
+                new PreloadSnapshotDumper(env).load(data);
+            } catch (DumpException e) {
+                // snapshot of another core version, classes are loaded from the library.
+                Startup.trace("Preload snapshot '" + snapshot + "' is skipped: " + e.getMessage());
+            } catch (IOException e) {
+                throw new CriticalException(e);
+            }
+        }
+    }
+
     protected ModuleEntity _fetch(String name, Map<String, StandaloneLibrary.Module> source) {
         StandaloneLibrary.Module module = source.get(name);
 
@@ -145,6 +145,7 @@ public class ClassDumper extends Dumper<ClassEntity> {
             throw new RuntimeException(e);
         }
         entity.setId(env.scope.nextClassIndex());
+        entity.setScope(env.scope);
 
         String docComment = data.readUTF();
 
@@ -0,0 +1,139 @@
+package php.runtime.loader.dump;
+
+import php.runtime.Information;
+import php.runtime.env.Context;
+import php.runtime.env.Environment;
+import php.runtime.loader.dump.io.DumpException;
+import php.runtime.loader.dump.io.DumpInputStream;
+import php.runtime.loader.dump.io.DumpOutputStream;
+import php.runtime.reflection.ClassEntity;
+import php.runtime.reflection.ConstantEntity;
+import php.runtime.reflection.FunctionEntity;
+import php.runtime.reflection.ModuleEntity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.*;
+
+/**
+ * Snapshot of the user modules of an environment (like opcache.preload), is created after running a preload script.
+ *
+ * The snapshot contains the module dumps with bytecode of all user classes, functions and constants of
+ * the environment, the modules of parent classes, interfaces and traits go first. Loading the snapshot
+ * registers the modules without running their code and without autoload.
+ */
+public class PreloadSnapshotDumper {
+    private static final String HASH = "\1\7\4\3\4";
+
+    protected final Environment env;
+
+    public PreloadSnapshotDumper(Environment env) {
+        this.env = env;
+    }
+
+    /**
+     * @return the user modules of the environment which have bytecode, in the order of class dependencies
+     */
+    public List<ModuleEntity> getModules() {
+        Set<ModuleEntity> result = new LinkedHashSet<>();
+        Set<ModuleEntity> visited = new HashSet<>();
+
+        for (ClassEntity entity : env.getClasses()) {
+            addModule(entity.isInternal() ? null : entity.getModule(), result, visited);
+        }
+
+        for (FunctionEntity entity : env.getFunctions()) {
+            addModule(entity.isInternal() ? null : entity.getModule(), result, visited);
+        }
+
+        for (ConstantEntity entity : env.getConstants().values()) {
+            addModule(entity.getModule(), result, visited);
+        }
+
+        return new ArrayList<>(result);
+    }
+
+    protected void addModule(ModuleEntity module, Set<ModuleEntity> result, Set<ModuleEntity> visited) {
+        if (module == null || module.getData() == null || !visited.add(module)) {
+            return;
+        }
+
+        for (ClassEntity entity : module.getClasses()) {
+            List<ClassEntity> dependencies = new ArrayList<>();
+
+            if (entity.getParent() != null) {
+                dependencies.add(entity.getParent());
+            }
+
+            dependencies.addAll(entity.getInterfaces().values());
+            dependencies.addAll(entity.getTraits().values());
+
+            for (ClassEntity dependency : dependencies) {
+                if (!dependency.isInternal() && dependency.getModule() != module) {
+                    addModule(dependency.getModule(), result, visited);
+                }
+            }
+        }
+
+        result.add(module);
+    }
+
+    public void save(OutputStream output) throws IOException {
+        DumpOutputStream data = new DumpOutputStream(output);
+
+        data.writeName(HASH);
+        data.writeName(Information.CORE_VERSION);
+
+        List<ModuleEntity> modules = getModules();
+        data.writeInt(modules.size());
+
+        for (ModuleEntity module : modules) {
+            data.writeName(module.getName());
+
+            ModuleDumper dumper = new ModuleDumper(module.getContext(), env, true);
+            dumper.save(module, output);
+        }
+    }
+
+    /**
+     * Loads the modules of a snapshot and registers them in the environment one by one.
+     *
+     * @return loaded modules
+     */
+    public List<ModuleEntity> load(InputStream input) throws IOException {
+        DumpInputStream data = new DumpInputStream(input);
+
+        if (!HASH.equals(data.readName())) {
+            throw new DumpException("Invalid preload snapshot, invalid hash");
+        }
+
+        String coreVersion = data.readName();
+
+        if (!Information.CORE_VERSION.equals(coreVersion)) {
+            throw new DumpException("Invalid preload snapshot, core version " + coreVersion + " is not " + Information.CORE_VERSION);
+        }
+
+        int count = data.readInt();
+        List<ModuleEntity> result = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            String name = data.readName();
+
+            ModuleDumper dumper = new ModuleDumper(new Context(null, name, env.getDefaultCharset()), env, true);
+            ModuleEntity module = dumper.load(input);
+
+            synchronized (env.scope) {
+                env.scope.loadModule(module);
+                env.scope.addUserModule(module);
+            }
+
+            env.registerModule(module);
+            env.getModuleManager().addModule(name, module);
+
+            result.add(module);
+        }
+
+        return result;
+    }
+}
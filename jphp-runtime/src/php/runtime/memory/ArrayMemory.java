@@ -35,6 +35,10 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
     protected transient ReferenceMemoryList _list;
     protected transient ArrayMemoryMap map;
 
+    // packed list of only integers or only floats without references, see unpackList()
+    protected transient long[] longs;
+    protected transient double[] doubles;
+
     protected transient ForeachIterator foreachIterator;
 
     public ArrayMemory(boolean asMap) {
@@ -91,7 +95,7 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
         return new ArrayMemory(map);
     }
 
-    private List<ReferenceMemory> getList() {
+    private ReferenceMemoryList getList() {
         if (_list != null) {
             return _list;
         }
@@ -101,12 +105,138 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
                 return _list;
             }
 
-            _list = new ReferenceMemoryList(7);
+            if (longs != null || doubles != null) {
+                unpackList();
+            } else {
+                _list = new ReferenceMemoryList(7);
+            }
         }
 
         return _list;
     }
 
+    /**
+     * @return true if the list is packed into a long[] or double[] array
+     */
+    public boolean isPacked() {
+        return longs != null || doubles != null;
+    }
+
+    /**
+     * Moves a packed list to the list of references, it is needed before a reference to an element is taken
+     * or a value of other type is stored.
+     */
+    private void unpackList() {
+        ReferenceMemoryList list = new ReferenceMemoryList(Math.max(size, 7));
+
+        for (int i = 0; i < size; i++) {
+            list.append(new ReferenceMemory(getPackedValue(i)));
+        }
+
+        longs = null;
+        doubles = null;
+        _list = list;
+    }
+
+    private Memory getPackedValue(int index) {
+        return longs != null ? LongMemory.valueOf(longs[index]) : DoubleMemory.valueOf(doubles[index]);
+    }
+
+    private Memory getPackedByScalar(Object key) {
+        if (key instanceof Long) {
+            long index = (Long) key;
+
+            if (index >= 0 && index < size) {
+                return getPackedValue((int) index);
+            }
+        }
+
+        return null;
+    }
+
+    private static int growCapacity(int size) {
+        return size + (size >> 1) + 8;
+    }
+
+    /**
+     * Appends a value to a packed list, an empty list becomes packed.
+     *
+     * @return false if the array is not a list of integers
+     */
+    private boolean appendPacked(long value) {
+        if (longs == null) {
+            if (size != 0 || lastLongIndex != -1 || map != null || doubles != null) {
+                return false;
+            }
+
+            longs = new long[8];
+            _list = null;
+        } else if (size == longs.length) {
+            longs = Arrays.copyOf(longs, growCapacity(size));
+        }
+
+        longs[size++] = value;
+        lastLongIndex++;
+        return true;
+    }
+
+    /**
+     * @return false if the array is not a list of floats
+     */
+    private boolean appendPacked(double value) {
+        if (doubles == null) {
+            if (size != 0 || lastLongIndex != -1 || map != null || longs != null) {
+                return false;
+            }
+
+            doubles = new double[8];
+            _list = null;
+        } else if (size == doubles.length) {
+            doubles = Arrays.copyOf(doubles, growCapacity(size));
+        }
+
+        doubles[size++] = value;
+        lastLongIndex++;
+        return true;
+    }
+
+    private boolean appendPacked(Memory value) {
+        switch (value.type) {
+            case INT: return appendPacked(value.toLong());
+            case DOUBLE: return appendPacked(value.toDouble());
+            default: return false;
+        }
+    }
+
+    private void ensureListCapacity(int capacity) {
+        if (longs != null) {
+            if (longs.length < capacity) longs = Arrays.copyOf(longs, capacity);
+        } else if (doubles != null) {
+            if (doubles.length < capacity) doubles = Arrays.copyOf(doubles, capacity);
+        } else if (_list != null) {
+            _list.ensureCapacity(capacity);
+        }
+    }
+
+    /**
+     * @return the value of a list element by its index (the array must be a list)
+     */
+    private Memory getListValue(int index) {
+        if (longs != null || doubles != null) {
+            return getPackedValue(index);
+        }
+
+        return peekList(index).getValue();
+    }
+
+    /**
+     * @return an element of the list only for reading, see {@link ReferenceMemoryList#peek(int)}
+     */
+    private ReferenceMemory peekList(int index) {
+        getList();
+        return _list.peek(index);
+    }
+
     @Deprecated
     public ArrayMemory(Collection collection) {
         this();
@@ -129,14 +259,14 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
         this();
         for (Object el : array) {
             if (el == null) {
-                getList().add(new ReferenceMemory());
+                getList().append(new ReferenceMemory());
                 continue;
             }
 
             MemoryOperation operation = MemoryOperation.get(el.getClass(), null);
 
             if (operation != null) {
-                getList().add(new ReferenceMemory(operation.unconvertNoThow(null, null, el)));
+                getList().append(new ReferenceMemory(operation.unconvertNoThow(null, null, el)));
             }
         }
         size = array.length;
@@ -148,7 +278,7 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
         this();
         if (array != null) {
             for (Memory el : array) {
-                getList().add(new ReferenceMemory(toImmutable ? el.toImmutable() : el));
+                getList().append(new ReferenceMemory(toImmutable ? el.toImmutable() : el));
             }
             size = array.length;
 
@@ -160,7 +290,7 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
     public ArrayMemory(String[] array) {
         this();
         for (String el : array) {
-            getList().add(new ReferenceMemory(StringMemory.valueOf(el)));
+            getList().append(new ReferenceMemory(StringMemory.valueOf(el)));
         }
         size = array.length;
         lastLongIndex = size - 1;
@@ -209,10 +339,22 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
             return result;
         }
 
-        if (map == null) {
-            for (ReferenceMemory item : getList()) {
-                result.getList().add(item.duplicate());
+        if (longs != null) {
+            result.longs = Arrays.copyOf(longs, size);
+        } else if (doubles != null) {
+            result.doubles = Arrays.copyOf(doubles, size);
+        } else if (map == null) {
+            if (size >= SharedChunks.MIN_SHARED_SIZE) {
+                result._list = _list.share();
+            } else {
+                ReferenceMemoryList list = result.getList();
+                for (int i = 0, n = _list.size(); i < n; i++) {
+                    list.append(_list.peek(i).duplicate());
+                }
             }
+        } else if (size >= SharedChunks.MIN_SHARED_SIZE) {
+            result._list = null;
+            result.map = map.share();
         } else {
             result._list = null;
             result.map = new ArrayMemoryMap();
@@ -232,6 +374,8 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
                     ArrayMemory dup = duplicate();
                     this.map = dup.map;
                     this._list = dup._list;
+                    this.longs = dup.longs;
+                    this.doubles = dup.doubles;
                     this.lastLongIndex = dup.lastLongIndex;
 
                     if (this.original == null) {
@@ -278,16 +422,16 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
             return false;
         }
 
-        if (_list != null) {
+        if (map == null) {
             long t = MemoryUtils.valueOf(key).toLong();
-            return t >= 0 && t < _list.size();
+            return t >= 0 && t < (_list != null ? _list.size() : size);
         }
 
         return map.containsKey(key);
     }
 
     private void convertToMap() {
-        map = new ArrayMemoryMap();
+        map = new ArrayMemoryMap(Math.max(size * 2, 8));
         if (_list != null && !_list.isEmpty()) {
             long i = 0;
             for (ReferenceMemory memory : _list) {
@@ -296,9 +440,15 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
                 }
                 i++;
             }
+        } else if (longs != null || doubles != null) {
+            for (int i = 0; i < size; i++) {
+                map.put((long) i, getPackedValue(i));
+            }
         }
 
         _list = null;
+        longs = null;
+        doubles = null;
     }
 
     public void renameKey(Memory oldKey, Memory newKey) {
@@ -358,6 +508,14 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
     }
 
     public ReferenceMemory getByScalar(Object key) {
+        if (longs != null || doubles != null) {
+            if (getPackedByScalar(key) == null) {
+                return null;
+            }
+
+            getList();
+        }
+
         if (_list != null) {
             if (key instanceof Long) {
                 int index = ((Long)key).intValue();
@@ -374,12 +532,31 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
         }
     }
 
+    /**
+     * @param position expected position of the key in the order of insertion
+     * @param key string key
+     * @return the entry for changes if the key is at the position, otherwise null (look up via {@link #getByScalar(Object)})
+     */
+    public ReferenceMemory getByScalarAt(int position, String key) {
+        return map == null ? null : map.getEntryAt(position, key);
+    }
+
+    /**
+     * As {@link #getByScalarAt(int, String)}, the entry is only for reading and the array is not copied
+     * if it is shared.
+     */
+    public ReferenceMemory peekByScalarAt(int position, String key) {
+        return map == null ? null : map.peekEntryAt(position, key);
+    }
+
     public void add(IObject object) {
         add(new ObjectMemory(object));
     }
 
     public void add(long value) {
-        add(LongMemory.valueOf(value));
+        if (!appendPacked(value)) {
+            add(LongMemory.valueOf(value));
+        }
     }
 
     public void add(String value) {
@@ -387,7 +564,9 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
     }
 
     public void add(double value) {
-        add(new DoubleMemory(value));
+        if (!appendPacked(value)) {
+            add(new DoubleMemory(value));
+        }
     }
 
     public void add(boolean value) {
@@ -396,43 +575,43 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
 
     public void add(Memory arg1, Memory arg2) {
         if (!isMap()) {
-            _list.ensureCapacity(size + 2);
+            ensureListCapacity(size + 2);
         }
 
-        add(arg1); add(arg2);
+        append(arg1); append(arg2);
     }
 
     public void add(Memory arg1, Memory arg2, Memory arg3) {
         if (!isMap()) {
-            _list.ensureCapacity(size + 3);
+            ensureListCapacity(size + 3);
         }
 
-        add(arg1); add(arg2); add(arg3);
+        append(arg1); append(arg2); append(arg3);
     }
 
     public void add(Memory arg1, Memory arg2, Memory arg3, Memory arg4) {
         if (!isMap()) {
-            _list.ensureCapacity(size + 4);
+            ensureListCapacity(size + 4);
         }
 
-        add(arg1); add(arg2); add(arg3); add(arg4);
+        append(arg1); append(arg2); append(arg3); append(arg4);
     }
 
     public void add(Memory arg1, Memory arg2, Memory arg3, Memory arg4, Memory arg5) {
         if (!isMap()) {
-            _list.ensureCapacity(size + 5);
+            ensureListCapacity(size + 5);
         }
 
-        add(arg1); add(arg2); add(arg3); add(arg4); add(arg5);
+        append(arg1); append(arg2); append(arg3); append(arg4); append(arg5);
     }
 
     public void addMultiple(Memory... args) {
         if (!isMap()) {
-            _list.ensureCapacity(size + args.length);
+            ensureListCapacity(size + args.length);
         }
 
         for (Memory arg : args) {
-            add(arg);
+            append(arg);
         }
     }
 
@@ -458,6 +637,15 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
         }
     }
 
+    /**
+     * Adds a value like {@link #add(Memory)}, but an integer or a float may be stored into a packed list.
+     */
+    public void append(Memory value) {
+        if (!appendPacked(value)) {
+            add(value);
+        }
+    }
+
     public ReferenceMemory add(Memory value) {
         if (value instanceof KeyValueMemory) {
             KeyValueMemory keyValue = (KeyValueMemory) value;
@@ -490,10 +678,13 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
         }
 
         if (map == null && array.map == null) {
-            for (ReferenceMemory reference : array.getList())
-                getList().add(new ReferenceMemory(reference.fast_toImmutable()));
+            int count = array.size;
+            ensureListCapacity(size + count);
+
+            for (int i = 0; i < count; i++) {
+                append(array.getListValue(i).fast_toImmutable());
+            }
 
-            size = getList().size();
             lastLongIndex = size - 1;
         } else {
             if (map == null) {
@@ -667,10 +858,17 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
                     index = (int) tmp.toLong();
             }
 
-            if (index < 0 || _list == null || index >= getList().size())
+            if (index < 0 || index >= size || (_list == null && longs == null && doubles == null))
                 return null;
 
             if (index == size - 1) {
+                if (longs != null || doubles != null) {
+                    Memory remove = getPackedValue(index);
+                    size--;
+                    lastLongIndex = size - 1;
+                    return remove;
+                }
+
                 size--;
                 lastLongIndex = size - 1;
                 ReferenceMemory remove = getList().remove(index);
@@ -708,10 +906,17 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
         Object _key = toKey(key);
         if (map == null) {
             int index = _key instanceof Long ? ((Long) _key).intValue() : -1;
-            if (index < 0 || _list == null || index >= getList().size())
+            if (index < 0 || index >= size || (_list == null && longs == null && doubles == null))
                 return null;
 
             if (index == size - 1) {
+                if (longs != null || doubles != null) {
+                    Memory remove = getPackedValue(index);
+                    size--;
+                    lastLongIndex = index - 1;
+                    return remove;
+                }
+
                 size--;
                 lastLongIndex = index - 1;
                 ReferenceMemory remove = getList().remove(index);
@@ -831,7 +1036,13 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
 
         size -= 1;
         Memory value;
-        if (map == null) {
+        if (longs != null) {
+            value = LongMemory.valueOf(longs[0]);
+            System.arraycopy(longs, 1, longs, 0, size);
+        } else if (doubles != null) {
+            value = DoubleMemory.valueOf(doubles[0]);
+            System.arraycopy(doubles, 1, doubles, 0, size);
+        } else if (map == null) {
             value = getList().get(0);
             getList().remove(0);
         } else {
@@ -847,7 +1058,9 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
             return null;
 
         Memory value;
-        if (getList() != null) {
+        if (longs != null || doubles != null) {
+            value = getPackedValue(size - 1);
+        } else if (getList() != null) {
             value = getList().get(size - 1);
             getList().remove(size - 1);
         } else {
@@ -864,7 +1077,7 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
 
         Memory value;
         if (map == null)
-            value = getList().get(size - 1);
+            value = getListValue(size - 1);
         else {
             value = map.get(map.lastKey());
         }
@@ -912,7 +1125,7 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
     public void shuffle(Random rnd) {
         checkCopied();
         if (map == null) {
-            if (_list != null) {
+            if (size > 0) {
                 Collections.shuffle(getList(), rnd);
             }
         } else {
@@ -932,6 +1145,8 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
     public void clear() {
         _list = null;
         map = null;
+        longs = null;
+        doubles = null;
 
         size = 0;
     }
@@ -1015,6 +1230,8 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
             mem.size = size;
             mem._list = _list;
             mem.map = map;
+            mem.longs = longs;
+            mem.doubles = doubles;
             mem.lastLongIndex = lastLongIndex;
             copies++;
             reset();
@@ -1035,6 +1252,15 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
 
     public Memory[] values(boolean asImmutable) {
         Memory[] result = new Memory[size];
+
+        if (longs != null || doubles != null) {
+            for (int i = 0; i < size; i++) {
+                result[i] = getPackedValue(i);
+            }
+
+            return result;
+        }
+
         int i = 0;
         for (ReferenceMemory el : this) {
             result[i++] = asImmutable ? el.fast_toImmutable() : el.toValue();
@@ -1095,7 +1321,7 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
                 ForeachIterator iterator = other.foreachIterator(false, false);
                 while (iterator.next()) {
                     Object key = iterator.getKey();
-                    Memory origin = getByScalar(key);
+                    Memory origin = getValueByScalar(key);
                     if (origin == null) {
                         left.checkCopied();
                         left.put(key, iterator.getValue().fast_toImmutable());
@@ -1230,35 +1456,68 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
             case ARRAY:
                 return UNDEFINED; // TODO ADD WARNING
         }
-        Memory e = get(index);
+        Memory e = getValueByScalar(toKey(index));
+        return e == null ? UNDEFINED : e;
+    }
+
+    @Override
+    public Memory valueOfIndexAsReference(TraceInfo trace, Memory index) {
+        switch (index.getRealType()) {
+            case OBJECT:
+            case ARRAY:
+                return UNDEFINED;
+        }
+        Memory e = getByScalar(toKey(index));
         return e == null ? UNDEFINED : e;
     }
 
     @Override
     public Memory valueOfIndex(TraceInfo trace, long index) {
-        Memory e = getByScalar(index);
+        Memory e = map != null ? map.peekEntry(index) : getValueByScalar(index);
         return e == null ? UNDEFINED : e;
     }
 
     @Override
     public Memory valueOfIndex(TraceInfo trace, double index) {
-        Memory e = getByScalar((long) index);
+        Memory e = getValueByScalar((long) index);
         return e == null ? UNDEFINED : e;
     }
 
     @Override
     public Memory valueOfIndex(TraceInfo trace, boolean index) {
-        Memory e = getByScalar(index ? CONST_INT_0 : CONST_INT_1);
+        Memory e = getValueByScalar(index ? CONST_INT_0 : CONST_INT_1);
         return e == null ? UNDEFINED : e;
     }
 
     @Override
     public Memory valueOfIndex(TraceInfo trace, String index) {
         Memory number = StringMemory.toLong(index);
-        Memory e = number == null ? getByScalar(index) : getByScalar(number.toLong());
+        Memory e = number == null ? getValueByScalar(index) : getValueByScalar(number.toLong());
         return e == null ? UNDEFINED : e;
     }
 
+    /**
+     * Reads an element without unpacking a packed list.
+     */
+    private Memory getValueByScalar(Object key) {
+        if (longs != null || doubles != null) {
+            return getPackedByScalar(key);
+        }
+
+        if (_list != null) {
+            if (key instanceof Long) {
+                long index = (Long) key;
+                return index >= 0 && index < _list.size() ? _list.peek((int) index) : null;
+            }
+
+            return null;
+        } else if (map != null) {
+            return map.peekEntry(key);
+        } else {
+            return null;
+        }
+    }
+
     @Override
     public void unsetOfIndex(TraceInfo trace, Memory index) {
         checkCopied();
@@ -1267,7 +1526,7 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
 
     @Override
     public Memory issetOfIndex(TraceInfo trace, Memory index) {
-        Memory value = get(index);
+        Memory value = getValueByScalar(toKey(index));
         return value == null ? NULL : value;
     }
 
@@ -1277,6 +1536,26 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
         return add(UNDEFINED);
     }
 
+    @Override
+    public Memory pushValue(Memory value, TraceInfo trace) {
+        checkCopied();
+
+        if (appendPacked(value)) {
+            return value;
+        }
+
+        if (map == null) {
+            ReferenceMemory ref = new ReferenceMemory();
+
+            lastLongIndex++;
+            getList().append(ref);
+            size++;
+            return ref.assign(value);
+        }
+
+        return add(UNDEFINED).assign(value);
+    }
+
     @Override
     public Memory refOfIndexAsShortcut(TraceInfo trace, Memory index) {
         switch (index.getRealType()) {
@@ -1399,7 +1678,7 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
                         }
                     }
                 } else {
-                    listMax = _list == null ? 0 : getList().size();
+                    listMax = _list == null ? (longs != null || doubles != null ? size : 0) : getList().size();
                 }
             }
 
@@ -1415,12 +1694,20 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
                         keys = new ArrayList<Object>(map.keySet()).iterator();
                     }
                 } else {
-                    listMax = _list == null ? 0 : getList().size();
+                    listMax = _list == null ? (longs != null || doubles != null ? size : 0) : getList().size();
                 }
 
                 return true;
             }
 
+            private void setCurrentListValue(int index) {
+                if (!getReferences && (longs != null || doubles != null)) {
+                    currentValue = getPackedValue(index);
+                } else {
+                    setCurrentValue(getReferences ? getList().get(index) : peekList(index));
+                }
+            }
+
             private void setCurrentValue(ReferenceMemory value) {
                 if (getReferences) {
                     if (plainReferences)
@@ -1443,7 +1730,7 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
                 if (ArrayMemory.this.map == null) {
                     cursor = ArrayMemory.this.size - 1;
                     currentKey = (long) cursor;
-                    setCurrentValue(getList().get(cursor));
+                    setCurrentListValue(cursor);
                     return true;
                 } else {
                     init = true;
@@ -1471,14 +1758,14 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
                     } else {
                         cursor--;
                         currentKey = (long) cursor;
-                        setCurrentValue(getList().get(cursor));
+                        setCurrentListValue(cursor);
                         return true;
                     }
                 } else {
                     ListIterator<Object> keyIterator = (ListIterator) keys;
                     if (keyIterator.hasPrevious()) {
                         currentKey = keyIterator.previous();
-                        setCurrentValue(map.getEntry(currentKey));
+                        setCurrentValue(getReferences ? map.getEntry(currentKey) : map.peekEntry(currentKey));
                         return true;
                     } else {
                         currentKey = null;
@@ -1503,7 +1790,7 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
                     }
 
                     currentKey = (long) cursor;
-                    setCurrentValue(getList().get(cursor));
+                    setCurrentListValue(cursor);
                     cursor++;
                     return true;
                 } else {
@@ -1514,7 +1801,7 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
 
                     if (keys.hasNext()) {
                         currentKey = keys.next();
-                        setCurrentValue(map.getEntry(currentKey));
+                        setCurrentValue(getReferences ? map.getEntry(currentKey) : map.peekEntry(currentKey));
                         return true;
                     } else {
                         currentKey = null;
@@ -1531,6 +1818,59 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
         return foreachIterator(getReferences, getKeyReferences, false);
     }
 
+    /**
+     * @return the list array of a value for a by-value foreach over the list indexes (without an iterator) or null
+     */
+    public static ArrayMemory toForeachList(Memory memory) {
+        while (memory instanceof ReferenceMemory) {
+            memory = ((ReferenceMemory) memory).getValue();
+        }
+
+        if (memory instanceof ArrayMemory && ((ArrayMemory) memory).map == null) {
+            return (ArrayMemory) memory;
+        }
+
+        return null;
+    }
+
+    /**
+     * State of a foreach over the list indexes, the same as of {@link #foreachIterator(boolean, boolean, boolean)}:
+     * 1 - there is an element at the index, 0 - the iteration is done, -1 - the array is not a list anymore
+     * and the rest must be iterated by {@link #foreachIteratorFrom(int)}.
+     *
+     * @param max the size of the array at the start of the foreach
+     */
+    public int getForeachListState(int index, int max) {
+        if (map != null) {
+            return -1;
+        }
+
+        return index < max && size >= max ? 1 : 0;
+    }
+
+    public Memory getForeachListValue(int index) {
+        return getListValue(index);
+    }
+
+    /**
+     * @return a by-value iterator which skips the integer keys less than the index,
+     * they were iterated over the list indexes before the array became a map
+     */
+    public ForeachIterator foreachIteratorFrom(int index) {
+        ForeachIterator iterator = foreachIterator(false, false, true);
+
+        while (iterator.next()) {
+            Object key = iterator.getKey();
+
+            if (!(key instanceof Long) || (Long) key >= index) {
+                iterator.prev();
+                break;
+            }
+        }
+
+        return iterator;
+    }
+
     public ForeachIterator getCurrentIterator() {
         if (foreachIterator == null) {
             foreachIterator = foreachIterator(false, true);
@@ -1603,6 +1943,10 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
     }
 
     public long[] toLongArray() {
+        if (longs != null) {
+            return Arrays.copyOf(longs, size);
+        }
+
         long[] r = new long[size];
         int i = 0;
         for (Memory e : this) {
@@ -1633,6 +1977,10 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
     }
 
     public double[] toDoubleArray() {
+        if (doubles != null) {
+            return Arrays.copyOf(doubles, size);
+        }
+
         double[] r = new double[size];
         int i = 0;
         for (Memory e : this) {
@@ -2212,6 +2560,22 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
         return slice(offset, length, false);
     }
 
+    private void sliceList(ArrayMemory result, int from, int to, boolean saveKeys) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("fromIndex = " + from + ", toIndex = " + to + ", size = " + size);
+        }
+
+        for (int i = from; i < to; i++) {
+            Memory value = getListValue(i).fast_toImmutable();
+
+            if (saveKeys) {
+                result.refOfIndex(i).assign(value);
+            } else {
+                result.append(value);
+            }
+        }
+    }
+
     public ArrayMemory slice(int offset, boolean saveKeys) {
         ArrayMemory result = new ArrayMemory();
 
@@ -2220,20 +2584,7 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
         }
 
         if (isList()) {
-            int i = 0;
-            try {
-                for (ReferenceMemory referenceMemory : getList().subList(offset, getList().size())) {
-                    if (saveKeys) {
-                        result.refOfIndex(i + offset).assign(referenceMemory.fast_toImmutable());
-                    } else {
-                        result.add(referenceMemory.fast_toImmutable());
-                    }
-
-                    i++;
-                }
-            } catch (IllegalArgumentException e) {
-                throw new IndexOutOfBoundsException(e.getMessage());
-            }
+            sliceList(result, offset, size, saveKeys);
         } else {
             int i = 0;
 
@@ -2267,20 +2618,7 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
         }
 
         if (isList()) {
-            int i = 0;
-            try {
-                for (ReferenceMemory referenceMemory : getList().subList(offset, offset + length)) {
-                    if (saveKeys) {
-                        result.refOfIndex(i + offset).assign(referenceMemory.fast_toImmutable());
-                    } else {
-                        result.add(referenceMemory.fast_toImmutable());
-                    }
-
-                    i++;
-                }
-            } catch (IllegalArgumentException e) {
-                throw new IndexOutOfBoundsException(e.getMessage());
-            }
+            sliceList(result, offset, offset + length, saveKeys);
         } else {
             int i = 0, count = 0;
 
@@ -2318,6 +2656,8 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
 
         if (original != null ? !original.equals(that.original) : that.original != null) return false;
         if (_list != null ? !_list.equals(that._list) : that._list != null) return false;
+        if (longs != null ? that.longs == null || !Arrays.equals(toLongArray(), that.toLongArray()) : that.longs != null) return false;
+        if (doubles != null ? that.doubles == null || !Arrays.equals(toDoubleArray(), that.toDoubleArray()) : that.doubles != null) return false;
         return map != null ? map.equals(that.map) : that.map == null;
     }
 
@@ -2326,6 +2666,8 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
         int result = super.hashCode();
         result = 31 * result + (original != null ? original.hashCode() : 0);
         result = 31 * result + (_list != null ? _list.hashCode() : 0);
+        result = 31 * result + (longs != null ? Arrays.hashCode(toLongArray()) : 0);
+        result = 31 * result + (doubles != null ? Arrays.hashCode(toDoubleArray()) : 0);
         result = 31 * result + (map != null ? map.hashCode() : 0);
         return result;
     }
@@ -54,6 +54,10 @@ public class DoubleMemory extends Memory {
 
     @Override
     public String toString() {
+        return toString(value);
+    }
+
+    public static String toString(double value) {
         long longValue = (long) value;
 
         double abs = value < 0 ? - value : value;
@@ -1093,6 +1093,11 @@ public class ObjectMemory extends Memory {
                     return toValue().refOfPush(trace);
                 }
 
+                @Override
+                public Memory pushValue(Memory value, TraceInfo trace) {
+                    return toValue().pushValue(value, trace);
+                }
+
                 @Override
                 public Memory refOfIndexAsShortcut(TraceInfo trace, Memory index) {
                     return toValue().refOfIndexAsShortcut(trace, index);
@@ -763,6 +763,11 @@ public class ReferenceMemory extends Memory {
         return getValue().valueOfIndex(trace, index);
     }
 
+    @Override
+    public Memory valueOfIndexAsReference(TraceInfo trace, Memory index) {
+        return getValue().valueOfIndexAsReference(trace, index);
+    }
+
     @Override
     public Memory valueOfIndex(TraceInfo trace, long index) {
         return getValue().valueOfIndex(trace, index);
@@ -789,6 +794,12 @@ public class ReferenceMemory extends Memory {
         return getValue().refOfPush(trace);
     }
 
+    @Override
+    public Memory pushValue(Memory value, TraceInfo trace) {
+        needArray();
+        return getValue().pushValue(value, trace);
+    }
+
     @Override
     public Memory refOfIndexAsShortcut(TraceInfo trace, Memory index){
         needArray();
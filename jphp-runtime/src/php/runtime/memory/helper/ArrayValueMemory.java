@@ -64,6 +64,13 @@ public class ArrayValueMemory extends ReferenceMemory {
         return super.refOfPush(trace);
     }
 
+    @Override
+    public Memory pushValue(Memory value, TraceInfo trace) {
+        ArrayMemory dup = array.checkCopied();
+        if (dup != null) return dup.get(key).pushValue(value, trace);
+        return super.pushValue(value, trace);
+    }
+
     @Override
     public Memory refOfIndex(TraceInfo trace, Memory index) {
         ArrayMemory dup = array.checkCopied();
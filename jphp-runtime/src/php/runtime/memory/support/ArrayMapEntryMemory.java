@@ -7,35 +7,14 @@ import php.runtime.memory.ReferenceMemory;
 import java.util.Map;
 
 public class ArrayMapEntryMemory extends ReferenceMemory implements Map.Entry<Object, Memory>, KeyValue<Object, Memory> {
-    /**
-     * The next entry in the hash chain
-     */
-    protected ArrayMapEntryMemory next;
-
-    /**
-     * The entry before this one in the order
-     */
-    protected ArrayMapEntryMemory before;
-    /**
-     * The entry after this one in the order
-     */
-    protected ArrayMapEntryMemory after;
-
-    /**
-     * The hash code of the key
-     */
-    protected int hashCode;
-
     /**
      * The key
      */
     private Object key;
 
-    public ArrayMapEntryMemory(ArrayMapEntryMemory next, int hashCode, Object key, Memory value) {
+    public ArrayMapEntryMemory(Object key, Memory value) {
         super(value);
 
-        this.next = next;
-        this.hashCode = hashCode;
         this.key = key;
     }
 
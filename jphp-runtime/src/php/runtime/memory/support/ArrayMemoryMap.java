@@ -8,6 +8,13 @@ import php.runtime.common.collections.list.UnmodifiableList;
 import java.io.Serializable;
 import java.util.*;
 
+/**
+ * Insertion ordered hash map of array elements.
+ * <p/>
+ * Entries are stored densely in the insertion order, a removed entry leaves a hole which is dropped on the next rehash.
+ * Keys are found via an open addressing index (linear probing) which holds positions of the entries,
+ * hash codes of the keys are cached in a parallel array, so a probe rarely touches the key itself.
+ */
 public class ArrayMemoryMap extends AbstractMap<Object, Memory>
         implements IterableMap<Object, Memory>, OrderedMap<Object, Memory>, Serializable {
     /**
@@ -23,13 +30,9 @@ public class ArrayMemoryMap extends AbstractMap<Object, Memory>
     protected static final String SETVALUE_INVALID = "setValue() can only be called after next() and before remove()";
 
     /**
-     * The default capacity to use
+     * The default capacity to use (count of entries)
      */
-    protected static final int DEFAULT_CAPACITY = 11;
-    /**
-     * The default threshold to use
-     */
-    protected static final int DEFAULT_THRESHOLD = 8;
+    protected static final int DEFAULT_CAPACITY = 8;
     /**
      * The default load factor to use
      */
@@ -37,32 +40,65 @@ public class ArrayMemoryMap extends AbstractMap<Object, Memory>
     /**
      * The maximum capacity allowed
      */
-    protected static final int MAXIMUM_CAPACITY = 1 << 30;
+    protected static final int MAXIMUM_CAPACITY = 1 << 29;
     /**
      * An object for masking null
      */
     protected static final Object NULL = new Object();
 
     /**
-     * Load factor, normally 0.75
+     * Free slot of the index
      */
-    protected transient float loadFactor;
+    protected static final int EMPTY = 0;
+    /**
+     * Slot of a removed entry, a probe passes it
+     */
+    protected static final int DELETED = -1;
+
     /**
      * The size of the map
      */
     protected transient int size;
     /**
-     * Map entries
+     * Entries in the insertion order, null for removed ones
+     */
+    protected transient ArrayMapEntryMemory[] entries;
+    /**
+     * Hash codes of the keys of entries
+     */
+    protected transient int[] hashes;
+    /**
+     * Open addressing table, a slot holds a position of an entry + 1, or EMPTY, or DELETED
+     */
+    protected transient int[] index;
+    /**
+     * Count of used positions of entries (with holes)
+     */
+    protected transient int used;
+    /**
+     * Position of the first entry
+     */
+    protected transient int first;
+    /**
+     * Count of not empty slots of the index
      */
-    protected transient ArrayMapEntryMemory[] data;
+    protected transient int fill;
     /**
-     * Size at which to rehash
+     * Fill at which to rehash
      */
     protected transient int threshold;
     /**
      * Modification count for iterators
      */
     protected transient int modCount;
+    /**
+     * Chunks of entries shared with copies of the map, null if there are no such ones
+     */
+    protected transient SharedChunks shared;
+    /**
+     * Chunks of entries handed out for changes, see {@link SharedChunks#escape(long[], int)}
+     */
+    protected transient long[] escaped;
     /**
      * Entry set
      */
@@ -76,28 +112,8 @@ public class ArrayMemoryMap extends AbstractMap<Object, Memory>
      */
     protected transient Values values;
 
-    protected transient ArrayMapEntryMemory header;
-
-    /**
-     * Constructor only used in deserialization, do not use otherwise.
-     */
     public ArrayMemoryMap() {
-        this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR, DEFAULT_THRESHOLD);
-    }
-
-    /**
-     * Constructor which performs no validation on the passed in parameters.
-     *
-     * @param initialCapacity the initial capacity, must be a power of two
-     * @param loadFactor      the load factor, must be &gt; 0.0f and generally &lt; 1.0f
-     * @param threshold       the threshold, must be sensible
-     */
-    protected ArrayMemoryMap(int initialCapacity, float loadFactor, int threshold) {
-        super();
-        this.loadFactor = loadFactor;
-        this.data = new ArrayMapEntryMemory[initialCapacity];
-        this.threshold = threshold;
-        init();
+        allocate(DEFAULT_CAPACITY);
     }
 
     /**
@@ -113,7 +129,7 @@ public class ArrayMemoryMap extends AbstractMap<Object, Memory>
 
     /**
      * Constructs a new, empty map with the specified initial capacity and
-     * load factor.
+     * load factor, the map holds <code>initialCapacity * loadFactor</code> entries without rehashing.
      *
      * @param initialCapacity the initial capacity
      * @param loadFactor      the load factor
@@ -128,11 +144,7 @@ public class ArrayMemoryMap extends AbstractMap<Object, Memory>
         if (loadFactor <= 0.0f || Float.isNaN(loadFactor)) {
             throw new IllegalArgumentException("Load factor must be greater than 0");
         }
-        this.loadFactor = loadFactor;
-        this.threshold = calculateThreshold(initialCapacity, loadFactor);
-        initialCapacity = calculateNewCapacity(initialCapacity);
-        this.data = new ArrayMapEntryMemory[initialCapacity];
-        init();
+        allocate(Math.max(1, calculateThreshold(initialCapacity, loadFactor)));
     }
 
     /**
@@ -142,16 +154,120 @@ public class ArrayMemoryMap extends AbstractMap<Object, Memory>
      * @throws NullPointerException if the map is null
      */
     public ArrayMemoryMap(ArrayMemoryMap map) {
-        this(Math.max(2 * map.size(), DEFAULT_CAPACITY), DEFAULT_LOAD_FACTOR);
+        allocate(Math.max(map.size(), DEFAULT_CAPACITY));
         putAll(map);
     }
 
     /**
-     * Initialise subclasses during construction, cloning or deserialization.
+     * Constructor of a copy which shares the entries of the map, see {@link #share()}.
+     */
+    protected ArrayMemoryMap(ArrayMemoryMap map, SharedChunks shared) {
+        this.entries = map.entries.clone();
+        this.hashes = map.hashes.clone();
+        this.index = map.index.clone();
+        this.size = map.size;
+        this.used = map.used;
+        this.first = map.first;
+        this.fill = map.fill;
+        this.threshold = map.threshold;
+        this.shared = shared;
+        this.escaped = map.escaped == null ? null : map.escaped.clone();
+    }
+
+    /**
+     * Copy of the map which shares the entries, an entry can be changed only after the map gets it
+     * via {@link #getEntry(Object)}, {@link #put(Object, Memory)} or the iterators of entries,
+     * {@link #peekEntry(Object)} returns an entry only for reading.
+     *
+     * @return a copy of the map
+     */
+    public synchronized ArrayMemoryMap share() {
+        if (shared == null) {
+            shared = new SharedChunks();
+        }
+
+        return new ArrayMemoryMap(this, shared.share(used, escaped != null));
+    }
+
+    /**
+     * Clones the shared entries of the chunk of the position.
+     *
+     * @param position position of an entry
+     */
+    protected void release(int position) {
+        releaseEscaped();
+        releaseChunk(position >> SharedChunks.SHIFT);
+
+        if (shared.isEmpty()) {
+            shared = null;
+        }
+    }
+
+    /**
+     * Clones all shared entries.
+     */
+    protected void releaseAll() {
+        for (int i = 0, length = shared.length(); i < length; i++) {
+            releaseChunk(i);
+        }
+
+        shared = null;
+    }
+
+    /**
+     * Releases the escaped chunks on the first change after sharing.
+     */
+    private void releaseEscaped() {
+        if (shared.takeEscaped()) {
+            for (int chunk = 0, length = shared.length(); chunk < length; chunk++) {
+                if (SharedChunks.isEscaped(escaped, chunk)) {
+                    releaseChunk(chunk);
+                }
+            }
+        }
+    }
+
+    private void releaseChunk(int chunk) {
+        if (shared.release(chunk)) {
+            int from = chunk << SharedChunks.SHIFT;
+            int to = Math.min(from + SharedChunks.SIZE, used);
+
+            for (int i = from; i < to; i++) {
+                ArrayMapEntryMemory entry = entries[i];
+
+                if (entry != null) {
+                    entries[i] = new ArrayMapEntryMemory(entry.getKey(), entry.getValue().fast_toImmutable());
+                }
+            }
+
+            SharedChunks.unescape(escaped, chunk);
+        }
+    }
+
+    /**
+     * Releases the entry at the position which is handed out for changes.
+     */
+    protected void releaseForChange(int position) {
+        if (shared != null) {
+            release(position);
+        }
+
+        escaped = SharedChunks.escape(escaped, position);
+    }
+
+    /**
+     * Allocates empty storage.
+     *
+     * @param capacity count of entries to hold without rehashing
      */
-    protected void init() {
-        header = new ArrayMapEntryMemory(null, -1, null, null);
-        header.before = header.after = header;
+    protected void allocate(int capacity) {
+        int length = calculateNewCapacity(Math.min(capacity, MAXIMUM_CAPACITY) * 2);
+
+        index = new int[length];
+        entries = new ArrayMapEntryMemory[length >> 1];
+        hashes = new int[length >> 1];
+        threshold = calculateThreshold(length, DEFAULT_LOAD_FACTOR);
+        used = first = fill = 0;
     }
 
     /**
@@ -162,7 +278,7 @@ public class ArrayMemoryMap extends AbstractMap<Object, Memory>
      * @throws IndexOutOfBoundsException if the index is invalid
      */
     public Object get(int index) {
-        return getEntry(index).getKey();
+        return entryAt(index).getKey();
     }
 
     /**
@@ -173,7 +289,7 @@ public class ArrayMemoryMap extends AbstractMap<Object, Memory>
      * @throws IndexOutOfBoundsException if the index is invalid
      */
     public Memory getValue(int index) {
-        return getEntry(index).getValue();
+        return entryAt(index).getValue();
     }
 
     /**
@@ -183,13 +299,22 @@ public class ArrayMemoryMap extends AbstractMap<Object, Memory>
      * @return the index, or -1 if not found
      */
     public int indexOf(Object key) {
+        int position = findPosition(key);
+        if (position < 0) {
+            return -1;
+        }
+
+        if (used - first == size) {
+            return position - first;
+        }
+
         int i = 0;
-        for (ArrayMapEntryMemory entry = header.after; entry != header; entry = entry.after, i++) {
-            if (isEqualKey(key, entry.getKey())) {
-                return i;
+        for (int j = first; j < position; j++) {
+            if (entries[j] != null) {
+                i++;
             }
         }
-        return -1;
+        return i;
     }
 
     /**
@@ -308,15 +433,8 @@ public class ArrayMemoryMap extends AbstractMap<Object, Memory>
      * @return the mapped value, null if no match
      */
     public Memory get(Object key) {
-        int hashCode = hash((key == null) ? NULL : key);
-        ArrayMapEntryMemory entry = data[hashIndex(hashCode, data.length)]; // no local for hash index
-        while (entry != null) {
-            if (entry.hashCode == hashCode && isEqualKey(key, entry.getKey())) {
-                return entry.getValue();
-            }
-            entry = entry.next;
-        }
-        return null;
+        int position = findPosition(key);
+        return position < 0 ? null : entries[position].getValue();
     }
 
     /**
@@ -339,15 +457,7 @@ public class ArrayMemoryMap extends AbstractMap<Object, Memory>
      * @return true if the map contains the key
      */
     public boolean containsKey(Object key) {
-        int hashCode = hash((key == null) ? NULL : key);
-        ArrayMapEntryMemory entry = data[hashIndex(hashCode, data.length)]; // no local for hash index
-        while (entry != null) {
-            if (entry.hashCode == hashCode && isEqualKey(key, entry.getKey())) {
-                return true;
-            }
-            entry = entry.next;
-        }
-        return false;
+        return findPosition(key) >= 0;
     }
 
     /**
@@ -357,16 +467,13 @@ public class ArrayMemoryMap extends AbstractMap<Object, Memory>
      * @return true if the map contains the value
      */
     public boolean containsValue(Object value) {
-        // override uses faster iterator
-        if (value == null) {
-            for (ArrayMapEntryMemory entry = header.after; entry != header; entry = entry.after) {
-                if (entry.getValue() == null) {
-                    return true;
-                }
-            }
-        } else {
-            for (ArrayMapEntryMemory entry = header.after; entry != header; entry = entry.after) {
-                if (isEqualValue(value, entry.getValue())) {
+        ArrayMapEntryMemory[] entries = this.entries;
+
+        for (int i = first; i < used; i++) {
+            ArrayMapEntryMemory entry = entries[i];
+
+            if (entry != null) {
+                if (value == null ? entry.getValue() == null : isEqualValue(value, entry.getValue())) {
                     return true;
                 }
             }
@@ -382,30 +489,54 @@ public class ArrayMemoryMap extends AbstractMap<Object, Memory>
      * @return the value previously mapped to this key, null if none
      */
     public Memory put(Object key, Memory value) {
-        return putWithCallback(key, value, null);
+        int position = putValue(key, value, null);
+        return entries[position];
     }
 
+    /**
+     * Puts a key-value mapping into this map, the entry can be changed (e.g. bound as a reference) by the caller.
+     *
+     * @param onAdd called if the key is added
+     * @return the entry of the key
+     */
     public ArrayMapEntryMemory putWithCallback(Object key, Memory value, Runnable onAdd) {
+        int position = putValue(key, value, onAdd);
+
+        escaped = SharedChunks.escape(escaped, position);
+        return entries[position];
+    }
+
+    /**
+     * @return position of the entry of the key
+     */
+    protected int putValue(Object key, Memory value, Runnable onAdd) {
         int hashCode = hash((key == null) ? NULL : key);
-        int index = hashIndex(hashCode, data.length);
-        ArrayMapEntryMemory entry = data[index];
-
-        while (entry != null) {
-            if (entry.hashCode == hashCode && isEqualKey(key, entry.getKey())) {
-                //Memory oldValue = entry.getValue();
-                updateEntry(entry, value);
-                return entry;
-            }
+        int[] index = this.index;
+        int mask = index.length - 1;
+        int deleted = -1;
+        int i = hashIndex(hashCode, index.length);
+
+        for (int slot; (slot = index[i]) != EMPTY; i = (i + 1) & mask) {
+            if (slot == DELETED) {
+                if (deleted < 0) {
+                    deleted = i;
+                }
+            } else if (hashes[slot - 1] == hashCode && isEqualKey(key, entries[slot - 1].getKey())) {
+                if (shared != null) {
+                    release(slot - 1);
+                }
 
-            entry = entry.next;
+                updateEntry(entries[slot - 1], value);
+                return slot - 1;
+            }
         }
 
-        entry = addMapping(index, hashCode, key, value);
+        addMapping(deleted < 0 ? i : deleted, hashCode, key, value);
         if (onAdd != null) {
             onAdd.run();
         }
 
-        return entry;
+        return used - 1;
     }
 
     /**
@@ -419,12 +550,38 @@ public class ArrayMemoryMap extends AbstractMap<Object, Memory>
         if (mapSize == 0) {
             return;
         }
-        int newSize = (int) ((size + mapSize) / loadFactor + 1);
-        ensureCapacity(calculateNewCapacity(newSize));
-        // Have to cast here because of compiler inference problems.
-        for (Iterator it = map.entrySet().iterator(); it.hasNext();) {
-            ArrayMapEntryMemory entry = (ArrayMapEntryMemory) it.next();
-            put(entry.getKey(), entry.getValue());
+
+        if (size == 0) {
+            // keys of the map are unique, so they are indexed without comparing
+            if (mapSize > entries.length || fill + mapSize > threshold) {
+                rehash(Math.max(mapSize, entries.length));
+            }
+            modCount++;
+
+            int mask = index.length - 1;
+            for (int j = map.first; j < map.used; j++) {
+                ArrayMapEntryMemory entry = map.entries[j];
+
+                if (entry != null) {
+                    int hashCode = map.hashes[j];
+                    int i = hashIndex(hashCode, index.length);
+                    while (index[i] != EMPTY) {
+                        i = (i + 1) & mask;
+                    }
+
+                    addEntry(i, hashCode, new ArrayMapEntryMemory(entry.getKey(), entry.getValue()));
+                }
+            }
+            return;
+        }
+
+        ensureCapacity(size + mapSize);
+        for (int j = map.first; j < map.used; j++) {
+            ArrayMapEntryMemory entry = map.entries[j];
+
+            if (entry != null) {
+                put(entry.getKey(), entry.getValue());
+            }
         }
     }
 
@@ -435,20 +592,19 @@ public class ArrayMemoryMap extends AbstractMap<Object, Memory>
      * @return the value mapped to the removed key, null if key not in map
      */
     public Memory remove(Object key) {
-        int hashCode = hash((key == null) ? NULL : key);
-        int index = hashIndex(hashCode, data.length);
-        ArrayMapEntryMemory entry = data[index];
-        ArrayMapEntryMemory previous = null;
-        while (entry != null) {
-            if (entry.hashCode == hashCode && isEqualKey(key, entry.getKey())) {
-                Memory oldValue = entry.getValue();
-                removeMapping(entry, index, previous);
-                return oldValue;
-            }
-            previous = entry;
-            entry = entry.next;
+        int slot = findSlot(key);
+        if (slot < 0) {
+            return null;
         }
-        return null;
+
+        if (shared != null) {
+            release(index[slot] - 1);
+        }
+
+        ArrayMapEntryMemory entry = entries[index[slot] - 1];
+        Memory oldValue = entry.getValue();
+        removeMapping(entry, slot);
+        return oldValue;
     }
 
     /**
@@ -457,39 +613,42 @@ public class ArrayMemoryMap extends AbstractMap<Object, Memory>
      */
     public void clear() {
         modCount++;
-        ArrayMapEntryMemory[] data = this.data;
-        for (int i = data.length - 1; i >= 0; i--) {
-            data[i] = null;
+        if (shared != null) {
+            shared.clear();
+            shared = null;
         }
-        size = 0;
+        escaped = null;
 
-        header.before = header.after = header;
+        Arrays.fill(entries, 0, used, null);
+        Arrays.fill(index, EMPTY);
+
+        size = used = first = fill = 0;
     }
 
     /**
-     * Gets the first key in the map, which is the most recently inserted.
+     * Gets the first key in the map, which is the eldest.
      *
-     * @return the most recently inserted key
+     * @return the eldest key
      */
     public Object firstKey() {
         if (size == 0) {
             throw new NoSuchElementException("Map is empty");
         }
 
-        return header.after.getKey();
+        return entries[first].getKey();
     }
 
     /**
-     * Gets the last key in the map, which is the first inserted.
+     * Gets the last key in the map, which is the most recently inserted.
      *
-     * @return the eldest key
+     * @return the most recently inserted key
      */
     public Object lastKey() {
         if (size == 0) {
             throw new NoSuchElementException("Map is empty");
         }
 
-        return header.before.getKey();
+        return entries[used - 1].getKey();
     }
 
     /**
@@ -499,8 +658,17 @@ public class ArrayMemoryMap extends AbstractMap<Object, Memory>
      * @return the next key
      */
     public Object nextKey(Object key) {
-        ArrayMapEntryMemory entry = (ArrayMapEntryMemory) getEntry(key);
-        return (entry == null || entry.after == header ? null : entry.after.getKey());
+        int position = findPosition(key);
+        if (position < 0) {
+            return null;
+        }
+
+        for (int i = position + 1; i < used; i++) {
+            if (entries[i] != null) {
+                return entries[i].getKey();
+            }
+        }
+        return null;
     }
 
     /**
@@ -510,25 +678,27 @@ public class ArrayMemoryMap extends AbstractMap<Object, Memory>
      * @return the previous key
      */
     public Object previousKey(Object key) {
-        ArrayMapEntryMemory entry = (ArrayMapEntryMemory) getEntry(key);
-        return (entry == null || entry.before == header ? null : entry.before.getKey());
+        int position = findPosition(key);
+        if (position < 0) {
+            return null;
+        }
+
+        for (int i = position - 1; i >= first; i--) {
+            if (entries[i] != null) {
+                return entries[i].getKey();
+            }
+        }
+        return null;
     }
 
     /**
      * Gets the hash code for the key specified.
-     * This implementation uses the additional hashing routine from JDK1.4.
      * Subclasses can override this to return alternate hash codes.
      *
      * @param key the key to get a hash code for
      * @return the hash code
      */
     protected int hash(Object key) {
-        // same as JDK 1.4
-        /*int h = key.hashCode();
-        h += ~(h << 9);
-        h ^= (h >>> 14);
-        h += (h << 4);
-        h ^= (h >>> 10);*/
         return key.hashCode();
     }
 
@@ -559,41 +729,142 @@ public class ArrayMemoryMap extends AbstractMap<Object, Memory>
     }
 
     /**
-     * Gets the index into the data storage for the hashCode specified.
-     * This implementation uses the least significant bits of the hashCode.
-     * Subclasses can override this to return alternate bucketing.
+     * Gets the first slot of the index to probe for the hashCode specified.
+     * This implementation mixes the high bits into the least significant bits of the hashCode.
      *
      * @param hashCode the hash code to use
-     * @param dataSize the size of the data to pick a bucket from
-     * @return the bucket index
+     * @param dataSize the size of the index (a power of two)
+     * @return the slot
      */
     protected int hashIndex(int hashCode, int dataSize) {
-        return hashCode & (dataSize - 1);
+        return (hashCode ^ (hashCode >>> 16)) & (dataSize - 1);
+    }
+
+    /**
+     * Finds the slot of the index which refers to the key.
+     *
+     * @param key the key
+     * @return the slot, -1 if no match
+     */
+    protected int findSlot(Object key) {
+        int hashCode = hash((key == null) ? NULL : key);
+        int[] index = this.index;
+        int mask = index.length - 1;
+
+        for (int i = hashIndex(hashCode, index.length), slot; (slot = index[i]) != EMPTY; i = (i + 1) & mask) {
+            if (slot != DELETED && hashes[slot - 1] == hashCode && isEqualKey(key, entries[slot - 1].getKey())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the position of the entry of the key.
+     *
+     * @param key the key
+     * @return the position in the entries, -1 if no match
+     */
+    protected int findPosition(Object key) {
+        int slot = findSlot(key);
+        return slot < 0 ? -1 : index[slot] - 1;
     }
 
     /**
      * Gets the entry mapped to the key specified.
-     * <p/>
-     * This method exists for subclasses that may need to perform a multi-step
-     * process accessing the entry. The public methods in this class don't use this
-     * method to gain a small performance boost.
      *
      * @param key the key
      * @return the entry, null if no match
      */
     public ArrayMapEntryMemory getEntry(Object key) {
-        int hashCode = hash((key == null) ? NULL : key);
-        ArrayMapEntryMemory entry = data[hashIndex(hashCode, data.length)]; // no local for hash index
-        while (entry != null) {
-            if (entry.hashCode == hashCode && isEqualKey(key, entry.getKey())) {
-                return entry;
+        int position = findPosition(key);
+        if (position < 0) {
+            return null;
+        }
+
+        if (shared != null) {
+            release(position);
+        }
+
+        escaped = SharedChunks.escape(escaped, position);
+        return entries[position];
+    }
+
+    /**
+     * Gets the entry at the position of insertion if it is mapped to the key specified, as {@link #getEntry(Object)}.
+     *
+     * @param position the expected position of the entry
+     * @param key the key
+     * @return the entry, null if the entry at the position has another key
+     */
+    public ArrayMapEntryMemory getEntryAt(int position, Object key) {
+        if (peekEntryAt(position, key) == null) {
+            return null;
+        }
+
+        releaseForChange(position);
+        return entries[position];
+    }
+
+    /**
+     * Gets the entry at the position of insertion only for reading as {@link #peekEntry(Object)}.
+     *
+     * @param position the expected position of the entry
+     * @param key the key
+     * @return the entry, null if the entry at the position has another key
+     */
+    public ArrayMapEntryMemory peekEntryAt(int position, Object key) {
+        if (position >= used) {
+            return null;
+        }
+
+        ArrayMapEntryMemory entry = entries[position];
+        return entry == null || !isEqualKey(key, entry.getKey()) ? null : entry;
+    }
+
+    /**
+     * Gets the entry mapped to the key specified only for reading, the entry can be shared with a copy of the map.
+     *
+     * @param key the key
+     * @return the entry, null if no match
+     */
+    public ArrayMapEntryMemory peekEntry(Object key) {
+        int position = findPosition(key);
+        return position < 0 ? null : entries[position];
+    }
+
+    /**
+     * Gets the entry mapped to the integer key without boxing it, only for reading as {@link #peekEntry(Object)}.
+     *
+     * @param key the key
+     * @return the entry, null if no match
+     */
+    public ArrayMapEntryMemory peekEntry(long key) {
+        int hashCode = Long.hashCode(key);
+        int[] index = this.index;
+        int mask = index.length - 1;
+
+        for (int i = hashIndex(hashCode, index.length), slot; (slot = index[i]) != EMPTY; i = (i + 1) & mask) {
+            if (slot != DELETED && hashes[slot - 1] == hashCode) {
+                ArrayMapEntryMemory entry = entries[slot - 1];
+                Object k = entry.getKey();
+
+                if (k instanceof Long && (Long) k == key) {
+                    return entry;
+                }
             }
-            entry = entry.next;
         }
         return null;
     }
 
-    protected ArrayMapEntryMemory getEntry(int index) {
+    /**
+     * Gets the entry at the specified index of the order.
+     *
+     * @param index the index
+     * @return the entry
+     * @throws IndexOutOfBoundsException if the index is invalid
+     */
+    protected ArrayMapEntryMemory entryAt(int index) {
         if (index < 0) {
             throw new IndexOutOfBoundsException("Index " + index + " is less than zero");
         }
@@ -601,21 +872,15 @@ public class ArrayMemoryMap extends AbstractMap<Object, Memory>
             throw new IndexOutOfBoundsException("Index " + index + " is invalid for size " + size);
         }
 
-        ArrayMapEntryMemory entry;
-        if (index < (size / 2)) {
-            // Search forwards
-            entry = header.after;
-            for (int currentIndex = 0; currentIndex < index; currentIndex++) {
-                entry = entry.after;
-            }
-        } else {
-            // Search backwards
-            entry = header;
-            for (int currentIndex = size; currentIndex > index; currentIndex--) {
-                entry = entry.before;
+        if (used - first == size) {
+            return entries[first + index];
+        }
+
+        for (int i = first; ; i++) {
+            if (entries[i] != null && index-- == 0) {
+                return entries[i];
             }
         }
-        return entry;
     }
 
     /**
@@ -631,199 +896,174 @@ public class ArrayMemoryMap extends AbstractMap<Object, Memory>
         entry.setValue(newValue);
     }
 
-    /**
-     * Reuses an existing key-value mapping, storing completely new data.
-     * <p/>
-     * This implementation sets all the data fields on the entry.
-     * Subclasses could populate additional entry fields.
-     *
-     * @param entry     the entry to update, not null
-     * @param hashIndex the index in the data array
-     * @param hashCode  the hash code of the key to add
-     * @param key       the key to add
-     * @param value     the value to add
-     */
-    protected void reuseEntry(ArrayMapEntryMemory entry, int hashIndex, int hashCode, Object key, Memory value) {
-        entry.next = data[hashIndex];
-        entry.hashCode = hashCode;
-        entry.setKey(key);
-        entry.setValue(value);
-    }
-
     /**
      * Adds a new key-value mapping into this map.
      * <p/>
-     * This implementation calls <code>createEntry()</code>, <code>addEntry()</code>
-     * and <code>checkCapacity()</code>.
+     * This implementation calls <code>checkCapacity()</code> and <code>addEntry()</code>.
      * It also handles changes to <code>modCount</code> and <code>size</code>.
      * Subclasses could override to fully control adds to the map.
      *
-     * @param hashIndex the index into the data array to store at
+     * @param slot      the slot of the index to store at
      * @param hashCode  the hash code of the key to add
      * @param key       the key to add
      * @param value     the value to add
      */
-    protected ArrayMapEntryMemory addMapping(int hashIndex, int hashCode, Object key, Memory value) {
+    protected ArrayMapEntryMemory addMapping(int slot, int hashCode, Object key, Memory value) {
         modCount++;
-        ArrayMapEntryMemory entry = new ArrayMapEntryMemory(data[hashIndex], hashCode, key, value);
-        addEntry(entry, hashIndex);
-        size++;
-        checkCapacity();
 
+        if (used == entries.length || (index[slot] == EMPTY && fill >= threshold)) {
+            checkCapacity();
+
+            int mask = index.length - 1;
+            slot = hashIndex(hashCode, index.length);
+            while (index[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        if (shared != null) {
+            release(used);
+        }
+
+        ArrayMapEntryMemory entry = new ArrayMapEntryMemory(key, value);
+        addEntry(slot, hashCode, entry);
         return entry;
     }
 
     /**
-     * Adds an entry into this map.
-     * <p/>
-     * This implementation adds the entry to the data storage table.
-     * Subclasses could override to handle changes to the map.
+     * Appends an entry to the order and refers to it from the slot of the index.
+     * The capacity must be checked before.
      *
-     * @param entry     the entry to add
-     * @param hashIndex the index into the data array to store at
+     * @param slot     the slot of the index
+     * @param hashCode the hash code of the key of the entry
+     * @param entry    the entry to add
      */
-    protected void addEntry(ArrayMapEntryMemory entry, int hashIndex) {
-        ArrayMapEntryMemory link = entry;
-        link.after = header;
-        link.before = header.before;
-        header.before.after = link;
-        header.before = link;
-        data[hashIndex] = entry;
-    }
+    protected void addEntry(int slot, int hashCode, ArrayMapEntryMemory entry) {
+        if (index[slot] == EMPTY) {
+            fill++;
+        }
 
+        if (size == 0) {
+            first = used;
+        }
+
+        entries[used] = entry;
+        hashes[used] = hashCode;
+        index[slot] = ++used;
+        size++;
+    }
 
     /**
      * Removes a mapping from the map.
      * <p/>
-     * This implementation calls <code>removeEntry()</code> and <code>destroyEntry()</code>.
+     * This implementation leaves a hole in the entries and calls <code>destroyEntry()</code>.
      * It also handles changes to <code>modCount</code> and <code>size</code>.
-     * Subclasses could override to fully control removals from the map.
      *
-     * @param entry     the entry to remove
-     * @param hashIndex the index into the data structure
-     * @param previous  the previous entry in the chain
+     * @param entry the entry to remove
+     * @param slot  the slot of the index which refers to the entry
      */
-    protected void removeMapping(ArrayMapEntryMemory entry, int hashIndex, ArrayMapEntryMemory previous) {
+    protected void removeMapping(ArrayMapEntryMemory entry, int slot) {
         modCount++;
-        removeEntry(entry, hashIndex, previous);
+
+        int position = index[slot] - 1;
+        index[slot] = DELETED;
+        entries[position] = null;
         size--;
-        destroyEntry(entry);
-    }
 
-    /**
-     * Removes an entry from the chain stored in a particular index.
-     * <p/>
-     * This implementation removes the entry from the data storage table.
-     * The size is not updated.
-     * Subclasses could override to handle changes to the map.
-     *
-     * @param entry     the entry to remove
-     * @param hashIndex the index into the data structure
-     * @param previous  the previous entry in the chain
-     */
-    protected void removeEntry(ArrayMapEntryMemory entry, int hashIndex, ArrayMapEntryMemory previous) {
-        ArrayMapEntryMemory link = entry;
-        link.before.after = link.after;
-        link.after.before = link.before;
-        link.after = null;
-        link.before = null;
-
-        if (previous == null) {
-            data[hashIndex] = entry.next;
+        if (size == 0) {
+            used = first = 0;
         } else {
-            previous.next = entry.next;
+            while (entries[used - 1] == null) {
+                used--;
+            }
+            while (entries[first] == null) {
+                first++;
+            }
         }
-    }
-
-    /**
-     * Gets the <code>before</code> field from a <code>LinkEntry</code>.
-     * Used in subclasses that have no visibility of the field.
-     *
-     * @param entry the entry to query, must not be null
-     * @return the <code>before</code> field of the entry
-     * @throws NullPointerException if the entry is null
-     * @since Commons Collections 3.1
-     */
-    protected ArrayMapEntryMemory entryBefore(ArrayMapEntryMemory entry) {
-        return entry.before;
-    }
 
-    /**
-     * Gets the <code>after</code> field from a <code>LinkEntry</code>.
-     * Used in subclasses that have no visibility of the field.
-     *
-     * @param entry the entry to query, must not be null
-     * @return the <code>after</code> field of the entry
-     * @throws NullPointerException if the entry is null
-     * @since Commons Collections 3.1
-     */
-    protected ArrayMapEntryMemory entryAfter(ArrayMapEntryMemory entry) {
-        return entry.after;
+        destroyEntry(entry);
     }
 
-
     /**
      * Kills an entry ready for the garbage collector.
      * <p/>
-     * This implementation prepares the HashEntry for garbage collection.
      * Subclasses can override this to implement caching (override clear as well).
      *
      * @param entry the entry to destroy
      */
     protected void destroyEntry(ArrayMapEntryMemory entry) {
-        entry.next = null;
         entry.setKey(null);
         entry.setValue(null);
     }
 
     /**
-     * Checks the capacity of the map and enlarges it if necessary.
-     * <p/>
-     * This implementation uses the threshold to check if the map needs enlarging
+     * Makes room for a new entry, the storage is doubled when it is at least half full,
+     * otherwise it only drops the holes of the removed entries.
      */
     protected void checkCapacity() {
-        if (size >= threshold) {
-            int newCapacity = data.length * 2;
-            if (newCapacity <= MAXIMUM_CAPACITY) {
-                ensureCapacity(newCapacity);
-            }
+        int capacity = entries.length;
+        if (size >= capacity >> 1 && capacity < MAXIMUM_CAPACITY) {
+            capacity <<= 1;
+        }
+
+        rehash(capacity);
+    }
+
+    /**
+     * Enlarges the storage to hold the specified count of entries.
+     *
+     * @param capacity count of entries
+     */
+    protected void ensureCapacity(int capacity) {
+        if (capacity > entries.length) {
+            rehash(capacity);
         }
     }
 
     /**
-     * Changes the size of the data structure to the capacity proposed.
+     * Rebuilds the storage for the capacity proposed, the entries are compacted keeping their order.
      *
-     * @param newCapacity the new capacity of the array (a power of two, less or equal to max)
+     * @param capacity count of entries, not less than the size
      */
-    protected void ensureCapacity(int newCapacity) {
-        int oldCapacity = data.length;
-        if (newCapacity <= oldCapacity) {
-            return;
+    protected void rehash(int capacity) {
+        if (shared != null) {
+            // positions of the entries are changed
+            releaseAll();
         }
-        if (size == 0) {
-            threshold = calculateThreshold(newCapacity, loadFactor);
-            data = new ArrayMapEntryMemory[newCapacity];
-        } else {
-            ArrayMapEntryMemory oldEntries[] = data;
-            ArrayMapEntryMemory newEntries[] = new ArrayMapEntryMemory[newCapacity];
 
-            modCount++;
-            for (int i = oldCapacity - 1; i >= 0; i--) {
-                ArrayMapEntryMemory entry = oldEntries[i];
-                if (entry != null) {
-                    oldEntries[i] = null;  // gc
-                    do {
-                        ArrayMapEntryMemory next = entry.next;
-                        int index = hashIndex(entry.hashCode, newCapacity);
-                        entry.next = newEntries[index];
-                        newEntries[index] = entry;
-                        entry = next;
-                    } while (entry != null);
+        ArrayMapEntryMemory[] oldEntries = entries;
+        int[] oldHashes = hashes;
+        int oldFirst = first, oldUsed = used;
+        long[] oldEscaped = escaped;
+        escaped = null;
+
+        modCount++;
+        allocate(capacity);
+
+        int[] index = this.index;
+        int mask = index.length - 1;
+
+        for (int j = oldFirst; j < oldUsed; j++) {
+            ArrayMapEntryMemory entry = oldEntries[j];
+
+            if (entry != null) {
+                int hashCode = oldHashes[j];
+                int i = hashIndex(hashCode, index.length);
+                while (index[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+
+                if (SharedChunks.isEscaped(oldEscaped, j >> SharedChunks.SHIFT)) {
+                    escaped = SharedChunks.escape(escaped, used);
                 }
+
+                entries[used] = entry;
+                hashes[used] = hashCode;
+                index[i] = ++used;
             }
-            threshold = calculateThreshold(newCapacity, loadFactor);
-            data = newEntries;
         }
+
+        fill = used;
     }
 
     /**
@@ -835,15 +1075,8 @@ public class ArrayMemoryMap extends AbstractMap<Object, Memory>
      */
     protected int calculateNewCapacity(int proposedCapacity) {
         int newCapacity = 1;
-        if (proposedCapacity > MAXIMUM_CAPACITY) {
-            newCapacity = MAXIMUM_CAPACITY;
-        } else {
-            while (newCapacity < proposedCapacity) {
-                newCapacity <<= 1;  // multiply by two
-            }
-            if (newCapacity > MAXIMUM_CAPACITY) {
-                newCapacity = MAXIMUM_CAPACITY;
-            }
+        while (newCapacity < proposedCapacity) {
+            newCapacity <<= 1;  // multiply by two
         }
         return newCapacity;
     }
@@ -861,55 +1094,20 @@ public class ArrayMemoryMap extends AbstractMap<Object, Memory>
     }
 
     /**
-     * Gets the <code>next</code> field from a <code>HashEntry</code>.
-     * Used in subclasses that have no visibility of the field.
-     *
-     * @param entry the entry to query, must not be null
-     * @return the <code>next</code> field of the entry
-     * @throws NullPointerException if the entry is null
-     * @since Commons Collections 3.1
-     */
-    protected ArrayMapEntryMemory entryNext(ArrayMapEntryMemory entry) {
-        return entry.next;
-    }
-
-    /**
-     * Gets the <code>hashCode</code> field from a <code>HashEntry</code>.
-     * Used in subclasses that have no visibility of the field.
-     *
-     * @param entry the entry to query, must not be null
-     * @return the <code>hashCode</code> field of the entry
-     * @throws NullPointerException if the entry is null
-     * @since Commons Collections 3.1
-     */
-    protected int entryHashCode(ArrayMapEntryMemory entry) {
-        return entry.hashCode;
-    }
-
-    /**
-     * Gets the <code>key</code> field from a <code>HashEntry</code>.
-     * Used in subclasses that have no visibility of the field.
+     * Gets the keys in the order.
      *
-     * @param entry the entry to query, must not be null
-     * @return the <code>key</code> field of the entry
-     * @throws NullPointerException if the entry is null
-     * @since Commons Collections 3.1
+     * @return a new array of the keys
      */
-    protected Object entryKey(ArrayMapEntryMemory entry) {
-        return entry.getKey();
-    }
+    public Object[] keysToArray() {
+        Object[] result = new Object[size];
+        ArrayMapEntryMemory[] entries = this.entries;
 
-    /**
-     * Gets the <code>value</code> field from a <code>HashEntry</code>.
-     * Used in subclasses that have no visibility of the field.
-     *
-     * @param entry the entry to query, must not be null
-     * @return the <code>value</code> field of the entry
-     * @throws NullPointerException if the entry is null
-     * @since Commons Collections 3.1
-     */
-    protected Memory entryValue(ArrayMapEntryMemory entry) {
-        return entry.getValue();
+        for (int i = first, j = 0; i < used; i++) {
+            if (entries[i] != null) {
+                result[j++] = entries[i].getKey();
+            }
+        }
+        return result;
     }
 
     /**
@@ -1041,7 +1239,7 @@ public class ArrayMemoryMap extends AbstractMap<Object, Memory>
             implements OrderedMapIterator<Object, Memory>, OrderedIterator<Object>, ResettableIterator<Object> {
 
         protected LinkMapIterator(ArrayMemoryMap parent) {
-            super(parent);
+            super(parent, true);
         }
 
         public Object next() {
@@ -1079,7 +1277,7 @@ public class ArrayMemoryMap extends AbstractMap<Object, Memory>
 
     protected static class EntriesIterator extends LinkIterator implements OrderedIterator<ArrayMapEntryMemory>, ResettableIterator<ArrayMapEntryMemory> {
         protected EntriesIterator(ArrayMemoryMap parent) {
-            super(parent);
+            super(parent, true);
         }
 
         public ArrayMapEntryMemory next() {
@@ -1119,7 +1317,7 @@ public class ArrayMemoryMap extends AbstractMap<Object, Memory>
     protected static class EntrySetIterator extends LinkIterator
             implements OrderedIterator<Entry<Object, Memory>>, ResettableIterator<Entry<Object, Memory>> {
         protected EntrySetIterator(ArrayMemoryMap parent) {
-            super(parent);
+            super(parent, true);
         }
 
         public ArrayMapEntryMemory next() {
@@ -1206,6 +1404,10 @@ public class ArrayMemoryMap extends AbstractMap<Object, Memory>
             return result;
         }
 
+        public Object[] toArray() {
+            return parent.keysToArray();
+        }
+
         public Iterator<Object> iterator() {
             return parent.createKeySetIterator();
         }
@@ -1244,7 +1446,7 @@ public class ArrayMemoryMap extends AbstractMap<Object, Memory>
     }
 
     /**
-     * Base Iterator that iterates in link order.
+     * Base Iterator that iterates in the insertion order.
      */
     protected static abstract class LinkIterator {
         /**
@@ -1256,38 +1458,57 @@ public class ArrayMemoryMap extends AbstractMap<Object, Memory>
          */
         protected ArrayMapEntryMemory last;
         /**
-         * The next entry
+         * Position of the next entry
          */
-        protected ArrayMapEntryMemory next;
+        protected int next;
         /**
          * The modification count expected
          */
         protected int expectedModCount;
+        /**
+         * Returned entries can be changed, so shared ones are cloned before
+         */
+        protected final boolean forChange;
 
         protected LinkIterator(ArrayMemoryMap parent) {
+            this(parent, false);
+        }
+
+        protected LinkIterator(ArrayMemoryMap parent, boolean forChange) {
             super();
             this.parent = parent;
-            this.next = parent.header.after;
+            this.next = parent.first;
             this.expectedModCount = parent.modCount;
+            this.forChange = forChange;
         }
 
         public boolean hasNext() {
-            return (next != parent.header);
+            return next < parent.used;
         }
 
         public boolean hasPrevious() {
-            return (next.before != parent.header);
+            return parent.size > 0 && Math.min(next, parent.used) > parent.first;
         }
 
         protected ArrayMapEntryMemory nextEntry() {
             if (parent.modCount != expectedModCount) {
                 throw new ConcurrentModificationException();
             }
-            if (next == parent.header) {
+            if (next >= parent.used) {
                 throw new NoSuchElementException(NO_NEXT_ENTRY);
             }
-            last = next;
-            next = next.after;
+
+            if (forChange) {
+                parent.releaseForChange(next);
+            }
+
+            ArrayMapEntryMemory[] entries = parent.entries;
+            last = entries[next];
+
+            do {
+                next++;
+            } while (next < parent.used && entries[next] == null);
+
             return last;
         }
 
@@ -1295,12 +1516,22 @@ public class ArrayMemoryMap extends AbstractMap<Object, Memory>
             if (parent.modCount != expectedModCount) {
                 throw new ConcurrentModificationException();
             }
-            ArrayMapEntryMemory previous = next.before;
-            if (previous == parent.header) {
+
+            ArrayMapEntryMemory[] entries = parent.entries;
+            int previous = Math.min(next, parent.used) - 1;
+            while (previous >= parent.first && entries[previous] == null) {
+                previous--;
+            }
+
+            if (previous < parent.first || parent.size == 0) {
                 throw new NoSuchElementException(NO_PREVIOUS_ENTRY);
             }
+
+            if (forChange) {
+                parent.releaseForChange(previous);
+            }
             next = previous;
-            last = previous;
+            last = entries[previous];
             return last;
         }
 
@@ -1322,7 +1553,7 @@ public class ArrayMemoryMap extends AbstractMap<Object, Memory>
 
         public void reset() {
             last = null;
-            next = parent.header.after;
+            next = parent.first;
         }
 
         public String toString() {
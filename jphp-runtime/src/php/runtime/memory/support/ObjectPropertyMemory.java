@@ -120,6 +120,12 @@ public class ObjectPropertyMemory extends ShortcutMemory {
         return super.refOfPush(trace);
     }
 
+    @Override
+    public Memory pushValue(Memory value, TraceInfo trace) {
+        checkIterable();
+        return super.pushValue(value, trace);
+    }
+
     @Override
     public Memory refOfIndex(TraceInfo trace, Memory index) {
         checkIterable();
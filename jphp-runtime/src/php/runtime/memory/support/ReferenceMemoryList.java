@@ -2,9 +2,22 @@ package php.runtime.memory.support;
 
 import php.runtime.memory.ReferenceMemory;
 
-import java.util.ArrayList;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 
 public class ReferenceMemoryList extends ArrayList<ReferenceMemory> {
+    /**
+     * Chunks of elements shared with copies of the list, null if there are no such ones
+     */
+    protected transient SharedChunks shared;
+
+    /**
+     * Chunks of elements handed out for changes, see {@link SharedChunks#escape(long[], int)}
+     */
+    protected transient long[] escaped;
+
     public ReferenceMemoryList(int initialCapacity) {
         super(initialCapacity);
     }
@@ -12,4 +25,334 @@ public class ReferenceMemoryList extends ArrayList<ReferenceMemory> {
     public ReferenceMemoryList() {
         super();
     }
+
+    protected ReferenceMemoryList(ReferenceMemoryList list) {
+        super(list);
+        this.escaped = list.escaped == null ? null : list.escaped.clone();
+    }
+
+    /**
+     * Copy of the list which shares the elements, an element can be changed only after the list gets it
+     * via {@link #get(int)} or the iterators, {@link #peek(int)} returns an element only for reading.
+     *
+     * @return a copy of the list
+     */
+    public ReferenceMemoryList share() {
+        ReferenceMemoryList result = new ReferenceMemoryList(this);
+
+        synchronized (this) {
+            if (shared == null) {
+                shared = new SharedChunks();
+            }
+
+            result.shared = shared.share(size(), escaped != null);
+        }
+
+        return result;
+    }
+
+    /**
+     * @param index index of the element
+     * @return the element, it must not be changed
+     */
+    public ReferenceMemory peek(int index) {
+        return super.get(index);
+    }
+
+    /**
+     * Adds an element which is not handed out, so its chunk is not escaped.
+     */
+    public void append(ReferenceMemory element) {
+        if (shared != null) {
+            releaseFrom(size());
+        }
+
+        super.add(element);
+    }
+
+    protected void release(int index) {
+        releaseEscaped();
+        releaseChunk(index >> SharedChunks.SHIFT);
+
+        if (shared.isEmpty()) {
+            shared = null;
+        }
+    }
+
+    /**
+     * Releases the escaped chunks on the first change after sharing.
+     */
+    private void releaseEscaped() {
+        if (shared.takeEscaped()) {
+            for (int chunk = 0, length = shared.length(); chunk < length; chunk++) {
+                if (SharedChunks.isEscaped(escaped, chunk)) {
+                    releaseChunk(chunk);
+                }
+            }
+        }
+    }
+
+    private void releaseChunk(int chunk) {
+        if (shared.release(chunk)) {
+            int from = chunk << SharedChunks.SHIFT;
+            int to = Math.min(from + SharedChunks.SIZE, size());
+
+            for (int i = from; i < to; i++) {
+                super.set(i, super.get(i).duplicate());
+            }
+
+            SharedChunks.unescape(escaped, chunk);
+        }
+    }
+
+    private void escapeFrom(int index, boolean onlyIfEscaped) {
+        escaped = SharedChunks.escapeFrom(escaped, index, size(), onlyIfEscaped);
+    }
+
+    /**
+     * Releases the chunk of the index and all next ones.
+     */
+    protected void releaseFrom(int index) {
+        releaseEscaped();
+
+        for (int i = index >> SharedChunks.SHIFT, length = shared.length(); i < length; i++) {
+            releaseChunk(i);
+        }
+
+        if (shared.isEmpty()) {
+            shared = null;
+        }
+    }
+
+    @Override
+    public ReferenceMemory get(int index) {
+        if (shared != null) {
+            release(index);
+        }
+
+        escaped = SharedChunks.escape(escaped, index);
+        return super.get(index);
+    }
+
+    @Override
+    public ReferenceMemory set(int index, ReferenceMemory element) {
+        if (shared != null) {
+            release(index);
+        }
+
+        escaped = SharedChunks.escape(escaped, index);
+        return super.set(index, element);
+    }
+
+    @Override
+    public boolean add(ReferenceMemory element) {
+        if (shared != null) {
+            releaseFrom(size());
+        }
+
+        escaped = SharedChunks.escape(escaped, size());
+        return super.add(element);
+    }
+
+    @Override
+    public void add(int index, ReferenceMemory element) {
+        if (shared != null) {
+            releaseFrom(0);
+        }
+
+        super.add(index, element);
+        escapeFrom(index, false);
+    }
+
+    @Override
+    public ReferenceMemory remove(int index) {
+        if (shared != null) {
+            releaseFrom(index == size() - 1 ? size() : 0);
+        }
+
+        ReferenceMemory result = super.remove(index);
+        escapeFrom(index, true);
+        return result;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (shared != null) {
+            releaseFrom(0);
+        }
+
+        boolean result = super.remove(o);
+        escapeFrom(0, true);
+        return result;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends ReferenceMemory> c) {
+        if (shared != null) {
+            releaseFrom(size());
+        }
+
+        int size = size();
+        boolean result = super.addAll(c);
+        escapeFrom(size, false);
+        return result;
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends ReferenceMemory> c) {
+        if (shared != null) {
+            releaseFrom(0);
+        }
+
+        boolean result = super.addAll(index, c);
+        escapeFrom(index, false);
+        return result;
+    }
+
+    @Override
+    public void clear() {
+        if (shared != null) {
+            shared.clear();
+            shared = null;
+        }
+
+        escaped = null;
+        super.clear();
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        if (shared != null) {
+            releaseFrom(0);
+        }
+
+        super.removeRange(fromIndex, toIndex);
+        escapeFrom(fromIndex, true);
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        if (shared != null) {
+            releaseFrom(0);
+        }
+
+        boolean result = super.removeAll(c);
+        escapeFrom(0, true);
+        return result;
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        if (shared != null) {
+            releaseFrom(0);
+        }
+
+        boolean result = super.retainAll(c);
+        escapeFrom(0, true);
+        return result;
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super ReferenceMemory> filter) {
+        if (shared != null) {
+            releaseFrom(0);
+        }
+
+        boolean result = super.removeIf(filter);
+        escapeFrom(0, true);
+        return result;
+    }
+
+    @Override
+    public void replaceAll(UnaryOperator<ReferenceMemory> operator) {
+        if (shared != null) {
+            releaseFrom(0);
+        }
+
+        super.replaceAll(operator);
+        escapeFrom(0, false);
+    }
+
+    @Override
+    public void sort(Comparator<? super ReferenceMemory> c) {
+        if (shared != null) {
+            releaseFrom(0);
+        }
+
+        super.sort(c);
+        escapeFrom(0, true);
+    }
+
+    @Override
+    public Iterator<ReferenceMemory> iterator() {
+        if (shared != null) {
+            releaseFrom(0);
+        }
+
+        escapeFrom(0, false);
+        return super.iterator();
+    }
+
+    @Override
+    public ListIterator<ReferenceMemory> listIterator() {
+        if (shared != null) {
+            releaseFrom(0);
+        }
+
+        escapeFrom(0, false);
+        return super.listIterator();
+    }
+
+    @Override
+    public ListIterator<ReferenceMemory> listIterator(int index) {
+        if (shared != null) {
+            releaseFrom(0);
+        }
+
+        escapeFrom(0, false);
+        return super.listIterator(index);
+    }
+
+    @Override
+    public List<ReferenceMemory> subList(int fromIndex, int toIndex) {
+        if (shared != null) {
+            releaseFrom(0);
+        }
+
+        escapeFrom(0, false);
+        return super.subList(fromIndex, toIndex);
+    }
+
+    @Override
+    public void forEach(Consumer<? super ReferenceMemory> action) {
+        if (shared != null) {
+            releaseFrom(0);
+        }
+
+        escapeFrom(0, false);
+        super.forEach(action);
+    }
+
+    @Override
+    public Spliterator<ReferenceMemory> spliterator() {
+        if (shared != null) {
+            releaseFrom(0);
+        }
+
+        escapeFrom(0, false);
+        return super.spliterator();
+    }
+
+    @Override
+    public Object clone() {
+        if (shared != null) {
+            releaseFrom(0);
+        }
+
+        escapeFrom(0, false);
+
+        ReferenceMemoryList result = (ReferenceMemoryList) super.clone();
+        result.escaped = escaped == null ? null : escaped.clone();
+        return result;
+    }
 }
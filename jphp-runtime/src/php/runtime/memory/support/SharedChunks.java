@@ -0,0 +1,206 @@
+package php.runtime.memory.support;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chunks of elements which a storage of an array shares with its copies (see {@link ReferenceMemoryList#share()}
+ * and {@link ArrayMemoryMap#share()}).
+ * <p/>
+ * A copy refers to the same element references as the original, the storage which changes a chunk of them
+ * while another one still refers to it clones the elements of the chunk before. So the first change of a copy
+ * of a large array costs a clone of one chunk instead of a clone of all the elements.
+ * <p/>
+ * A storage marks the chunks of elements which it hands out for changes as escaped, such an element can be bound
+ * as a reference ($r = &$a[5]) and a copy of the array must not see the reference after its first change. So the first
+ * change of a storage clones all the escaped chunks which it still shares, as a copy of the whole array would do.
+ */
+public class SharedChunks {
+    public static final int SHIFT = 5;
+    public static final int SIZE = 1 << SHIFT;
+
+    /**
+     * Arrays with less elements are copied at once
+     */
+    public static final int MIN_SHARED_SIZE = SIZE * 2;
+
+    protected AtomicInteger[] chunks;
+    protected int count;
+
+    /**
+     * The escaped chunks must be released on the first change
+     */
+    protected boolean escaped;
+
+    public SharedChunks() {
+        this.chunks = new AtomicInteger[0];
+    }
+
+    protected SharedChunks(AtomicInteger[] chunks, int count, boolean escaped) {
+        this.chunks = chunks;
+        this.count = count;
+        this.escaped = escaped;
+    }
+
+    /**
+     * @param size count of elements of the storage
+     * @param escaped true if the storage has escaped chunks
+     * @return chunks of a copy of the storage
+     */
+    public SharedChunks share(int size, boolean escaped) {
+        int length = (size + SIZE - 1) >> SHIFT;
+
+        if (chunks.length < length) {
+            chunks = Arrays.copyOf(chunks, length);
+        }
+
+        AtomicInteger[] result = new AtomicInteger[length];
+        for (int i = 0; i < length; i++) {
+            AtomicInteger owners = chunks[i];
+
+            if (owners == null) {
+                chunks[i] = owners = new AtomicInteger(2);
+                count++;
+            } else {
+                owners.incrementAndGet();
+            }
+
+            result[i] = owners;
+        }
+
+        if (escaped) {
+            this.escaped = true;
+        }
+
+        return new SharedChunks(result, length, escaped);
+    }
+
+    /**
+     * @return count of chunks (shared or not)
+     */
+    public int length() {
+        return chunks.length;
+    }
+
+    /**
+     * @return true if no chunk is shared
+     */
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * @return true once after sharing escaped chunks, then they must be released
+     */
+    public boolean takeEscaped() {
+        if (escaped) {
+            escaped = false;
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Stops sharing the chunk.
+     *
+     * @param index index of the chunk
+     * @return true if another storage still refers to the elements of the chunk, so they must be cloned
+     */
+    public boolean release(int index) {
+        if (index >= chunks.length) {
+            return false;
+        }
+
+        AtomicInteger owners = chunks[index];
+        if (owners == null) {
+            return false;
+        }
+
+        chunks[index] = null;
+        count--;
+
+        return owners.decrementAndGet() > 0;
+    }
+
+    /**
+     * Stops sharing all chunks, the elements are dropped by the storage.
+     */
+    public void clear() {
+        for (int i = 0; i < chunks.length; i++) {
+            release(i);
+        }
+    }
+
+    /**
+     * Marks the chunk of the element as escaped.
+     *
+     * @param escaped bits of the escaped chunks, null if there are no such ones
+     * @param index   index of the element
+     * @return the bits, a new array if they have to grow
+     */
+    public static long[] escape(long[] escaped, int index) {
+        int chunk = index >> SHIFT;
+        int word = chunk >> 6;
+
+        if (escaped == null) {
+            escaped = new long[word + 1];
+        } else if (word >= escaped.length) {
+            escaped = Arrays.copyOf(escaped, Math.max(word + 1, escaped.length * 2));
+        }
+
+        escaped[word] |= 1L << chunk;
+        return escaped;
+    }
+
+    /**
+     * Marks the chunks of the elements from the index to the size as escaped, it is needed when the elements are
+     * handed out at once or moved between the chunks.
+     *
+     * @param onlyIfEscaped mark them only if one of them is already escaped (the elements are moved)
+     * @return the bits, a new array if they have to grow
+     */
+    public static long[] escapeFrom(long[] escaped, int index, int size, boolean onlyIfEscaped) {
+        int from = index >> SHIFT;
+        int to = (size + SIZE - 1) >> SHIFT;
+
+        if (onlyIfEscaped && !isEscaped(escaped, from, to)) {
+            return escaped;
+        }
+
+        for (int chunk = to - 1; chunk >= from; chunk--) {
+            escaped = escape(escaped, chunk << SHIFT);
+        }
+
+        return escaped;
+    }
+
+    /**
+     * @return true if the chunk is escaped
+     */
+    public static boolean isEscaped(long[] escaped, int chunk) {
+        int word = chunk >> 6;
+        return escaped != null && word < escaped.length && (escaped[word] & (1L << chunk)) != 0;
+    }
+
+    private static boolean isEscaped(long[] escaped, int from, int to) {
+        for (int chunk = from; chunk < to; chunk++) {
+            if (isEscaped(escaped, chunk)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Clears the mark of the chunk, its elements are cloned.
+     */
+    public static void unescape(long[] escaped, int chunk) {
+        int word = chunk >> 6;
+
+        if (escaped != null && word < escaped.length) {
+            escaped[word] &= ~(1L << chunk);
+        }
+    }
+}
@@ -5,7 +5,7 @@ import php.runtime.annotation.Reflection;
 import php.runtime.common.HintType;
 import php.runtime.common.Messages;
 import php.runtime.common.Modifier;
-import php.runtime.env.ConcurrentEnvironment;
+import php.runtime.env.CompileScope;
 import php.runtime.env.Context;
 import php.runtime.env.Environment;
 import php.runtime.env.TraceInfo;
@@ -91,6 +91,18 @@ public class ClassEntity extends Entity implements Cloneable {
     public final Map<String, PropertyEntity> staticProperties;
     public final Set<String> instanceOfList = new HashSet<String>();
 
+    private static final long[] EMPTY_BITS = new long[0];
+
+    // scope of the class, it gives numeric ids of lower names of classes and of interfaces
+    protected CompileScope scope;
+
+    // ancestry for isInstanceOf(ClassEntity): ids of names of the parent chain from the root class,
+    // and a bitset of ids of all implemented interfaces, both are replaced and never changed in place.
+    private volatile int[] display;
+    private volatile long[] interfaceBits = EMPTY_BITS;
+    private volatile int nameId = -1;
+    private volatile int interfaceId = -1;
+
     protected ClassEntity parent;
     protected DocumentComment docComment;
 
@@ -196,6 +208,14 @@ public class ClassEntity extends Entity implements Cloneable {
         this.id = id;
     }
 
+    public CompileScope getScope() {
+        return scope;
+    }
+
+    public void setScope(CompileScope scope) {
+        this.scope = scope;
+    }
+
     public boolean isInternal() {
         return isInternal;
     }
@@ -387,6 +407,40 @@ public class ClassEntity extends Entity implements Cloneable {
         return staticProperties.get(name);
     }
 
+    /**
+     * Finds a non-static property for the calling context via the cache of the access site.
+     */
+    public PropertyEntity fetchProperty(ClassEntity context, String property, PropertyCallCache callCache, int cacheIndex) {
+        PropertyEntity entity = callCache == null ? null : callCache.get(cacheIndex, this, context);
+
+        if (entity == null) {
+            entity = isInstanceOf(context) ? context.properties.get(property) : properties.get(property);
+
+            if (callCache != null && entity != null) {
+                callCache.put(cacheIndex, this, context, entity);
+            }
+        }
+
+        return entity;
+    }
+
+    /**
+     * Finds a static property for the calling context via the cache of the access site.
+     */
+    public PropertyEntity fetchStaticProperty(ClassEntity context, String property, PropertyCallCache callCache, int cacheIndex) {
+        PropertyEntity entity = callCache == null ? null : callCache.get(cacheIndex, this, context);
+
+        if (entity == null) {
+            entity = isInstanceOf(context) ? context.findStaticProperty(property) : findStaticProperty(property);
+
+            if (callCache != null && entity != null) {
+                callCache.put(cacheIndex, this, context, entity);
+            }
+        }
+
+        return entity;
+    }
+
     public ClassEntity getParent() {
         return parent;
     }
@@ -396,7 +450,83 @@ public class ClassEntity extends Entity implements Cloneable {
     }
 
     public boolean isInstanceOf(ClassEntity what) {
-        return what != null && (id == what.id || instanceOfList.contains(what.lowerName));
+        if (what == null) {
+            return false;
+        }
+
+        if (id == what.id) {
+            return true;
+        }
+
+        if (what.lowerName == null) {
+            return false;
+        }
+
+        if (scope == null || what.scope == null || !scope.isSameClassIds(what.scope)) {
+            return instanceOfList.contains(what.lowerName) || what.lowerName.equals(lowerName);
+        }
+
+        if (what.type == Type.INTERFACE) {
+            long[] bits = interfaceBits;
+            int index = what.getInterfaceId();
+            int word = index >>> 6;
+
+            return word < bits.length && (bits[word] & (1L << index)) != 0;
+        }
+
+        int[] display = getDisplay();
+        int depth = what.getDisplay().length - 1;
+
+        return depth < display.length - 1 && display[depth] == what.getNameId();
+    }
+
+    private int getNameId() {
+        if (nameId == -1 && scope != null) {
+            nameId = scope.getClassNameId(lowerName);
+        }
+
+        return nameId;
+    }
+
+    private int getInterfaceId() {
+        if (interfaceId == -1 && scope != null) {
+            interfaceId = scope.getInterfaceId(lowerName);
+        }
+
+        return interfaceId;
+    }
+
+    /**
+     * @return ids of names of the parent chain, from the root class to this class
+     */
+    private int[] getDisplay() {
+        int[] result = display;
+
+        if (result == null) {
+            int[] parentDisplay = parent == null ? new int[0] : parent.getDisplay();
+
+            result = Arrays.copyOf(parentDisplay, parentDisplay.length + 1);
+            result[parentDisplay.length] = lowerName == null ? -1 : getNameId();
+
+            display = result;
+        }
+
+        return result;
+    }
+
+    private void addInterfaceBits(long[] bits, int index) {
+        long[] result = interfaceBits;
+        result = Arrays.copyOf(result, Math.max(result.length, Math.max(bits.length, index == -1 ? 0 : (index >>> 6) + 1)));
+
+        for (int i = 0; i < bits.length; i++) {
+            result[i] |= bits[i];
+        }
+
+        if (index != -1) {
+            result[index >>> 6] |= 1L << index;
+        }
+
+        interfaceBits = result;
     }
 
     public boolean isInstanceOf(String name) {
@@ -580,6 +710,8 @@ public class ClassEntity extends Entity implements Cloneable {
             this.instanceOfList.add(parent.getLowerName());
             this.instanceOfList.addAll(parent.instanceOfList);
             this.interfaces.putAll(parent.interfaces);
+            this.display = null;
+            this.addInterfaceBits(parent.interfaceBits, -1);
 
             this.staticProperties.putAll(parent.staticProperties);
 
@@ -634,6 +766,7 @@ public class ClassEntity extends Entity implements Cloneable {
         this.interfaces.put(_interface.getLowerName(), _interface);
         this.instanceOfList.add(_interface.getLowerName());
         this.instanceOfList.addAll(_interface.instanceOfList);
+        this.addInterfaceBits(_interface.interfaceBits, _interface.getLowerName() == null ? -1 : _interface.getInterfaceId());
 
         for (MethodEntity method : _interface.getMethods().values()) {
             MethodEntity implMethod = findMethod(method.getLowerName());
@@ -715,7 +848,7 @@ public class ClassEntity extends Entity implements Cloneable {
 
     public void addDynamicStaticProperty(Environment env, String name, Memory value) {
         PropertyEntity prop = staticProperties.get(name);
-        env.getOrCreateStatic(prop.specificName, prop.typedValue(env, prop.getTrace(), value));
+        env.getOrCreateStatic(prop.getStaticSlot(env), prop.typedValue(env, prop.getTrace(), value));
     }
 
     public void addDynamicProperty(Environment env, String name, Memory value) {
@@ -889,10 +1022,44 @@ public class ClassEntity extends Entity implements Cloneable {
     }
 
     final protected Map<Environment, ArrayMemory> __initProps = new HashMap<>();
+    protected volatile String[] propertyPositions;
+
+    /**
+     * Declared non-static properties of the class itself (specific names) in the order of the initial properties
+     * (see {@link #getInitProperties(Environment)}). The position is only a hint for a lookup, the properties are
+     * still stored in the hash of an object: objects of child classes and objects with unset properties
+     * have other positions and the lookup falls back to the hash.
+     */
+    public String[] getPropertyPositions() {
+        String[] result = propertyPositions;
+
+        if (result == null) {
+            synchronized (this) {
+                if (propertyPositions != null) {
+                    return propertyPositions;
+                }
+
+                List<String> names = new ArrayList<>();
+
+                for (PropertyEntity property : getProperties()) {
+                    if (id == property.clazz.getId() && property.getGetter() == null) {
+                        property.position = names.size();
+                        names.add(property.getSpecificName());
+                    }
+                }
+
+                propertyPositions = result = names.toArray(new String[0]);
+            }
+        }
+
+        return result;
+    }
 
     public ArrayMemory getInitProperties(Environment env) {
         ArrayMemory result = __initProps.get(env);
         if (result == null) {
+            getPropertyPositions();
+
             synchronized (__initProps) {
                 Collection<PropertyEntity> properties = getProperties();
                 ArrayMemory props = new ArrayMemory();
@@ -1284,19 +1451,8 @@ public class ClassEntity extends Entity implements Cloneable {
             throws Throwable {
         ReferenceMemory value;
 
-        PropertyEntity entity = callCache == null ? null : callCache.get(env, cacheIndex);
-
-        if (entity == null) {
-            ClassEntity context = env.getLastClassOnStack();
-            entity = isInstanceOf(context) ? context.properties.get(property) : properties.get(property);
-
-            if (callCache != null && entity != null) {
-                callCache.put(env, cacheIndex, entity);
-            }
-        } else if (entity.getClazz() != object.getReflection()) {
-            ClassEntity context = env.getLastClassOnStack();
-            entity = isInstanceOf(context) ? context.properties.get(property) : properties.get(property);
-        }
+        ClassEntity context = env.getLastClassOnStack();
+        PropertyEntity entity = fetchProperty(context, property, callCache, cacheIndex);
 
         if (entity == null) {
             PropertyEntity staticEntity = staticProperties.get(property);
@@ -1310,7 +1466,7 @@ public class ClassEntity extends Entity implements Cloneable {
             }
         }
 
-        int accessFlag = entity == null ? 0 : entity.canAccess(env);
+        int accessFlag = entity == null ? 0 : entity.canAccess(env, context);
 
         ArrayMemory props = object.getPropertiesForChange();
 
@@ -1334,13 +1490,21 @@ public class ClassEntity extends Entity implements Cloneable {
             }
         }
 
-        value = props == null || accessFlag != 0 ? null : props.getByScalar(entity == null ? property : entity.specificName);
+        if (props == null || accessFlag != 0) {
+            value = null;
+        } else if (entity == null) {
+            value = props.getByScalar(property);
+        } else {
+            value = entity.getEntryAt(object);
+
+            if (value == null) {
+                value = props.getByScalar(entity.specificName);
+            }
+        }
 
         if (value == null) {
             boolean recursive = false;
 
-            ClassEntity context = env.getLastClassOnStack();
-
             if (context != null && methodMagicSet != null && context.getId() == methodMagicSet.getClazz().getId()) {
                 recursive = env.peekCall(0).flags == FLAG_SET;
             }
@@ -1445,12 +1609,12 @@ public class ClassEntity extends Entity implements Cloneable {
     }
 
     public Memory unsetProperty(Environment env, TraceInfo trace, IObject object, String property,
-                                PropertyCallCache callCache, int index)
+                                PropertyCallCache callCache, int cacheIndex)
             throws Throwable {
         ClassEntity context = env.getLastClassOnStack();
-        PropertyEntity entity = isInstanceOf(context) ? context.properties.get(property) : properties.get(property);
+        PropertyEntity entity = fetchProperty(context, property, callCache, cacheIndex);
 
-        int accessFlag = entity == null ? 0 : entity.canAccess(env);
+        int accessFlag = entity == null ? 0 : entity.canAccess(env, context);
 
         if (entity == null) {
             PropertyEntity staticEntity = staticProperties.get(property);
@@ -1545,21 +1709,10 @@ public class ClassEntity extends Entity implements Cloneable {
     public Memory issetProperty(Environment env, TraceInfo trace, IObject object, String property,
                                 PropertyCallCache callCache, int cacheIndex)
             throws Throwable {
-        PropertyEntity entity = callCache == null || env instanceof ConcurrentEnvironment ? null : callCache.get(env, cacheIndex);
-
-        if (entity == null) {
-            ClassEntity contex = env.getLastClassOnStack();
-            entity = isInstanceOf(contex) ? contex.properties.get(property) : properties.get(property);
-
-            if (entity != null && callCache != null) {
-                callCache.put(env, cacheIndex, entity);
-            }
-        } else if (entity.getClazz() != object.getReflection()) {
-            ClassEntity contex = env.getLastClassOnStack();
-            entity = isInstanceOf(contex) ? contex.properties.get(property) : properties.get(property);
-        }
+        ClassEntity context = env.getLastClassOnStack();
+        PropertyEntity entity = fetchProperty(context, property, callCache, cacheIndex);
 
-        int accessFlag = entity == null ? 0 : entity.canAccess(env);
+        int accessFlag = entity == null ? 0 : entity.canAccess(env, context);
 
         ArrayMemory props = object.getProperties();
         Memory tmp = null;
@@ -1575,8 +1728,6 @@ public class ClassEntity extends Entity implements Cloneable {
         if (methodMagicIsset != null) {
             Memory result;
 
-            ClassEntity context = env.getLastClassOnStack();
-
             if (context != null && context.getId() == methodMagicIsset.getClazz().getId())
                 if (env.peekCall(0).flags == FLAG_ISSET) {
                     return object.getProperties().getByScalar(property) != null ? Memory.TRUE : Memory.NULL;
@@ -1604,21 +1755,8 @@ public class ClassEntity extends Entity implements Cloneable {
                                     boolean checkAccess, ClassEntity context, PropertyCallCache callCache, int cacheIndex,
                                     boolean lateStaticCall)
             throws Throwable {
-        PropertyEntity entity = callCache == null || env instanceof ConcurrentEnvironment || context != null ? null : callCache.get(env, cacheIndex);
-
-        if (entity == null) {
-            boolean saveCache = context == null && callCache != null;
-
-            context = context == null ? env.getLastClassOnStack() : context;
-            entity = isInstanceOf(context) ? context.findStaticProperty(property) : findStaticProperty(property);
-
-            if (saveCache && entity != null) {
-                callCache.put(env, cacheIndex, entity);
-            }
-        } else if (entity.getClazz() != context) {
-            context = env.getLastClassOnStack();
-            entity = isInstanceOf(context) ? context.findStaticProperty(property) : findStaticProperty(property);
-        }
+        context = context == null ? env.getLastClassOnStack() : context;
+        PropertyEntity entity = fetchStaticProperty(context, property, callCache, cacheIndex);
 
         if (entity == null) {
             if (errorIfNotExists)
@@ -1648,19 +1786,8 @@ public class ClassEntity extends Entity implements Cloneable {
             throws Throwable {
         Memory value;
 
-        PropertyEntity entity = callCache == null || env instanceof ConcurrentEnvironment ? null : callCache.get(env, cacheIndex);
-
-        if (entity == null) {
-            ClassEntity context = env.getLastClassOnStack();
-            entity = isInstanceOf(context) ? context.properties.get(property) : properties.get(property);
-
-            if (callCache != null) {
-                callCache.put(env, cacheIndex, entity);
-            }
-        } else if (entity.getClazz() != object.getReflection()) {
-            ClassEntity context = env.getLastClassOnStack();
-            entity = isInstanceOf(context) ? context.properties.get(property) : properties.get(property);
-        }
+        ClassEntity context = env.getLastClassOnStack();
+        PropertyEntity entity = fetchProperty(context, property, callCache, cacheIndex);
 
         if (entity == null) {
             PropertyEntity staticEntity = staticProperties.get(property);
@@ -1674,14 +1801,24 @@ public class ClassEntity extends Entity implements Cloneable {
             }
         }
 
-        int accessFlag = entity == null ? 0 : entity.canAccess(env);
+        int accessFlag = entity == null ? 0 : entity.canAccess(env, context);
 
         ArrayMemory props = object.getProperties();
         if (props != null) {
             props.checkCopied();
         }
 
-        value = props == null || accessFlag != 0 ? null : props.getByScalar(entity == null ? property : entity.specificName);
+        if (props == null || accessFlag != 0) {
+            value = null;
+        } else if (entity == null) {
+            value = props.getByScalar(property);
+        } else {
+            value = entity.getEntryAt(object);
+
+            if (value == null) {
+                value = props.getByScalar(entity.specificName);
+            }
+        }
 
         if (accessFlag != 0) {
             invalidAccessToProperty(env, trace, entity, accessFlag);
@@ -1717,19 +1854,8 @@ public class ClassEntity extends Entity implements Cloneable {
             throws Throwable {
         Memory value;
 
-        PropertyEntity entity = callCache == null || env instanceof ConcurrentEnvironment ? null : callCache.get(env, cacheIndex);
-
-        if (entity == null) {
-            ClassEntity context = env.getLastClassOnStack();
-            entity = isInstanceOf(context) ? context.properties.get(property) : properties.get(property);
-
-            if (callCache != null && entity != null) {
-                callCache.put(env, cacheIndex, entity);
-            }
-        } else if (entity.getClazz() != object.getReflection()) {
-            ClassEntity context = env.getLastClassOnStack();
-            entity = isInstanceOf(context) ? context.properties.get(property) : properties.get(property);
-        }
+        ClassEntity context = env.getLastClassOnStack();
+        PropertyEntity entity = fetchProperty(context, property, callCache, cacheIndex);
 
         if (entity == null) {
             PropertyEntity staticEntity = staticProperties.get(property);
@@ -1744,7 +1870,7 @@ public class ClassEntity extends Entity implements Cloneable {
             }
         }
 
-        int accessFlag = entity == null ? 0 : entity.canAccess(env);
+        int accessFlag = entity == null ? 0 : entity.canAccess(env, context);
 
         if (entity != null && accessFlag != 0) {
             value = null;
@@ -1774,8 +1900,6 @@ public class ClassEntity extends Entity implements Cloneable {
         if (methodMagicGet != null) {
             Memory result;
 
-            ClassEntity context = env.getLastClassOnStack();
-
             if (context != null && context.getId() == methodMagicGet.getClazz().getId()) {
                 if (env.peekCall(0).flags == FLAG_GET) {
                     env.error(trace, ErrorType.E_NOTICE, Messages.ERR_UNDEFINED_PROPERTY, name, property);
@@ -10,8 +10,6 @@ import php.runtime.ext.support.compile.CompileFunction;
 import php.runtime.ext.support.compile.CompileFunctionSpec;
 import php.runtime.memory.support.MemoryUtils;
 
-import java.lang.reflect.InvocationTargetException;
-
 public class CompileFunctionEntity extends FunctionEntity {
     private final CompileFunctionSpec compileFunctionSpec;
     private CompileFunction compileFunction;
@@ -104,12 +102,12 @@ public class CompileFunctionEntity extends FunctionEntity {
 
         try {
             if (method.resultType == void.class){
-                method.method.invoke(null, passed);
+                method.invoke(null, passed);
                 return Memory.NULL;
             } else
-                return MemoryUtils.valueOf(method.method.invoke(null, passed));
-        } catch (InvocationTargetException e){
-            return env.__throwException(e);
+                return MemoryUtils.valueOf(method.invoke(null, passed));
+        } catch (Throwable e){
+            return env.__throwThrowable(e);
         }
     }
 }
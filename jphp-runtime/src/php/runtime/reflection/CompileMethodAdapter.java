@@ -0,0 +1,314 @@
+package php.runtime.reflection;
+
+import php.runtime.Memory;
+import php.runtime.env.Environment;
+import php.runtime.env.TraceInfo;
+import php.runtime.exceptions.CriticalException;
+import php.runtime.memory.DoubleMemory;
+import php.runtime.memory.LongMemory;
+import php.runtime.memory.StringMemory;
+import php.runtime.memory.TrueMemory;
+import php.runtime.memory.support.MemoryOperation;
+import php.runtime.memory.support.operation.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Modifier;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Builds a direct adapter of a native method of {@link CompileMethodEntity}, typed as
+ * (Object self, Environment, TraceInfo, Memory[] args)Memory.
+ *
+ * Conversions of arguments and of the result are composed into the handle: common types (Memory, long, int,
+ * double, boolean, String, Environment, TraceInfo) are converted inline, other types through their
+ * {@link MemoryOperation}. So a call needs no Object[] of arguments and no boxing of primitives.
+ *
+ * Exceptions of the native method are wrapped into {@link TargetException}, exceptions of conversions are thrown as is.
+ */
+final class CompileMethodAdapter {
+    static final MethodType TYPE = methodType(
+            Memory.class, Object.class, Environment.class, TraceInfo.class, Memory[].class
+    );
+
+    private static final MethodType ARG_TYPE = methodType(Object.class, Environment.class, TraceInfo.class, Memory[].class);
+
+    private static final MethodHandle ARG_REF;
+    private static final MethodHandle ARG_VALUE;
+    private static final MethodHandle ARG_IMMUTABLE;
+    private static final MethodHandle ARG_LONG;
+    private static final MethodHandle ARG_INT;
+    private static final MethodHandle ARG_DOUBLE;
+    private static final MethodHandle ARG_BOOLEAN;
+    private static final MethodHandle ARG_STRING;
+    private static final MethodHandle ARG_CONVERT;
+
+    private static final MethodHandle RESULT_LONG;
+    private static final MethodHandle RESULT_INT;
+    private static final MethodHandle RESULT_DOUBLE;
+    private static final MethodHandle RESULT_BOOLEAN;
+    private static final MethodHandle RESULT_STRING;
+    private static final MethodHandle RESULT_MEMORY;
+    private static final MethodHandle RESULT_CONVERT;
+
+    private static final MethodHandle WRAP_TARGET_EXCEPTION;
+
+    static {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+        try {
+            ARG_REF = lookup.findStatic(CompileMethodAdapter.class, "argRef", methodType(Memory.class, Memory[].class, int.class));
+            ARG_VALUE = lookup.findStatic(CompileMethodAdapter.class, "argValue", methodType(Memory.class, Memory[].class, int.class));
+            ARG_IMMUTABLE = lookup.findStatic(CompileMethodAdapter.class, "argImmutable", methodType(Memory.class, Memory[].class, int.class));
+            ARG_LONG = lookup.findStatic(CompileMethodAdapter.class, "argLong", methodType(long.class, Memory[].class, int.class));
+            ARG_INT = lookup.findStatic(CompileMethodAdapter.class, "argInt", methodType(int.class, Memory[].class, int.class));
+            ARG_DOUBLE = lookup.findStatic(CompileMethodAdapter.class, "argDouble", methodType(double.class, Memory[].class, int.class));
+            ARG_BOOLEAN = lookup.findStatic(CompileMethodAdapter.class, "argBoolean", methodType(boolean.class, Memory[].class, int.class));
+            ARG_STRING = lookup.findStatic(CompileMethodAdapter.class, "argString", methodType(String.class, Memory[].class, int.class));
+            ARG_CONVERT = lookup.findStatic(CompileMethodAdapter.class, "argConvert", methodType(
+                    Object.class, MemoryOperation.class, Environment.class, TraceInfo.class, Memory[].class, int.class
+            ));
+
+            RESULT_LONG = lookup.findStatic(LongMemory.class, "valueOf", methodType(Memory.class, long.class));
+            RESULT_INT = lookup.findStatic(LongMemory.class, "valueOf", methodType(Memory.class, int.class));
+            RESULT_DOUBLE = lookup.findStatic(DoubleMemory.class, "valueOf", methodType(Memory.class, double.class));
+            RESULT_BOOLEAN = lookup.findStatic(TrueMemory.class, "valueOf", methodType(Memory.class, boolean.class));
+            RESULT_STRING = lookup.findStatic(StringMemory.class, "valueOf", methodType(Memory.class, String.class));
+            RESULT_MEMORY = lookup.findStatic(CompileMethodAdapter.class, "resultMemory", methodType(Memory.class, Memory.class));
+            RESULT_CONVERT = lookup.findStatic(CompileMethodAdapter.class, "resultConvert", methodType(
+                    Memory.class, MemoryOperation.class, Environment.class, TraceInfo.class, Object.class
+            ));
+
+            WRAP_TARGET_EXCEPTION = lookup.findConstructor(TargetException.class, methodType(void.class, Throwable.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new CriticalException(e);
+        }
+    }
+
+    private CompileMethodAdapter() { }
+
+    /**
+     * @return null if the method cannot be adapted (varargs, types without operations, operations
+     * which release converted values), such methods are called via the generic path.
+     */
+    static MethodHandle of(CompileMethodEntity.CompileMethod.Method method) {
+        Class<?>[] types = method.parameterTypes;
+        MemoryOperation[] operations = method.argumentOperations;
+
+        if (operations == null || method.returnOperation == null) {
+            return null;
+        }
+
+        MethodHandle target;
+
+        try {
+            method.method.setAccessible(true);
+            target = MethodHandles.lookup().unreflect(method.method).asFixedArity();
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+
+        if (Modifier.isStatic(method.method.getModifiers())) {
+            target = MethodHandles.dropArguments(target, 0, Object.class);
+        } else {
+            target = target.asType(target.type().changeParameterType(0, Object.class));
+        }
+
+        Class<?> resultType = target.type().returnType();
+
+        target = MethodHandles.catchException(target, Throwable.class, MethodHandles.dropArguments(
+                MethodHandles.filterArguments(
+                        MethodHandles.throwException(resultType, TargetException.class), 0, WRAP_TARGET_EXCEPTION
+                ),
+                1, target.type().parameterList()
+        ));
+
+        int[] reorder = new int[1 + types.length * 3];
+
+        for (int i = 0, j = 0; i < types.length; i++) {
+            MethodHandle filter = argumentFilter(method, i, j);
+
+            if (filter == null) {
+                return null;
+            }
+
+            if (!(operations[i] instanceof CompileMethodEntity.InjectMemoryOperation) || types[i] == Memory.class) {
+                j++;
+            }
+
+            target = MethodHandles.collectArguments(target, 1 + i * 3, filter.asType(ARG_TYPE.changeReturnType(types[i])));
+
+            reorder[1 + i * 3] = 1;
+            reorder[2 + i * 3] = 2;
+            reorder[3 + i * 3] = 3;
+        }
+
+        // (self, env, trace, args ... env, trace, args) -> (self, env, trace, args)
+        MethodHandle handle = MethodHandles.permuteArguments(
+                target, TYPE.changeReturnType(resultType), reorder
+        );
+
+        return resultFilter(method, handle);
+    }
+
+    private static MethodHandle argumentFilter(CompileMethodEntity.CompileMethod.Method method, int i, int j) {
+        Class<?> type = method.parameterTypes[i];
+        MemoryOperation operation = method.argumentOperations[i];
+
+        if (type == Memory.class) {
+            MethodHandle getter = method.references[i]
+                    ? ARG_REF
+                    : (method.mutableValues[i] ? ARG_VALUE : ARG_IMMUTABLE);
+
+            return fromArguments(getter, j);
+        }
+
+        if (operation == null) {
+            return null;
+        }
+
+        if (operation == CompileMethodEntity.INJECT_ENV_MEMORY_OPERATION) {
+            return MethodHandles.dropArguments(MethodHandles.identity(Environment.class), 1, TraceInfo.class, Memory[].class);
+        }
+
+        if (operation == CompileMethodEntity.INJECT_TRACE_MEMORY_OPERATION) {
+            return MethodHandles.dropArguments(
+                    MethodHandles.dropArguments(MethodHandles.identity(TraceInfo.class), 1, Memory[].class),
+                    0, Environment.class
+            );
+        }
+
+        if (operation instanceof CompileMethodEntity.InjectMemoryOperation || isReleasing(operation)) {
+            return null;
+        }
+
+        Class<?> operationClass = operation.getClass();
+
+        if (operationClass == LongMemoryOperation.class) {
+            return fromArguments(ARG_LONG, j);
+        } else if (operationClass == IntegerMemoryOperation.class) {
+            return fromArguments(ARG_INT, j);
+        } else if (operationClass == DoubleMemoryOperation.class) {
+            return fromArguments(ARG_DOUBLE, j);
+        } else if (operationClass == BooleanMemoryOperation.class) {
+            return fromArguments(ARG_BOOLEAN, j);
+        } else if (operationClass == StringMemoryOperation.class) {
+            return fromArguments(ARG_STRING, j);
+        }
+
+        return MethodHandles.insertArguments(MethodHandles.insertArguments(ARG_CONVERT, 4, j), 0, operation);
+    }
+
+    private static MethodHandle resultFilter(CompileMethodEntity.CompileMethod.Method method, MethodHandle handle) {
+        Class<?> type = handle.type().returnType();
+        Class<?> operationClass = method.returnOperation.getClass();
+
+        if (type == void.class) {
+            return operationClass == VoidMemoryOperation.class
+                    ? MethodHandles.filterReturnValue(handle, MethodHandles.constant(Memory.class, Memory.NULL))
+                    : null;
+        }
+
+        MethodHandle filter = null;
+
+        if (type == long.class && operationClass == LongMemoryOperation.class) {
+            filter = RESULT_LONG;
+        } else if (type == int.class && operationClass == IntegerMemoryOperation.class) {
+            filter = RESULT_INT;
+        } else if (type == double.class && operationClass == DoubleMemoryOperation.class) {
+            filter = RESULT_DOUBLE;
+        } else if (type == boolean.class && operationClass == BooleanMemoryOperation.class) {
+            filter = RESULT_BOOLEAN;
+        } else if (type == String.class && operationClass == StringMemoryOperation.class) {
+            filter = RESULT_STRING;
+        } else if (Memory.class.isAssignableFrom(type) && operationClass == MemoryMemoryOperation.class) {
+            filter = RESULT_MEMORY;
+        }
+
+        if (filter != null) {
+            return MethodHandles.filterReturnValue(handle, filter.asType(filter.type().changeParameterType(0, type)));
+        }
+
+        // (env, trace, result) + (self, env, trace, args) -> (self, env, trace, args)
+        MethodHandle convert = MethodHandles.insertArguments(RESULT_CONVERT, 0, method.returnOperation);
+
+        return MethodHandles.permuteArguments(
+                MethodHandles.collectArguments(convert, 2, handle.asType(handle.type().changeReturnType(Object.class))),
+                TYPE, 1, 2, 0, 1, 2, 3
+        );
+    }
+
+    private static MethodHandle fromArguments(MethodHandle getter, int index) {
+        return MethodHandles.dropArguments(
+                MethodHandles.insertArguments(getter, 1, index), 0, Environment.class, TraceInfo.class
+        );
+    }
+
+    private static boolean isReleasing(MemoryOperation operation) {
+        try {
+            return operation.getClass().getMethod(
+                    "releaseConverted", Environment.class, TraceInfo.class, Object.class
+            ).getDeclaringClass() != MemoryOperation.class;
+        } catch (NoSuchMethodException e) {
+            return true;
+        }
+    }
+
+    private static Memory argRef(Memory[] args, int index) {
+        return args[index];
+    }
+
+    private static Memory argValue(Memory[] args, int index) {
+        return args[index].toValue();
+    }
+
+    private static Memory argImmutable(Memory[] args, int index) {
+        return args[index].fast_toImmutable();
+    }
+
+    private static long argLong(Memory[] args, int index) {
+        return args[index].toLong();
+    }
+
+    private static int argInt(Memory[] args, int index) {
+        return args[index].toInteger();
+    }
+
+    private static double argDouble(Memory[] args, int index) {
+        return args[index].toDouble();
+    }
+
+    private static boolean argBoolean(Memory[] args, int index) {
+        return args[index].toBoolean();
+    }
+
+    private static String argString(Memory[] args, int index) {
+        return args[index].toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object argConvert(MemoryOperation operation, Environment env, TraceInfo trace,
+                                     Memory[] args, int index) throws Throwable {
+        return operation.convert(env, trace, args[index]);
+    }
+
+    private static Memory resultMemory(Memory result) {
+        return result == null ? Memory.NULL : result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Memory resultConvert(MemoryOperation operation, Environment env, TraceInfo trace, Object result) {
+        return operation.unconvertNoThow(env, trace, result);
+    }
+
+    /**
+     * Exception thrown by the native method itself.
+     */
+    static class TargetException extends RuntimeException {
+        TargetException(Throwable cause) {
+            super(null, cause, false, false);
+        }
+    }
+}
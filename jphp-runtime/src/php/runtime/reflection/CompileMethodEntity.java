@@ -20,6 +20,7 @@ import php.runtime.memory.support.operation.BeanMemoryOperation;
 import php.runtime.reflection.support.ReflectionUtils;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.*;
 import java.util.Arrays;
 
@@ -214,6 +215,16 @@ public class CompileMethodEntity extends MethodEntity {
                 }
             }
 
+            MethodHandle adapter = method.getAdapter();
+
+            if (adapter != null) {
+                try {
+                    return (Memory) adapter.invokeExact(_this, env, trace, arguments);
+                } catch (CompileMethodAdapter.TargetException e) {
+                    return env.__throwThrowable(e.getCause());
+                }
+            }
+
             Class<?>[] types = method.parameterTypes;
             Object[] passed = new Object[ types.length ];
 
@@ -253,7 +264,15 @@ public class CompileMethodEntity extends MethodEntity {
             }
 
             try {
-                return method.returnOperation.unconvertNoThow(env, trace, method.method.invoke(_this, passed));
+                Object result;
+
+                try {
+                    result = method.invoke(_this, passed);
+                } catch (Throwable e) {
+                    return env.__throwThrowable(e);
+                }
+
+                return method.returnOperation.unconvertNoThow(env, trace, result);
             } finally {
                 i = 0;
 
@@ -269,10 +288,6 @@ public class CompileMethodEntity extends MethodEntity {
                     }
                 }
             }
-        } catch (InvocationTargetException e){
-            return env.__throwException(e);
-        } catch (Throwable e) {
-            throw e;
         } finally {
             unsetArguments(arguments);
         }
@@ -346,16 +361,33 @@ public class CompileMethodEntity extends MethodEntity {
 
             protected ParameterEntity[] parameters;
 
+            private MethodHandle adapter;
+            private boolean adapterResolved;
+
             public Method(java.lang.reflect.Method method, int argsCount, boolean _asImmutable) {
                 super(method, argsCount, _asImmutable);
             }
 
+            /**
+             * @see CompileMethodAdapter
+             * @return null if the method must be called via the generic path
+             */
+            public MethodHandle getAdapter() {
+                if (!adapterResolved) {
+                    adapter = CompileMethodAdapter.of(this);
+                    adapterResolved = true;
+                }
+
+                return adapter;
+            }
+
             public void setUnknownTypeFetcher(CallbackW<MemoryOperation, Class<?>, Type> unknownTypeFetcher) {
                 this.unknownTypeFetcher = unknownTypeFetcher;
             }
 
             public void setParameters(ParameterEntity[] parameters) {
                 this.parameters = parameters;
+                this.adapterResolved = false;
 
                 returnOperation = MemoryOperation.get(resultType, method.getGenericReturnType());
 
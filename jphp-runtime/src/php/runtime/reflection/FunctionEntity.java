@@ -2,24 +2,43 @@ package php.runtime.reflection;
 
 import php.runtime.Memory;
 import php.runtime.common.Function;
+import php.runtime.env.CallStack;
 import php.runtime.env.Context;
 import php.runtime.env.Environment;
 import php.runtime.env.TraceInfo;
+import php.runtime.exceptions.CriticalException;
+import php.runtime.invoke.InvokeArgumentHelper;
 import php.runtime.invoke.InvokeHelper;
 import php.runtime.lang.Closure;
+import php.runtime.loader.RuntimeClassLoader;
 import php.runtime.memory.ObjectMemory;
 import php.runtime.reflection.helper.ClosureEntity;
 import php.runtime.reflection.support.AbstractFunctionEntity;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.function.Consumer;
 
 public class FunctionEntity extends AbstractFunctionEntity {
+    /**
+     * Max count of parameters of a function which has the fixed-arity entry point, see {@link #getFixedHandle(int)}.
+     */
+    public static final int MAX_FIXED_ARITY = 4;
+
     protected boolean isInternal = false;
     protected ModuleEntity module;
 
     private Class<?> nativeClazz;
     private Method nativeMethod;
+    private MethodHandle nativeHandle;
+    private MethodHandle fixedHandle;
+    private volatile boolean fixedHandleResolved;
+
+    private Consumer<FunctionEntity> bodyCompiler;
+    private RuntimeClassLoader lazyClassLoader;
 
     private boolean isStatic = false;
 
@@ -53,11 +72,103 @@ public class FunctionEntity extends AbstractFunctionEntity {
         return nativeMethod;
     }
 
+    /**
+     * A lazy function has only a signature, the body is compiled by the callback (that sets data of entity)
+     * on first call or when the bytecode is needed.
+     */
+    public boolean isLazy() {
+        return bodyCompiler != null;
+    }
+
+    public void setBodyCompiler(Consumer<FunctionEntity> bodyCompiler) {
+        this.bodyCompiler = bodyCompiler;
+    }
+
+    public void setLazyClassLoader(RuntimeClassLoader lazyClassLoader) {
+        this.lazyClassLoader = lazyClassLoader;
+    }
+
+    @Override
+    public byte[] getData() {
+        if (bodyCompiler != null) {
+            synchronized (this) {
+                if (bodyCompiler != null) {
+                    bodyCompiler.accept(this);
+                    bodyCompiler = null;
+                }
+            }
+        }
+
+        return super.getData();
+    }
+
     public void setNativeMethod(Method nativeMethod) {
         this.nativeMethod = nativeMethod;
+        this.nativeHandle = null;
+        this.fixedHandleResolved = false;
         nativeMethod.setAccessible(true);
     }
 
+    /**
+     * Direct handle of the compiled body, typed as (Environment, Memory[])Memory.
+     *
+     * @return null if the function has no compiled body
+     */
+    public MethodHandle getNativeHandle() {
+        if (nativeMethod == null && lazyClassLoader != null) {
+            lazyClassLoader.loadLazyFunction(this);
+        }
+
+        if (nativeHandle == null && nativeMethod != null) {
+            try {
+                nativeHandle = MethodHandles.lookup().unreflect(nativeMethod)
+                        .asType(MethodType.methodType(Memory.class, Environment.class, Memory[].class));
+            } catch (IllegalAccessException e) {
+                throw new CriticalException(e);
+            }
+        }
+
+        return nativeHandle;
+    }
+
+    /**
+     * Direct handle of the fixed-arity entry point of the compiled body, typed as (Environment, Memory x arity)Memory.
+     * The entry point is compiled for a function without variadic parameters, it takes the arguments without an array.
+     * A call without arguments passes no array already, methods of classes have no such entry point.
+     *
+     * @return null if the function has no entry point for the count of arguments
+     */
+    public MethodHandle getFixedHandle(int arity) {
+        if (arity < 1 || arity > MAX_FIXED_ARITY || parameters == null || parameters.length != arity) {
+            return null;
+        }
+
+        if (!fixedHandleResolved) {
+            MethodHandle handle = null;
+
+            if (getNativeHandle() != null && nativeClazz != null) {
+                Class<?>[] types = new Class<?>[arity + 1];
+                types[0] = Environment.class;
+                Arrays.fill(types, 1, types.length, Memory.class);
+
+                try {
+                    Method method = nativeClazz.getDeclaredMethod("__invoke", types);
+                    method.setAccessible(true);
+                    handle = MethodHandles.lookup().unreflect(method);
+                } catch (NoSuchMethodException e) {
+                    handle = null;
+                } catch (IllegalAccessException e) {
+                    throw new CriticalException(e);
+                }
+            }
+
+            fixedHandle = handle;
+            fixedHandleResolved = true;
+        }
+
+        return fixedHandle;
+    }
+
     public boolean isDeprecated(){
         return false; // TODO
     }
@@ -76,18 +187,154 @@ public class FunctionEntity extends AbstractFunctionEntity {
 
     public Memory invoke(Environment env, TraceInfo trace, Memory[] arguments) throws Throwable {
         try {
-            return InvokeHelper.checkReturnType(
-                    env, trace,
-                    (Memory)nativeMethod.invoke(null, env, arguments),
-                    this
-            );
-        } catch (InvocationTargetException e){
-            return env.__throwException(e);
+            Memory result;
+
+            try {
+                result = (Memory) getNativeHandle().invokeExact(env, arguments);
+            } catch (Throwable e) {
+                return env.__throwThrowable(e);
+            }
+
+            return InvokeHelper.checkReturnType(env, trace, result, this);
         } finally {
             unsetArguments(arguments);
         }
     }
 
+    /**
+     * Calls the function with one argument as {@link InvokeHelper#call(Environment, TraceInfo, FunctionEntity, Memory[])}
+     * does, via the fixed-arity entry point if it exists (see {@link #getFixedHandle(int)}).
+     */
+    public Memory call(Environment env, TraceInfo trace, Memory a0) throws Throwable {
+        MethodHandle handle = getFixedHandle(1);
+
+        return handle == null
+                ? InvokeHelper.call(env, trace, this, new Memory[]{a0})
+                : invokeFixed(handle, env, trace, a0);
+    }
+
+    /**
+     * Invokes the fixed-arity entry point, the handle must be {@link #getFixedHandle(int)} of the function.
+     */
+    public Memory invokeFixed(MethodHandle handle, Environment env, TraceInfo trace, Memory a0) throws Throwable {
+        return invokeFixed(handle, env, trace, 1, a0, null, null, null);
+    }
+
+    /**
+     * @see #call(Environment, TraceInfo, Memory)
+     */
+    public Memory call(Environment env, TraceInfo trace, Memory a0, Memory a1) throws Throwable {
+        MethodHandle handle = getFixedHandle(2);
+
+        return handle == null
+                ? InvokeHelper.call(env, trace, this, new Memory[]{a0, a1})
+                : invokeFixed(handle, env, trace, a0, a1);
+    }
+
+    /**
+     * @see #invokeFixed(MethodHandle, Environment, TraceInfo, Memory)
+     */
+    public Memory invokeFixed(MethodHandle handle, Environment env, TraceInfo trace, Memory a0, Memory a1) throws Throwable {
+        return invokeFixed(handle, env, trace, 2, a0, a1, null, null);
+    }
+
+    /**
+     * @see #call(Environment, TraceInfo, Memory)
+     */
+    public Memory call(Environment env, TraceInfo trace, Memory a0, Memory a1, Memory a2) throws Throwable {
+        MethodHandle handle = getFixedHandle(3);
+
+        return handle == null
+                ? InvokeHelper.call(env, trace, this, new Memory[]{a0, a1, a2})
+                : invokeFixed(handle, env, trace, a0, a1, a2);
+    }
+
+    /**
+     * @see #invokeFixed(MethodHandle, Environment, TraceInfo, Memory)
+     */
+    public Memory invokeFixed(MethodHandle handle, Environment env, TraceInfo trace,
+                              Memory a0, Memory a1, Memory a2) throws Throwable {
+        return invokeFixed(handle, env, trace, 3, a0, a1, a2, null);
+    }
+
+    /**
+     * @see #call(Environment, TraceInfo, Memory)
+     */
+    public Memory call(Environment env, TraceInfo trace, Memory a0, Memory a1, Memory a2, Memory a3) throws Throwable {
+        MethodHandle handle = getFixedHandle(4);
+
+        return handle == null
+                ? InvokeHelper.call(env, trace, this, new Memory[]{a0, a1, a2, a3})
+                : invokeFixed(handle, env, trace, a0, a1, a2, a3);
+    }
+
+    /**
+     * @see #invokeFixed(MethodHandle, Environment, TraceInfo, Memory)
+     */
+    public Memory invokeFixed(MethodHandle handle, Environment env, TraceInfo trace,
+                              Memory a0, Memory a1, Memory a2, Memory a3) throws Throwable {
+        return invokeFixed(handle, env, trace, 4, a0, a1, a2, a3);
+    }
+
+    /**
+     * The arguments after the count are not used. The frame of the call stack takes the arguments
+     * in the array reused by the frame, see {@link CallStack#pushFixed(TraceInfo, String, int)}.
+     */
+    private Memory invokeFixed(MethodHandle handle, Environment env, TraceInfo trace, int count,
+                               Memory a0, Memory a1, Memory a2, Memory a3) throws Throwable {
+        Memory result = getImmutableResultTyped(env, trace);
+
+        a0 = makeFixedArgument(env, trace, 0, a0);
+        if (count > 1) a1 = makeFixedArgument(env, trace, 1, a1);
+        if (count > 2) a2 = makeFixedArgument(env, trace, 2, a2);
+        if (count > 3) a3 = makeFixedArgument(env, trace, 3, a3);
+
+        if (result != null) {
+            return result;
+        }
+
+        CallStack callStack = trace != null && isUsesStackTrace() ? env.getCallStack() : null;
+
+        if (callStack != null) {
+            Memory[] args = callStack.pushFixed(trace, name, count);
+
+            switch (count) { // falls through
+                case 4: args[3] = a3;
+                case 3: args[2] = a2;
+                case 2: args[1] = a1;
+                case 1: args[0] = a0;
+            }
+        }
+
+        try {
+            try {
+                switch (count) {
+                    case 1: result = (Memory) handle.invokeExact(env, a0); break;
+                    case 2: result = (Memory) handle.invokeExact(env, a0, a1); break;
+                    case 3: result = (Memory) handle.invokeExact(env, a0, a1, a2); break;
+                    default: result = (Memory) handle.invokeExact(env, a0, a1, a2, a3);
+                }
+            } catch (Throwable e) {
+                return env.__throwThrowable(e);
+            }
+
+            return InvokeHelper.checkReturnType(env, trace, result, this);
+        } finally {
+            unsetArgument(0, a0);
+            if (count > 1) unsetArgument(1, a1);
+            if (count > 2) unsetArgument(2, a2);
+            if (count > 3) unsetArgument(3, a3);
+
+            if (callStack != null) {
+                callStack.pop();
+            }
+        }
+    }
+
+    private Memory makeFixedArgument(Environment env, TraceInfo trace, int index, Memory arg) {
+        return InvokeArgumentHelper.makeArg(env, trace, parameters[index], arg, index, name, null, null);
+    }
+
     @Override
     public Memory getImmutableResultTyped(Environment env, TraceInfo trace) {
         Memory result = getImmutableResult();
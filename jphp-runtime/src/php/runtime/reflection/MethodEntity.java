@@ -19,7 +19,9 @@ import php.runtime.reflection.helper.ClosureEntity;
 import php.runtime.reflection.support.AbstractFunctionEntity;
 import php.runtime.reflection.support.TypeChecker;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 
 @Reflection.Signature
@@ -30,6 +32,7 @@ public class MethodEntity extends AbstractFunctionEntity {
     protected MethodEntity prototype;
 
     protected Method nativeMethod;
+    protected MethodHandle nativeHandle;
 
     protected boolean isAbstract;
     protected boolean isFinal;
@@ -200,12 +203,39 @@ public class MethodEntity extends AbstractFunctionEntity {
 
     public void setNativeMethod(Method nativeMethod) {
         this.nativeMethod = nativeMethod;
+        this.nativeHandle = null;
 
         if (nativeMethod != null) {
             nativeMethod.setAccessible(true);
         }
     }
 
+    /**
+     * Direct handle of the compiled body, typed as (Object self, Environment, Memory[])Memory,
+     * self is ignored for static methods.
+     *
+     * @return null if the method has no compiled body
+     */
+    public MethodHandle getNativeHandle() {
+        if (nativeHandle == null && nativeMethod != null) {
+            try {
+                MethodHandle handle = MethodHandles.lookup().unreflect(nativeMethod).asFixedArity();
+
+                if (java.lang.reflect.Modifier.isStatic(nativeMethod.getModifiers())) {
+                    handle = MethodHandles.dropArguments(handle, 0, Object.class);
+                }
+
+                nativeHandle = handle.asType(MethodType.methodType(
+                        Memory.class, Object.class, Environment.class, Memory[].class
+                ));
+            } catch (IllegalAccessException e) {
+                throw new CriticalException(e);
+            }
+        }
+
+        return nativeHandle;
+    }
+
     @Override
     public Memory getImmutableResultTyped(Environment env, TraceInfo trace) {
         Memory result = getImmutableResult();
@@ -241,13 +271,15 @@ public class MethodEntity extends AbstractFunctionEntity {
                 return Memory.UNDEFINED;
             }
 
-            Memory result = (Memory) nativeMethod.invoke(_this, env, arguments);
+            Memory result;
+
+            try {
+                result = (Memory) getNativeHandle().invokeExact((Object) _this, env, arguments);
+            } catch (Throwable e) {
+                return env.__throwThrowable(e);
+            }
 
             return InvokeHelper.checkReturnType(env, trace, result, this);
-        } catch (InvocationTargetException e){
-            return env.__throwException(e);
-        } catch (Throwable e) {
-            throw e;
         } finally {
             unsetArguments(arguments);
         }
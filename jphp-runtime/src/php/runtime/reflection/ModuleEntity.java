@@ -28,6 +28,7 @@ public class ModuleEntity extends Entity {
     private final Map<String, ConstantEntity> constants;
     private final List<ClosureEntity> closures;
     private final List<GeneratorEntity> generators;
+    private final Set<String> dependencies;
 
     protected boolean isLoaded;
 
@@ -40,6 +41,7 @@ public class ModuleEntity extends Entity {
         this.constants = new LinkedHashMap<>();
         this.closures = new ArrayList<>();
         this.generators = new ArrayList<>();
+        this.dependencies = new LinkedHashSet<>();
         this.setName(context.getModuleNameNoThrow());
     }
 
@@ -186,6 +188,26 @@ public class ModuleEntity extends Entity {
         }
     }
 
+    /**
+     * @return names of other modules the bytecode of the module is compiled against (parents, interfaces, traits)
+     */
+    public Collection<String> getDependencies() {
+        return dependencies;
+    }
+
+    /**
+     * Adds the module and its own dependencies, a dependency of the parent changes the bytecode of the parent.
+     */
+    public void addDependency(ModuleEntity module) {
+        if (module != this && module.getName() != null && dependencies.add(module.getName())) {
+            dependencies.addAll(module.dependencies);
+        }
+    }
+
+    public void addDependency(String moduleName) {
+        dependencies.add(moduleName);
+    }
+
     public void addFunction(FunctionEntity function){
         functions.add(function);
         if (function.getGeneratorEntity() != null) {
@@ -215,7 +215,7 @@ public class ParameterEntity extends Entity {
     }
 
     public boolean checkTypeHinting(Environment env, Memory value, String staticClassName) {
-        if (typeChecker != null) {
+        if (typeChecker != null && !typeChecker.isInstance(value)) {
             return typeChecker.check(
                     env, value, nullable || (defaultValue != null && defaultValue.isNull()), staticClassName
             );
@@ -4,6 +4,7 @@ import php.runtime.Memory;
 import php.runtime.common.HintType;
 import php.runtime.common.Messages;
 import php.runtime.common.Modifier;
+import php.runtime.env.CompileScope;
 import php.runtime.env.Context;
 import php.runtime.env.Environment;
 import php.runtime.env.TraceInfo;
@@ -35,6 +36,7 @@ public class PropertyEntity extends Entity {
     protected Field field;
 
     protected String specificName;
+    protected StaticSlot staticSlot;
     protected PropertyEntity prototype;
     protected boolean isDefault;
 
@@ -46,6 +48,8 @@ public class PropertyEntity extends Entity {
 
     protected boolean hiddenInDebugInfo = false;
 
+    protected int position = -1;
+
     public PropertyEntity(Context context) {
         super(context);
     }
@@ -141,6 +145,41 @@ public class PropertyEntity extends Entity {
         return null;
     }
 
+    /**
+     * @return expected position of the property in the properties of an object (see
+     * {@link ClassEntity#getPropertyPositions()}) or -1
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * @return entry of the property for changes if it is at the expected position in the properties of the object,
+     * otherwise null (look up by the name)
+     */
+    public ReferenceMemory getEntryAt(Object object) {
+        if (position != -1 && object instanceof IObject) {
+            ArrayMemory props = ((IObject) object).getProperties();
+
+            return props == null ? null : props.getByScalarAt(position, specificName);
+        }
+
+        return null;
+    }
+
+    /**
+     * As {@link #getEntryAt(Object)}, only for reading, shared properties of a cloned object are not copied.
+     */
+    public ReferenceMemory peekEntryAt(Object object) {
+        if (position != -1 && object instanceof IObject) {
+            ArrayMemory props = ((IObject) object).getProperties();
+
+            return props == null ? null : props.peekByScalarAt(position, specificName);
+        }
+
+        return null;
+    }
+
     public boolean isDefault() {
         return isDefault;
     }
@@ -180,7 +219,7 @@ public class PropertyEntity extends Entity {
 
     public Memory getDefaultValue(Environment env) {
         if (defaultValue == null) {
-            Memory r = env.getStatic(isStatic ? specificName : internalName);
+            Memory r = isStatic ? env.getStatic(getStaticSlot(env)) : env.getStatic(internalName);
             return r == null ? Memory.NULL : r;
         } else {
             return defaultValue;
@@ -274,6 +313,8 @@ public class PropertyEntity extends Entity {
 
         if (clazz != null)
             internalName = "\0" + clazz.getLowerName() + "\0#" + name;
+
+        staticSlot = null;
     }
 
     @Override
@@ -444,9 +485,29 @@ public class PropertyEntity extends Entity {
         return ((IObject) object).getProperties().refOfIndex(name).assign(typedValue(env, trace, value));
     }
 
+    /**
+     * @return slot of the static property in the scope of the environment, see {@link CompileScope#getStaticSlot(String)}
+     */
+    public int getStaticSlot(Environment env) {
+        StaticSlot slot = staticSlot;
+
+        if (slot == null || slot.scope != env.scope) {
+            staticSlot = slot = new StaticSlot(env.scope, env.scope.getStaticSlot(specificName));
+        }
+
+        return slot.index;
+    }
+
     public Memory getStaticValue(Environment env, TraceInfo trace) {
+        int slot = getStaticSlot(env);
+
+        Memory value = env.getStatic(slot);
+        if (value != null) {
+            return value;
+        }
+
         return env.getOrCreateStatic(
-                specificName,
+                slot,
                 getDefaultValue(env).fast_toImmutable()
         );
     }
@@ -456,11 +517,15 @@ public class PropertyEntity extends Entity {
             return ObjectInvokeHelper.invokeMethod((IObject) object, getter, env, trace, null, false);
         }
 
-        ArrayMemory props = ((IObject) object).getProperties();
+        ReferenceMemory result = peekEntryAt(object);
 
-        ReferenceMemory result = props.getByScalar(specificName);
         if (result == null) {
-            result = props.getByScalar(name);
+            ArrayMemory props = ((IObject) object).getProperties();
+
+            result = props.getByScalar(specificName);
+            if (result == null) {
+                result = props.getByScalar(name);
+            }
         }
 
         if (result != null && isTyped()) {
@@ -481,4 +546,14 @@ public class PropertyEntity extends Entity {
 
         return typeChecker != null && typeChecker.identical(el.typeChecker);
     }
+
+    protected static class StaticSlot {
+        final CompileScope scope;
+        final int index;
+
+        StaticSlot(CompileScope scope, int index) {
+            this.scope = scope;
+            this.index = index;
+        }
+    }
 }
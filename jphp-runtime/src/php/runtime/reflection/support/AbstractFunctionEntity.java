@@ -68,17 +68,17 @@ abstract public class AbstractFunctionEntity extends Entity {
 
     public void unsetArguments(Memory[] arguments){
         if (arguments != null){
-            int x = 0;
-            for(Memory argument : arguments) {
-                if (argument == null) continue;
-
-                if (argument.isArray()) {
-                    ParameterEntity param = parameters != null && x < parameters.length ? parameters[x] : null;
-                    if (param == null || (param.isUsed() && param.isMutable() && !param.isReference())) {
-                        argument.unset();
-                    }
-                }
-                x++;
+            for (int i = 0; i < arguments.length; i++) {
+                unsetArgument(i, arguments[i]);
+            }
+        }
+    }
+
+    public void unsetArgument(int index, Memory argument) {
+        if (argument != null && argument.isArray()) {
+            ParameterEntity param = parameters != null && index < parameters.length ? parameters[index] : null;
+            if (param == null || (param.isUsed() && param.isMutable() && !param.isReference())) {
+                argument.unset();
             }
         }
     }
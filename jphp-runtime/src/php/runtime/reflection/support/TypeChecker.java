@@ -22,6 +22,16 @@ abstract public class TypeChecker {
 
     abstract public boolean check(Environment env, Memory value, boolean nullable, String staticClassName);
     abstract public Memory apply(Environment env, Memory value, boolean nullable, boolean strict);
+
+    /**
+     * Fast path of {@link #check(Environment, Memory, boolean, String)} without coercion and lookups.
+     *
+     * @return true if the value is exactly of the type, false if it is unknown and the full check is needed
+     */
+    public boolean isInstance(Memory value) {
+        return false;
+    }
+
     public boolean isBuiltin() {
         return false;
     }
@@ -67,6 +77,7 @@ abstract public class TypeChecker {
 
     public static class Simple extends TypeChecker {
         protected final HintType type;
+        protected final Memory.Type realType;
 
         private static final EnumMap<HintType, Simple> cache;
         static {
@@ -78,6 +89,16 @@ abstract public class TypeChecker {
 
         public Simple(HintType type) {
             this.type = type;
+
+            switch (type) {
+                case INT: realType = Type.INT; break;
+                case DOUBLE: realType = Type.DOUBLE; break;
+                case BOOLEAN: realType = Type.BOOL; break;
+                case STRING: realType = Type.STRING; break;
+                case ARRAY: realType = Type.ARRAY; break;
+                default:
+                    realType = null;
+            }
         }
 
         public static Simple valueOf(HintType type) {
@@ -108,6 +129,11 @@ abstract public class TypeChecker {
             return typeChecker instanceof Simple && type == ((Simple) typeChecker).type;
         }
 
+        @Override
+        public boolean isInstance(Memory value) {
+            return realType != null && value.getRealType() == realType;
+        }
+
         @Override
         public Memory apply(Environment env, Memory value, boolean nullable, boolean strict) {
             if (nullable && value.isNull()) {
@@ -210,6 +236,10 @@ abstract public class TypeChecker {
         protected final String typeClass;
         protected final String typeClassLower;
 
+        // the last class which is an instance of the type, the checkers are shared by environments,
+        // but an entity never stops to be an instance of its parents.
+        private ClassEntity matched;
+
         private final static Map<String, ClassName> cache = new HashMap<>();
 
         public ClassName(String typeClass) {
@@ -255,7 +285,22 @@ abstract public class TypeChecker {
             ObjectMemory object = value.toValue(ObjectMemory.class);
             ClassEntity oEntity = object.getReflection();
 
-            return oEntity.isInstanceOfLower(typeClassLower);
+            if (oEntity == matched) {
+                return true;
+            }
+
+            if (oEntity.isInstanceOfLower(typeClassLower)) {
+                matched = oEntity;
+                return true;
+            }
+
+            return false;
+        }
+
+        @Override
+        public boolean isInstance(Memory value) {
+            ClassEntity entity = matched;
+            return entity != null && value instanceof ObjectMemory && ((ObjectMemory) value).getReflection() == entity;
         }
 
         @Override
@@ -612,6 +612,7 @@ public class ClassWrapper {
         int mod = nativeClass.getModifiers();
 
         classEntity.setInternal(true);
+        classEntity.setScope(scope);
         classEntity.setNativeClazz(nativeClass);
         classEntity.setExtension(extension);
 
@@ -73,28 +73,37 @@ function ____makePackage($fileOrStream)
 // ------------------------- COMPILE FUNCTION ------------------------------------ //
 
 function ____compilePHBFile($filename, $target) {
-    fs::ensureParent($target);
     $fileStream = new FileStream($filename);
     $module = new Module($fileStream, false, true);
-    $module->dump($target, true, true);
+    ____dumpPHBModule($module, $target);
 
     $fileStream->close();
 }
 
 function ____compileJVMFile($filename, $target) {
-    fs::ensureParent($target);
-
     $fileStream = new FileStream($filename);
     $module = new Module($fileStream, false, true);
-    $result = $module->dumpJVMClasses($target);
-
-    $result['moduleName'] = $module->getName();
+    $result = ____dumpJVMModule($module, $target);
 
     $fileStream->close();
 
     return $result;
 }
 
+function ____dumpPHBModule(Module $module, $target) {
+    fs::ensureParent($target);
+    $module->dump($target, true, true);
+}
+
+function ____dumpJVMModule(Module $module, $target) {
+    fs::ensureParent($target);
+
+    $result = $module->dumpJVMClasses($target);
+    $result['moduleName'] = $module->getName();
+
+    return $result;
+}
+
 function ____compile($sourceDir, ?string $jvmClassesTargetDir = null)
 {
     $includedFiles = [];
@@ -121,6 +130,10 @@ function ____compile($sourceDir, ?string $jvmClassesTargetDir = null)
 
         $filename = "$sourceDir/" . str::replace($name, "\\", "/") . ".php";
 
+        if ($includedFiles[fs::normalize($filename)]) {
+            return;
+        }
+
         if (fs::isFile($filename)) {
             echo "Find class '$name' in ", $filename, "\n";
             $includedFiles[fs::normalize($filename)] = true;
@@ -138,28 +151,32 @@ function ____compile($sourceDir, ?string $jvmClassesTargetDir = null)
         }
     });
 
-    fs::scan($sourceDir, function ($filename) use (&$includedFiles, $jvmClassesTargetDir, &$result) {
+    $files = [];
+
+    fs::scan($sourceDir, function ($filename) use (&$files) {
         if (fs::name($filename) === "__compile-app-bytecode.php") return;
 
         if (fs::ext($filename) === "php") {
-            $compiledFile = fs::pathNoExt($filename) . '.phb';
-            $filename = fs::normalize($filename);
+            $files[] = fs::normalize($filename);
+        } else {
+            // skip.
+        }
+    });
 
-            if ($includedFiles[$filename]) {
-                return;
-            }
+    // all the files are compiled at once (in parallel), the autoloader compiles only classes outside of them.
+    foreach ($files as $filename) {
+        $includedFiles[$filename] = true;
+    }
 
-            $includedFiles[$filename] = true;
+    foreach (Module::compileAll($files) as $i => $module) {
+        $filename = $files[$i];
 
-            if ($jvmClassesTargetDir) {
-                $result[] = ____compileJVMFile($filename, $jvmClassesTargetDir);
-            } else {
-                ____compilePHBFile($filename, $compiledFile);
-            }
+        if ($jvmClassesTargetDir) {
+            $result[] = ____dumpJVMModule($module, $jvmClassesTargetDir);
         } else {
-            // skip.
+            ____dumpPHBModule($module, fs::pathNoExt($filename) . '.phb');
         }
-    });
+    }
 
     fs::clean($sourceDir, ['extensions' => ['php']]);
     return $result;